@@ -0,0 +1,99 @@
+package org.pharmgkb.parsers.bed;
+
+import org.pharmgkb.parsers.bed.model.BedBlock;
+import org.pharmgkb.parsers.bed.model.BedFeature;
+import org.pharmgkb.parsers.cache.BinaryInput;
+import org.pharmgkb.parsers.cache.BinaryOutput;
+import org.pharmgkb.parsers.cache.RecordCodec;
+import org.pharmgkb.parsers.model.Strand;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.awt.*;
+import java.util.Optional;
+
+/**
+ * Binary form of a {@link BedFeature}, for {@link org.pharmgkb.parsers.cache.SidecarCache}.
+ * Example:
+ * <code>
+ *     BedParser parser = new BedParser(SidecarCache.forRecords(new BedFeatureCodec()));
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class BedFeatureCodec implements RecordCodec<BedFeature> {
+
+	private static final Strand[] sf_strands = Strand.values();
+
+	@Nonnull
+	@Override
+	public String getId() {
+		return "bed-feature/1";
+	}
+
+	@Override
+	public void write(@Nonnull BedFeature feature, @Nonnull BinaryOutput out) {
+		out.writeString(feature.getChromosome());
+		out.writeLong(feature.getStart());
+		out.writeLong(feature.getEnd());
+		out.writeString(feature.getName().orElse(null));
+		Optional<Integer> score = feature.getScore();
+		out.writeBoolean(score.isPresent());
+		if (score.isPresent()) {
+			out.writeInt(score.get());
+		}
+		out.writeEnum(feature.getStrand().orElse(null));
+		writeOptionalLong(feature.getThickStart(), out);
+		writeOptionalLong(feature.getThickEnd(), out);
+		Optional<Color> color = feature.getColor();
+		out.writeBoolean(color.isPresent());
+		if (color.isPresent()) {
+			out.writeInt(color.get().getRGB());
+		}
+		out.writeInt(feature.getBlocks().size());
+		for (BedBlock block : feature.getBlocks()) {
+			out.writeLong(block.getStart());
+			out.writeLong(block.getEnd());
+		}
+	}
+
+	@Nonnull
+	@Override
+	public BedFeature read(@Nonnull BinaryInput in) {
+		//noinspection ConstantConditions
+		BedFeature.Builder builder = new BedFeature.Builder(in.readString(), in.readLong(), in.readLong());
+		builder.setName(in.readString());
+		if (in.readBoolean()) {
+			builder.setScore(in.readInt());
+		}
+		builder.setStrand(in.readEnum(sf_strands));
+		builder.setThickStart(readOptionalLong(in));
+		builder.setThickEnd(readOptionalLong(in));
+		if (in.readBoolean()) {
+			builder.setColor(new Color(in.readInt(), true));
+		}
+		int nBlocks = in.readInt();
+		for (int i = 0; i < nBlocks; i++) {
+			builder.addBlock(in.readLong(), in.readLong());
+		}
+		return builder.build();
+	}
+
+	private static void writeOptionalLong(@Nonnull Optional<Long> value, @Nonnull BinaryOutput out) {
+		out.writeBoolean(value.isPresent());
+		if (value.isPresent()) {
+			out.writeLong(value.get());
+		}
+	}
+
+	private static Long readOptionalLong(@Nonnull BinaryInput in) {
+		return in.readBoolean()? in.readLong() : null;
+	}
+
+	@Override
+	public String toString() {
+		return "BedFeatureCodec{" +
+				"id=" + getId() +
+				'}';
+	}
+}
@@ -1,8 +1,12 @@
 package org.pharmgkb.parsers.bed;
 
+import com.google.common.base.Preconditions;
 import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ErrorPolicy;
 import org.pharmgkb.parsers.LineParser;
+import org.pharmgkb.parsers.ReusingLineParser;
 import org.pharmgkb.parsers.bed.model.BedFeature;
+import org.pharmgkb.parsers.cache.SidecarCache;
 import org.pharmgkb.parsers.model.Strand;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,6 +16,8 @@
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -45,7 +51,7 @@
  * @see org.pharmgkb.parsers.bed.BedWriter
  */
 @ThreadSafe
-public class BedParser implements LineParser<BedFeature> {
+public class BedParser implements LineParser<BedFeature>, ReusingLineParser<MutableBedFeature> {
 
 	private static final long sf_logEvery = 10000;
 	private static final Pattern sf_comma = Pattern.compile(",");
@@ -55,19 +61,68 @@ public class BedParser implements LineParser<BedFeature> {
 
 	private AtomicLong m_lineNumber = new AtomicLong(0L);
 
+	private final SidecarCache<List<BedFeature>> m_sidecarCache;
+
+	private final ErrorPolicy m_errorPolicy;
+
+	public BedParser() {
+		m_sidecarCache = null;
+		m_errorPolicy = ErrorPolicy.failFast();
+	}
+
+	/**
+	 * @param sidecarCache Normally {@code SidecarCache.forRecords(new BedFeatureCodec())}
+	 */
+	public BedParser(@Nonnull SidecarCache<List<BedFeature>> sidecarCache) {
+		Preconditions.checkNotNull(sidecarCache, "Sidecar cache cannot be null");
+		m_sidecarCache = sidecarCache;
+		m_errorPolicy = ErrorPolicy.failFast();
+	}
+
+	public BedParser(@Nonnull ErrorPolicy errorPolicy) {
+		Preconditions.checkNotNull(errorPolicy, "Error policy cannot be null");
+		m_sidecarCache = null;
+		m_errorPolicy = errorPolicy;
+	}
+
 	@Nonnull
 	@Override
 	public Stream<BedFeature> parseAll(@Nonnull Stream<String> stream) throws UncheckedIOException, BadDataFormatException {
-		return stream.map(this);
+		return m_errorPolicy.map(stream, this);
 	}
 
 	@Nonnull
 	@Override
 	public BedFeature apply(@Nonnull String line) throws BadDataFormatException {
+		return parse(line, nextLineNumber());
+	}
+
+	@Nonnull
+	@Override
+	public MutableBedFeature newRecord() {
+		return new MutableBedFeature(this);
+	}
+
+	@Override
+	public void parseInto(@Nonnull String line, @Nonnull MutableBedFeature record) throws BadDataFormatException {
+		record.set(line, nextLineNumber());
+	}
 
-		if (m_lineNumber.incrementAndGet() % sf_logEvery == 0) {
-			sf_logger.debug("Reading line #{}", m_lineNumber);
+	@Override
+	public boolean isRecordLine(@Nonnull String line) {
+		return true; // same as parseAll
+	}
+
+	private long nextLineNumber() {
+		long lineNumber = m_lineNumber.incrementAndGet();
+		if (lineNumber % sf_logEvery == 0) {
+			sf_logger.debug("Reading line #{}", lineNumber);
 		}
+		return lineNumber;
+	}
+
+	@Nonnull
+	BedFeature parse(@Nonnull String line, long lineNumber) throws BadDataFormatException {
 
 		String[] parts = sf_tab.split(line);
 		try {
@@ -98,11 +153,11 @@ public BedFeature apply(@Nonnull String line) throws BadDataFormatException {
 				String[] starts = sf_comma.split(parts[11]);
 				if (blockCount != starts.length) {
 					throw new BadDataFormatException("There should be " + blockCount + " blocks, but " + starts.length
-							                       + " block starts were specified on line #" + m_lineNumber);
+							                       + " block starts were specified on line #" + lineNumber);
 				}
 				if (blockCount != lengths.length) {
 					throw new BadDataFormatException("There should be " + blockCount + " blocks, but " + lengths.length
-							                       + " block lengths were specified on line #" + m_lineNumber);
+							                       + " block lengths were specified on line #" + lineNumber);
 				}
 				for (int i = 0; i < blockCount; i++) {
 					long blockStart = Long.parseLong(starts[i]);
@@ -113,16 +168,28 @@ public BedFeature apply(@Nonnull String line) throws BadDataFormatException {
 
 			return builder.build();
 
-		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
-			throw new BadDataFormatException("Bad data format on line #" + m_lineNumber.get()
-					                                 + "; line is [[[" + line + "]]]", e);
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | BadDataFormatException e) {
+			throw m_errorPolicy.badLine(lineNumber, line, e);
 		} catch (RuntimeException e) {
 			// this is a little weird, but it's helpful
 			// not that we're not throwing a BadDataFormatException because we don't expect AIOOB, e.g.
-			e.addSuppressed(new RuntimeException("Unexpectedly failed to parse line " + m_lineNumber));
+			e.addSuppressed(new RuntimeException("Unexpectedly failed to parse line " + lineNumber));
 			throw e;
 		}
 	}
+
+	@Nonnull
+	@Override
+	public ErrorPolicy getErrorPolicy() {
+		return m_errorPolicy;
+	}
+
+	@Nonnull
+	@Override
+	public Optional<SidecarCache<List<BedFeature>>> getSidecarCache() {
+		return Optional.ofNullable(m_sidecarCache);
+	}
+
 	@Nonnegative
 	@Override
 	public long nLinesProcessed() {
@@ -0,0 +1,32 @@
+package org.pharmgkb.parsers.bed;
+
+import org.pharmgkb.parsers.scan.LineScanner;
+import org.pharmgkb.parsers.scan.TabularSummary;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Counts of the features (data lines), comment lines, and features per chromosome in a BED file,
+ * read without parsing anything beyond the chromosome column.
+ * Lines beginning with {@code #}, {@code track}, or {@code browser} are counted as comments.
+ * Plain and BGZF-compressed files are scanned in parallel; see {@link LineScanner}.
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class BedSummary extends TabularSummary<BedSummary> {
+
+	@Nonnull
+	public static BedSummary of(@Nonnull Path file) throws UncheckedIOException {
+		return new LineScanner().scan(file, BedSummary::new);
+	}
+
+	@Override
+	protected boolean isComment(@Nonnull ByteBuffer bytes, @Nonnegative int start, @Nonnegative int end) {
+		return bytes.get(start) == '#' || startsWith(bytes, start, end, "track") || startsWith(bytes, start, end, "browser");
+	}
+}
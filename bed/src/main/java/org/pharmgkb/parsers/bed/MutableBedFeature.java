@@ -0,0 +1,147 @@
+package org.pharmgkb.parsers.bed;
+
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ReusableRecord;
+import org.pharmgkb.parsers.bed.model.BedFeature;
+import org.pharmgkb.parsers.model.Strand;
+import org.pharmgkb.parsers.utils.DelimitedFields;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Optional;
+
+/**
+ * A reusable view of one BED line, filled by {@link BedParser#forEach}.
+ * The chromosome, start, and end are read when the line is set; the chromosome String is reused from the previous
+ * line when it is the same. Other fields are read only when asked for, and only methods that return a String or
+ * an {@link Optional} allocate.
+ * @author Douglas Myers-Turnbull
+ * @see BedFeature
+ */
+@NotThreadSafe
+public class MutableBedFeature implements ReusableRecord<BedFeature> {
+
+	private final BedParser m_parser;
+	private final DelimitedFields m_fields = new DelimitedFields('\t');
+
+	private String m_line = "";
+	private long m_lineNumber = 0;
+	private String m_chromosome = "";
+	private long m_start;
+	private long m_end;
+
+	MutableBedFeature(@Nonnull BedParser parser) {
+		m_parser = parser;
+	}
+
+	void set(@Nonnull String line, long lineNumber) throws BadDataFormatException {
+		m_line = line;
+		m_lineNumber = lineNumber;
+		m_fields.reset(line);
+		try {
+			if (m_fields.size() < 3) {
+				throw new IllegalArgumentException("There are only " + m_fields.size() + " fields");
+			}
+			if (m_fields.length(0) != m_chromosome.length()
+					|| !line.regionMatches(0, m_chromosome, 0, m_chromosome.length())) {
+				m_chromosome = m_fields.get(0);
+			}
+			m_start = m_fields.parseLong(1);
+			m_end = m_fields.parseLong(2);
+		} catch (IllegalArgumentException e) {
+			throw m_parser.getErrorPolicy().badLine(lineNumber, line, e);
+		}
+	}
+
+	@Nonnull
+	public String getChromosome() {
+		return m_chromosome;
+	}
+
+	@Nonnegative
+	public long getStart() {
+		return m_start;
+	}
+
+	@Nonnegative
+	public long getEnd() {
+		return m_end;
+	}
+
+	/**
+	 * @return The number of tab-separated fields, from 3 to 12
+	 */
+	@Nonnegative
+	public int getNFields() {
+		return m_fields.size();
+	}
+
+	@Nonnull
+	public Optional<String> getName() {
+		return m_fields.size() > 3? Optional.of(m_fields.get(3)) : Optional.empty();
+	}
+
+	public boolean hasScore() {
+		return m_fields.size() > 4;
+	}
+
+	/**
+	 * @throws IllegalStateException If {@link #hasScore()} is false
+	 * @throws NumberFormatException If the score is not an integer
+	 */
+	public int getScore() {
+		if (!hasScore()) {
+			throw new IllegalStateException("Line #" + m_lineNumber + " has no score");
+		}
+		return m_fields.parseInt(4);
+	}
+
+	@Nonnull
+	public Optional<Strand> getStrand() {
+		if (m_fields.size() <= 5) {
+			return Optional.empty();
+		}
+		if (m_fields.fieldEquals(5, "+")) {
+			return Optional.of(Strand.PLUS);
+		}
+		if (m_fields.fieldEquals(5, "-")) {
+			return Optional.of(Strand.MINUS);
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * @return Whether the field at 0-based index {@code field} exists and is exactly {@code value}
+	 */
+	public boolean fieldEquals(@Nonnegative int field, @Nonnull String value) {
+		return field < m_fields.size() && m_fields.fieldEquals(field, value);
+	}
+
+	@Nonnull
+	@Override
+	public String getLine() {
+		return m_line;
+	}
+
+	@Override
+	public long getLineNumber() {
+		return m_lineNumber;
+	}
+
+	@Nonnull
+	@Override
+	public BedFeature freeze() throws BadDataFormatException {
+		return m_parser.parse(m_line, m_lineNumber);
+	}
+
+	@Override
+	public String toString() {
+		return "MutableBedFeature{" +
+				"lineNumber=" + m_lineNumber +
+				", chromosome=" + m_chromosome +
+				", start=" + m_start +
+				", end=" + m_end +
+				'}';
+	}
+}
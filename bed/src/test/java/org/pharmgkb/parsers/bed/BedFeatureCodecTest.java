@@ -0,0 +1,36 @@
+package org.pharmgkb.parsers.bed;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.bed.model.BedFeature;
+import org.pharmgkb.parsers.cache.SidecarCache;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link BedFeatureCodec}.
+ * @author Douglas Myers-Turnbull
+ */
+public class BedFeatureCodecTest {
+
+	@Test
+	public void testSidecar() throws Exception {
+		Path dir = Files.createTempDirectory("bed");
+		Path file = Files.copy(Paths.get(getClass().getResource("bed1.bed").toURI()), dir.resolve("bed1.bed"));
+		SidecarCache<List<BedFeature>> cache = SidecarCache.forRecords(new BedFeatureCodec());
+		List<BedFeature> expected = new BedParser().collectAll(file);
+		assertEquals(expected, new BedParser(cache).collectAll(file));
+		assertTrue(Files.exists(cache.getSidecar(file)));
+		BedParser parser = new BedParser(cache);
+		assertEquals(expected, parser.collectAll(file));
+		assertEquals(0, parser.nLinesProcessed());
+		Files.delete(cache.getSidecar(file));
+		Files.delete(file);
+		Files.delete(dir);
+	}
+}
@@ -2,6 +2,7 @@
 
 import org.junit.jupiter.api.Test;
 import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ErrorPolicy;
 import org.pharmgkb.parsers.bed.model.BedFeature;
 import org.pharmgkb.parsers.model.Strand;
 
@@ -9,11 +10,15 @@
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
@@ -48,6 +53,35 @@ public void testParse() throws Exception {
 			assertEquals(third, features.get(2));
 	}
 
+	@Test
+	public void testForEach() throws Exception {
+		Path file = Paths.get(getClass().getResource("bed1.bed").toURI());
+		List<BedFeature> expected = new BedParser().collectAll(file);
+		List<BedFeature> frozen = new ArrayList<>();
+		List<String> chromosomes = new ArrayList<>();
+		new BedParser().forEach(file, feature -> {
+			chromosomes.add(feature.getChromosome());
+			frozen.add(feature.freeze());
+		});
+		assertEquals(expected, frozen);
+		assertEquals(Arrays.asList("chr1", "chr2", "chr2"), chromosomes);
+		assertSame(chromosomes.get(1), chromosomes.get(2));
+	}
+
+	@Test
+	public void testSkipJunkLines() {
+		ErrorPolicy policy = ErrorPolicy.skip();
+		BedParser parser = new BedParser(policy);
+		List<BedFeature> features = parser.collectAll(Stream.of("chr1\t0\t5", "asdf", "chr1\tx\t5", "chr2\t10\t20"));
+		assertEquals(2, features.size());
+		assertEquals(4, parser.nLinesProcessed());
+		assertEquals(2, parser.nLinesRejected());
+		List<Long> starts = new ArrayList<>();
+		parser.forEach(Stream.of("chr1\t0\t5", "chr1\t5"), feature -> starts.add(feature.getStart()));
+		assertEquals(Collections.singletonList(0L), starts);
+		assertEquals(3, parser.nLinesRejected());
+	}
+
 	@Test
 	public void testJunkLine() {
 		assertThrows(BadDataFormatException.class, () -> Stream.of("asdf").map(new BedParser()).collect(Collectors.toList()));
@@ -0,0 +1,105 @@
+package org.pharmgkb.parsers.chain;
+
+import com.google.common.collect.ImmutableSortedMap;
+import org.pharmgkb.parsers.cache.BinaryInput;
+import org.pharmgkb.parsers.cache.BinaryOutput;
+import org.pharmgkb.parsers.cache.RecordCodec;
+import org.pharmgkb.parsers.chain.model.GenomeChain;
+import org.pharmgkb.parsers.model.ChromosomeName;
+import org.pharmgkb.parsers.model.Locus;
+import org.pharmgkb.parsers.model.LocusRange;
+import org.pharmgkb.parsers.model.Strand;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary form of a {@link GenomeChain}, for {@link org.pharmgkb.parsers.cache.SidecarCache}.
+ * Reading skips the overlap checks that {@link GenomeChain.Builder#add(LocusRange, LocusRange)} performs,
+ * since the ranges were already checked when the chain was first built.
+ * Example:
+ * <code>
+ *     GenomeChainParser parser = new GenomeChainParser(new SidecarCache&lt;&gt;(new GenomeChainCodec()));
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class GenomeChainCodec implements RecordCodec<GenomeChain> {
+
+	private static final Strand[] sf_strands = Strand.values();
+
+	@Nonnull
+	@Override
+	public String getId() {
+		return "genome-chain/1";
+	}
+
+	@Override
+	public void write(@Nonnull GenomeChain chain, @Nonnull BinaryOutput out) {
+		out.writeInt(chain.getMap().size());
+		for (Map.Entry<ChromosomeName, ImmutableSortedMap<LocusRange, LocusRange>> e : chain.getMap().entrySet()) {
+			writeChromosome(e.getKey(), out);
+			out.writeInt(e.getValue().size());
+			for (Map.Entry<LocusRange, LocusRange> entry : e.getValue().entrySet()) {
+				writeRange(entry.getKey(), out, false);
+				writeRange(entry.getValue(), out, true);
+			}
+		}
+	}
+
+	@Nonnull
+	@Override
+	public GenomeChain read(@Nonnull BinaryInput in) {
+		GenomeChain.Builder builder = new GenomeChain.Builder();
+		Map<String, ChromosomeName> chromosomes = new HashMap<>(); // a chain has few chromosomes but many ranges
+		int nChromosomes = in.readInt();
+		for (int i = 0; i < nChromosomes; i++) {
+			ChromosomeName sourceChr = readChromosome(in, chromosomes);
+			int nRanges = in.readInt();
+			for (int j = 0; j < nRanges; j++) {
+				LocusRange source = readRange(in, sourceChr);
+				LocusRange target = readRange(in, readChromosome(in, chromosomes));
+				builder.addUnchecked(source, target);
+			}
+		}
+		return builder.build();
+	}
+
+	private static void writeChromosome(@Nonnull ChromosomeName chromosome, @Nonnull BinaryOutput out) {
+		out.writeString(chromosome.getOriginalName());
+		out.writeString(chromosome.toString());
+	}
+
+	@Nonnull
+	private static ChromosomeName readChromosome(@Nonnull BinaryInput in, @Nonnull Map<String, ChromosomeName> chromosomes) {
+		String original = in.readString();
+		String name = in.readString();
+		//noinspection ConstantConditions
+		return chromosomes.computeIfAbsent(original + '\t' + name, k -> ChromosomeName.standardized(original, s -> name));
+	}
+
+	private static void writeRange(@Nonnull LocusRange range, @Nonnull BinaryOutput out, boolean withChromosome) {
+		if (withChromosome) {
+			writeChromosome(range.getChromosome(), out);
+		}
+		out.writeEnum(range.getStrand());
+		out.writeLong(range.getStart().getPosition());
+		out.writeLong(range.getEnd().getPosition());
+	}
+
+	@Nonnull
+	private static LocusRange readRange(@Nonnull BinaryInput in, @Nonnull ChromosomeName chromosome) {
+		Strand strand = in.readEnum(sf_strands);
+		//noinspection ConstantConditions
+		return new LocusRange(new Locus(chromosome, in.readLong(), strand), new Locus(chromosome, in.readLong(), strand));
+	}
+
+	@Override
+	public String toString() {
+		return "GenomeChainCodec{" +
+				"id=" + getId() +
+				'}';
+	}
+}
@@ -3,6 +3,7 @@
 import com.google.common.base.Preconditions;
 import org.pharmgkb.parsers.BadDataFormatException;
 import org.pharmgkb.parsers.LineStructureParser;
+import org.pharmgkb.parsers.cache.SidecarCache;
 import org.pharmgkb.parsers.chain.model.GenomeChain;
 import org.pharmgkb.parsers.model.ChromosomeName;
 import org.pharmgkb.parsers.model.Locus;
@@ -45,6 +46,20 @@ public class GenomeChainParser implements LineStructureParser<GenomeChain> {
 
 	private AtomicLong m_lineNumber = new AtomicLong(0l);
 
+	private final SidecarCache<GenomeChain> m_sidecarCache;
+
+	public GenomeChainParser() {
+		m_sidecarCache = null;
+	}
+
+	/**
+	 * @param sidecarCache Normally {@code new SidecarCache<>(new GenomeChainCodec())}
+	 */
+	public GenomeChainParser(@Nonnull SidecarCache<GenomeChain> sidecarCache) {
+		Preconditions.checkNotNull(sidecarCache, "Sidecar cache cannot be null");
+		m_sidecarCache = sidecarCache;
+	}
+
 	/**
 	 * @throws IllegalArgumentException If {@code stream} is parallel
 	 */
@@ -157,6 +172,12 @@ public void accept(@Nonnull String line) {
 		}
 	}
 
+	@Nonnull
+	@Override
+	public Optional<SidecarCache<GenomeChain>> getSidecarCache() {
+		return Optional.ofNullable(m_sidecarCache);
+	}
+
 	@Nonnegative
 	@Override
 	public long nLinesProcessed() {
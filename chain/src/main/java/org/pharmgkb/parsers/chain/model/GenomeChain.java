@@ -43,6 +43,14 @@ private GenomeChain(@Nonnull Map<? extends ChromosomeName, ? extends NavigableMa
 		m_map = ImmutableMap.copyOf(map);
 	}
 
+	/**
+	 * @return Source ranges mapped to target ranges, by source chromosome, in order of end position
+	 */
+	@Nonnull
+	public ImmutableMap<ChromosomeName, ImmutableSortedMap<LocusRange, LocusRange>> getMap() {
+		return m_map;
+	}
+
 	/**
 	 * @return A new GenomeChain with the source and target assemblies swapped
 	 */
@@ -156,6 +164,17 @@ public Builder add(@Nonnull LocusRange source, @Nonnull LocusRange target) {
 			return this;
 		}
 
+		/**
+		 * Like {@link #add(LocusRange, LocusRange)}, but skips checking for overlaps, which takes time linear in the
+		 * number of ranges already on the chromosome.
+		 * Only use this for ranges that are known to be valid, such as ones read back from {@link #getMap()}.
+		 */
+		@Nonnull
+		public Builder addUnchecked(@Nonnull LocusRange source, @Nonnull LocusRange target) {
+			m_map.computeIfAbsent(source.getChromosome(), c -> new TreeMap<>(sf_comparator)).put(source, target);
+			return this;
+		}
+
 		@Nonnull
 		public GenomeChain build() {
 			return new GenomeChain(this);
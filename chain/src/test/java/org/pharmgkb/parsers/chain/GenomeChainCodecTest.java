@@ -0,0 +1,35 @@
+package org.pharmgkb.parsers.chain;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.cache.SidecarCache;
+import org.pharmgkb.parsers.chain.model.GenomeChain;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link GenomeChainCodec}.
+ * @author Douglas Myers-Turnbull
+ */
+public class GenomeChainCodecTest {
+
+	@Test
+	public void testSidecar() throws Exception {
+		Path dir = Files.createTempDirectory("chain");
+		Path file = Files.copy(Paths.get(getClass().getResource("1.chain").toURI()), dir.resolve("1.chain"));
+		SidecarCache<GenomeChain> cache = new SidecarCache<>(new GenomeChainCodec());
+		GenomeChain expected = new GenomeChainParser().parse(file);
+		assertEquals(expected, new GenomeChainParser(cache).parse(file));
+		GenomeChainParser parser = new GenomeChainParser(cache);
+		GenomeChain loaded = parser.parse(file);
+		assertEquals(expected, loaded);
+		assertEquals(expected.invert(), loaded.invert());
+		assertEquals(0, parser.nLinesProcessed());
+		Files.delete(cache.getSidecar(file));
+		Files.delete(file);
+		Files.delete(dir);
+	}
+}
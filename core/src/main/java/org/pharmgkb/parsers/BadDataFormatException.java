@@ -1,22 +1,87 @@
 package org.pharmgkb.parsers;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Optional;
+import java.util.OptionalLong;
 
 /**
  * Data was not formatted correctly.
+ * An exception created for a specific line knows the line and its number, and builds its message only when asked.
  * @author Douglas Myers-Turnbull
  */
 public class BadDataFormatException extends RuntimeException {
 
+	private final long m_lineNumber;
+	private final String m_line;
+
 	public BadDataFormatException(@Nonnull String message) {
 		super(message);
+		m_lineNumber = 0;
+		m_line = null;
 	}
 
 	public BadDataFormatException(@Nonnull String message, @Nonnull Throwable cause) {
 		super(message, cause);
+		m_lineNumber = 0;
+		m_line = null;
 	}
 
 	public BadDataFormatException(@Nonnull Throwable cause) {
 		super(cause);
+		m_lineNumber = 0;
+		m_line = null;
+	}
+
+	/**
+	 * @param lineNumber The 1-based line number
+	 */
+	public BadDataFormatException(@Nonnegative long lineNumber, @Nonnull String line, @Nonnull Throwable cause) {
+		this(lineNumber, line, cause, true);
+	}
+
+	/**
+	 * @param withStackTrace False to skip filling in the stack trace, which is most of the cost of an exception
+	 */
+	BadDataFormatException(@Nonnegative long lineNumber, @Nonnull String line, @Nonnull Throwable cause, boolean withStackTrace) {
+		super(null, cause, true, withStackTrace);
+		m_lineNumber = lineNumber;
+		m_line = line;
+	}
+
+	@Override
+	public String getMessage() {
+		if (m_line == null) {
+			return super.getMessage();
+		}
+		return "Bad data format on line #" + m_lineNumber + "; line is [[[" + m_line + "]]]";
+	}
+
+	/**
+	 * @return The 1-based line number, if this exception was created for a specific line
+	 */
+	@Nonnull
+	public OptionalLong getLineNumber() {
+		return m_line == null? OptionalLong.empty() : OptionalLong.of(m_lineNumber);
+	}
+
+	/**
+	 * @return The full line, if this exception was created for a specific line
+	 */
+	@Nonnull
+	public Optional<String> getLine() {
+		return Optional.ofNullable(m_line);
+	}
+
+	/**
+	 * @return The message of the cause for an exception created for a specific line; otherwise the message
+	 */
+	@Nullable
+	public String getReason() {
+		if (m_line == null || getCause() == null) {
+			return getMessage();
+		}
+		return getCause().getMessage() == null? getCause().getClass().getSimpleName() : getCause().getMessage();
 	}
 }
@@ -0,0 +1,189 @@
+package org.pharmgkb.parsers;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * What a parser does with a line it cannot parse: fail, skip it, or skip it and copy it to a quarantine file.
+ * Only the bulk methods, such as {@link LineParser#parseAll(java.util.stream.Stream)},
+ * {@link LineParser#collectAll(Path)}, and {@link ReusingLineParser#forEach(Stream, java.util.function.Consumer)},
+ * can skip lines; {@link LineParser#apply(Object)} always throws.
+ *
+ * Except for {@link #failFast()}, the exceptions that parsers create through {@link #badLine(long, String, Throwable)}
+ * have no stack trace, and their messages are built only if asked for.
+ * A quarantine file has one tab-separated row per rejected line: the line number ({@code ?} if unknown), the reason,
+ * and the line as it was read. It must be {@link #close() closed}.
+ * Example:
+ * <code>
+ *     try (ErrorPolicy policy = ErrorPolicy.quarantine(Paths.get("rejected.tsv"))) {
+ *         List&lt;BedFeature&gt; features = new BedParser(policy).collectAll(file);
+ *         System.out.println("Rejected " + policy.nRejected() + " lines");
+ *     }
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class ErrorPolicy implements Closeable {
+
+	private final boolean m_failFast;
+	private final Path m_quarantineFile;
+	private final BufferedWriter m_quarantine;
+	private final AtomicLong m_nRejected = new AtomicLong(0L);
+
+	private ErrorPolicy(boolean failFast, @Nullable Path quarantineFile) {
+		m_failFast = failFast;
+		m_quarantineFile = quarantineFile;
+		if (quarantineFile == null) {
+			m_quarantine = null;
+		} else {
+			try {
+				m_quarantine = Files.newBufferedWriter(quarantineFile, StandardCharsets.UTF_8);
+				m_quarantine.write("#line_number\treason\tline");
+				m_quarantine.newLine();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not open quarantine file " + quarantineFile, e);
+			}
+		}
+	}
+
+	/**
+	 * Throws a {@link BadDataFormatException} for the first bad line. This is the default.
+	 */
+	@Nonnull
+	public static ErrorPolicy failFast() {
+		return new ErrorPolicy(true, null);
+	}
+
+	/**
+	 * Skips bad lines, only counting them.
+	 */
+	@Nonnull
+	public static ErrorPolicy skip() {
+		return new ErrorPolicy(false, null);
+	}
+
+	/**
+	 * Skips bad lines, counting them and writing them to {@code file}, which is replaced.
+	 * @throws UncheckedIOException If the file cannot be opened
+	 */
+	@Nonnull
+	public static ErrorPolicy quarantine(@Nonnull Path file) throws UncheckedIOException {
+		Preconditions.checkNotNull(file, "Quarantine file cannot be null");
+		return new ErrorPolicy(false, file);
+	}
+
+	public boolean isFailFast() {
+		return m_failFast;
+	}
+
+	@Nonnull
+	public Optional<Path> getQuarantineFile() {
+		return Optional.ofNullable(m_quarantineFile);
+	}
+
+	/**
+	 * @return The number of lines skipped so far
+	 */
+	@Nonnegative
+	public long nRejected() {
+		return m_nRejected.get();
+	}
+
+	/**
+	 * For parsers to create the exception for a bad line; with any policy but {@link #failFast()},
+	 * the exception is created without a stack trace.
+	 */
+	@Nonnull
+	public BadDataFormatException badLine(@Nonnegative long lineNumber, @Nonnull String line, @Nonnull Throwable cause) {
+		return new BadDataFormatException(lineNumber, line, cause, m_failFast);
+	}
+
+	/**
+	 * Rethrows {@code e} if this policy {@link #isFailFast() fails fast}; otherwise counts {@code line} and
+	 * writes it to the quarantine file if there is one.
+	 * @throws UncheckedIOException If the quarantine file could not be written
+	 */
+	public void reject(@Nonnull String line, @Nonnull BadDataFormatException e) throws BadDataFormatException, UncheckedIOException {
+		if (m_failFast) {
+			throw e;
+		}
+		m_nRejected.incrementAndGet();
+		if (m_quarantine != null) {
+			OptionalLong lineNumber = e.getLineNumber();
+			String reason = Objects.toString(e.getReason(), "").replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+			synchronized (m_quarantine) {
+				try {
+					m_quarantine.write(lineNumber.isPresent()? Long.toString(lineNumber.getAsLong()) : "?");
+					m_quarantine.write('\t');
+					m_quarantine.write(reason);
+					m_quarantine.write('\t');
+					m_quarantine.write(line);
+					m_quarantine.newLine();
+				} catch (IOException ioe) {
+					throw new UncheckedIOException("Could not write to quarantine file " + m_quarantineFile, ioe);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Maps {@code lines} through {@code parser}, {@link #reject(String, BadDataFormatException) rejecting}
+	 * lines that fail.
+	 */
+	@Nonnull
+	public <R> Stream<R> map(@Nonnull Stream<String> lines, @Nonnull Function<String, R> parser) {
+		if (m_failFast) {
+			return lines.map(parser);
+		}
+		return lines.map(line -> {
+			try {
+				return parser.apply(line);
+			} catch (BadDataFormatException e) {
+				reject(line, e);
+				return null;
+			}
+		}).filter(Objects::nonNull);
+	}
+
+	/**
+	 * Flushes and closes the quarantine file, if any.
+	 */
+	@Override
+	public void close() throws UncheckedIOException {
+		if (m_quarantine != null) {
+			synchronized (m_quarantine) {
+				try {
+					m_quarantine.close();
+				} catch (IOException e) {
+					throw new UncheckedIOException("Could not close quarantine file " + m_quarantineFile, e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ErrorPolicy{" +
+				"failFast=" + m_failFast +
+				", quarantineFile=" + m_quarantineFile +
+				", nRejected=" + m_nRejected.get() +
+				'}';
+	}
+}
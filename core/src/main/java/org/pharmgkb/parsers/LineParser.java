@@ -1,5 +1,6 @@
 package org.pharmgkb.parsers;
 
+import org.pharmgkb.parsers.cache.SidecarCache;
 import org.pharmgkb.parsers.utils.IoUtils;
 
 import javax.annotation.Nonnegative;
@@ -8,6 +9,7 @@
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -23,9 +25,23 @@ default List<R> collectAll(@Nonnull File file) throws UncheckedIOException, BadD
 		return collectAll(file.toPath());
 	}
 
+	/**
+	 * Reads from the {@link #getSidecarCache() sidecar cache} instead of parsing {@code file} if the sidecar is fresh.
+	 */
 	@Nonnull
 	default List<R> collectAll(@Nonnull Path file) throws UncheckedIOException, BadDataFormatException {
-		return collectAll(IoUtils.readUtf8Lines(file));
+		Optional<SidecarCache<List<R>>> cache = getSidecarCache();
+		if (cache.isPresent()) {
+			return cache.get().get(file, () -> collectAllFromFile(file));
+		}
+		return collectAllFromFile(file);
+	}
+
+	@Nonnull
+	private List<R> collectAllFromFile(@Nonnull Path file) throws UncheckedIOException, BadDataFormatException {
+		try (Stream<String> lines = IoUtils.readUtf8Lines(file)) {
+			return collectAll(lines);
+		}
 	}
 
 	@Nonnull
@@ -46,7 +62,7 @@ default Stream<R> parseAll(@Nonnull Path file) throws UncheckedIOException, BadD
 	/**
 	 * For example:
 	 * {@code
-	 *     return stream.filter(s -> s.isEmpty() || s.startsWith("#")).map(this);
+	 *     return getErrorPolicy().map(stream.filter(s -> !s.isEmpty() && !s.startsWith("#")), this);
 	 * }
 	 * @throws UncheckedIOException For IO errors
 	 * @throws BadDataFormatException For most formatting errors
@@ -58,10 +74,34 @@ default Stream<R> parseAll(@Nonnull Path file) throws UncheckedIOException, BadD
 	@Override
 	R apply(@Nonnull String line) throws BadDataFormatException;
 
+	/**
+	 * @return A cache that {@link #collectAll(Path)} loads from when it is fresh, and writes to when it is not
+	 */
+	@Nonnull
+	default Optional<SidecarCache<List<R>>> getSidecarCache() {
+		return Optional.empty();
+	}
+
+	/**
+	 * @return What {@link #parseAll(Stream)} and {@link #collectAll(Path)} do with a line that {@link #apply} rejects
+	 */
+	@Nonnull
+	default ErrorPolicy getErrorPolicy() {
+		return ErrorPolicy.failFast();
+	}
+
 	/**
 	 * @return The total number of lines this writer processed since its creation
 	 */
 	@Nonnegative
 	long nLinesProcessed();
 
+	/**
+	 * @return The number of lines skipped under the {@link #getErrorPolicy() error policy}
+	 */
+	@Nonnegative
+	default long nLinesRejected() {
+		return getErrorPolicy().nRejected();
+	}
+
 }
@@ -1,5 +1,6 @@
 package org.pharmgkb.parsers;
 
+import org.pharmgkb.parsers.cache.SidecarCache;
 import org.pharmgkb.parsers.utils.IoUtils;
 
 import javax.annotation.Nonnegative;
@@ -7,6 +8,7 @@
 import java.io.File;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -21,15 +23,37 @@ default S parse(@Nonnull File file) throws UncheckedIOException, BadDataFormatEx
 		return parse(file.toPath());
 	}
 
+	/**
+	 * Reads from the {@link #getSidecarCache() sidecar cache} instead of parsing {@code file} if the sidecar is fresh.
+	 */
 	@Nonnull
 	default S parse(@Nonnull Path file) throws UncheckedIOException, BadDataFormatException {
-		return apply(IoUtils.readUtf8Lines(file));
+		Optional<SidecarCache<S>> cache = getSidecarCache();
+		if (cache.isPresent()) {
+			return cache.get().get(file, () -> parseFile(file));
+		}
+		return parseFile(file);
+	}
+
+	@Nonnull
+	private S parseFile(@Nonnull Path file) throws UncheckedIOException, BadDataFormatException {
+		try (Stream<String> lines = IoUtils.readUtf8Lines(file)) {
+			return apply(lines);
+		}
 	}
 
 	@Nonnull
 	@Override
 	S apply(@Nonnull Stream<String> stream) throws BadDataFormatException;
 
+	/**
+	 * @return A cache that {@link #parse(Path)} loads from when it is fresh, and writes to when it is not
+	 */
+	@Nonnull
+	default Optional<SidecarCache<S>> getSidecarCache() {
+		return Optional.empty();
+	}
+
 	/**
 	 * @return The total number of lines this parser processed since its creation
 	 */
@@ -1,5 +1,6 @@
 package org.pharmgkb.parsers;
 
+import org.pharmgkb.parsers.cache.SidecarCache;
 import org.pharmgkb.parsers.utils.IoUtils;
 
 import javax.annotation.Nonnegative;
@@ -8,6 +9,7 @@
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -24,9 +26,23 @@ default List<R> collectAll(@Nonnull File file) throws UncheckedIOException, BadD
 		return collectAll(file.toPath());
 	}
 
+	/**
+	 * Reads from the {@link #getSidecarCache() sidecar cache} instead of parsing {@code file} if the sidecar is fresh.
+	 */
 	@Nonnull
 	default List<R> collectAll(@Nonnull Path file) throws UncheckedIOException, BadDataFormatException {
-		return collectAll(IoUtils.readUtf8Lines(file));
+		Optional<SidecarCache<List<R>>> cache = getSidecarCache();
+		if (cache.isPresent()) {
+			return cache.get().get(file, () -> collectAllFromFile(file));
+		}
+		return collectAllFromFile(file);
+	}
+
+	@Nonnull
+	private List<R> collectAllFromFile(@Nonnull Path file) throws UncheckedIOException, BadDataFormatException {
+		try (Stream<String> lines = IoUtils.readUtf8Lines(file)) {
+			return collectAll(lines);
+		}
 	}
 
 	@Nonnull
@@ -59,6 +75,31 @@ default Stream<R> parseAll(@Nonnull Path file) throws UncheckedIOException, BadD
 	@Override
 	Stream<R> apply(@Nonnull String s);
 
+	/**
+	 * Prepares this parser for lines that are pushed one at a time to {@link #apply(String)} instead of pulled through
+	 * {@link #parseAll(Stream)}, as {@link ParsingPublisher} does.
+	 * A caller that calls this method must call {@link #finish()} after the last line.
+	 */
+	default void start() {
+	}
+
+	/**
+	 * Counterpart to {@link #start()}.
+	 * @return Any records that this parser is still holding after the last line
+	 */
+	@Nonnull
+	default Stream<R> finish() {
+		return Stream.empty();
+	}
+
+	/**
+	 * @return A cache that {@link #collectAll(Path)} loads from when it is fresh, and writes to when it is not
+	 */
+	@Nonnull
+	default Optional<SidecarCache<List<R>>> getSidecarCache() {
+		return Optional.empty();
+	}
+
 	/**
 	 * @return The total number of lines this parser processed since its creation
 	 */
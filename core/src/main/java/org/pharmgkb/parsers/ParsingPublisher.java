@@ -0,0 +1,391 @@
+package org.pharmgkb.parsers;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.parsers.utils.AsyncLineReader;
+import org.pharmgkb.parsers.utils.IoUtils;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Flow.Publisher} of the records that a {@link LineParser} or {@link MultilineParser} reads.
+ * Lines are read only when subscribers signal demand, so a slow subscriber never causes a file to be buffered in memory.
+ * Plain files are read with an {@link java.nio.channels.AsynchronousFileChannel}, which means that thousands of files can be parsed
+ * concurrently without dedicating a thread to each; GZIP files and {@link WebResource WebResources} are pulled in chunks
+ * on the thread that signals demand.
+ * Cancelling a subscription closes the underlying file or stream.
+ *
+ * Example usage:
+ * {@code
+ *     new ParsingPublisher.Builder<>(new BedParser()).fromFile(path).build().subscribe(subscriber);
+ *     // or deliver lists of up to 1000 features per onNext
+ *     new ParsingPublisher.Builder<>(new BedParser()).fromFile(path).build().batches(1000).subscribe(listSubscriber);
+ * }
+ *
+ * A publisher built from a {@link LineParser} can be subscribed to any number of times.
+ * Because multiline parsers are stateful, a publisher built from a {@link MultilineParser} accepts only one subscriber.
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class ParsingPublisher<R> implements Flow.Publisher<R> {
+
+	private static final int sf_linesPerPull = 1024;
+
+	private final Supplier<LineSource> m_source;
+	private final Function<List<String>, Stream<R>> m_parse;
+	private final Runnable m_start;
+	private final Supplier<Stream<R>> m_finish;
+	private final boolean m_singleUse;
+	private final AtomicBoolean m_subscribed = new AtomicBoolean(false);
+
+	private ParsingPublisher(@Nonnull Builder<R> builder) {
+		m_source = builder.m_source;
+		m_parse = builder.m_parse;
+		m_start = builder.m_start;
+		m_finish = builder.m_finish;
+		m_singleUse = builder.m_singleUse;
+	}
+
+	@Override
+	public void subscribe(@Nonnull Flow.Subscriber<? super R> subscriber) {
+		subscribe(subscriber, 0);
+	}
+
+	/**
+	 * Returns a publisher that delivers records in lists of {@code size}, cutting the per-element signalling overhead.
+	 * Each {@code request(n)} asks for {@code n} lists. The last list may be shorter.
+	 */
+	@Nonnull
+	public Flow.Publisher<List<R>> batches(@Nonnegative int size) {
+		Preconditions.checkArgument(size > 0, "Batch size must be positive");
+		return subscriber -> subscribe(subscriber, size);
+	}
+
+	private <T> void subscribe(@Nonnull Flow.Subscriber<? super T> subscriber, int batchSize) {
+		Preconditions.checkNotNull(subscriber, "Subscriber cannot be null");
+		if (m_singleUse && m_subscribed.getAndSet(true)) {
+			reject(subscriber, new IllegalStateException("A publisher for a multiline parser accepts only one subscriber"));
+			return;
+		}
+		LineSource source;
+		try {
+			source = m_source.get();
+		} catch (RuntimeException e) {
+			reject(subscriber, e);
+			return;
+		}
+		m_start.run();
+		ParsingSubscription<T> subscription = new ParsingSubscription<>(subscriber, source, batchSize);
+		subscriber.onSubscribe(subscription);
+	}
+
+	private static void reject(@Nonnull Flow.Subscriber<?> subscriber, @Nonnull Throwable error) {
+		subscriber.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+			}
+			@Override
+			public void cancel() {
+			}
+		});
+		subscriber.onError(error);
+	}
+
+	/**
+	 * Delivers either single records or lists of records ({@code T} is {@code R} or {@code List<R>}).
+	 * All parsing and all signals to the subscriber happen inside {@link #drain()}, which is serialized.
+	 */
+	private final class ParsingSubscription<T> implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super T> m_subscriber;
+		private final LineSource m_lines;
+		private final int m_batchSize;
+
+		private final Queue<List<String>> m_chunks = new ConcurrentLinkedQueue<>();
+		private final Deque<R> m_pending = new ArrayDeque<>(sf_linesPerPull);
+		private final AtomicLong m_requested = new AtomicLong(0);
+		private final AtomicInteger m_wip = new AtomicInteger(0);
+		private final AtomicBoolean m_released = new AtomicBoolean(false);
+
+		private volatile boolean m_cancelled = false;
+		private volatile boolean m_reading = false;
+		private volatile boolean m_ended = false;
+		private volatile Throwable m_error = null;
+		private boolean m_finished = false;
+
+		private ParsingSubscription(@Nonnull Flow.Subscriber<? super T> subscriber, @Nonnull LineSource lines, int batchSize) {
+			m_subscriber = subscriber;
+			m_lines = lines;
+			m_batchSize = batchSize;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				m_error = new IllegalArgumentException("Requested " + n + " elements; must request a positive number");
+			} else {
+				m_requested.getAndUpdate(r -> r + n < 0? Long.MAX_VALUE : r + n);
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			m_cancelled = true;
+			drain();
+		}
+
+		private void onLines(@Nonnull List<String> lines) {
+			m_chunks.add(lines);
+			m_reading = false;
+			drain();
+		}
+
+		private void onEnd() {
+			m_ended = true;
+			m_reading = false;
+			drain();
+		}
+
+		private void onError(@Nonnull Throwable error) {
+			m_error = error;
+			m_reading = false;
+			drain();
+		}
+
+		@SuppressWarnings("unchecked")
+		private void drain() {
+			if (m_wip.getAndIncrement() != 0) {
+				return;
+			}
+			int missed = 1;
+			do {
+				if (m_cancelled) {
+					release();
+					return;
+				}
+				try {
+					List<String> chunk;
+					while ((chunk = m_chunks.poll()) != null) {
+						m_parse.apply(chunk).forEachOrdered(m_pending::add);
+					}
+					if (m_ended && m_chunks.isEmpty() && !m_finished) {
+						m_finished = true;
+						m_finish.get().forEachOrdered(m_pending::add);
+					}
+				} catch (RuntimeException e) {
+					m_error = e;
+				}
+				if (m_error != null) {
+					fail(m_error);
+					return;
+				}
+				long requested = m_requested.get();
+				long emitted = 0;
+				while (emitted != requested && !m_cancelled && !m_pending.isEmpty()) {
+					if (m_batchSize == 0) {
+						m_subscriber.onNext((T)m_pending.poll());
+					} else if (m_pending.size() >= m_batchSize || m_finished) {
+						List<R> batch = new ArrayList<>(Math.min(m_batchSize, m_pending.size()));
+						while (batch.size() < m_batchSize && !m_pending.isEmpty()) {
+							batch.add(m_pending.poll());
+						}
+						m_subscriber.onNext((T)batch);
+					} else {
+						break;
+					}
+					emitted++;
+				}
+				if (emitted > 0 && requested != Long.MAX_VALUE) {
+					m_requested.addAndGet(-emitted);
+				}
+				if (m_cancelled) {
+					release();
+					return;
+				}
+				if (m_finished && m_pending.isEmpty()) {
+					m_cancelled = true;
+					release();
+					m_subscriber.onComplete();
+					return;
+				}
+				if (!m_ended && !m_reading && m_requested.get() > 0 && m_pending.size() < Math.max(m_batchSize, 1)) {
+					m_reading = true;
+					m_lines.read(this::onLines, this::onEnd, this::onError);
+				}
+				missed = m_wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void fail(@Nonnull Throwable error) {
+			m_cancelled = true;
+			release();
+			m_subscriber.onError(error);
+		}
+
+		private void release() {
+			if (!m_released.getAndSet(true)) {
+				try {
+					m_lines.close();
+				} catch (RuntimeException ignored) {
+					// we're finished with the source either way
+				}
+			}
+		}
+	}
+
+	/**
+	 * A source of lines that are read in chunks, possibly asynchronously.
+	 */
+	private interface LineSource extends Closeable {
+
+		void read(@Nonnull Consumer<? super List<String>> onLines, @Nonnull Runnable onEnd, @Nonnull Consumer<? super Throwable> onError);
+
+		@Override
+		void close() throws UncheckedIOException;
+	}
+
+	private static final class AsyncFileSource implements LineSource {
+
+		private final AsyncLineReader m_reader;
+
+		private AsyncFileSource(@Nonnull Path path) {
+			m_reader = new AsyncLineReader(path);
+		}
+
+		@Override
+		public void read(@Nonnull Consumer<? super List<String>> onLines, @Nonnull Runnable onEnd, @Nonnull Consumer<? super Throwable> onError) {
+			m_reader.read(onLines, onEnd, onError);
+		}
+
+		@Override
+		public void close() throws UncheckedIOException {
+			m_reader.close();
+		}
+	}
+
+	private static final class StreamSource implements LineSource {
+
+		private final Stream<String> m_stream;
+		private final Iterator<String> m_iterator;
+
+		private StreamSource(@Nonnull Stream<String> stream) {
+			m_stream = stream;
+			m_iterator = stream.iterator();
+		}
+
+		@Override
+		public void read(@Nonnull Consumer<? super List<String>> onLines, @Nonnull Runnable onEnd, @Nonnull Consumer<? super Throwable> onError) {
+			List<String> lines = new ArrayList<>(sf_linesPerPull);
+			try {
+				while (lines.size() < sf_linesPerPull && m_iterator.hasNext()) {
+					lines.add(m_iterator.next());
+				}
+			} catch (RuntimeException e) {
+				onError.accept(e);
+				return;
+			}
+			if (lines.isEmpty()) {
+				onEnd.run();
+			} else {
+				onLines.accept(lines);
+			}
+		}
+
+		@Override
+		public void close() throws UncheckedIOException {
+			m_stream.close();
+		}
+	}
+
+	@NotThreadSafe
+	public static class Builder<R> implements ObjectBuilder<ParsingPublisher<R>> {
+
+		private final Function<List<String>, Stream<R>> m_parse;
+		private final Runnable m_start;
+		private final Supplier<Stream<R>> m_finish;
+		private final boolean m_singleUse;
+		private Supplier<LineSource> m_source = null;
+
+		public Builder(@Nonnull LineParser<R> parser) {
+			Preconditions.checkNotNull(parser, "Parser cannot be null");
+			m_parse = lines -> parser.parseAll(lines.stream());
+			m_start = () -> {};
+			m_finish = Stream::empty;
+			m_singleUse = false;
+		}
+
+		public Builder(@Nonnull MultilineParser<R> parser) {
+			Preconditions.checkNotNull(parser, "Parser cannot be null");
+			m_parse = lines -> lines.stream().flatMap(parser);
+			m_start = parser::start;
+			m_finish = parser::finish;
+			m_singleUse = true;
+		}
+
+		/**
+		 * Reads the file asynchronously, or in chunks through {@link IoUtils#openUtf8Reader(Path)} if it is GZIP.
+		 */
+		@Nonnull
+		public Builder<R> fromFile(@Nonnull Path file) {
+			Preconditions.checkNotNull(file, "File cannot be null");
+			String name = file.getFileName().toString();
+			if (name.endsWith(".gz") || name.endsWith(".gzip")) {
+				m_source = () -> new StreamSource(IoUtils.openUtf8Reader(file).lines());
+			} else {
+				m_source = () -> new AsyncFileSource(file);
+			}
+			return this;
+		}
+
+		/**
+		 * Reads the lines from {@link WebResource#readLines()}.
+		 */
+		@Nonnull
+		public Builder<R> fromResource(@Nonnull WebResource<?> resource) {
+			Preconditions.checkNotNull(resource, "Resource cannot be null");
+			m_source = () -> new StreamSource(resource.readLines());
+			return this;
+		}
+
+		/**
+		 * Reads lines from a new stream for each subscription.
+		 */
+		@Nonnull
+		public Builder<R> fromLines(@Nonnull Supplier<? extends Stream<String>> lines) {
+			Preconditions.checkNotNull(lines, "Lines cannot be null");
+			m_source = () -> new StreamSource(lines.get());
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public ParsingPublisher<R> build() {
+			Preconditions.checkState(m_source != null, "No source of lines was set");
+			return new ParsingPublisher<>(this);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ParsingPublisher{" +
+				"singleUse=" + m_singleUse +
+				", subscribed=" + m_subscribed.get() +
+				'}';
+	}
+}
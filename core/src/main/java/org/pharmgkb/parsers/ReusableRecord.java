@@ -0,0 +1,33 @@
+package org.pharmgkb.parsers;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * A mutable view of a single parsed line that a {@link ReusingLineParser} overwrites for every line.
+ * Never keep a reference to one after the callback returns; call {@link #freeze()} to keep its contents.
+ * @param <R> The immutable model
+ * @author Douglas Myers-Turnbull
+ */
+public interface ReusableRecord<R> {
+
+	/**
+	 * @return A new immutable model with the current contents; this fully parses the line
+	 * @throws BadDataFormatException If the line is valid enough to view but not to build a model from
+	 */
+	@Nonnull
+	R freeze() throws BadDataFormatException;
+
+	/**
+	 * @return The raw line that this record currently holds
+	 */
+	@Nonnull
+	String getLine();
+
+	/**
+	 * @return The 1-based number of the current line, counted by the parser
+	 */
+	@Nonnegative
+	long getLineNumber();
+
+}
@@ -0,0 +1,81 @@
+package org.pharmgkb.parsers;
+
+import org.pharmgkb.parsers.utils.IoUtils;
+
+import javax.annotation.Nonnull;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Implemented alongside {@link LineParser} by parsers that can fill a reusable mutable record instead of building a
+ * new model for every line.
+ * This is for one-pass filters and counters, which then produce almost no garbage:
+ * <code>
+ *     AtomicLong n = new AtomicLong();
+ *     new VcfDataParser().forEach(file, position -&gt; {
+ *         if (position.isPass()) n.incrementAndGet();
+ *     });
+ * </code>
+ * Each thread gets its own record, so {@link #forEach(Stream, Consumer)} also works on parallel streams.
+ * @param <M> The mutable record
+ * @author Douglas Myers-Turnbull
+ */
+public interface ReusingLineParser<M extends ReusableRecord<?>> {
+
+	/**
+	 * @return A new, empty record for this parser to fill
+	 */
+	@Nonnull
+	M newRecord();
+
+	/**
+	 * Overwrites {@code record} with the contents of {@code line}.
+	 * @throws BadDataFormatException If the fields that the record reads eagerly are malformed
+	 */
+	void parseInto(@Nonnull String line, @Nonnull M record) throws BadDataFormatException;
+
+	/**
+	 * @return Whether {@link #forEach(Stream, Consumer)} should pass {@code line} to {@link #parseInto}
+	 */
+	default boolean isRecordLine(@Nonnull String line) {
+		return !line.startsWith("#");
+	}
+
+	/**
+	 * @return What {@link #forEach(Stream, Consumer)} does with a line that {@link #parseInto} rejects
+	 */
+	@Nonnull
+	default ErrorPolicy getErrorPolicy() {
+		return ErrorPolicy.failFast();
+	}
+
+	/**
+	 * Calls {@code consumer} with a record for every line that {@link #isRecordLine(String) holds a record}.
+	 * The same record object is passed repeatedly; see {@link ReusableRecord}.
+	 * Lines that {@link #parseInto} rejects are handled by the {@link #getErrorPolicy() error policy};
+	 * exceptions from {@code consumer} are not.
+	 */
+	default void forEach(@Nonnull Stream<String> stream, @Nonnull Consumer<? super M> consumer) throws UncheckedIOException, BadDataFormatException {
+		ThreadLocal<M> records = ThreadLocal.withInitial(this::newRecord);
+		ErrorPolicy policy = getErrorPolicy();
+		stream.filter(this::isRecordLine).forEach(line -> {
+			M record = records.get();
+			try {
+				parseInto(line, record);
+			} catch (BadDataFormatException e) {
+				policy.reject(line, e);
+				return;
+			}
+			consumer.accept(record);
+		});
+	}
+
+	default void forEach(@Nonnull Path file, @Nonnull Consumer<? super M> consumer) throws UncheckedIOException, BadDataFormatException {
+		try (Stream<String> lines = IoUtils.readUtf8Lines(file)) {
+			forEach(lines, consumer);
+		}
+	}
+
+}
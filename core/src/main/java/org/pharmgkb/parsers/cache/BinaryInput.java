@@ -0,0 +1,127 @@
+package org.pharmgkb.parsers.cache;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads what a {@link BinaryOutput} wrote, refilling a single direct {@link ByteBuffer} from a channel.
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class BinaryInput implements Closeable {
+
+	public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	private final ReadableByteChannel m_channel;
+	private final ByteBuffer m_buffer;
+	private byte[] m_scratch = new byte[256];
+
+	public BinaryInput(@Nonnull ReadableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	public BinaryInput(@Nonnull ReadableByteChannel channel, @Nonnegative int bufferSize) {
+		Preconditions.checkNotNull(channel, "Channel cannot be null");
+		Preconditions.checkArgument(bufferSize >= 16, "Buffer size must be at least 16 bytes");
+		m_channel = channel;
+		m_buffer = ByteBuffer.allocateDirect(bufferSize);
+		m_buffer.limit(0);
+	}
+
+	public byte readByte() throws UncheckedIOException {
+		require(1);
+		return m_buffer.get();
+	}
+
+	public boolean readBoolean() throws UncheckedIOException {
+		return readByte() != 0;
+	}
+
+	public int readInt() throws UncheckedIOException {
+		require(4);
+		return m_buffer.getInt();
+	}
+
+	public long readLong() throws UncheckedIOException {
+		require(8);
+		return m_buffer.getLong();
+	}
+
+	public double readDouble() throws UncheckedIOException {
+		require(8);
+		return m_buffer.getDouble();
+	}
+
+	@Nullable
+	public String readString() throws UncheckedIOException {
+		int length = readInt();
+		if (length < 0) {
+			return null;
+		}
+		if (m_scratch.length < length) {
+			m_scratch = new byte[Math.max(length, m_scratch.length * 2)];
+		}
+		int offset = 0;
+		while (offset < length) {
+			require(1);
+			int n = Math.min(m_buffer.remaining(), length - offset);
+			m_buffer.get(m_scratch, offset, n);
+			offset += n;
+		}
+		return new String(m_scratch, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param values Normally {@code MyEnum.values()}, cached by the caller
+	 * @return The constant written by {@link BinaryOutput#writeEnum(Enum)}, or null
+	 */
+	@Nullable
+	public <E extends Enum<E>> E readEnum(@Nonnull E[] values) throws UncheckedIOException {
+		int ordinal = readInt();
+		return ordinal < 0? null : values[ordinal];
+	}
+
+	private void require(int nBytes) throws UncheckedIOException {
+		if (m_buffer.remaining() >= nBytes) {
+			return;
+		}
+		m_buffer.compact();
+		try {
+			while (m_buffer.position() < nBytes) {
+				if (m_channel.read(m_buffer) < 0) {
+					throw new EOFException("Needed " + nBytes + " bytes but reached the end");
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		m_buffer.flip();
+	}
+
+	@Override
+	public void close() throws UncheckedIOException {
+		try {
+			m_channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "BinaryInput{" +
+				"buffered=" + m_buffer.remaining() +
+				'}';
+	}
+}
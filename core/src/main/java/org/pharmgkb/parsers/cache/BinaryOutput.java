@@ -0,0 +1,125 @@
+package org.pharmgkb.parsers.cache;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes primitives and strings to a channel through a single direct {@link ByteBuffer}.
+ * Strings are written as UTF-8 prefixed by their length in bytes, or -1 for null.
+ * Counterpart to {@link BinaryInput}.
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class BinaryOutput implements Closeable {
+
+	public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	private final WritableByteChannel m_channel;
+	private final ByteBuffer m_buffer;
+
+	public BinaryOutput(@Nonnull WritableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	public BinaryOutput(@Nonnull WritableByteChannel channel, @Nonnegative int bufferSize) {
+		Preconditions.checkNotNull(channel, "Channel cannot be null");
+		Preconditions.checkArgument(bufferSize >= 16, "Buffer size must be at least 16 bytes");
+		m_channel = channel;
+		m_buffer = ByteBuffer.allocateDirect(bufferSize);
+	}
+
+	public void writeByte(byte value) {
+		ensure(1);
+		m_buffer.put(value);
+	}
+
+	public void writeBoolean(boolean value) {
+		writeByte(value? (byte)1 : (byte)0);
+	}
+
+	public void writeInt(int value) {
+		ensure(4);
+		m_buffer.putInt(value);
+	}
+
+	public void writeLong(long value) {
+		ensure(8);
+		m_buffer.putLong(value);
+	}
+
+	public void writeDouble(double value) {
+		ensure(8);
+		m_buffer.putDouble(value);
+	}
+
+	public void writeString(@Nullable String value) {
+		if (value == null) {
+			writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeInt(bytes.length);
+		int offset = 0;
+		while (offset < bytes.length) {
+			ensure(1);
+			int n = Math.min(m_buffer.remaining(), bytes.length - offset);
+			m_buffer.put(bytes, offset, n);
+			offset += n;
+		}
+	}
+
+	/**
+	 * Writes an enum constant by ordinal, or -1 for null.
+	 */
+	public void writeEnum(@Nullable Enum<?> value) {
+		writeInt(value == null? -1 : value.ordinal());
+	}
+
+	public void flush() throws UncheckedIOException {
+		m_buffer.flip();
+		try {
+			while (m_buffer.hasRemaining()) {
+				m_channel.write(m_buffer);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		m_buffer.clear();
+	}
+
+	private void ensure(int nBytes) {
+		if (m_buffer.remaining() < nBytes) {
+			flush();
+		}
+	}
+
+	/**
+	 * Flushes and closes the underlying channel.
+	 */
+	@Override
+	public void close() throws UncheckedIOException {
+		flush();
+		try {
+			m_channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "BinaryOutput{" +
+				"buffered=" + m_buffer.position() +
+				'}';
+	}
+}
@@ -0,0 +1,60 @@
+package org.pharmgkb.parsers.cache;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes and reads a compact binary form of an immutable model object, for use with {@link SidecarCache}.
+ * Implementations must be able to read anything they wrote with the same {@link #getId() ID}; when the layout
+ * changes, change the ID so that stale sidecar files are ignored instead of misread.
+ * @author Douglas Myers-Turnbull
+ */
+public interface RecordCodec<R> {
+
+	/**
+	 * @return A short name and version of the binary layout, such as {@code "bed-feature/1"}
+	 */
+	@Nonnull
+	String getId();
+
+	void write(@Nonnull R record, @Nonnull BinaryOutput out);
+
+	@Nonnull
+	R read(@Nonnull BinaryInput in);
+
+	/**
+	 * @return A codec for a list of records, written as a count followed by the records in order
+	 */
+	@Nonnull
+	static <R> RecordCodec<List<R>> listOf(@Nonnull RecordCodec<R> codec) {
+		Preconditions.checkNotNull(codec, "Codec cannot be null");
+		return new RecordCodec<>() {
+			@Nonnull
+			@Override
+			public String getId() {
+				return "list:" + codec.getId();
+			}
+			@Override
+			public void write(@Nonnull List<R> records, @Nonnull BinaryOutput out) {
+				out.writeInt(records.size());
+				for (R record : records) {
+					codec.write(record, out);
+				}
+			}
+			@Nonnull
+			@Override
+			public List<R> read(@Nonnull BinaryInput in) {
+				int n = in.readInt();
+				List<R> records = new ArrayList<>(n);
+				for (int i = 0; i < n; i++) {
+					records.add(codec.read(in));
+				}
+				return records;
+			}
+		};
+	}
+
+}
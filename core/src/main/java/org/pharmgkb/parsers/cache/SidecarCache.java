@@ -0,0 +1,215 @@
+package org.pharmgkb.parsers.cache;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Stores parsed records in a binary file next to the file they were parsed from, so that later runs can skip parsing.
+ * The sidecar is keyed by the source file's size, modification time, and CRC32C checksum; if any of them differ,
+ * or if the sidecar was written by a different {@link RecordCodec}, it is ignored and overwritten.
+ * Example usage:
+ * <code>
+ *     BedParser parser = new BedParser(SidecarCache.forRecords(new BedFeatureCodec()));
+ *     List&lt;BedFeature&gt; features = parser.collectAll(file); // reads file.bed.bioio-cache if it's fresh
+ * </code>
+ * Writes go to a temporary file that is then moved over the sidecar, so concurrent readers never see a partial file.
+ * The checksum can be turned off for sidecars that must load without reading the whole source, such as indices;
+ * the sidecar is then trusted if the size and modification time match.
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class SidecarCache<T> {
+
+	public static final String DEFAULT_SUFFIX = ".bioio-cache";
+
+	private static final int sf_magic = 0x42494F43; // "BIOC"
+	private static final int sf_version = 1;
+	private static final int sf_hashBufferSize = 1 << 20;
+
+	private static final Logger sf_logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private final RecordCodec<T> m_codec;
+	private final String m_suffix;
+	private final boolean m_checksum;
+
+	/**
+	 * @return A cache of a list of records, as read by {@link org.pharmgkb.parsers.LineParser#collectAll(Path)}
+	 */
+	@Nonnull
+	public static <R> SidecarCache<List<R>> forRecords(@Nonnull RecordCodec<R> codec) {
+		return new SidecarCache<>(RecordCodec.listOf(codec));
+	}
+
+	public SidecarCache(@Nonnull RecordCodec<T> codec) {
+		this(codec, DEFAULT_SUFFIX);
+	}
+
+	public SidecarCache(@Nonnull RecordCodec<T> codec, @Nonnull String suffix) {
+		this(codec, suffix, true);
+	}
+
+	/**
+	 * @param checksum Compare a CRC32C of the whole source when loading; otherwise, only its size and modification time
+	 */
+	public SidecarCache(@Nonnull RecordCodec<T> codec, @Nonnull String suffix, boolean checksum) {
+		Preconditions.checkNotNull(codec, "Codec cannot be null");
+		Preconditions.checkArgument(!suffix.isEmpty(), "Suffix cannot be empty");
+		m_codec = codec;
+		m_suffix = suffix;
+		m_checksum = checksum;
+	}
+
+	@Nonnull
+	public Path getSidecar(@Nonnull Path source) {
+		return source.resolveSibling(source.getFileName() + m_suffix);
+	}
+
+	/**
+	 * Loads from the sidecar if it is fresh; otherwise calls {@code parse} and tries to write a new sidecar.
+	 * Failing to write the sidecar is logged but is not an error.
+	 */
+	@Nonnull
+	public T get(@Nonnull Path source, @Nonnull Supplier<? extends T> parse) throws UncheckedIOException {
+		Optional<T> loaded = load(source);
+		if (loaded.isPresent()) {
+			return loaded.get();
+		}
+		// key the sidecar to the source as it was before parsing, so a concurrent change makes it stale
+		SourceKey key = SourceKey.of(source, m_checksum);
+		T value = parse.get();
+		try {
+			store(key, source, value);
+		} catch (UncheckedIOException e) {
+			sf_logger.warn("Could not write sidecar {}", getSidecar(source), e);
+		}
+		return value;
+	}
+
+	/**
+	 * @return The cached value, or empty if the sidecar is missing, stale, or unreadable
+	 */
+	@Nonnull
+	public Optional<T> load(@Nonnull Path source) throws UncheckedIOException {
+		Path sidecar = getSidecar(source);
+		if (!Files.isRegularFile(sidecar)) {
+			return Optional.empty();
+		}
+		try (BinaryInput in = new BinaryInput(FileChannel.open(sidecar, StandardOpenOption.READ))) {
+			if (in.readInt() != sf_magic || in.readInt() != sf_version || !m_codec.getId().equals(in.readString())) {
+				sf_logger.debug("Sidecar {} has a different format", sidecar);
+				return Optional.empty();
+			}
+			long size = in.readLong();
+			long modified = in.readLong();
+			long hash = in.readLong();
+			BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+			if (size != attributes.size() || modified != attributes.lastModifiedTime().toMillis()) {
+				sf_logger.debug("Sidecar {} is stale", sidecar);
+				return Optional.empty();
+			}
+			if (hash != (m_checksum? SourceKey.hash(source) : 0)) {
+				sf_logger.debug("Sidecar {} is stale: checksums differ", sidecar);
+				return Optional.empty();
+			}
+			return Optional.of(m_codec.read(in));
+		} catch (IOException | RuntimeException e) {
+			sf_logger.warn("Could not read sidecar {}; ignoring it", sidecar, e);
+			return Optional.empty();
+		}
+	}
+
+	public void store(@Nonnull Path source, @Nonnull T value) throws UncheckedIOException {
+		store(SourceKey.of(source, m_checksum), source, value);
+	}
+
+	private void store(@Nonnull SourceKey key, @Nonnull Path source, @Nonnull T value) throws UncheckedIOException {
+		Path sidecar = getSidecar(source);
+		try {
+			Path temp = Files.createTempFile(sidecar.toAbsolutePath().getParent(), sidecar.getFileName().toString(), ".tmp");
+			try {
+				try (BinaryOutput out = new BinaryOutput(FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+					out.writeInt(sf_magic);
+					out.writeInt(sf_version);
+					out.writeString(m_codec.getId());
+					out.writeLong(key.m_size);
+					out.writeLong(key.m_modified);
+					out.writeLong(key.m_hash);
+					m_codec.write(value, out);
+				}
+				try {
+					Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SidecarCache{" +
+				"codec=" + m_codec.getId() +
+				", suffix='" + m_suffix + '\'' +
+				", checksum=" + m_checksum +
+				'}';
+	}
+
+	@Immutable
+	private static final class SourceKey {
+
+		private final long m_size;
+		private final long m_modified;
+		private final long m_hash;
+
+		private SourceKey(long size, long modified, long hash) {
+			m_size = size;
+			m_modified = modified;
+			m_hash = hash;
+		}
+
+		@Nonnull
+		static SourceKey of(@Nonnull Path source, boolean checksum) throws UncheckedIOException {
+			try {
+				BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+				return new SourceKey(attributes.size(), attributes.lastModifiedTime().toMillis(), checksum? hash(source) : 0);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		static long hash(@Nonnull Path source) throws UncheckedIOException {
+			CRC32C crc = new CRC32C();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(sf_hashBufferSize);
+			try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+				while (channel.read(buffer) >= 0) {
+					buffer.flip();
+					crc.update(buffer);
+					buffer.clear();
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return crc.getValue();
+		}
+	}
+}
@@ -22,6 +22,9 @@ public abstract class IllegalCharacterEscaper implements CharacterEscaper {
 
 	private final Set<Character> m_illegalChars;
 
+	// whether each ASCII character must be escaped, so that needsEscaping doesn't box
+	private final boolean[] m_asciiIllegal = new boolean[128];
+
 	private final boolean m_inverseIllegality;
 
 	@Nonnull
@@ -39,6 +42,7 @@ protected IllegalCharacterEscaper(boolean inverseIllegality, @Nonnull char... il
 		for (char c : illegalChars) {
 			m_illegalChars.add(c);
 		}
+		fillAsciiTable();
 	}
 
 	/**
@@ -47,6 +51,27 @@ protected IllegalCharacterEscaper(boolean inverseIllegality, @Nonnull char... il
 	protected IllegalCharacterEscaper(boolean inverseIllegality, @Nonnull Set<Character> illegalChars) {
 		m_inverseIllegality = inverseIllegality;
 		m_illegalChars = Set.copyOf(illegalChars);
+		fillAsciiTable();
+	}
+
+	private void fillAsciiTable() {
+		for (char c = 0; c < m_asciiIllegal.length; c++) {
+			m_asciiIllegal[c] = m_illegalChars.contains(c) ^ m_inverseIllegality;
+		}
+	}
+
+	/**
+	 * Checks whether {@link #escape(String)} would change {@code string}, without allocating.
+	 * Callers that write many short values can skip escaping entirely when this is false.
+	 */
+	public boolean needsEscaping(@Nonnull CharSequence string) {
+		for (int i = 0, n = string.length(); i < n; i++) {
+			char c = string.charAt(i);
+			if (c < m_asciiIllegal.length? m_asciiIllegal[c] : m_illegalChars.contains(c) ^ m_inverseIllegality) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	@Nonnull
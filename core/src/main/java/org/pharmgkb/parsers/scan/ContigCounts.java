@@ -0,0 +1,81 @@
+package org.pharmgkb.parsers.scan;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts per contig (chromosome or sequence), for {@link LineTally LineTallies}.
+ * Sorted files have long runs of the same contig, so the name is only decoded when it differs from the last one.
+ * Contigs are kept in the order they were first seen, and names are kept as written in the file (not unescaped).
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class ContigCounts {
+
+	private final Map<String, long[]> m_counts = new LinkedHashMap<>();
+
+	private byte[] m_lastBytes = new byte[0];
+	private long[] m_lastCount = null;
+
+	/**
+	 * Adds {@code amount} to the contig whose name is in {@code bytes} from {@code start} to {@code end}.
+	 */
+	public void add(@Nonnull ByteBuffer bytes, @Nonnegative int start, @Nonnegative int end, long amount) {
+		if (m_lastCount == null || !matchesLast(bytes, start, end)) {
+			m_lastBytes = new byte[end - start];
+			bytes.get(start, m_lastBytes);
+			m_lastCount = m_counts.computeIfAbsent(new String(m_lastBytes, StandardCharsets.UTF_8), k -> new long[1]);
+		}
+		m_lastCount[0] += amount;
+	}
+
+	/**
+	 * Adds {@code amount} to {@code contig}.
+	 */
+	public void add(@Nonnull String contig, long amount) {
+		m_counts.computeIfAbsent(contig, k -> new long[1])[0] += amount;
+		m_lastCount = null;
+	}
+
+	private boolean matchesLast(@Nonnull ByteBuffer bytes, int start, int end) {
+		if (end - start != m_lastBytes.length) {
+			return false;
+		}
+		for (int i = 0; i < m_lastBytes.length; i++) {
+			if (bytes.get(start + i) != m_lastBytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void merge(@Nonnull ContigCounts next) {
+		for (Map.Entry<String, long[]> entry : next.m_counts.entrySet()) {
+			m_counts.computeIfAbsent(entry.getKey(), k -> new long[1])[0] += entry.getValue()[0];
+		}
+		m_lastCount = null;
+	}
+
+	/**
+	 * @return An unmodifiable copy, in the order the contigs were first seen
+	 */
+	@Nonnull
+	public Map<String, Long> asMap() {
+		Map<String, Long> map = new LinkedHashMap<>();
+		m_counts.forEach((contig, count) -> map.put(contig, count[0]));
+		return Collections.unmodifiableMap(map);
+	}
+
+	@Override
+	public String toString() {
+		return "ContigCounts{" +
+				"counts=" + asMap() +
+				'}';
+	}
+}
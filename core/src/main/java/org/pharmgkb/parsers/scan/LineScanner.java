@@ -0,0 +1,302 @@
+package org.pharmgkb.parsers.scan;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Feeds every line of a file to {@link LineTally LineTallies} as raw bytes, in parallel where possible.
+ * <ul>
+ *     <li>Uncompressed files are memory-mapped in segments that are scanned in parallel.</li>
+ *     <li>BGZF files (blocked GZIP, as written by bgzip) are split on block boundaries, and groups of blocks are
+ *     inflated and scanned in parallel.</li>
+ *     <li>Other GZIP files are read sequentially, since they cannot be split.</li>
+ * </ul>
+ * The compression is detected from the first bytes, not from the filename.
+ * Segments do not need to begin on a line: the partial lines at their edges are joined afterward.
+ * Example:
+ * <code>
+ *     VcfSummary summary = new LineScanner().scan(file, VcfSummary::new);
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class LineScanner {
+
+	private static final int sf_defaultSegmentSize = 32 * 1024 * 1024;
+
+	private static final int sf_bgzfHeaderSize = 18;
+	private static final int sf_bgzfMaxBlockSize = 64 * 1024;
+
+	private final int m_segmentSize;
+
+	public LineScanner() {
+		this(sf_defaultSegmentSize);
+	}
+
+	/**
+	 * @param segmentSize The number of bytes to map per segment; for BGZF, the most decompressed bytes to inflate
+	 *                    per group of blocks (but at least one block)
+	 */
+	public LineScanner(@Nonnegative int segmentSize) {
+		Preconditions.checkArgument(segmentSize > 0, "Segment size must be positive");
+		m_segmentSize = segmentSize;
+	}
+
+	/**
+	 * @param newTally Creates an empty tally; called once per segment
+	 * @return A tally that has read every line of {@code file}
+	 * @throws UncheckedIOException If the file cannot be read or a compressed block is corrupt
+	 */
+	@Nonnull
+	public <T extends LineTally<T>> T scan(@Nonnull Path file, @Nonnull Supplier<T> newTally) throws UncheckedIOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Folder<T> folder = new Folder<>(newTally.get());
+			ByteBuffer header = readFully(channel, 0, (int) Math.min(sf_bgzfHeaderSize, channel.size()));
+			if (isBgzf(header)) {
+				scanBgzf(channel, newTally, folder);
+			} else if (header.limit() >= 2 && (header.get(0) & 0xff) == 0x1f && (header.get(1) & 0xff) == 0x8b) {
+				scanGzip(channel, newTally, folder);
+			} else {
+				scanMapped(channel, newTally, folder);
+			}
+			return folder.finish();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not scan " + file, e);
+		}
+	}
+
+	private <T extends LineTally<T>> void scanMapped(@Nonnull FileChannel channel, @Nonnull Supplier<T> newTally, @Nonnull Folder<T> folder) throws IOException {
+		long size = channel.size();
+		int nSegments = (int) ((size + m_segmentSize - 1) / m_segmentSize);
+		List<Piece<T>> pieces = IntStream.range(0, nSegments).parallel()
+				.mapToObj(i -> {
+					long start = (long) i * m_segmentSize;
+					try {
+						return Piece.of(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(m_segmentSize, size - start)), newTally);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				})
+				.collect(Collectors.toList());
+		pieces.forEach(folder::add);
+	}
+
+	private <T extends LineTally<T>> void scanGzip(@Nonnull FileChannel channel, @Nonnull Supplier<T> newTally, @Nonnull Folder<T> folder) throws IOException {
+		channel.position(0);
+		try (InputStream in = new GZIPInputStream(Channels.newInputStream(channel), 64 * 1024)) {
+			byte[] buffer = new byte[Math.min(m_segmentSize, 1024 * 1024)];
+			int n;
+			while ((n = in.readNBytes(buffer, 0, buffer.length)) > 0) {
+				folder.add(Piece.of(ByteBuffer.wrap(buffer, 0, n).slice(), newTally));
+			}
+		}
+	}
+
+	private <T extends LineTally<T>> void scanBgzf(@Nonnull FileChannel channel, @Nonnull Supplier<T> newTally, @Nonnull Folder<T> folder) throws IOException {
+		// find the block boundaries, which only needs the headers
+		List<long[]> groups = new ArrayList<>(); // {start, end} of compressed bytes
+		long size = channel.size();
+		long groupStart = 0;
+		long position = 0;
+		int blocksPerGroup = Math.max(1, m_segmentSize / sf_bgzfMaxBlockSize);
+		int nBlocks = 0;
+		while (position < size) {
+			ByteBuffer header = readFully(channel, position, (int) Math.min(sf_bgzfHeaderSize, size - position));
+			if (!isBgzf(header)) {
+				throw new IOException("Invalid BGZF block header at byte " + position);
+			}
+			position += (header.getShort(16) & 0xffff) + 1;
+			nBlocks++;
+			if (nBlocks == blocksPerGroup || position >= size) {
+				groups.add(new long[] {groupStart, Math.min(position, size)});
+				groupStart = position;
+				nBlocks = 0;
+			}
+		}
+		// inflate in windows so that only a few groups are in memory at once
+		int window = Math.max(1, 2 * Runtime.getRuntime().availableProcessors());
+		for (int w = 0; w < groups.size(); w += window) {
+			List<Piece<T>> pieces = groups.subList(w, Math.min(w + window, groups.size())).parallelStream()
+					.map(group -> Piece.of(inflateGroup(channel, group[0], group[1]), newTally))
+					.collect(Collectors.toList());
+			pieces.forEach(folder::add);
+		}
+	}
+
+	@Nonnull
+	private static ByteBuffer inflateGroup(@Nonnull FileChannel channel, long start, long end) throws UncheckedIOException {
+		try {
+			ByteBuffer compressed = readFully(channel, start, (int) (end - start));
+			int total = 0;
+			for (int offset = 0; offset < compressed.limit(); offset += (compressed.getShort(offset + 16) & 0xffff) + 1) {
+				total += compressed.getInt(offset + (compressed.getShort(offset + 16) & 0xffff) + 1 - 4);
+			}
+			byte[] output = new byte[total];
+			int written = 0;
+			Inflater inflater = new Inflater(true);
+			try {
+				for (int offset = 0; offset < compressed.limit(); ) {
+					int blockSize = (compressed.getShort(offset + 16) & 0xffff) + 1;
+					int dataStart = offset + 12 + (compressed.getShort(offset + 10) & 0xffff);
+					int inflatedSize = compressed.getInt(offset + blockSize - 4);
+					inflater.reset();
+					inflater.setInput(compressed.array(), dataStart, offset + blockSize - 8 - dataStart);
+					int n = 0;
+					while (n < inflatedSize && !inflater.finished()) {
+						int inflated = inflater.inflate(output, written + n, inflatedSize - n);
+						if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+							break;
+						}
+						n += inflated;
+					}
+					if (n != inflatedSize) {
+						throw new IOException("BGZF block at byte " + (start + offset) + " is truncated");
+					}
+					written += n;
+					offset += blockSize;
+				}
+			} finally {
+				inflater.end();
+			}
+			return ByteBuffer.wrap(output);
+		} catch (IOException | DataFormatException e) {
+			throw new UncheckedIOException(new IOException("Could not inflate BGZF blocks at " + start + "-" + end, e));
+		}
+	}
+
+	private static boolean isBgzf(@Nonnull ByteBuffer header) {
+		return header.limit() >= sf_bgzfHeaderSize
+				&& (header.get(0) & 0xff) == 0x1f && (header.get(1) & 0xff) == 0x8b
+				&& (header.get(3) & 0x04) != 0 // FEXTRA
+				&& header.get(12) == 'B' && header.get(13) == 'C';
+	}
+
+	@Nonnull
+	private static ByteBuffer readFully(@Nonnull FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file at byte " + (position + buffer.position()));
+			}
+		}
+		return buffer.flip();
+	}
+
+	/**
+	 * A segment's complete lines, already tallied, and its incomplete edges.
+	 */
+	private static class Piece<T extends LineTally<T>> {
+
+		private final byte[] m_head; // before the first newline, or everything if there is none
+		private final T m_tally; // null if there is no newline
+		private final byte[] m_tail; // after the last newline
+
+		private Piece(@Nonnull byte[] head, @Nullable T tally, @Nonnull byte[] tail) {
+			m_head = head;
+			m_tally = tally;
+			m_tail = tail;
+		}
+
+		@Nonnull
+		static <T extends LineTally<T>> Piece<T> of(@Nonnull ByteBuffer bytes, @Nonnull Supplier<T> newTally) {
+			int n = bytes.limit();
+			int first = 0;
+			while (first < n && bytes.get(first) != '\n') {
+				first++;
+			}
+			if (first == n) {
+				return new Piece<>(copy(bytes, 0, n), null, new byte[0]);
+			}
+			T tally = newTally.get();
+			int start = first + 1;
+			int last = first;
+			for (int i = start; i < n; i++) {
+				if (bytes.get(i) == '\n') {
+					accept(tally, bytes, start, i);
+					start = i + 1;
+					last = i;
+				}
+			}
+			return new Piece<>(copy(bytes, 0, first), tally, copy(bytes, last + 1, n));
+		}
+
+		@Nonnull
+		private static byte[] copy(@Nonnull ByteBuffer bytes, int start, int end) {
+			byte[] copy = new byte[end - start];
+			bytes.get(start, copy);
+			return copy;
+		}
+	}
+
+	/**
+	 * Merges pieces in order, joining the tail of each with the head of the next.
+	 */
+	private static class Folder<T extends LineTally<T>> {
+
+		private final T m_result;
+		private final ByteArrayOutputStream m_carry = new ByteArrayOutputStream();
+
+		Folder(@Nonnull T result) {
+			m_result = result;
+		}
+
+		void add(@Nonnull Piece<T> piece) {
+			m_carry.writeBytes(piece.m_head);
+			if (piece.m_tally != null) {
+				flush();
+				m_result.merge(piece.m_tally);
+				m_carry.writeBytes(piece.m_tail);
+			}
+		}
+
+		@Nonnull
+		T finish() {
+			if (m_carry.size() > 0) {
+				flush();
+			}
+			return m_result;
+		}
+
+		private void flush() {
+			byte[] line = m_carry.toByteArray();
+			accept(m_result, ByteBuffer.wrap(line), 0, line.length);
+			m_carry.reset();
+		}
+	}
+
+	private static <T extends LineTally<T>> void accept(@Nonnull T tally, @Nonnull ByteBuffer bytes, int start, int end) {
+		if (end > start && bytes.get(end - 1) == '\r') {
+			end--;
+		}
+		tally.accept(bytes, start, end);
+	}
+
+	@Override
+	public String toString() {
+		return "LineScanner{" +
+				"segmentSize=" + m_segmentSize +
+				'}';
+	}
+}
@@ -0,0 +1,28 @@
+package org.pharmgkb.parsers.scan;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+
+/**
+ * Counts or otherwise summarizes lines given as raw bytes, without decoding them into strings.
+ * {@link LineScanner} gives each part of a file its own tally and then merges them in file order.
+ * @param <T> The implementing class
+ * @author Douglas Myers-Turnbull
+ */
+public interface LineTally<T extends LineTally<T>> {
+
+	/**
+	 * Reads one line, which may be empty.
+	 * @param bytes Contains the line; must not be modified
+	 * @param start The index of the first byte of the line
+	 * @param end The index just after the last byte of the line, excluding the {@code \n} or {@code \r\n}
+	 */
+	void accept(@Nonnull ByteBuffer bytes, @Nonnegative int start, @Nonnegative int end);
+
+	/**
+	 * Adds the results of {@code next}, which read the lines immediately after the ones this tally read.
+	 */
+	void merge(@Nonnull T next);
+
+}
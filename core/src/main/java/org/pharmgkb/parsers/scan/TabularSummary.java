@@ -0,0 +1,101 @@
+package org.pharmgkb.parsers.scan;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Counts the data lines, comment lines, and data lines per contig in a tab-delimited format whose first column
+ * is the contig, such as BED, GFF3, or VCF.
+ * Subclasses only decide which lines are comments.
+ * @param <T> The implementing class
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public abstract class TabularSummary<T extends TabularSummary<T>> implements LineTally<T> {
+
+	private final ContigCounts m_contigs = new ContigCounts();
+	private long m_nDataLines = 0;
+	private long m_nCommentLines = 0;
+	private long m_nBlankLines = 0;
+
+	/**
+	 * @param end Excludes the line terminator; never equal to {@code start}
+	 */
+	protected abstract boolean isComment(@Nonnull ByteBuffer bytes, @Nonnegative int start, @Nonnegative int end);
+
+	@Override
+	public void accept(@Nonnull ByteBuffer bytes, @Nonnegative int start, @Nonnegative int end) {
+		if (start == end) {
+			m_nBlankLines++;
+		} else if (isComment(bytes, start, end)) {
+			m_nCommentLines++;
+		} else {
+			m_nDataLines++;
+			int tab = start;
+			while (tab < end && bytes.get(tab) != '\t') {
+				tab++;
+			}
+			m_contigs.add(bytes, start, tab, 1);
+		}
+	}
+
+	@Override
+	public void merge(@Nonnull T next) {
+		TabularSummary<T> other = next;
+		m_nDataLines += other.m_nDataLines;
+		m_nCommentLines += other.m_nCommentLines;
+		m_nBlankLines += other.m_nBlankLines;
+		m_contigs.merge(other.m_contigs);
+	}
+
+	/**
+	 * @return Whether the line begins with {@code prefix}
+	 */
+	protected static boolean startsWith(@Nonnull ByteBuffer bytes, @Nonnegative int start, @Nonnegative int end, @Nonnull String prefix) {
+		if (end - start < prefix.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (bytes.get(start + i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Nonnegative
+	public long getNDataLines() {
+		return m_nDataLines;
+	}
+
+	@Nonnegative
+	public long getNCommentLines() {
+		return m_nCommentLines;
+	}
+
+	@Nonnegative
+	public long getNBlankLines() {
+		return m_nBlankLines;
+	}
+
+	/**
+	 * @return The number of data lines per contig, in the order first seen, with names as written in the file
+	 */
+	@Nonnull
+	public Map<String, Long> getContigCounts() {
+		return m_contigs.asMap();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{" +
+				"nDataLines=" + m_nDataLines +
+				", nCommentLines=" + m_nCommentLines +
+				", nBlankLines=" + m_nBlankLines +
+				", contigs=" + m_contigs.asMap() +
+				'}';
+	}
+}
@@ -0,0 +1,161 @@
+package org.pharmgkb.parsers.utils;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads UTF-8 lines from a file, one chunk at a time, through an {@link AsynchronousFileChannel}.
+ * No thread blocks waiting for IO: each call to {@link #read} returns immediately, and the callback runs on the
+ * channel's thread pool once the chunk is available.
+ * Lines are split the same way as {@link java.io.BufferedReader#readLine()}: on LF, CR, or CRLF.
+ * Only one read may be outstanding at a time.
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class AsyncLineReader implements Closeable {
+
+	public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	private final AsynchronousFileChannel m_channel;
+	private final ByteBuffer m_bytes;
+	private final CharBuffer m_chars;
+	private final CharsetDecoder m_decoder;
+	private final StringBuilder m_partial = new StringBuilder(256);
+
+	private long m_position = 0;
+	private boolean m_skipLf = false;
+	private volatile boolean m_eof = false;
+
+	public AsyncLineReader(@Nonnull Path path) throws UncheckedIOException {
+		this(path, DEFAULT_BUFFER_SIZE);
+	}
+
+	public AsyncLineReader(@Nonnull Path path, @Nonnegative int bufferSize) throws UncheckedIOException {
+		Preconditions.checkNotNull(path, "Path cannot be null");
+		Preconditions.checkArgument(bufferSize > 0, "Buffer size must be positive");
+		try {
+			m_channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		m_bytes = ByteBuffer.allocate(bufferSize);
+		m_chars = CharBuffer.allocate(bufferSize);
+		m_decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * Reads the next chunk of the file and calls exactly one of the three callbacks.
+	 * {@code onLines} always receives at least one line; {@code onEnd} is called once the file is exhausted.
+	 */
+	public void read(
+			@Nonnull Consumer<? super List<String>> onLines,
+			@Nonnull Runnable onEnd,
+			@Nonnull Consumer<? super Throwable> onError
+	) {
+		if (m_eof) {
+			onEnd.run();
+			return;
+		}
+		m_channel.read(m_bytes, m_position, null, new CompletionHandler<Integer, Void>() {
+			@Override
+			public void completed(Integer nBytes, Void attachment) {
+				try {
+					boolean eof = nBytes < 0;
+					if (!eof) {
+						m_position += nBytes;
+					}
+					List<String> lines = decode(eof);
+					if (eof) {
+						m_eof = true;
+					}
+					if (!lines.isEmpty()) {
+						onLines.accept(lines);
+					} else if (eof) {
+						onEnd.run();
+					} else {
+						read(onLines, onEnd, onError); // a single line is longer than the buffer
+					}
+				} catch (RuntimeException e) {
+					onError.accept(e);
+				}
+			}
+			@Override
+			public void failed(Throwable e, Void attachment) {
+				onError.accept(e instanceof IOException ? new UncheckedIOException((IOException)e) : e);
+			}
+		});
+	}
+
+	@Nonnull
+	private List<String> decode(boolean eof) {
+		List<String> lines = new ArrayList<>(64);
+		m_bytes.flip();
+		CoderResult result;
+		do {
+			result = m_decoder.decode(m_bytes, m_chars, eof);
+			if (eof && result.isUnderflow()) {
+				result = m_decoder.flush(m_chars);
+			}
+			m_chars.flip();
+			while (m_chars.hasRemaining()) {
+				char c = m_chars.get();
+				if (m_skipLf) {
+					m_skipLf = false;
+					if (c == '\n') continue;
+				}
+				if (c == '\n' || c == '\r') {
+					lines.add(m_partial.toString());
+					m_partial.setLength(0);
+					m_skipLf = c == '\r';
+				} else {
+					m_partial.append(c);
+				}
+			}
+			m_chars.clear();
+		} while (result.isOverflow());
+		m_bytes.compact();
+		if (eof && m_partial.length() > 0) {
+			lines.add(m_partial.toString());
+			m_partial.setLength(0);
+		}
+		return lines;
+	}
+
+	@Override
+	public void close() throws UncheckedIOException {
+		try {
+			m_channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncLineReader{" +
+				"position=" + m_position +
+				", eof=" + m_eof +
+				'}';
+	}
+}
@@ -0,0 +1,192 @@
+package org.pharmgkb.parsers.utils;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads BGZF (blocked GZIP, as written by bgzip or {@link BgzfOutputStream}) one block at a time, and can seek to a
+ * virtual offset. The channel is read with positional reads, so its position is never changed.
+ * {@link #close()} closes the channel.
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class BgzfInputStream extends InputStream {
+
+	private static final int sf_headerSize = 18;
+	private static final int sf_maxBlock = 0x10000;
+
+	private final FileChannel m_channel;
+	private final Inflater m_inflater = new Inflater(true);
+	private final ByteBuffer m_compressed = ByteBuffer.allocate(sf_maxBlock).order(ByteOrder.LITTLE_ENDIAN);
+	private final byte[] m_block = new byte[sf_maxBlock];
+
+	private long m_blockAddress = 0;
+	private long m_nextBlockAddress = 0;
+	private int m_blockLength = 0;
+	private int m_index = 0;
+
+	public BgzfInputStream(@Nonnull FileChannel channel) {
+		Preconditions.checkNotNull(channel, "Channel cannot be null");
+		m_channel = channel;
+	}
+
+	/**
+	 * At the end of a block, reads ahead past any empty blocks (such as the EOF block of each member of a concatenated
+	 * file), so that the offset is always in the block that the next byte will be read from.
+	 * @return The BGZF virtual offset of the next byte to be read: the compressed offset of its block in the upper
+	 * 48 bits and its offset within the block in the lower 16
+	 * @throws IOException If the next block cannot be read
+	 */
+	@Nonnegative
+	public long getVirtualOffset() throws IOException {
+		fill();
+		return m_blockAddress << 16 | m_index;
+	}
+
+	/**
+	 * @param virtualOffset As from {@link #getVirtualOffset()} or {@link BgzfOutputStream#getVirtualOffset()}
+	 * @throws IOException If the block cannot be read, or the offset is past its end
+	 */
+	public void seek(@Nonnegative long virtualOffset) throws IOException {
+		Preconditions.checkArgument(virtualOffset >= 0, "Virtual offset cannot be negative");
+		long address = virtualOffset >>> 16;
+		int index = (int) (virtualOffset & 0xffff);
+		if (address != m_blockAddress || m_blockLength == 0 && m_nextBlockAddress == m_blockAddress) {
+			m_nextBlockAddress = address;
+			if (!readBlock()) {
+				if (index == 0) {
+					return; // at the end
+				}
+				throw new IOException("Virtual offset " + virtualOffset + " is past the end of the file");
+			}
+		}
+		if (index > m_blockLength) {
+			throw new IOException("Virtual offset " + virtualOffset + " is past the end of its block");
+		}
+		m_index = index;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return m_block[m_index++] & 0xff;
+	}
+
+	@Override
+	public int read(@Nonnull byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (!fill()) {
+			return -1;
+		}
+		int n = Math.min(length, m_blockLength - m_index);
+		System.arraycopy(m_block, m_index, bytes, offset, n);
+		m_index += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return m_blockLength - m_index;
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_inflater.end();
+		m_channel.close();
+	}
+
+	/**
+	 * Reads blocks until one has unread bytes, skipping empty blocks such as the EOF block.
+	 * @return Whether there is a byte to read
+	 */
+	private boolean fill() throws IOException {
+		while (m_index == m_blockLength) {
+			if (!readBlock()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads and inflates the block at {@link #m_nextBlockAddress}.
+	 * @return False at the end of the file
+	 */
+	private boolean readBlock() throws IOException {
+		long address = m_nextBlockAddress;
+		m_compressed.clear().limit(sf_headerSize);
+		if (!readFully(address) && m_compressed.position() == 0) {
+			m_blockAddress = address;
+			m_blockLength = 0;
+			m_index = 0;
+			return false;
+		}
+		if (m_compressed.position() < sf_headerSize || (m_compressed.get(0) & 0xff) != 0x1f || (m_compressed.get(1) & 0xff) != 0x8b
+				|| (m_compressed.get(3) & 0x04) == 0 || m_compressed.get(12) != 'B' || m_compressed.get(13) != 'C') {
+			throw new IOException("Invalid BGZF block header at byte " + address);
+		}
+		int blockSize = (m_compressed.getShort(16) & 0xffff) + 1;
+		m_compressed.limit(blockSize);
+		if (!readFully(address)) {
+			throw new IOException("BGZF block at byte " + address + " is truncated");
+		}
+		int dataStart = 12 + (m_compressed.getShort(10) & 0xffff);
+		int inflatedSize = m_compressed.getInt(blockSize - 4);
+		m_inflater.reset();
+		m_inflater.setInput(m_compressed.array(), dataStart, blockSize - 8 - dataStart);
+		int n = 0;
+		try {
+			while (n < inflatedSize && !m_inflater.finished()) {
+				int inflated = m_inflater.inflate(m_block, n, inflatedSize - n);
+				if (inflated == 0 && (m_inflater.needsInput() || m_inflater.needsDictionary())) {
+					break;
+				}
+				n += inflated;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("BGZF block at byte " + address + " is corrupt", e);
+		}
+		if (n != inflatedSize) {
+			throw new IOException("BGZF block at byte " + address + " is truncated");
+		}
+		m_blockAddress = address;
+		m_nextBlockAddress = address + blockSize;
+		m_blockLength = n;
+		m_index = 0;
+		return true;
+	}
+
+	/**
+	 * Reads from {@code address} plus the buffer's position up to its limit.
+	 * @return False if the file ended first
+	 */
+	private boolean readFully(long address) throws IOException {
+		while (m_compressed.hasRemaining()) {
+			if (m_channel.read(m_compressed, address + m_compressed.position()) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "BgzfInputStream{" +
+				"virtualOffset=" + (m_blockAddress << 16 | m_index) +
+				'}';
+	}
+}
@@ -0,0 +1,172 @@
+package org.pharmgkb.parsers.utils;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes BGZF (blocked GZIP, as written by bgzip), which is valid GZIP that can also be split on block boundaries
+ * and indexed. Each block holds at most 65280 uncompressed bytes. {@link #close()} writes the standard empty EOF block.
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class BgzfOutputStream extends FilterOutputStream {
+
+	/**
+	 * The empty block that ends every BGZF file.
+	 */
+	public static final byte[] EOF_BLOCK = {
+			0x1f, (byte) 0x8b, 0x08, 0x04, 0, 0, 0, 0, 0, (byte) 0xff, 0x06, 0, 0x42, 0x43, 0x02, 0,
+			0x1b, 0, 0x03, 0, 0, 0, 0, 0, 0, 0, 0, 0
+	};
+
+	private static final int sf_maxInput = 0xff00;
+	private static final int sf_maxBlock = 0x10000;
+	private static final int sf_headerSize = 18;
+	private static final int sf_footerSize = 8;
+
+	private final byte[] m_input = new byte[sf_maxInput];
+	private final byte[] m_block = new byte[sf_maxBlock];
+	private final Deflater m_deflater;
+	private final Deflater m_storer = new Deflater(Deflater.NO_COMPRESSION, true);
+	private final CRC32 m_crc = new CRC32();
+
+	private int m_nInput = 0;
+	private long m_blockAddress = 0;
+	private boolean m_closed = false;
+
+	public BgzfOutputStream(@Nonnull OutputStream out) {
+		this(out, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param level A {@link Deflater} compression level
+	 */
+	public BgzfOutputStream(@Nonnull OutputStream out, int level) {
+		super(out);
+		Preconditions.checkNotNull(out, "Output stream cannot be null");
+		m_deflater = new Deflater(level, true);
+	}
+
+	/**
+	 * @return The BGZF virtual offset of the next byte to be written: the compressed offset of its block in the upper
+	 * 48 bits and its offset within the block in the lower 16
+	 */
+	@Nonnegative
+	public long getVirtualOffset() {
+		return m_blockAddress << 16 | m_nInput;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (m_nInput == sf_maxInput) {
+			writeBlock();
+		}
+		m_input[m_nInput++] = (byte) b;
+	}
+
+	@Override
+	public void write(@Nonnull byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (m_nInput == sf_maxInput) {
+				writeBlock();
+			}
+			int n = Math.min(length, sf_maxInput - m_nInput);
+			System.arraycopy(bytes, offset, m_input, m_nInput, n);
+			m_nInput += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	/**
+	 * Ends the current block, if it has any data, and flushes the underlying stream.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (m_nInput > 0) {
+			writeBlock();
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (m_closed) {
+			return;
+		}
+		try {
+			flush();
+			out.write(EOF_BLOCK);
+			out.flush();
+		} finally {
+			m_closed = true;
+			m_deflater.end();
+			m_storer.end();
+			out.close();
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		int compressed = deflate(m_deflater);
+		if (compressed < 0) {
+			// incompressible data can grow; stored blocks fit
+			compressed = deflate(m_storer);
+			if (compressed < 0) {
+				throw new IOException("Could not fit " + m_nInput + " bytes into a BGZF block");
+			}
+		}
+		int blockSize = sf_headerSize + compressed + sf_footerSize;
+		byte[] header = {
+				0x1f, (byte) 0x8b, 0x08, 0x04, 0, 0, 0, 0, 0, (byte) 0xff, 0x06, 0, 0x42, 0x43, 0x02, 0,
+				(byte) (blockSize - 1), (byte) ((blockSize - 1) >>> 8)
+		};
+		out.write(header);
+		out.write(m_block, 0, compressed);
+		m_crc.reset();
+		m_crc.update(m_input, 0, m_nInput);
+		writeInt((int) m_crc.getValue());
+		writeInt(m_nInput);
+		m_blockAddress += blockSize;
+		m_nInput = 0;
+	}
+
+	/**
+	 * @return The number of compressed bytes, or -1 if they do not fit in a block
+	 */
+	private int deflate(@Nonnull Deflater deflater) {
+		deflater.reset();
+		deflater.setInput(m_input, 0, m_nInput);
+		deflater.finish();
+		int limit = sf_maxBlock - sf_headerSize - sf_footerSize;
+		int n = 0;
+		while (!deflater.finished()) {
+			if (n == limit) {
+				return -1;
+			}
+			n += deflater.deflate(m_block, n, limit - n);
+		}
+		return n;
+	}
+
+	private void writeInt(int value) throws IOException {
+		out.write(value);
+		out.write(value >>> 8);
+		out.write(value >>> 16);
+		out.write(value >>> 24);
+	}
+
+	@Override
+	public String toString() {
+		return "BgzfOutputStream{" +
+				"virtualOffset=" + getVirtualOffset() +
+				'}';
+	}
+}
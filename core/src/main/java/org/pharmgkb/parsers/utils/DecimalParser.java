@@ -0,0 +1,149 @@
+package org.pharmgkb.parsers.utils;
+
+import org.pharmgkb.parsers.model.GeneralizedBigDecimal;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.math.BigDecimal;
+
+/**
+ * Parses decimal text into a {@code double} without creating a String or {@link BigDecimal}.
+ * Accepts exactly what {@link GeneralizedBigDecimal#GeneralizedBigDecimal(String)} accepts: the syntax of
+ * {@link BigDecimal#BigDecimal(String)}, plus {@code NaN}, {@code Inf}, {@code +Inf}, and {@code -Inf}.
+ * So text that parses here can always be turned into a {@link GeneralizedBigDecimal} later, if exact digits are needed.
+ * Values with at most 15 significant digits and a decimal exponent from -22 to 22 are computed with a single
+ * multiplication or division by an exact power of ten, which is correctly rounded; other values fall back to
+ * {@link Double#parseDouble(String)}.
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public final class DecimalParser {
+
+	private static final double[] sf_powersOfTen = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private static final int sf_maxExactDigits = 15;
+
+	private DecimalParser() {}
+
+	/**
+	 * @throws NumberFormatException If {@code text} is not a decimal number, {@code NaN}, or an infinity as above
+	 */
+	public static double parseDouble(@Nonnull CharSequence text) {
+		return parseDouble(text, 0, text.length());
+	}
+
+	/**
+	 * Parses {@code text} from {@code start}, inclusive, to {@code end}, exclusive.
+	 * @throws NumberFormatException If the range is not a decimal number, {@code NaN}, or an infinity as above
+	 */
+	public static double parseDouble(@Nonnull CharSequence text, @Nonnegative int start, @Nonnegative int end) {
+		int length = end - start;
+		if (length == 0) {
+			throw new NumberFormatException("Empty number");
+		}
+		if (length <= 4) {
+			if (regionEquals(text, start, end, "NaN")) {
+				return Double.NaN;
+			}
+			if (regionEquals(text, start, end, "Inf") || regionEquals(text, start, end, "+Inf")) {
+				return Double.POSITIVE_INFINITY;
+			}
+			if (regionEquals(text, start, end, "-Inf")) {
+				return Double.NEGATIVE_INFINITY;
+			}
+		}
+		int i = start;
+		boolean negative = false;
+		char c = text.charAt(i);
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int nSignificant = 0;
+		int exponent = 0;
+		boolean anyDigits = false;
+		// integer part
+		for (; i < end && (c = text.charAt(i)) >= '0' && c <= '9'; i++) {
+			anyDigits = true;
+			if (mantissa != 0 || c != '0') {
+				if (++nSignificant <= sf_maxExactDigits) {
+					mantissa = mantissa * 10 + (c - '0');
+				} else {
+					exponent++;
+				}
+			}
+		}
+		// fraction
+		if (i < end && text.charAt(i) == '.') {
+			i++;
+			for (; i < end && (c = text.charAt(i)) >= '0' && c <= '9'; i++) {
+				anyDigits = true;
+				if (mantissa != 0 || c != '0') {
+					if (++nSignificant <= sf_maxExactDigits) {
+						mantissa = mantissa * 10 + (c - '0');
+						exponent--;
+					}
+				} else {
+					exponent--;
+				}
+			}
+		}
+		if (!anyDigits) {
+			throw invalid(text, start, end);
+		}
+		// exponent
+		if (i < end && ((c = text.charAt(i)) == 'e' || c == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && ((c = text.charAt(i)) == '-' || c == '+')) {
+				negativeExponent = c == '-';
+				i++;
+			}
+			int explicit = 0;
+			boolean anyExponentDigits = false;
+			for (; i < end && (c = text.charAt(i)) >= '0' && c <= '9'; i++) {
+				anyExponentDigits = true;
+				explicit = Math.min(explicit * 10 + (c - '0'), 100_000);
+			}
+			if (!anyExponentDigits) {
+				throw invalid(text, start, end);
+			}
+			exponent += negativeExponent? -explicit : explicit;
+		}
+		if (i != end) {
+			throw invalid(text, start, end);
+		}
+		double value;
+		if (mantissa == 0) {
+			value = 0;
+		} else if (nSignificant <= sf_maxExactDigits && exponent >= -22 && exponent <= 22) {
+			value = exponent < 0? mantissa / sf_powersOfTen[-exponent] : mantissa * sf_powersOfTen[exponent];
+		} else {
+			// the syntax is already checked, and Double accepts everything BigDecimal does
+			return Double.parseDouble(text.subSequence(start, end).toString());
+		}
+		return negative? -value : value;
+	}
+
+	private static boolean regionEquals(@Nonnull CharSequence text, int start, int end, @Nonnull String expected) {
+		if (end - start != expected.length()) {
+			return false;
+		}
+		for (int i = 0; i < expected.length(); i++) {
+			if (text.charAt(start + i) != expected.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Nonnull
+	private static NumberFormatException invalid(@Nonnull CharSequence text, int start, int end) {
+		return new NumberFormatException("Invalid number " + text.subSequence(start, end));
+	}
+}
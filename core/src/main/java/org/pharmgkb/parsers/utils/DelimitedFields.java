@@ -0,0 +1,201 @@
+package org.pharmgkb.parsers.utils;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * The positions of delimited fields in a line, found without splitting the line into new strings.
+ * One instance is meant to be {@link #reset(CharSequence) reset} for every line, so after the first few lines
+ * it allocates nothing unless {@link #get(int)} is called.
+ * Numeric fields can be read directly with {@link #parseLong(int)} and {@link #parseInt(int)}.
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class DelimitedFields {
+
+	private final char m_delimiter;
+
+	private CharSequence m_line = "";
+	private int[] m_starts = new int[16];
+	private int[] m_ends = new int[16];
+	private int m_size = 0;
+
+	public DelimitedFields(char delimiter) {
+		m_delimiter = delimiter;
+	}
+
+	/**
+	 * Indexes every field of {@code line}.
+	 */
+	@Nonnull
+	public DelimitedFields reset(@Nonnull CharSequence line) {
+		return reset(line, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Indexes at most the first {@code limit} fields of {@code line}, ignoring anything after them.
+	 */
+	@Nonnull
+	public DelimitedFields reset(@Nonnull CharSequence line, @Nonnegative int limit) {
+		Preconditions.checkArgument(limit > 0, "Limit must be positive");
+		m_line = line;
+		m_size = 0;
+		int start = 0;
+		int length = line.length();
+		for (int i = 0; i < length && m_size < limit - 1; i++) {
+			if (line.charAt(i) == m_delimiter) {
+				add(start, i);
+				start = i + 1;
+			}
+		}
+		int end = start;
+		while (end < length && line.charAt(end) != m_delimiter) {
+			end++;
+		}
+		add(start, end);
+		return this;
+	}
+
+	private void add(int start, int end) {
+		if (m_size == m_starts.length) {
+			m_starts = Arrays.copyOf(m_starts, m_size * 2);
+			m_ends = Arrays.copyOf(m_ends, m_size * 2);
+		}
+		m_starts[m_size] = start;
+		m_ends[m_size] = end;
+		m_size++;
+	}
+
+	@Nonnull
+	public CharSequence getLine() {
+		return m_line;
+	}
+
+	/**
+	 * @return The number of fields indexed
+	 */
+	@Nonnegative
+	public int size() {
+		return m_size;
+	}
+
+	@Nonnegative
+	public int start(@Nonnegative int field) {
+		return m_starts[check(field)];
+	}
+
+	@Nonnegative
+	public int end(@Nonnegative int field) {
+		return m_ends[check(field)];
+	}
+
+	@Nonnegative
+	public int length(@Nonnegative int field) {
+		return m_ends[check(field)] - m_starts[field];
+	}
+
+	/**
+	 * <strong>Allocates a new String.</strong>
+	 */
+	@Nonnull
+	public String get(@Nonnegative int field) {
+		return m_line.subSequence(m_starts[check(field)], m_ends[field]).toString();
+	}
+
+	/**
+	 * @return Whether the field is exactly {@code value}
+	 */
+	public boolean fieldEquals(@Nonnegative int field, @Nonnull CharSequence value) {
+		int start = m_starts[check(field)];
+		int length = m_ends[field] - start;
+		if (length != value.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (m_line.charAt(start + i) != value.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Whether the field is {@code .}, the usual placeholder for a missing value
+	 */
+	public boolean isDot(@Nonnegative int field) {
+		return length(field) == 1 && m_line.charAt(m_starts[field]) == '.';
+	}
+
+	/**
+	 * @throws NumberFormatException If the field is not a base-10 integer in the range of a long
+	 */
+	public long parseLong(@Nonnegative int field) throws NumberFormatException {
+		return parseLong(m_line, m_starts[check(field)], m_ends[field]);
+	}
+
+	/**
+	 * @throws NumberFormatException If the field is not a base-10 integer in the range of an int
+	 */
+	public int parseInt(@Nonnegative int field) throws NumberFormatException {
+		long value = parseLong(field);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Field " + field + " is out of range for an int");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parses a base-10 long from {@code chars} between {@code start} (inclusive) and {@code end} (exclusive),
+	 * with an optional leading {@code +} or {@code -}, without allocating.
+	 * @throws NumberFormatException If the range is empty, contains a non-digit, or overflows
+	 */
+	public static long parseLong(@Nonnull CharSequence chars, @Nonnegative int start, @Nonnegative int end) throws NumberFormatException {
+		if (start >= end) {
+			throw new NumberFormatException("Empty number");
+		}
+		boolean negative = false;
+		int i = start;
+		char first = chars.charAt(i);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			i++;
+			if (i == end) {
+				throw new NumberFormatException("Sign without digits");
+			}
+		}
+		long value = 0; // accumulate negatively so that Long.MIN_VALUE fits
+		for (; i < end; i++) {
+			int digit = chars.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("Not a digit: '" + chars.charAt(i) + "'");
+			}
+			if (value < (Long.MIN_VALUE + digit) / 10) {
+				throw new NumberFormatException("Number is out of range for a long");
+			}
+			value = value * 10 - digit;
+		}
+		if (!negative && value == Long.MIN_VALUE) {
+			throw new NumberFormatException("Number is out of range for a long");
+		}
+		return negative? value : -value;
+	}
+
+	private int check(int field) {
+		if (field < 0 || field >= m_size) {
+			throw new IndexOutOfBoundsException("Field " + field + " does not exist; there are " + m_size);
+		}
+		return field;
+	}
+
+	@Override
+	public String toString() {
+		return "DelimitedFields{" +
+				"delimiter=" + m_delimiter +
+				", size=" + m_size +
+				'}';
+	}
+}
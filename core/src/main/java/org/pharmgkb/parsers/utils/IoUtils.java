@@ -126,13 +126,19 @@ public static URL getUrl(@Nonnull String url) throws UncheckedIOException {
 		}
 	}
 
+	/**
+	 * @return A lazy stream that closes the file when it is closed
+	 */
 	@Nonnull
 	public static Stream<String> readUtf8Lines(@Nonnull Path path) throws UncheckedIOException {
-		try (QuietBufferedReader br = IoUtils.openUtf8Reader(path)) {
-			return br.streamLinesQuietly();
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
-		}
+		QuietBufferedReader br = IoUtils.openUtf8Reader(path);
+		return br.streamLinesQuietly().onClose(() -> {
+			try {
+				br.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
 	}
 
 	public static void writeUtf8Lines(@Nonnull Path path, @Nonnull Stream<String> lines) throws UncheckedIOException {
@@ -0,0 +1,73 @@
+package org.pharmgkb.parsers;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link ErrorPolicy}.
+ * @author Douglas Myers-Turnbull
+ */
+public class ErrorPolicyTest {
+
+	@Test
+	public void testFailFast() {
+		ErrorPolicy policy = ErrorPolicy.failFast();
+		assertThrows(BadDataFormatException.class, () -> policy.map(Stream.of("1", "x"), parser(policy)).collect(Collectors.toList()));
+		BadDataFormatException e = policy.badLine(5, "x", new NumberFormatException("not a number"));
+		assertEquals("Bad data format on line #5; line is [[[x]]]", e.getMessage());
+		assertEquals(OptionalLong.of(5), e.getLineNumber());
+		assertEquals("not a number", e.getReason());
+	}
+
+	@Test
+	public void testSkip() {
+		ErrorPolicy policy = ErrorPolicy.skip();
+		List<Integer> values = policy.map(Stream.of("1", "x", "3", "y"), parser(policy)).collect(Collectors.toList());
+		assertEquals(Arrays.asList(1, 3), values);
+		assertEquals(2, policy.nRejected());
+		assertEquals(0, policy.badLine(1, "x", new IllegalArgumentException()).getStackTrace().length);
+	}
+
+	@Test
+	public void testQuarantine() throws Exception {
+		Path file = Files.createTempFile("quarantine", ".tsv");
+		try (ErrorPolicy policy = ErrorPolicy.quarantine(file)) {
+			List<Integer> values = policy.map(Stream.of("1", "x\ty", "3"), parser(policy)).collect(Collectors.toList());
+			assertEquals(Arrays.asList(1, 3), values);
+			policy.reject("z", new BadDataFormatException("no line number"));
+			assertEquals(2, policy.nRejected());
+		}
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		assertEquals(Arrays.asList(
+				"#line_number\treason\tline",
+				"2\tFor input string: \"x y\"\tx\ty",
+				"?\tno line number\tz"
+		), lines);
+		Files.delete(file);
+	}
+
+	private static Function<String, Integer> parser(ErrorPolicy policy) {
+		AtomicLong lineNumber = new AtomicLong(0);
+		return line -> {
+			long n = lineNumber.incrementAndGet();
+			try {
+				return Integer.parseInt(line);
+			} catch (NumberFormatException e) {
+				throw policy.badLine(n, line, e);
+			}
+		};
+	}
+}
@@ -0,0 +1,207 @@
+package org.pharmgkb.parsers;
+
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link ParsingPublisher}.
+ * @author Douglas Myers-Turnbull
+ */
+public class ParsingPublisherTest {
+
+	@Test
+	public void testFileOneAtATime() throws Exception {
+		Path file = Files.createTempFile("publisher", ".txt");
+		file.toFile().deleteOnExit();
+		List<String> lines = IntStream.range(0, 20000).mapToObj(i -> i % 100 == 0? "#comment" : String.valueOf(i)).collect(Collectors.toList());
+		Files.write(file, lines);
+		ParsingPublisher<Integer> publisher = new ParsingPublisher.Builder<>(new IntegerParser()).fromFile(file).build();
+		CollectingSubscriber<Integer> subscriber = new CollectingSubscriber<>(1);
+		publisher.subscribe(subscriber);
+		assertTrue(subscriber.m_done.await(10, TimeUnit.SECONDS));
+		assertNull(subscriber.m_error);
+		List<Integer> expected = lines.stream().filter(s -> !s.startsWith("#")).map(Integer::parseInt).collect(Collectors.toList());
+		assertEquals(expected, subscriber.m_items);
+	}
+
+	@Test
+	public void testCrLf() throws Exception {
+		Path file = Files.createTempFile("publisher", ".txt");
+		file.toFile().deleteOnExit();
+		Files.writeString(file, "1\r\n2\r3\n\n4");
+		ParsingPublisher<Integer> publisher = new ParsingPublisher.Builder<>(new IntegerParser()).fromFile(file).build();
+		CollectingSubscriber<Integer> subscriber = new CollectingSubscriber<>(Long.MAX_VALUE);
+		publisher.subscribe(subscriber);
+		assertTrue(subscriber.m_done.await(10, TimeUnit.SECONDS));
+		assertEquals(List.of(1, 2, 3, 4), subscriber.m_items);
+	}
+
+	@Test
+	public void testBatches() throws Exception {
+		ParsingPublisher<Integer> publisher = new ParsingPublisher.Builder<>(new IntegerParser())
+				.fromLines(() -> IntStream.range(0, 25).mapToObj(String::valueOf))
+				.build();
+		CollectingSubscriber<List<Integer>> subscriber = new CollectingSubscriber<>(1);
+		publisher.batches(10).subscribe(subscriber);
+		assertTrue(subscriber.m_done.await(10, TimeUnit.SECONDS));
+		assertEquals(3, subscriber.m_items.size());
+		assertEquals(10, subscriber.m_items.get(0).size());
+		assertEquals(List.of(20, 21, 22, 23, 24), subscriber.m_items.get(2));
+	}
+
+	@Test
+	public void testCancelClosesSource() throws Exception {
+		AtomicLong closed = new AtomicLong(0);
+		ParsingPublisher<Integer> publisher = new ParsingPublisher.Builder<>(new IntegerParser())
+				.fromLines(() -> Stream.iterate(0, i -> i + 1).map(String::valueOf).onClose(closed::incrementAndGet))
+				.build();
+		CollectingSubscriber<Integer> subscriber = new CollectingSubscriber<>(1) {
+			@Override
+			public void onNext(Integer item) {
+				super.onNext(item);
+				if (m_items.size() == 5) m_subscription.cancel();
+			}
+		};
+		publisher.subscribe(subscriber);
+		assertEquals(5, subscriber.m_items.size());
+		assertEquals(1, closed.get());
+	}
+
+	@Test
+	public void testMultiline() throws Exception {
+		ParsingPublisher<String> publisher = new ParsingPublisher.Builder<>(new ParagraphParser())
+				.fromLines(() -> Stream.of("a", "b", "", "c", "", "d", "e"))
+				.build();
+		CollectingSubscriber<String> subscriber = new CollectingSubscriber<>(1);
+		publisher.subscribe(subscriber);
+		assertTrue(subscriber.m_done.await(10, TimeUnit.SECONDS));
+		assertEquals(List.of("ab", "c", "de"), subscriber.m_items);
+		CollectingSubscriber<String> second = new CollectingSubscriber<>(1);
+		publisher.subscribe(second);
+		assertTrue(second.m_error instanceof IllegalStateException);
+	}
+
+	@Test
+	public void testError() throws Exception {
+		ParsingPublisher<Integer> publisher = new ParsingPublisher.Builder<>(new IntegerParser())
+				.fromLines(() -> Stream.of("1", "x", "3"))
+				.build();
+		CollectingSubscriber<Integer> subscriber = new CollectingSubscriber<>(Long.MAX_VALUE);
+		publisher.subscribe(subscriber);
+		assertTrue(subscriber.m_done.await(10, TimeUnit.SECONDS));
+		assertTrue(subscriber.m_error instanceof BadDataFormatException);
+	}
+
+	private static class CollectingSubscriber<T> implements Flow.Subscriber<T> {
+
+		protected final List<T> m_items = new ArrayList<>();
+		protected final CountDownLatch m_done = new CountDownLatch(1);
+		protected final long m_batch;
+		protected Flow.Subscription m_subscription;
+		protected volatile Throwable m_error;
+
+		CollectingSubscriber(long batch) {
+			m_batch = batch;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			m_subscription = subscription;
+			subscription.request(m_batch);
+		}
+
+		@Override
+		public void onNext(T item) {
+			m_items.add(item);
+			if (m_batch != Long.MAX_VALUE) m_subscription.request(1);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			m_error = throwable;
+			m_done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			m_done.countDown();
+		}
+	}
+
+	private static class IntegerParser implements LineParser<Integer> {
+
+		private final AtomicLong m_lineNumber = new AtomicLong(0);
+
+		@Nonnull
+		@Override
+		public Stream<Integer> parseAll(@Nonnull Stream<String> stream) {
+			return stream.filter(s -> !s.startsWith("#") && !s.isEmpty()).map(this);
+		}
+
+		@Nonnull
+		@Override
+		public Integer apply(@Nonnull String line) {
+			m_lineNumber.incrementAndGet();
+			try {
+				return Integer.parseInt(line);
+			} catch (NumberFormatException e) {
+				throw new BadDataFormatException("Bad line " + line, e);
+			}
+		}
+
+		@Override
+		public long nLinesProcessed() {
+			return m_lineNumber.get();
+		}
+	}
+
+	private static class ParagraphParser implements MultilineParser<String> {
+
+		private final StringBuilder m_current = new StringBuilder();
+		private long m_nLines = 0;
+
+		@Nonnull
+		@Override
+		public Stream<String> parseAll(@Nonnull Stream<String> stream) {
+			return Stream.concat(stream.flatMap(this), Stream.of("").flatMap(s -> finish()));
+		}
+
+		@Nonnull
+		@Override
+		public Stream<String> apply(@Nonnull String line) {
+			m_nLines++;
+			if (line.isEmpty()) {
+				return finish();
+			}
+			m_current.append(line);
+			return Stream.empty();
+		}
+
+		@Nonnull
+		@Override
+		public Stream<String> finish() {
+			String paragraph = m_current.toString();
+			m_current.setLength(0);
+			return paragraph.isEmpty()? Stream.empty() : Stream.of(paragraph);
+		}
+
+		@Override
+		public long nLinesProcessed() {
+			return m_nLines;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package org.pharmgkb.parsers.cache;
+
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link SidecarCache}, {@link BinaryOutput}, and {@link BinaryInput}.
+ * @author Douglas Myers-Turnbull
+ */
+public class SidecarCacheTest {
+
+	@Test
+	public void testRoundTrip() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		// a tiny buffer forces strings to span refills
+		try (BinaryOutput out = new BinaryOutput(Channels.newChannel(bytes), 16)) {
+			out.writeInt(-5);
+			out.writeString("a string longer than the buffer, with ünïcödé");
+			out.writeString(null);
+			out.writeLong(Long.MAX_VALUE);
+			out.writeBoolean(true);
+			out.writeDouble(0.25);
+		}
+		try (BinaryInput in = new BinaryInput(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), 16)) {
+			assertEquals(-5, in.readInt());
+			assertEquals("a string longer than the buffer, with ünïcödé", in.readString());
+			assertNull(in.readString());
+			assertEquals(Long.MAX_VALUE, in.readLong());
+			assertTrue(in.readBoolean());
+			assertEquals(0.25, in.readDouble());
+		}
+	}
+
+	@Test
+	public void testFreshness() throws Exception {
+		Path file = Files.createTempFile("sidecar", ".txt");
+		file.toFile().deleteOnExit();
+		Files.writeString(file, "a\nb\n");
+		SidecarCache<List<String>> cache = SidecarCache.forRecords(new StringCodec());
+		cache.getSidecar(file).toFile().deleteOnExit();
+		AtomicInteger nParses = new AtomicInteger(0);
+
+		assertTrue(cache.load(file).isEmpty());
+		assertEquals(List.of("a", "b"), cache.get(file, () -> {
+			nParses.incrementAndGet();
+			return List.of("a", "b");
+		}));
+		assertTrue(Files.exists(cache.getSidecar(file)));
+		assertEquals(List.of("a", "b"), cache.get(file, () -> {
+			nParses.incrementAndGet();
+			return List.of("x");
+		}));
+		assertEquals(1, nParses.get());
+
+		// same size and modification time, but different contents
+		FileTime modified = Files.getLastModifiedTime(file);
+		Files.writeString(file, "c\nd\n");
+		Files.setLastModifiedTime(file, modified);
+		assertTrue(cache.load(file).isEmpty());
+
+		// different codec
+		cache.store(file, List.of("c", "d"));
+		assertEquals(List.of("c", "d"), cache.load(file).orElseThrow());
+		SidecarCache<String> other = new SidecarCache<>(new RecordCodec<>() {
+			@Nonnull
+			@Override
+			public String getId() {
+				return "other";
+			}
+			@Override
+			public void write(@Nonnull String record, @Nonnull BinaryOutput out) {
+				out.writeString(record);
+			}
+			@Nonnull
+			@Override
+			public String read(@Nonnull BinaryInput in) {
+				return in.readString();
+			}
+		});
+		assertTrue(other.load(file).isEmpty());
+	}
+
+	@Test
+	public void testWithoutChecksum() throws Exception {
+		Path file = Files.createTempFile("sidecar", ".txt");
+		file.toFile().deleteOnExit();
+		Files.writeString(file, "a\n");
+		SidecarCache<List<String>> cache = new SidecarCache<>(RecordCodec.listOf(new StringCodec()), SidecarCache.DEFAULT_SUFFIX, false);
+		cache.getSidecar(file).toFile().deleteOnExit();
+		cache.store(file, List.of("a"));
+		// trusted on size and modification time alone
+		FileTime modified = Files.getLastModifiedTime(file);
+		Files.writeString(file, "b\n");
+		Files.setLastModifiedTime(file, modified);
+		assertEquals(List.of("a"), cache.load(file).orElseThrow());
+		assertTrue(SidecarCache.forRecords(new StringCodec()).load(file).isEmpty());
+	}
+
+	@Test
+	public void testCorrupt() throws Exception {
+		Path file = Files.createTempFile("sidecar", ".txt");
+		file.toFile().deleteOnExit();
+		Files.writeString(file, "a\n");
+		SidecarCache<List<String>> cache = SidecarCache.forRecords(new StringCodec());
+		cache.getSidecar(file).toFile().deleteOnExit();
+		Files.write(cache.getSidecar(file), new byte[] {1, 2, 3});
+		assertTrue(cache.load(file).isEmpty());
+	}
+
+	private static class StringCodec implements RecordCodec<String> {
+		@Nonnull
+		@Override
+		public String getId() {
+			return "string/1";
+		}
+		@Override
+		public void write(@Nonnull String record, @Nonnull BinaryOutput out) {
+			out.writeString(record);
+		}
+		@Nonnull
+		@Override
+		public String read(@Nonnull BinaryInput in) {
+			//noinspection ConstantConditions
+			return in.readString();
+		}
+	}
+}
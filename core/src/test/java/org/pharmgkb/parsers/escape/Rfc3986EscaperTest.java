@@ -3,6 +3,8 @@
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Tests {@link Rfc3986Escaper}.
@@ -28,6 +30,17 @@ public void testEscapeInverse() {
 		assertEquals("%39abc%31", escaper.escape("9abc1"));
 	}
 
+	@Test
+	public void testNeedsEscaping() {
+		Rfc3986Escaper escaper = new Rfc3986Escaper.Builder().addChars('%', ';', '\u00e9').build();
+		assertFalse(escaper.needsEscaping("abc123"));
+		assertTrue(escaper.needsEscaping("abc;123"));
+		assertTrue(escaper.needsEscaping("caf\u00e9"));
+		Rfc3986Escaper inverse = new Rfc3986Escaper.Builder().inverseLegality().addChars('a', 'b').build();
+		assertFalse(inverse.needsEscaping("abba"));
+		assertTrue(inverse.needsEscaping("abc"));
+	}
+
 	@Test
 	public void testUnescape() {
 		Rfc3986Escaper escaper = new Rfc3986Escaper.Builder().addChars('%', ';', ':').build();
@@ -0,0 +1,109 @@
+package org.pharmgkb.parsers.scan;
+
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link LineScanner}.
+ * @author Douglas Myers-Turnbull
+ */
+public class LineScannerTest {
+
+	private static final String sf_text = "first line\n\nthird\r\nfourth line is longer than the others\nfifth\nsixth";
+	private static final List<String> sf_lines = Arrays.asList(
+			"first line", "", "third", "fourth line is longer than the others", "fifth", "sixth"
+	);
+
+	@Test
+	public void testPlain() throws Exception {
+		Path file = Files.createTempFile("scan", ".txt");
+		Files.write(file, sf_text.getBytes(StandardCharsets.UTF_8));
+		for (int segmentSize : new int[] {1, 3, 7, 11, 1000}) {
+			assertEquals(sf_lines, new LineScanner(segmentSize).scan(file, Lines::new).m_lines, "Segment size " + segmentSize);
+		}
+		Files.delete(file);
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		Path file = Files.createTempFile("scan", ".txt");
+		assertEquals(List.of(), new LineScanner().scan(file, Lines::new).m_lines);
+		Files.delete(file);
+	}
+
+	@Test
+	public void testGzip() throws Exception {
+		Path file = Files.createTempFile("scan", ".txt.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+			out.write(sf_text.getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals(sf_lines, new LineScanner(5).scan(file, Lines::new).m_lines);
+		Files.delete(file);
+	}
+
+	@Test
+	public void testBgzf() throws Exception {
+		Path file = Files.createTempFile("scan", ".txt.bgz");
+		byte[] text = sf_text.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < text.length; i += 9) {
+			writeBgzfBlock(Arrays.copyOfRange(text, i, Math.min(i + 9, text.length)), out);
+		}
+		writeBgzfBlock(new byte[0], out);
+		Files.write(file, out.toByteArray());
+		assertEquals(sf_lines, new LineScanner(1).scan(file, Lines::new).m_lines);
+		assertEquals(sf_lines, new LineScanner().scan(file, Lines::new).m_lines);
+		Files.delete(file);
+	}
+
+	private static void writeBgzfBlock(@Nonnull byte[] data, @Nonnull ByteArrayOutputStream out) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		deflater.setInput(data);
+		deflater.finish();
+		byte[] compressed = new byte[data.length + 64];
+		int n = deflater.deflate(compressed);
+		deflater.end();
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		ByteBuffer block = ByteBuffer.allocate(18 + n + 8).order(ByteOrder.LITTLE_ENDIAN);
+		block.put(new byte[] {0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0});
+		block.putShort((short) (18 + n + 8 - 1));
+		block.put(compressed, 0, n);
+		block.putInt((int) crc.getValue());
+		block.putInt(data.length);
+		out.writeBytes(block.array());
+	}
+
+	private static class Lines implements LineTally<Lines> {
+
+		private final List<String> m_lines = new ArrayList<>();
+
+		@Override
+		public void accept(@Nonnull ByteBuffer bytes, int start, int end) {
+			byte[] line = new byte[end - start];
+			bytes.get(start, line);
+			m_lines.add(new String(line, StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public void merge(@Nonnull Lines next) {
+			m_lines.addAll(next.m_lines);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.pharmgkb.parsers.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link BgzfInputStream}.
+ * @author Douglas Myers-Turnbull
+ */
+public class BgzfInputStreamTest {
+
+	@Test
+	public void testReadAndSeek() throws Exception {
+		byte[] data = new byte[150_000];
+		new Random(0).nextBytes(data);
+		Arrays.fill(data, 0, 50_000, (byte) 'A');
+		Path file = Files.createTempFile("bgzf", ".gz");
+		file.toFile().deleteOnExit();
+		long[] offsets = new long[3];
+		try (OutputStream out = Files.newOutputStream(file); BgzfOutputStream bgzf = new BgzfOutputStream(out)) {
+			bgzf.write(data, 0, 10);
+			offsets[0] = bgzf.getVirtualOffset();
+			bgzf.write(data, 10, 70_000);
+			offsets[1] = bgzf.getVirtualOffset();
+			bgzf.flush();
+			offsets[2] = bgzf.getVirtualOffset();
+			bgzf.write(data, 70_010, data.length - 70_010);
+		}
+		try (BgzfInputStream in = new BgzfInputStream(FileChannel.open(file))) {
+			assertArrayEquals(data, in.readAllBytes());
+			in.seek(offsets[1]);
+			assertEquals(data[70_010] & 0xff, in.read());
+			in.seek(offsets[0]);
+			assertEquals(offsets[0], in.getVirtualOffset());
+			assertArrayEquals(Arrays.copyOfRange(data, 10, 70_010), in.readNBytes(70_000));
+			assertEquals(offsets[2], in.getVirtualOffset());
+			in.seek(0);
+			assertEquals(data[0] & 0xff, in.read());
+		}
+	}
+
+	/**
+	 * Concatenated BGZF files have an empty EOF block between members.
+	 */
+	@Test
+	public void testEmptyBlockBetweenMembers() throws Exception {
+		byte[] data = new byte[1000];
+		new Random(1).nextBytes(data);
+		ByteArrayOutputStream first = new ByteArrayOutputStream();
+		try (BgzfOutputStream bgzf = new BgzfOutputStream(first)) {
+			bgzf.write(data, 0, 400);
+		}
+		ByteArrayOutputStream second = new ByteArrayOutputStream();
+		try (BgzfOutputStream bgzf = new BgzfOutputStream(second)) {
+			bgzf.write(data, 400, 600);
+		}
+		Path file = Files.createTempFile("bgzf", ".gz");
+		file.toFile().deleteOnExit();
+		Files.write(file, first.toByteArray());
+		Files.write(file, second.toByteArray(), StandardOpenOption.APPEND);
+		long secondAddress = first.size();
+		try (BgzfInputStream in = new BgzfInputStream(FileChannel.open(file))) {
+			assertArrayEquals(Arrays.copyOfRange(data, 0, 400), in.readNBytes(400));
+			assertEquals(secondAddress << 16, in.getVirtualOffset()); // past the EOF block
+			assertArrayEquals(Arrays.copyOfRange(data, 400, 410), in.readNBytes(10));
+			long offset = in.getVirtualOffset();
+			assertEquals(secondAddress << 16 | 10, offset);
+			assertArrayEquals(Arrays.copyOfRange(data, 410, 1000), in.readAllBytes());
+			in.seek(offset);
+			assertEquals(data[410] & 0xff, in.read());
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package org.pharmgkb.parsers.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link BgzfOutputStream}.
+ * @author Douglas Myers-Turnbull
+ */
+public class BgzfOutputStreamTest {
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		byte[] data = new byte[200_000]; // several blocks, some incompressible
+		new Random(0).nextBytes(data);
+		Arrays.fill(data, 0, 100_000, (byte) 'A');
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (BgzfOutputStream bgzf = new BgzfOutputStream(out)) {
+			bgzf.write(data, 0, 10);
+			bgzf.write(data, 10, data.length - 10);
+		}
+		byte[] compressed = out.toByteArray();
+		assertArrayEquals(BgzfOutputStream.EOF_BLOCK, Arrays.copyOfRange(compressed, compressed.length - 28, compressed.length));
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			assertArrayEquals(data, in.readAllBytes());
+		}
+	}
+
+	@Test
+	public void testVirtualOffset() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (BgzfOutputStream bgzf = new BgzfOutputStream(out)) {
+			bgzf.write(new byte[] {1, 2, 3});
+			assertEquals(3, bgzf.getVirtualOffset());
+			bgzf.flush();
+			assertEquals((long) out.size() << 16, bgzf.getVirtualOffset());
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package org.pharmgkb.parsers.utils;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.model.GeneralizedBigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link DecimalParser}.
+ * @author Douglas Myers-Turnbull
+ */
+public class DecimalParserTest {
+
+	@Test
+	public void testSameAsDouble() {
+		for (String s : new String[] {
+				"0", "-0", "29", "+29", "29.5", "0.001", ".5", "5.", "-12.25", "1e3", "1E-3", "2.5e+10", "000123.4500",
+				"0.1", "0.3", "123456789012345", "1234567890123456789", "0.12345678901234567", "1e23", "1e-30", "4.9e-324"
+		}) {
+			assertEquals(Double.parseDouble(s), DecimalParser.parseDouble(s), s);
+		}
+	}
+
+	@Test
+	public void testSpecialValues() {
+		assertTrue(Double.isNaN(DecimalParser.parseDouble("NaN")));
+		assertEquals(Double.POSITIVE_INFINITY, DecimalParser.parseDouble("Inf"));
+		assertEquals(Double.POSITIVE_INFINITY, DecimalParser.parseDouble("+Inf"));
+		assertEquals(Double.NEGATIVE_INFINITY, DecimalParser.parseDouble("-Inf"));
+	}
+
+	@Test
+	public void testRange() {
+		assertEquals(3.5, DecimalParser.parseDouble("a=3.5;b", 2, 5));
+	}
+
+	@Test
+	public void testInvalid() {
+		for (String s : new String[] {"", ".", "-", "1e", "1e+", "1.2.3", "Infinity", "0x10", "1f", " 1", "abc", "--1"}) {
+			assertThrows(NumberFormatException.class, () -> DecimalParser.parseDouble(s), s);
+			assertThrows(NumberFormatException.class, () -> new GeneralizedBigDecimal(s), s);
+		}
+	}
+}
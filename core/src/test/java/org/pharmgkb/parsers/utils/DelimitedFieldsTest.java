@@ -0,0 +1,60 @@
+package org.pharmgkb.parsers.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link DelimitedFields}.
+ * @author Douglas Myers-Turnbull
+ */
+public class DelimitedFieldsTest {
+
+	@Test
+	public void testReset() {
+		DelimitedFields fields = new DelimitedFields('\t');
+		fields.reset("a\t\t.\t123");
+		assertEquals(4, fields.size());
+		assertEquals("a", fields.get(0));
+		assertEquals("", fields.get(1));
+		assertTrue(fields.isDot(2));
+		assertFalse(fields.isDot(0));
+		assertTrue(fields.fieldEquals(3, "123"));
+		assertFalse(fields.fieldEquals(3, "12"));
+		assertEquals(123, fields.parseInt(3));
+		assertThrows(IndexOutOfBoundsException.class, () -> fields.get(4));
+		fields.reset("x");
+		assertEquals(1, fields.size());
+		assertEquals("x", fields.get(0));
+	}
+
+	@Test
+	public void testManyFields() {
+		DelimitedFields fields = new DelimitedFields(',');
+		fields.reset("0,1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18,19");
+		assertEquals(20, fields.size());
+		assertEquals(19, fields.parseLong(19));
+	}
+
+	@Test
+	public void testLimit() {
+		DelimitedFields fields = new DelimitedFields('\t');
+		fields.reset("a\tb\tc\td", 2);
+		assertEquals(2, fields.size());
+		assertEquals("b", fields.get(1));
+	}
+
+	@Test
+	public void testParseLong() {
+		assertEquals(-42, DelimitedFields.parseLong("x-42", 1, 4));
+		assertEquals(Long.MAX_VALUE, DelimitedFields.parseLong(String.valueOf(Long.MAX_VALUE), 0, 19));
+		assertEquals(Long.MIN_VALUE, DelimitedFields.parseLong(String.valueOf(Long.MIN_VALUE), 0, 20));
+		assertThrows(NumberFormatException.class, () -> DelimitedFields.parseLong("9223372036854775808", 0, 19));
+		assertThrows(NumberFormatException.class, () -> DelimitedFields.parseLong("12a", 0, 3));
+		assertThrows(NumberFormatException.class, () -> DelimitedFields.parseLong("-", 0, 1));
+		assertThrows(NumberFormatException.class, () -> DelimitedFields.parseLong("", 0, 0));
+	}
+}
@@ -0,0 +1,47 @@
+package org.pharmgkb.parsers.fasta;
+
+import org.pharmgkb.parsers.cache.BinaryInput;
+import org.pharmgkb.parsers.cache.BinaryOutput;
+import org.pharmgkb.parsers.cache.RecordCodec;
+import org.pharmgkb.parsers.fasta.model.FastaSequence;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Binary form of a {@link FastaSequence}, for {@link org.pharmgkb.parsers.cache.SidecarCache}.
+ * Example:
+ * <code>
+ *     FastaSequenceParser parser = new FastaSequenceParser(SidecarCache.forRecords(new FastaSequenceCodec()));
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class FastaSequenceCodec implements RecordCodec<FastaSequence> {
+
+	@Nonnull
+	@Override
+	public String getId() {
+		return "fasta-sequence/1";
+	}
+
+	@Override
+	public void write(@Nonnull FastaSequence sequence, @Nonnull BinaryOutput out) {
+		out.writeString(sequence.getHeader());
+		out.writeString(sequence.getSequence());
+	}
+
+	@Nonnull
+	@Override
+	public FastaSequence read(@Nonnull BinaryInput in) {
+		//noinspection ConstantConditions
+		return new FastaSequence(in.readString(), in.readString());
+	}
+
+	@Override
+	public String toString() {
+		return "FastaSequenceCodec{" +
+				"id=" + getId() +
+				'}';
+	}
+}
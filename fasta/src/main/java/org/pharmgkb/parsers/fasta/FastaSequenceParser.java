@@ -3,6 +3,7 @@
 import com.google.common.base.Preconditions;
 import org.pharmgkb.parsers.BadDataFormatException;
 import org.pharmgkb.parsers.MultilineParser;
+import org.pharmgkb.parsers.cache.SidecarCache;
 import org.pharmgkb.parsers.fasta.model.FastaSequence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +12,8 @@
 import javax.annotation.Nonnull;
 import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
@@ -53,6 +56,20 @@ public class FastaSequenceParser implements MultilineParser<FastaSequence> {
 
 	private AtomicReference<String> m_currentHeader = new AtomicReference<>(null);
 
+	private final SidecarCache<List<FastaSequence>> m_sidecarCache;
+
+	public FastaSequenceParser() {
+		m_sidecarCache = null;
+	}
+
+	/**
+	 * @param sidecarCache Normally {@code SidecarCache.forRecords(new FastaSequenceCodec())}
+	 */
+	public FastaSequenceParser(@Nonnull SidecarCache<List<FastaSequence>> sidecarCache) {
+		Preconditions.checkNotNull(sidecarCache, "Sidecar cache cannot be null");
+		m_sidecarCache = sidecarCache;
+	}
+
 	@Nonnull
 	@Override
 	public Stream<FastaSequence> parseAll(@Nonnull Stream<String> stream) throws UncheckedIOException, BadDataFormatException {
@@ -89,6 +106,12 @@ public void sanityCheckFinished() {
 		}
 	}
 
+	@Nonnull
+	@Override
+	public Optional<SidecarCache<List<FastaSequence>>> getSidecarCache() {
+		return Optional.ofNullable(m_sidecarCache);
+	}
+
 	@Nonnegative
 	@Override
 	public long nLinesProcessed() {
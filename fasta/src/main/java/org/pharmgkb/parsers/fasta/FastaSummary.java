@@ -0,0 +1,115 @@
+package org.pharmgkb.parsers.fasta;
+
+import org.pharmgkb.parsers.scan.ContigCounts;
+import org.pharmgkb.parsers.scan.LineScanner;
+import org.pharmgkb.parsers.scan.LineTally;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Counts of the records, bases, and bases per record in a FASTA file, read without building sequences.
+ * As with {@link MultilineFastaSequenceParser}, a record's name is its whole header line without the {@code >}.
+ * Lines beginning with {@code ;} are counted as comments, and blank lines are ignored.
+ * Plain and BGZF-compressed files are scanned in parallel; see {@link LineScanner}.
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class FastaSummary implements LineTally<FastaSummary> {
+
+	private final ContigCounts m_basesPerRecord = new ContigCounts();
+	private long m_nRecords = 0;
+	private long m_nBases = 0;
+	private long m_nCommentLines = 0;
+
+	// bases before the first header, which belong to a record in an earlier part of the file
+	private long m_leadingBases = 0;
+	private String m_currentRecord = null;
+
+	@Nonnull
+	public static FastaSummary of(@Nonnull Path file) throws UncheckedIOException {
+		return new LineScanner().scan(file, FastaSummary::new);
+	}
+
+	@Override
+	public void accept(@Nonnull ByteBuffer bytes, @Nonnegative int start, @Nonnegative int end) {
+		if (start == end) {
+			return;
+		}
+		byte first = bytes.get(start);
+		if (first == '>') {
+			byte[] name = new byte[end - start - 1];
+			bytes.get(start + 1, name);
+			m_currentRecord = new String(name, StandardCharsets.UTF_8);
+			m_basesPerRecord.add(m_currentRecord, 0);
+			m_nRecords++;
+		} else if (first == ';') {
+			m_nCommentLines++;
+		} else {
+			long n = end - start;
+			m_nBases += n;
+			if (m_currentRecord == null) {
+				m_leadingBases += n;
+			} else {
+				m_basesPerRecord.add(m_currentRecord, n);
+			}
+		}
+	}
+
+	@Override
+	public void merge(@Nonnull FastaSummary next) {
+		if (m_currentRecord == null) {
+			m_leadingBases += next.m_leadingBases;
+		} else {
+			m_basesPerRecord.add(m_currentRecord, next.m_leadingBases);
+		}
+		m_basesPerRecord.merge(next.m_basesPerRecord);
+		m_nRecords += next.m_nRecords;
+		m_nBases += next.m_nBases;
+		m_nCommentLines += next.m_nCommentLines;
+		if (next.m_currentRecord != null) {
+			m_currentRecord = next.m_currentRecord;
+		}
+	}
+
+	@Nonnegative
+	public long getNRecords() {
+		return m_nRecords;
+	}
+
+	/**
+	 * @return The number of sequence characters, including any that precede the first header
+	 */
+	@Nonnegative
+	public long getNBases() {
+		return m_nBases;
+	}
+
+	@Nonnegative
+	public long getNCommentLines() {
+		return m_nCommentLines;
+	}
+
+	/**
+	 * @return The number of bases per record name, in file order; records with the same name are summed
+	 */
+	@Nonnull
+	public Map<String, Long> getBasesPerRecord() {
+		return m_basesPerRecord.asMap();
+	}
+
+	@Override
+	public String toString() {
+		return "FastaSummary{" +
+				"nRecords=" + m_nRecords +
+				", nBases=" + m_nBases +
+				", nCommentLines=" + m_nCommentLines +
+				'}';
+	}
+}
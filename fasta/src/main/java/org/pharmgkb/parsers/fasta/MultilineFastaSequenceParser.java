@@ -4,6 +4,7 @@
 import org.pharmgkb.parsers.BadDataFormatException;
 import org.pharmgkb.parsers.MultilineParser;
 import org.pharmgkb.parsers.ObjectBuilder;
+import org.pharmgkb.parsers.cache.SidecarCache;
 import org.pharmgkb.parsers.fasta.model.FastaSequence;
 
 import javax.annotation.Nonnull;
@@ -11,6 +12,8 @@
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.File;
 import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Stream;
@@ -25,6 +28,7 @@ public class MultilineFastaSequenceParser implements MultilineParser<FastaSequen
 	private final boolean m_allowComments;
 	private final boolean m_allowBlankLines;
 	private final String m_terminationString;
+	private final SidecarCache<List<FastaSequence>> m_sidecarCache;
 
 	private String currentHeader = null;
 	private String currentSequence = null;
@@ -37,6 +41,7 @@ public MultilineFastaSequenceParser(@Nonnull Builder builder) {
 		m_allowComments = builder.m_allowComments;
 		m_allowBlankLines = builder.m_allowBlankLines;
 		m_terminationString = builder.m_terminationString;
+		m_sidecarCache = builder.m_sidecarCache;
 	}
 
 	@Nonnull
@@ -58,6 +63,17 @@ public Stream<FastaSequence> parseAll(@Nonnull Stream<String> stream) throws Unc
 		return appendTermination(stream).flatMap(this);
 	}
 
+	@Override
+	public void start() {
+		m_hasTerm = true;
+	}
+
+	@Nonnull
+	@Override
+	public Stream<FastaSequence> finish() {
+		return apply(m_terminationString);
+	}
+
 	/**
 	 * <strong>Calling {@link #parseAll(Stream)} instead is strongly recommended.</strong>
 	 */
@@ -115,6 +131,12 @@ private FastaSequence readNext(String line) {
 		return null;
 	}
 
+	@Nonnull
+	@Override
+	public Optional<SidecarCache<List<FastaSequence>>> getSidecarCache() {
+		return Optional.ofNullable(m_sidecarCache);
+	}
+
 	@Override
 	public long nLinesProcessed() {
 		return m_nLines.get();
@@ -126,6 +148,7 @@ public static class Builder implements ObjectBuilder<MultilineFastaSequenceParse
 		private boolean m_allowComments = false;
 		private boolean m_allowBlankLines = false;
 		private String m_terminationString = String.valueOf((char)0x00);
+		private SidecarCache<List<FastaSequence>> m_sidecarCache = null;
 
 		/**
 		 * Skips lines that start with ";". Otherwise, those lines are treated as part of the sequence.
@@ -168,6 +191,17 @@ public Builder setTermination(@Nonnull String terminationString) {
 			return this;
 		}
 
+		/**
+		 * Makes {@link #collectAll(java.nio.file.Path)} read from and write to a sidecar file.
+		 * @param sidecarCache Normally {@code SidecarCache.forRecords(new FastaSequenceCodec())}
+		 */
+		@Nonnull
+		public Builder setSidecarCache(@Nonnull SidecarCache<List<FastaSequence>> sidecarCache) {
+			Preconditions.checkNotNull(sidecarCache, "Sidecar cache cannot be null");
+			m_sidecarCache = sidecarCache;
+			return this;
+		}
+
 		@Nonnull
 		@Override
 		public MultilineFastaSequenceParser build() {
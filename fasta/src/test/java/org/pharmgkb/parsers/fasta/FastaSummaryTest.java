@@ -0,0 +1,34 @@
+package org.pharmgkb.parsers.fasta;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.fasta.model.FastaSequence;
+import org.pharmgkb.parsers.scan.LineScanner;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link FastaSummary}.
+ * @author Douglas Myers-Turnbull
+ */
+public class FastaSummaryTest {
+
+	@Test
+	public void testMatchesParser() throws Exception {
+		Path file = Paths.get(getClass().getResource("test1.fasta").toURI());
+		List<FastaSequence> sequences = new MultilineFastaSequenceParser.Builder().build().collectAll(file);
+		Map<String, Long> expected = new LinkedHashMap<>();
+		sequences.forEach(s -> expected.put(s.getHeader(), (long) s.getSequence().length()));
+		for (int segmentSize : new int[] {3, 10, 1000}) {
+			FastaSummary summary = new LineScanner(segmentSize).scan(file, FastaSummary::new);
+			assertEquals(sequences.size(), summary.getNRecords());
+			assertEquals(expected, summary.getBasesPerRecord());
+			assertEquals(expected.values().stream().mapToLong(Long::longValue).sum(), summary.getNBases());
+		}
+	}
+}
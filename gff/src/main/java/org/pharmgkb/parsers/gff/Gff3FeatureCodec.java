@@ -0,0 +1,91 @@
+package org.pharmgkb.parsers.gff;
+
+import org.pharmgkb.parsers.cache.BinaryInput;
+import org.pharmgkb.parsers.cache.BinaryOutput;
+import org.pharmgkb.parsers.cache.RecordCodec;
+import org.pharmgkb.parsers.gff.model.CdsPhase;
+import org.pharmgkb.parsers.gff.model.Gff3Feature;
+import org.pharmgkb.parsers.gff.model.GffStrand;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary form of a {@link Gff3Feature}, for {@link org.pharmgkb.parsers.cache.SidecarCache}.
+ * Attribute values are stored already unescaped.
+ * Example:
+ * <code>
+ *     Gff3Parser parser = new Gff3Parser(SidecarCache.forRecords(new Gff3FeatureCodec()));
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class Gff3FeatureCodec implements RecordCodec<Gff3Feature> {
+
+	private static final GffStrand[] sf_strands = GffStrand.values();
+	private static final CdsPhase[] sf_phases = CdsPhase.values();
+
+	@Nonnull
+	@Override
+	public String getId() {
+		return "gff3-feature/1";
+	}
+
+	@Override
+	public void write(@Nonnull Gff3Feature feature, @Nonnull BinaryOutput out) {
+		out.writeString(feature.getCoordinateSystemName());
+		out.writeString(feature.getType());
+		out.writeLong(feature.getStart());
+		out.writeLong(feature.getEnd());
+		out.writeString(feature.getSource().orElse(null));
+		out.writeString(feature.getScore().map(BigDecimal::toString).orElse(null));
+		out.writeEnum(feature.getStrand());
+		out.writeEnum(feature.getPhase().orElse(null));
+		out.writeInt(feature.getAttributes().size());
+		for (Map.Entry<String, List<String>> entry : feature.getAttributes().entrySet()) {
+			out.writeString(entry.getKey());
+			out.writeInt(entry.getValue().size());
+			for (String value : entry.getValue()) {
+				out.writeString(value);
+			}
+		}
+	}
+
+	@Nonnull
+	@Override
+	public Gff3Feature read(@Nonnull BinaryInput in) {
+		//noinspection ConstantConditions
+		Gff3Feature.Builder builder = new Gff3Feature.Builder(in.readString(), in.readString(), in.readLong(), in.readLong());
+		builder.setSource(in.readString());
+		String score = in.readString();
+		if (score != null) {
+			builder.setScore(new BigDecimal(score));
+		}
+		//noinspection ConstantConditions
+		builder.setStrand(in.readEnum(sf_strands));
+		builder.setPhase(in.readEnum(sf_phases));
+		int nAttributes = in.readInt();
+		for (int i = 0; i < nAttributes; i++) {
+			String key = in.readString();
+			int nValues = in.readInt();
+			List<String> values = new ArrayList<>(nValues);
+			for (int j = 0; j < nValues; j++) {
+				values.add(in.readString());
+			}
+			//noinspection ConstantConditions
+			builder.putAttributes(key, values);
+		}
+		return builder.build();
+	}
+
+	@Override
+	public String toString() {
+		return "Gff3FeatureCodec{" +
+				"id=" + getId() +
+				'}';
+	}
+}
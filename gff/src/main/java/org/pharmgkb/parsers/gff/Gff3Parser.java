@@ -1,7 +1,11 @@
 package org.pharmgkb.parsers.gff;
 
+import com.google.common.base.Preconditions;
 import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ErrorPolicy;
 import org.pharmgkb.parsers.LineParser;
+import org.pharmgkb.parsers.ReusingLineParser;
+import org.pharmgkb.parsers.cache.SidecarCache;
 import org.pharmgkb.parsers.gff.model.CdsPhase;
 import org.pharmgkb.parsers.gff.model.Gff3Feature;
 import org.pharmgkb.parsers.gff.model.GffStrand;
@@ -60,7 +64,7 @@
  * @author Douglas Myers-Turnbull
  */
 @ThreadSafe
-public class Gff3Parser implements LineParser<Gff3Feature> {
+public class Gff3Parser implements LineParser<Gff3Feature>, ReusingLineParser<MutableGff3Feature> {
 
 	private static final long sf_logEvery = 10000;
 	private static final Pattern sf_comma = Pattern.compile(",");
@@ -72,19 +76,63 @@ public class Gff3Parser implements LineParser<Gff3Feature> {
 
 	private AtomicLong m_lineNumber = new AtomicLong(0L);
 
+	private final SidecarCache<List<Gff3Feature>> m_sidecarCache;
+
+	private final ErrorPolicy m_errorPolicy;
+
+	public Gff3Parser() {
+		m_sidecarCache = null;
+		m_errorPolicy = ErrorPolicy.failFast();
+	}
+
+	/**
+	 * @param sidecarCache Normally {@code SidecarCache.forRecords(new Gff3FeatureCodec())}
+	 */
+	public Gff3Parser(@Nonnull SidecarCache<List<Gff3Feature>> sidecarCache) {
+		Preconditions.checkNotNull(sidecarCache, "Sidecar cache cannot be null");
+		m_sidecarCache = sidecarCache;
+		m_errorPolicy = ErrorPolicy.failFast();
+	}
+
+	public Gff3Parser(@Nonnull ErrorPolicy errorPolicy) {
+		Preconditions.checkNotNull(errorPolicy, "Error policy cannot be null");
+		m_sidecarCache = null;
+		m_errorPolicy = errorPolicy;
+	}
+
 	@Nonnull
 	@Override
 	public Stream<Gff3Feature> parseAll(@Nonnull Stream<String> stream) throws UncheckedIOException, BadDataFormatException {
-		return stream.filter(s -> !s.startsWith("#")).map(this);
+		return m_errorPolicy.map(stream.filter(s -> !s.startsWith("#")), this);
 	}
 
 	@Override
 	@Nonnull
 	public Gff3Feature apply(@Nonnull String line) throws BadDataFormatException {
+		return parse(line, nextLineNumber());
+	}
+
+	@Nonnull
+	@Override
+	public MutableGff3Feature newRecord() {
+		return new MutableGff3Feature(this);
+	}
+
+	@Override
+	public void parseInto(@Nonnull String line, @Nonnull MutableGff3Feature record) throws BadDataFormatException {
+		record.set(line, nextLineNumber());
+	}
 
-		if (m_lineNumber.incrementAndGet() % sf_logEvery == 0) {
-			sf_logger.debug("Reading line #{}", m_lineNumber);
+	private long nextLineNumber() {
+		long lineNumber = m_lineNumber.incrementAndGet();
+		if (lineNumber % sf_logEvery == 0) {
+			sf_logger.debug("Reading line #{}", lineNumber);
 		}
+		return lineNumber;
+	}
+
+	@Nonnull
+	Gff3Feature parse(@Nonnull String line, long lineNumber) throws BadDataFormatException {
 
 		final String[] parts = sf_tab.split(line);
 		try {
@@ -132,16 +180,12 @@ public Gff3Feature apply(@Nonnull String line) throws BadDataFormatException {
 
 			return builder.build();
 
-		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
-			throw new BadDataFormatException(
-					"Bad data format on line #" + m_lineNumber.get()
-					+ "; line is [[[" + line + "]]]",
-					e
-			);
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | BadDataFormatException e) {
+			throw m_errorPolicy.badLine(lineNumber, line, e);
 		} catch (RuntimeException e) {
 			// this is a little weird, but it's helpful
 			// not that we're not throwing a BadDataFormatException because we don't expect AIOOB, e.g.
-			e.addSuppressed(new RuntimeException("Unexpectedly failed to parse line " + m_lineNumber));
+			e.addSuppressed(new RuntimeException("Unexpectedly failed to parse line " + lineNumber));
 			throw e;
 		}
 	}
@@ -167,6 +211,18 @@ private static Map<String, List<String>> stringToMap(@Nonnull String string) {
 		return map;
 	}
 
+	@Nonnull
+	@Override
+	public ErrorPolicy getErrorPolicy() {
+		return m_errorPolicy;
+	}
+
+	@Nonnull
+	@Override
+	public Optional<SidecarCache<List<Gff3Feature>>> getSidecarCache() {
+		return Optional.ofNullable(m_sidecarCache);
+	}
+
 	@Nonnegative
 	@Override
 	public long nLinesProcessed() {
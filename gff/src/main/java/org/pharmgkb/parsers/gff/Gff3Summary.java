@@ -0,0 +1,32 @@
+package org.pharmgkb.parsers.gff;
+
+import org.pharmgkb.parsers.scan.LineScanner;
+import org.pharmgkb.parsers.scan.TabularSummary;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Counts of the features (data lines), comment and directive lines, and features per sequence ID in a GFF3 file,
+ * read without parsing anything beyond the first column.
+ * Plain and BGZF-compressed files are scanned in parallel; see {@link LineScanner}.
+ * Like {@link Gff3Parser}, this does not understand the {@code ##FASTA} directive.
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class Gff3Summary extends TabularSummary<Gff3Summary> {
+
+	@Nonnull
+	public static Gff3Summary of(@Nonnull Path file) throws UncheckedIOException {
+		return new LineScanner().scan(file, Gff3Summary::new);
+	}
+
+	@Override
+	protected boolean isComment(@Nonnull ByteBuffer bytes, @Nonnegative int start, @Nonnegative int end) {
+		return bytes.get(start) == '#';
+	}
+}
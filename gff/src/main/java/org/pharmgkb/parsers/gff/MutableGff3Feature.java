@@ -0,0 +1,222 @@
+package org.pharmgkb.parsers.gff;
+
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ReusableRecord;
+import org.pharmgkb.parsers.gff.model.CdsPhase;
+import org.pharmgkb.parsers.gff.model.Gff3Feature;
+import org.pharmgkb.parsers.gff.model.GffStrand;
+import org.pharmgkb.parsers.gff.utils.Gff3Escapers;
+import org.pharmgkb.parsers.utils.DelimitedFields;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A reusable view of one GFF3 line, filled by {@link Gff3Parser#forEach}.
+ * The coordinate system ID, start, and end are read when the line is set; the ID String is reused from the previous
+ * line when it is the same. Other fields are read only when asked for, and only methods that return a String,
+ * list, or {@link Optional} allocate.
+ * <strong>As with {@link Gff3Feature}, coordinates are 0-based.</strong>
+ * @author Douglas Myers-Turnbull
+ * @see Gff3Feature
+ */
+@NotThreadSafe
+public class MutableGff3Feature implements ReusableRecord<Gff3Feature> {
+
+	private final Gff3Parser m_parser;
+	private final DelimitedFields m_fields = new DelimitedFields('\t');
+
+	private String m_line = "";
+	private long m_lineNumber = 0;
+	private String m_rawCoordinateSystemId = "";
+	private String m_coordinateSystemId = "";
+	private long m_start;
+	private long m_end;
+
+	MutableGff3Feature(@Nonnull Gff3Parser parser) {
+		m_parser = parser;
+	}
+
+	void set(@Nonnull String line, long lineNumber) throws BadDataFormatException {
+		m_line = line;
+		m_lineNumber = lineNumber;
+		m_fields.reset(line);
+		try {
+			if (m_fields.size() != 9) {
+				throw new IllegalArgumentException("There are " + m_fields.size() + " fields instead of 9");
+			}
+			if (m_fields.length(0) != m_rawCoordinateSystemId.length()
+					|| !line.regionMatches(0, m_rawCoordinateSystemId, 0, m_rawCoordinateSystemId.length())) {
+				m_rawCoordinateSystemId = m_fields.get(0);
+				m_coordinateSystemId = Gff3Escapers.COORDINATE_SYSTEM_IDS.unescape(m_rawCoordinateSystemId);
+			}
+			m_start = m_fields.parseLong(3) - 1;
+			m_end = m_fields.parseLong(4) - 1;
+		} catch (IllegalArgumentException e) {
+			throw m_parser.getErrorPolicy().badLine(lineNumber, line, e);
+		}
+	}
+
+	@Nonnull
+	public String getCoordinateSystemName() {
+		return m_coordinateSystemId;
+	}
+
+	@Nonnegative
+	public long getStart() {
+		return m_start;
+	}
+
+	@Nonnegative
+	public long getEnd() {
+		return m_end;
+	}
+
+	@Nonnull
+	public String getType() {
+		return Gff3Escapers.FIELDS.unescape(m_fields.get(2));
+	}
+
+	/**
+	 * Compares without allocating, so {@code type} must be written as it is in the file (escaped).
+	 */
+	public boolean typeEquals(@Nonnull String type) {
+		return m_fields.fieldEquals(2, type);
+	}
+
+	@Nonnull
+	public Optional<String> getSource() {
+		return m_fields.isDot(1)? Optional.empty() : Optional.of(Gff3Escapers.FIELDS.unescape(m_fields.get(1)));
+	}
+
+	public boolean hasScore() {
+		return !m_fields.isDot(5);
+	}
+
+	/**
+	 * @throws IllegalStateException If {@link #hasScore()} is false
+	 * @throws NumberFormatException If the score is not a number
+	 */
+	public double getScore() {
+		if (!hasScore()) {
+			throw new IllegalStateException("Line #" + m_lineNumber + " has no score");
+		}
+		return Double.parseDouble(m_fields.get(5));
+	}
+
+	/**
+	 * @throws IllegalArgumentException If the strand is not one of {@code + - . ?}
+	 */
+	@Nonnull
+	public GffStrand getStrand() {
+		char symbol = m_fields.length(6) == 1? m_line.charAt(m_fields.start(6)) : 0;
+		return switch (symbol) {
+			case '+' -> GffStrand.PLUS;
+			case '-' -> GffStrand.MINUS;
+			case '.' -> GffStrand.UNSTRANDED;
+			case '?' -> GffStrand.UNKNOWN;
+			default -> throw new IllegalArgumentException("Strand " + m_fields.get(6) + " is unrecognized");
+		};
+	}
+
+	/**
+	 * @throws IllegalArgumentException If the phase is not one of {@code . 0 1 2}
+	 */
+	@Nonnull
+	public Optional<CdsPhase> getPhase() {
+		char symbol = m_fields.length(7) == 1? m_line.charAt(m_fields.start(7)) : 0;
+		return switch (symbol) {
+			case '.' -> Optional.empty();
+			case '0' -> Optional.of(CdsPhase.ZERO);
+			case '1' -> Optional.of(CdsPhase.ONE);
+			case '2' -> Optional.of(CdsPhase.TWO);
+			default -> throw new IllegalArgumentException("Phase " + m_fields.get(7) + " is unrecognized");
+		};
+	}
+
+	/**
+	 * Looks for the key without allocating.
+	 * @param key As written in the file (escaped)
+	 */
+	public boolean hasAttribute(@Nonnull String key) {
+		return findAttribute(key) > -1;
+	}
+
+	/**
+	 * @param key As written in the file (escaped)
+	 * @return The unescaped values, or an empty list if the key is absent
+	 */
+	@Nonnull
+	public List<String> getAttributes(@Nonnull String key) {
+		int start = findAttribute(key);
+		if (start < 0) {
+			return Collections.emptyList();
+		}
+		int end = m_line.indexOf(';', start);
+		if (end < 0 || end > m_fields.end(8)) {
+			end = m_fields.end(8);
+		}
+		List<String> values = new ArrayList<>(2);
+		int valueStart = start;
+		for (int i = start; i <= end; i++) {
+			if (i == end || m_line.charAt(i) == ',') {
+				values.add(Gff3Escapers.FIELDS.unescape(m_line.substring(valueStart, i)));
+				valueStart = i + 1;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @return The index in the line of the first character of the value, or -1
+	 */
+	private int findAttribute(@Nonnull String key) {
+		int start = m_fields.start(8);
+		int end = m_fields.end(8);
+		int i = start;
+		while (i < end) {
+			int keyEnd = i + key.length();
+			if (keyEnd < end && m_line.charAt(keyEnd) == '=' && m_line.regionMatches(i, key, 0, key.length())) {
+				return keyEnd + 1;
+			}
+			int next = m_line.indexOf(';', i);
+			if (next < 0 || next >= end) {
+				return -1;
+			}
+			i = next + 1;
+		}
+		return -1;
+	}
+
+	@Nonnull
+	@Override
+	public String getLine() {
+		return m_line;
+	}
+
+	@Override
+	public long getLineNumber() {
+		return m_lineNumber;
+	}
+
+	@Nonnull
+	@Override
+	public Gff3Feature freeze() throws BadDataFormatException {
+		return m_parser.parse(m_line, m_lineNumber);
+	}
+
+	@Override
+	public String toString() {
+		return "MutableGff3Feature{" +
+				"lineNumber=" + m_lineNumber +
+				", coordinateSystemId=" + m_coordinateSystemId +
+				", start=" + m_start +
+				", end=" + m_end +
+				'}';
+	}
+}
@@ -2,6 +2,7 @@
 
 import org.junit.jupiter.api.Test;
 import org.pharmgkb.parsers.gff.Gff3Parser;
+import org.pharmgkb.parsers.gff.MutableGff3Feature;
 import org.pharmgkb.parsers.gff.model.CdsPhase;
 import org.pharmgkb.parsers.gff.model.Gff3Feature;
 import org.pharmgkb.parsers.gff.model.GffStrand;
@@ -12,6 +13,8 @@
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Test {@link Gff3Parser}.
@@ -30,6 +33,40 @@ public void testSeveralLines() throws Exception {
 		assertEquals("d", features.get(3).getCoordinateSystemName());
 	}
 
+	@Test
+	public void testForEach() throws Exception {
+		Path file = Paths.get(getClass().getResource("test.gff3").toURI());
+		List<Gff3Feature> expected = new Gff3Parser().collectAll(file);
+		List<Gff3Feature> frozen = new ArrayList<>();
+		List<List<String>> ids = new ArrayList<>();
+		new Gff3Parser().forEach(file, feature -> {
+			ids.add(feature.getAttributes("ID"));
+			frozen.add(feature.freeze());
+		});
+		assertEquals(expected, frozen);
+		assertEquals(Arrays.asList(
+				Collections.singletonList("id1"), Collections.singletonList("id2"),
+				Collections.singletonList("id3"), Collections.emptyList()
+		), ids);
+	}
+
+	@Test
+	public void testMutableFields() throws Exception {
+		Gff3Parser parser = new Gff3Parser();
+		MutableGff3Feature feature = parser.newRecord();
+		parser.parseInto("this%23has	the-source	the-type	1	11	5.3e-11	+	1	AAA=1;BBB=1,2", feature);
+		assertEquals("this#has", feature.getCoordinateSystemName());
+		assertEquals(0, feature.getStart());
+		assertEquals(10, feature.getEnd());
+		assertTrue(feature.typeEquals("the-type"));
+		assertEquals(Optional.of("the-source"), feature.getSource());
+		assertEquals(5.3e-11, feature.getScore(), 0);
+		assertEquals(GffStrand.PLUS, feature.getStrand());
+		assertEquals(Optional.of(CdsPhase.ONE), feature.getPhase());
+		assertEquals(Arrays.asList("1", "2"), feature.getAttributes("BBB"));
+		assertFalse(feature.hasAttribute("AA"));
+	}
+
 	@Test
 	public void testCorrectlySet() throws Exception {
 		Gff3Feature feature = new Gff3Parser().apply("the-seq-id\tthe-source\tthe-type\t1\t11\t5.3e-11\t+\t1\t.");
@@ -0,0 +1,448 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import org.pharmgkb.parsers.vcf.model.VcfFormatSchema;
+import org.pharmgkb.parsers.vcf.model.VcfSample;
+import org.pharmgkb.parsers.vcf.utils.VcfEscapers;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The typed values of BCF2: a descriptor byte holding a type and a count, followed by the little-endian values.
+ * Integers are written with the narrowest of int8, int16, and int32 that holds them. Each type reserves its two most
+ * negative values for "missing" and "end of vector", which pads vectors shorter than the longest in a FORMAT field.
+ * {@link Buffer} writes values; the static methods read them from a little-endian {@link ByteBuffer}.
+ * @author Douglas Myers-Turnbull
+ */
+final class BcfCodec {
+
+	static final int MISSING = 0;
+	static final int INT8 = 1;
+	static final int INT16 = 2;
+	static final int INT32 = 3;
+	static final int FLOAT = 5;
+	static final int CHAR = 7;
+
+	static final int FLOAT_MISSING = 0x7F800001;
+	static final int FLOAT_END = 0x7F800002;
+
+	private BcfCodec() {}
+
+	/**
+	 * @return The narrowest integer type that holds every value from {@code min} to {@code max} without colliding with its sentinels
+	 */
+	static int intType(int min, int max) {
+		if (min >= -120 && max <= Byte.MAX_VALUE) {
+			return INT8;
+		}
+		if (min >= -32760 && max <= Short.MAX_VALUE) {
+			return INT16;
+		}
+		return INT32;
+	}
+
+	@Nonnegative
+	static int size(int type) {
+		switch (type) {
+			case INT8: case CHAR: return 1;
+			case INT16: return 2;
+			case INT32: case FLOAT: return 4;
+			case MISSING: return 0;
+			default: throw new IllegalArgumentException("Unknown BCF type " + type);
+		}
+	}
+
+	static int missing(int type) {
+		switch (type) {
+			case INT8: return Byte.MIN_VALUE;
+			case INT16: return Short.MIN_VALUE;
+			case FLOAT: return FLOAT_MISSING;
+			default: return Integer.MIN_VALUE;
+		}
+	}
+
+	static int end(int type) {
+		switch (type) {
+			case INT8: return Byte.MIN_VALUE + 1;
+			case INT16: return Short.MIN_VALUE + 1;
+			case FLOAT: return FLOAT_END;
+			default: return Integer.MIN_VALUE + 1;
+		}
+	}
+
+	/**
+	 * Reads an integer or the bits of a float, sign-extending narrower integers.
+	 */
+	static int read(@Nonnull ByteBuffer buffer, int type) {
+		switch (type) {
+			case INT8: case CHAR: return buffer.get();
+			case INT16: return buffer.getShort();
+			case INT32: case FLOAT: return buffer.getInt();
+			default: throw new IllegalArgumentException("BCF type " + type + " is not a scalar");
+		}
+	}
+
+	/**
+	 * Reads a descriptor, and the count that follows if it overflowed.
+	 * @return The type in the low 4 bits and the count above them
+	 */
+	static long readDescriptor(@Nonnull ByteBuffer buffer) {
+		int descriptor = buffer.get() & 0xff;
+		int type = descriptor & 0xf;
+		long count = descriptor >>> 4;
+		if (count == 15) {
+			count = readTypedInt(buffer);
+		}
+		return count << 4 | type;
+	}
+
+	static int readTypedInt(@Nonnull ByteBuffer buffer) {
+		long descriptor = readDescriptor(buffer);
+		if (descriptor >>> 4 != 1) {
+			throw new IllegalArgumentException("Expected a single integer but found " + (descriptor >>> 4) + " values");
+		}
+		return read(buffer, (int) descriptor & 0xf);
+	}
+
+	/**
+	 * Reads a typed string, stopping at the first NUL.
+	 */
+	@Nonnull
+	static String readTypedString(@Nonnull ByteBuffer buffer) {
+		long descriptor = readDescriptor(buffer);
+		int type = (int) descriptor & 0xf;
+		if (type == MISSING) {
+			return "";
+		}
+		if (type != CHAR) {
+			throw new IllegalArgumentException("Expected a string but found BCF type " + type);
+		}
+		return readChars(buffer, (int) (descriptor >>> 4));
+	}
+
+	@Nonnull
+	private static String readChars(@Nonnull ByteBuffer buffer, @Nonnegative int length) {
+		int start = buffer.position();
+		int end = start;
+		while (end < start + length && buffer.get(end) != 0) {
+			end++;
+		}
+		String string = new String(buffer.array(), buffer.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+		buffer.position(start + length);
+		return string;
+	}
+
+	/**
+	 * Writes a float as text, as {@link VcfDataWriter} would have read it, except that trailing zeros are lost.
+	 */
+	@Nonnull
+	static String formatFloat(float value) {
+		if (Float.isNaN(value)) {
+			return "NaN";
+		}
+		if (Float.isInfinite(value)) {
+			return value > 0? "Inf" : "-Inf";
+		}
+		return new BigDecimal(Float.toString(value)).stripTrailingZeros().toPlainString();
+	}
+
+	static float parseFloat(@Nonnull String value) {
+		switch (value) {
+			case "Inf": case "+Inf": return Float.POSITIVE_INFINITY;
+			case "-Inf": return Float.NEGATIVE_INFINITY;
+			default: return Float.parseFloat(value);
+		}
+	}
+
+	/**
+	 * Reads the INFO pairs of a record.
+	 * @param keys If not null, only these keys are kept; others are skipped
+	 */
+	@Nonnull
+	static ListMultimap<String, String> readInfo(@Nonnull ByteBuffer buffer, @Nonnegative int nInfo,
+			@Nonnull BcfDictionary dictionary, @Nullable Set<String> keys) {
+		ListMultimap<String, String> info = LinkedListMultimap.create(nInfo);
+		for (int i = 0; i < nInfo; i++) {
+			String key = dictionary.string(readTypedInt(buffer));
+			long descriptor = readDescriptor(buffer);
+			int type = (int) descriptor & 0xf;
+			int count = (int) (descriptor >>> 4);
+			if (keys != null && !keys.contains(key)) {
+				buffer.position(buffer.position() + count * size(type));
+				continue;
+			}
+			if (info.containsKey(key)) {
+				throw new IllegalArgumentException("Key " + key + " appears more than once in the INFO field");
+			}
+			if (type == MISSING) {
+				info.put(key, "");
+			} else if (type == CHAR) {
+				for (String value : readChars(buffer, count).split(",", -1)) {
+					info.put(key, VcfEscapers.INFO_VALUE.unescape(value));
+				}
+			} else {
+				info.putAll(key, readValues(buffer, type, count));
+			}
+		}
+		return info;
+	}
+
+	/**
+	 * Reads {@code count} integers or floats as text, stopping at the end of the vector.
+	 * A vector of a single missing value is {@code ["."]}.
+	 */
+	@Nonnull
+	private static List<String> readValues(@Nonnull ByteBuffer buffer, int type, @Nonnegative int count) {
+		List<String> values = new ArrayList<>(count);
+		int end = buffer.position() + count * size(type);
+		for (int i = 0; i < count; i++) {
+			int value = read(buffer, type);
+			if (value == end(type)) {
+				break;
+			}
+			if (value == missing(type)) {
+				values.add(".");
+			} else {
+				values.add(type == FLOAT? formatFloat(Float.intBitsToFloat(value)) : String.valueOf(value));
+			}
+		}
+		buffer.position(end);
+		if (values.isEmpty()) {
+			values.add(".");
+		}
+		return values;
+	}
+
+	/**
+	 * Reads the FORMAT keys and the values of the wanted samples.
+	 * @param sampleIndices The samples to keep, in increasing order, or null for all
+	 * @param format Receives the FORMAT keys
+	 * @return The samples, in the order of {@code sampleIndices}
+	 */
+	@Nonnull
+	static List<VcfSample> readSamples(@Nonnull ByteBuffer buffer, @Nonnegative int nFormat, @Nonnegative int nSamples,
+			@Nonnull BcfDictionary dictionary, @Nullable int[] sampleIndices, @Nonnull List<String> format) {
+		int nKept = sampleIndices == null? nSamples : sampleIndices.length;
+		String[][] values = new String[nKept][nFormat];
+		for (int f = 0; f < nFormat; f++) {
+			String key = dictionary.string(readTypedInt(buffer));
+			format.add(key);
+			long descriptor = readDescriptor(buffer);
+			int type = (int) descriptor & 0xf;
+			int count = (int) (descriptor >>> 4);
+			int width = count * size(type);
+			int start = buffer.position();
+			for (int s = 0; s < nKept; s++) {
+				int sample = sampleIndices == null? s : sampleIndices[s];
+				if (sample >= nSamples) {
+					throw new IllegalArgumentException("Record has only " + nSamples + " samples");
+				}
+				buffer.position(start + sample * width);
+				values[s][f] = readSampleValue(buffer, key, type, count);
+			}
+			buffer.position(start + nSamples * width);
+		}
+		VcfFormatSchema schema = VcfFormatSchema.of(format);
+		List<VcfSample> samples = new ArrayList<>(nKept);
+		for (String[] sample : values) {
+			samples.add(new VcfSample(schema, Arrays.asList(sample)));
+		}
+		return samples;
+	}
+
+	@Nonnull
+	private static String readSampleValue(@Nonnull ByteBuffer buffer, @Nonnull String key, int type, @Nonnegative int count) {
+		if (type == MISSING) {
+			return ".";
+		}
+		if (type == CHAR) {
+			String value = readChars(buffer, count);
+			return value.isEmpty()? "." : VcfEscapers.SAMPLE.unescape(value);
+		}
+		if (key.equals("GT") && type != FLOAT) {
+			return readGenotype(buffer, type, count);
+		}
+		return String.join(",", readValues(buffer, type, count));
+	}
+
+	/**
+	 * Reads a GT vector, in which each allele is {@code (index + 1) << 1 | phased}, and 0 is a missing allele.
+	 */
+	@Nonnull
+	private static String readGenotype(@Nonnull ByteBuffer buffer, int type, @Nonnegative int count) {
+		StringBuilder sb = new StringBuilder(count * 2);
+		for (int i = 0; i < count; i++) {
+			int value = read(buffer, type);
+			if (value == end(type)) {
+				break;
+			}
+			if (value == missing(type)) {
+				return ".";
+			}
+			if (i > 0) {
+				sb.append((value & 1) != 0? '|' : '/');
+			}
+			int allele = (value >> 1) - 1;
+			if (allele < 0) {
+				sb.append('.');
+			} else {
+				sb.append(allele);
+			}
+		}
+		return sb.length() == 0? "." : sb.toString();
+	}
+
+	/**
+	 * A growable little-endian byte array.
+	 */
+	@NotThreadSafe
+	static final class Buffer {
+
+		private byte[] m_bytes = new byte[256];
+		private int m_size = 0;
+
+		void reset() {
+			m_size = 0;
+		}
+
+		@Nonnegative
+		int size() {
+			return m_size;
+		}
+
+		@Nonnull
+		byte[] array() {
+			return m_bytes;
+		}
+
+		private void ensure(@Nonnegative int n) {
+			if (m_size + n > m_bytes.length) {
+				m_bytes = Arrays.copyOf(m_bytes, Math.max(m_bytes.length * 2, m_size + n));
+			}
+		}
+
+		void writeByte(int value) {
+			ensure(1);
+			m_bytes[m_size++] = (byte) value;
+		}
+
+		void writeInt32(int value) {
+			ensure(4);
+			m_bytes[m_size++] = (byte) value;
+			m_bytes[m_size++] = (byte) (value >>> 8);
+			m_bytes[m_size++] = (byte) (value >>> 16);
+			m_bytes[m_size++] = (byte) (value >>> 24);
+		}
+
+		/**
+		 * Writes an integer or the bits of a float as {@code type}.
+		 */
+		void write(int type, int value) {
+			switch (type) {
+				case INT8: case CHAR:
+					writeByte(value);
+					break;
+				case INT16:
+					writeByte(value);
+					writeByte(value >>> 8);
+					break;
+				default:
+					writeInt32(value);
+			}
+		}
+
+		void writeDescriptor(int type, @Nonnegative int count) {
+			if (count < 15) {
+				writeByte(count << 4 | type);
+			} else {
+				writeByte(0xf0 | type);
+				writeTypedInt(count);
+			}
+		}
+
+		void writeTypedInt(int value) {
+			int type = intType(value, value);
+			writeDescriptor(type, 1);
+			write(type, value);
+		}
+
+		/**
+		 * Writes a vector of integers with the narrowest type; {@link Integer#MIN_VALUE} is written as missing.
+		 */
+		void writeTypedInts(@Nonnull int[] values) {
+			int type = intRange(values, values.length);
+			writeDescriptor(values.length == 0? MISSING : type, values.length);
+			writeInts(type, values, values.length, values.length);
+		}
+
+		/**
+		 * Writes {@code n} values followed by {@code width - n} end-of-vector values.
+		 * For integer types, {@link Integer#MIN_VALUE} is written as missing; floats are written as given.
+		 */
+		void writeInts(int type, @Nonnull int[] values, @Nonnegative int n, @Nonnegative int width) {
+			for (int i = 0; i < n; i++) {
+				write(type, values[i] == Integer.MIN_VALUE && type != FLOAT? missing(type) : values[i]);
+			}
+			for (int i = n; i < width; i++) {
+				write(type, end(type));
+			}
+		}
+
+		/**
+		 * Writes the bits of floats; missing values must already be {@link #FLOAT_MISSING}.
+		 */
+		void writeTypedFloats(@Nonnull int[] bits) {
+			writeDescriptor(FLOAT, bits.length);
+			writeInts(FLOAT, bits, bits.length, bits.length);
+		}
+
+		void writeTypedString(@Nonnull String value) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeDescriptor(bytes.length == 0? MISSING : CHAR, bytes.length);
+			writeBytes(bytes, bytes.length, bytes.length);
+		}
+
+		/**
+		 * Writes {@code n} bytes followed by {@code width - n} NULs.
+		 */
+		void writeBytes(@Nonnull byte[] bytes, @Nonnegative int n, @Nonnegative int width) {
+			ensure(width);
+			System.arraycopy(bytes, 0, m_bytes, m_size, n);
+			Arrays.fill(m_bytes, m_size + n, m_size + width, (byte) 0);
+			m_size += width;
+		}
+	}
+
+	/**
+	 * @return The narrowest type for the first {@code n} values, ignoring {@link Integer#MIN_VALUE} (missing)
+	 */
+	static int intRange(@Nonnull int[] values, @Nonnegative int n) {
+		int min = 0;
+		int max = 0;
+		for (int i = 0; i < n; i++) {
+			if (values[i] != Integer.MIN_VALUE) {
+				min = Math.min(min, values[i]);
+				max = Math.max(max, values[i]);
+			}
+		}
+		return intType(min, max);
+	}
+
+	@Nonnull
+	static ByteBuffer wrap(@Nonnull byte[] bytes) {
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+}
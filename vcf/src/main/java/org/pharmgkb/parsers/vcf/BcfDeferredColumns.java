@@ -0,0 +1,112 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.vcf.model.DeferredVcfColumns;
+import org.pharmgkb.parsers.vcf.model.VcfInfo;
+import org.pharmgkb.parsers.vcf.model.VcfSample;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The INFO, FORMAT, and sample data of a BCF record, kept as the record's bytes.
+ * Created by {@link BcfReader} when it is {@link BcfReader.Builder#deferColumns() deferring columns}.
+ * The first access to FORMAT or any sample decodes all of the samples, since BCF stores them by FORMAT key.
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+class BcfDeferredColumns implements DeferredVcfColumns {
+
+	private final BcfDictionary m_dictionary;
+	private final long m_recordNumber;
+	private final byte[] m_shared;
+	private final int m_infoStart;
+	private final int m_nInfo;
+	private final byte[] m_indiv;
+	private final int m_nFormat;
+	private final int m_nSamples;
+
+	private volatile List<VcfSample> m_samples;
+	private volatile ImmutableList<String> m_format;
+
+	/**
+	 * @param infoStart The offset in {@code shared} of the first INFO key
+	 */
+	BcfDeferredColumns(@Nonnull BcfDictionary dictionary, @Nonnegative long recordNumber,
+			@Nonnull byte[] shared, @Nonnegative int infoStart, @Nonnegative int nInfo,
+			@Nonnull byte[] indiv, @Nonnegative int nFormat, @Nonnegative int nSamples) {
+		m_dictionary = dictionary;
+		m_recordNumber = recordNumber;
+		m_shared = shared;
+		m_infoStart = infoStart;
+		m_nInfo = nInfo;
+		m_indiv = indiv;
+		m_nFormat = nFormat;
+		m_nSamples = nFormat == 0? 0 : nSamples;
+	}
+
+	@Nonnull
+	@Override
+	public VcfInfo decodeInfo() throws BadDataFormatException {
+		try {
+			ByteBuffer buffer = BcfCodec.wrap(m_shared);
+			buffer.position(m_infoStart);
+			return new VcfInfo(ImmutableListMultimap.copyOf(BcfCodec.readInfo(buffer, m_nInfo, m_dictionary, null)));
+		} catch (IllegalArgumentException | BufferUnderflowException e) {
+			throw new BadDataFormatException("Couldn't read INFO of BCF record #" + m_recordNumber, e);
+		}
+	}
+
+	@Nonnull
+	@Override
+	public ImmutableList<String> decodeFormat() throws BadDataFormatException {
+		decodeSamples();
+		return m_format;
+	}
+
+	@Nonnegative
+	@Override
+	public int getNSamples() {
+		return m_nSamples;
+	}
+
+	@Nonnull
+	@Override
+	public VcfSample decodeSample(@Nonnegative int index, @Nonnull ImmutableList<String> format) throws BadDataFormatException {
+		if (index < 0 || index >= m_nSamples) {
+			throw new IndexOutOfBoundsException("Sample " + index + " does not exist; there are " + m_nSamples);
+		}
+		return decodeSamples().get(index);
+	}
+
+	@Nonnull
+	private List<VcfSample> decodeSamples() throws BadDataFormatException {
+		List<VcfSample> samples = m_samples;
+		if (samples == null) {
+			List<String> format = new ArrayList<>(m_nFormat);
+			try {
+				samples = BcfCodec.readSamples(BcfCodec.wrap(m_indiv), m_nFormat, m_nSamples, m_dictionary, null, format);
+			} catch (IllegalArgumentException | BufferUnderflowException e) {
+				throw new BadDataFormatException("Couldn't read samples of BCF record #" + m_recordNumber, e);
+			}
+			m_format = ImmutableList.copyOf(format);
+			m_samples = samples;
+		}
+		return samples;
+	}
+
+	@Override
+	public String toString() {
+		return "BcfDeferredColumns{" +
+				"recordNumber=" + m_recordNumber +
+				", nSamples=" + m_nSamples +
+				'}';
+	}
+}
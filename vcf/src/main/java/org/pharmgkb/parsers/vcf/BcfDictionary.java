@@ -0,0 +1,134 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfContigMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfFilterMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfFormatMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfIdMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfInfoMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfMetadata;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The two BCF dictionaries of a header: one for FILTER, INFO, and FORMAT IDs, with {@code PASS} first, and one for
+ * contigs. Both are in the order of the header lines unless a line has an {@code IDX} property.
+ * @author Douglas Myers-Turnbull
+ */
+@Immutable
+class BcfDictionary {
+
+	private final String[] m_strings;
+	private final Map<String, Integer> m_stringIndices;
+	private final String[] m_contigs;
+	private final Map<String, Integer> m_contigIndices;
+
+	BcfDictionary(@Nonnull VcfMetadataCollection metadata) {
+		Map<String, Integer> strings = new HashMap<>();
+		Map<String, Integer> contigs = new HashMap<>();
+		strings.put("PASS", 0);
+		for (VcfMetadata line : metadata.getLines()) {
+			if (line instanceof VcfFilterMetadata || line instanceof VcfInfoMetadata || line instanceof VcfFormatMetadata) {
+				add((VcfIdMetadata) line, strings);
+			} else if (line instanceof VcfContigMetadata) {
+				add((VcfIdMetadata) line, contigs);
+			}
+		}
+		m_stringIndices = strings;
+		m_strings = invert(strings);
+		m_contigIndices = contigs;
+		m_contigs = invert(contigs);
+	}
+
+	private static void add(@Nonnull VcfIdMetadata line, @Nonnull Map<String, Integer> dictionary) {
+		Optional<String> idx = line.getPropertyRaw("IDX");
+		if (idx.isPresent()) {
+			try {
+				dictionary.put(line.getId(), Integer.parseInt(idx.get()));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("IDX " + idx.get() + " of " + line.getId() + " is not an integer", e);
+			}
+		} else if (!dictionary.containsKey(line.getId())) {
+			dictionary.put(line.getId(), dictionary.values().stream().mapToInt(i -> i + 1).max().orElse(0));
+		}
+	}
+
+	@Nonnull
+	private static String[] invert(@Nonnull Map<String, Integer> dictionary) {
+		String[] array = new String[dictionary.values().stream().mapToInt(i -> i + 1).max().orElse(0)];
+		dictionary.forEach((id, index) -> array[index] = id);
+		return array;
+	}
+
+	/**
+	 * @throws IllegalArgumentException If the ID is not declared in the header
+	 */
+	@Nonnegative
+	int stringIndex(@Nonnull String id) {
+		Integer index = m_stringIndices.get(id);
+		if (index == null) {
+			throw new IllegalArgumentException("BCF requires every FILTER, INFO, and FORMAT key to be in the header, but " + id + " is not");
+		}
+		return index;
+	}
+
+	/**
+	 * @throws IllegalArgumentException If the contig is not declared in the header
+	 */
+	@Nonnegative
+	int contigIndex(@Nonnull String contig) {
+		Integer index = m_contigIndices.get(contig);
+		if (index == null) {
+			throw new IllegalArgumentException("BCF requires every contig to be in the header, but " + contig + " is not");
+		}
+		return index;
+	}
+
+	/**
+	 * @throws IllegalArgumentException If the index is not in the dictionary
+	 */
+	@Nonnull
+	String string(int index) {
+		if (index < 0 || index >= m_strings.length || m_strings[index] == null) {
+			throw new IllegalArgumentException("String dictionary has no index " + index);
+		}
+		return m_strings[index];
+	}
+
+	/**
+	 * @throws IllegalArgumentException If the index is not in the dictionary
+	 */
+	@Nonnull
+	String contig(int index) {
+		if (index < 0 || index >= m_contigs.length || m_contigs[index] == null) {
+			throw new IllegalArgumentException("Contig dictionary has no index " + index);
+		}
+		return m_contigs[index];
+	}
+
+	@Nonnull
+	List<String> getContigs() {
+		List<String> contigs = new ArrayList<>(m_contigs.length);
+		for (String contig : m_contigs) {
+			if (contig != null) {
+				contigs.add(contig);
+			}
+		}
+		return contigs;
+	}
+
+	@Override
+	public String toString() {
+		return "BcfDictionary{" +
+				"nStrings=" + m_stringIndices.size() +
+				", nContigs=" + m_contigIndices.size() +
+				'}';
+	}
+}
@@ -0,0 +1,385 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ObjectBuilder;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+import org.pharmgkb.parsers.vcf.model.VcfSample;
+import org.pharmgkb.parsers.vcf.utils.VcfEscapers;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads BCF2, compressed or not, into the same {@link VcfMetadataCollection} and {@link VcfPosition} models as
+ * {@link VcfMetadataParser} and {@link VcfDataParser}. The header is read when the reader is built.
+ * Like {@link VcfDataParser}, it can {@link Builder#deferColumns() defer} INFO and the samples, or read only some of
+ * them, and then skips the undecoded bytes.
+ * Float values and QUAL are read as the shortest text that gives the same 32-bit float, without trailing zeros;
+ * for example, {@code 29.0} is read back as {@code 29}.
+ * Example:
+ * <code>
+ *     try (BcfReader reader = new BcfReader.Builder(file).siteOnly().build()) {
+ *         VcfMetadataCollection metadata = reader.getMetadata();
+ *         reader.stream().forEach(position -&gt; ...);
+ *     }
+ * </code>
+ * @author Douglas Myers-Turnbull
+ * @see BcfWriter
+ */
+@NotThreadSafe
+public class BcfReader implements Closeable, Iterator<VcfPosition> {
+
+	private final DataInputStream m_in;
+	private final VcfMetadataCollection m_metadata;
+	private final BcfDictionary m_dictionary;
+	private final boolean m_deferColumns;
+	private final boolean m_siteOnly;
+	private final Set<String> m_infoKeys; // null means all
+	private final int[] m_sampleIndices; // null means all
+
+	private VcfPosition m_next = null;
+	private long m_nRecords = 0;
+
+	private BcfReader(@Nonnull Builder builder) throws IOException {
+		InputStream in = builder.m_in;
+		in.mark(2);
+		int b0 = in.read();
+		int b1 = in.read();
+		in.reset();
+		if (b0 == 0x1f && b1 == 0x8b) {
+			// GZIPInputStream reads every member, so BGZF blocks are read in sequence
+			in = new BufferedInputStream(new GZIPInputStream(in, 1 << 16), 1 << 16);
+		}
+		m_in = new DataInputStream(in);
+		m_metadata = readHeader();
+		m_dictionary = new BcfDictionary(m_metadata);
+		m_deferColumns = builder.m_deferColumns;
+		m_siteOnly = builder.m_siteOnly;
+		m_infoKeys = builder.m_infoKeys;
+		SortedSet<Integer> samples = builder.m_sampleIndices;
+		if (builder.m_sampleNames != null) {
+			samples = samples == null? new TreeSet<>() : samples;
+			List<String> allNames = m_metadata.getSampleNames();
+			for (String name : builder.m_sampleNames) {
+				int index = allNames.indexOf(name);
+				Preconditions.checkArgument(index > -1, "Sample " + name + " is not in the BCF header");
+				samples.add(index);
+			}
+		}
+		m_sampleIndices = samples == null? null : samples.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	@Nonnull
+	private VcfMetadataCollection readHeader() throws IOException {
+		byte[] magic = new byte[BcfWriter.MAGIC.length];
+		try {
+			m_in.readFully(magic);
+		} catch (EOFException e) {
+			throw new BadDataFormatException("File is too short to be BCF", e);
+		}
+		if (magic[0] != 'B' || magic[1] != 'C' || magic[2] != 'F' || magic[3] != 2) {
+			throw new BadDataFormatException("File does not start with the BCF2 magic bytes");
+		}
+		byte[] text = new byte[readInt()];
+		m_in.readFully(text);
+		int length = text.length;
+		while (length > 0 && text[length - 1] == 0) {
+			length--;
+		}
+		List<String> lines = new String(text, 0, length, StandardCharsets.UTF_8).lines()
+				.filter(line -> !line.isEmpty())
+				.collect(Collectors.toList());
+		return new VcfMetadataParser().apply(lines.stream());
+	}
+
+	private int readInt() throws IOException {
+		return Integer.reverseBytes(m_in.readInt());
+	}
+
+	@Nonnull
+	public VcfMetadataCollection getMetadata() {
+		return m_metadata;
+	}
+
+	/**
+	 * @return The next record, or empty at the end of the file
+	 * @throws BadDataFormatException If the record is malformed or truncated
+	 * @throws UncheckedIOException If reading fails
+	 */
+	@Nonnull
+	public Optional<VcfPosition> read() {
+		if (m_next != null) {
+			VcfPosition next = m_next;
+			m_next = null;
+			return Optional.of(next);
+		}
+		try {
+			int first = m_in.read();
+			if (first < 0) {
+				return Optional.empty();
+			}
+			int lShared = first | m_in.readUnsignedByte() << 8 | m_in.readUnsignedByte() << 16 | m_in.readUnsignedByte() << 24;
+			int lIndiv = readInt();
+			byte[] shared = new byte[lShared];
+			m_in.readFully(shared);
+			byte[] indiv = null;
+			if (m_siteOnly) {
+				m_in.skipNBytes(lIndiv);
+			} else {
+				indiv = new byte[lIndiv];
+				m_in.readFully(indiv);
+			}
+			m_nRecords++;
+			return Optional.of(decode(shared, indiv));
+		} catch (EOFException e) {
+			throw new BadDataFormatException("BCF record #" + (m_nRecords + 1) + " is truncated", e);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Nonnull
+	private VcfPosition decode(@Nonnull byte[] shared, @Nullable byte[] indiv) {
+		try {
+			ByteBuffer buffer = BcfCodec.wrap(shared);
+			String chromosome = m_dictionary.contig(buffer.getInt());
+			long position = buffer.getInt();
+			buffer.getInt(); // rlen is the length of REF
+			int quality = buffer.getInt();
+			int nAlleleInfo = buffer.getInt();
+			int nFormatSample = buffer.getInt();
+			int nAlleles = nAlleleInfo >>> 16;
+			int nInfo = nAlleleInfo & 0xffff;
+			int nFormat = nFormatSample >>> 24;
+			int nSamples = nFormatSample & 0xffffff;
+
+			String ids = BcfCodec.readTypedString(buffer);
+			VcfPosition.Builder builder = new VcfPosition.Builder(chromosome, position, BcfCodec.readTypedString(buffer));
+			if (!ids.isEmpty() && !ids.equals(".")) {
+				for (String id : ids.split(";")) {
+					builder.addId(VcfEscapers.ID.unescape(id));
+				}
+			}
+			for (int i = 1; i < nAlleles; i++) {
+				builder.addAlt(BcfCodec.readTypedString(buffer));
+			}
+			if (quality != BcfCodec.FLOAT_MISSING) {
+				builder.setQuality(BcfCodec.formatFloat(Float.intBitsToFloat(quality)));
+			}
+			long filters = BcfCodec.readDescriptor(buffer);
+			for (long i = 0; i < filters >>> 4; i++) {
+				builder.addFilter(m_dictionary.string(BcfCodec.read(buffer, (int) filters & 0xf)));
+			}
+
+			if (m_deferColumns) {
+				builder.setDeferredColumns(new BcfDeferredColumns(m_dictionary, m_nRecords, shared, buffer.position(), nInfo,
+						indiv, nFormat, nSamples));
+				return builder.build();
+			}
+			builder.putInfo(BcfCodec.readInfo(buffer, nInfo, m_dictionary, m_infoKeys));
+			if (indiv != null && nFormat > 0) {
+				List<String> format = new ArrayList<>(nFormat);
+				List<VcfSample> samples = BcfCodec.readSamples(BcfCodec.wrap(indiv), nFormat, nSamples, m_dictionary, m_sampleIndices, format);
+				builder.addFormats(format);
+				builder.addSamples(samples);
+			}
+			return builder.build();
+		} catch (IllegalArgumentException | BufferUnderflowException e) {
+			throw new BadDataFormatException("Couldn't read BCF record #" + m_nRecords, e);
+		}
+	}
+
+	/**
+	 * @throws BadDataFormatException If the record is malformed or truncated
+	 * @throws UncheckedIOException If reading fails
+	 */
+	@Override
+	public boolean hasNext() {
+		if (m_next == null) {
+			m_next = read().orElse(null);
+		}
+		return m_next != null;
+	}
+
+	/**
+	 * @throws BadDataFormatException If the record is malformed or truncated
+	 * @throws UncheckedIOException If reading fails
+	 */
+	@Nonnull
+	@Override
+	public VcfPosition next() {
+		return read().orElseThrow(NoSuchElementException::new);
+	}
+
+	/**
+	 * @return The remaining records, in order
+	 */
+	@Nonnull
+	public Stream<VcfPosition> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	@Nonnegative
+	public long nRecordsRead() {
+		return m_nRecords;
+	}
+
+	public boolean isDeferringColumns() {
+		return m_deferColumns;
+	}
+
+	public boolean isSiteOnly() {
+		return m_siteOnly;
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_in.close();
+	}
+
+	@Override
+	public String toString() {
+		return "BcfReader{" +
+				"nRecords=" + m_nRecords +
+				", deferColumns=" + m_deferColumns +
+				", siteOnly=" + m_siteOnly +
+				'}';
+	}
+
+	@NotThreadSafe
+	public static class Builder implements ObjectBuilder<BcfReader> {
+
+		private final InputStream m_in;
+		private boolean m_deferColumns = false;
+		private boolean m_siteOnly = false;
+		private Set<String> m_infoKeys = null;
+		private SortedSet<Integer> m_sampleIndices = null;
+		private Set<String> m_sampleNames = null;
+
+		public Builder(@Nonnull Path file) throws IOException {
+			this(Files.newInputStream(Preconditions.checkNotNull(file, "File cannot be null")));
+		}
+
+		/**
+		 * @param in BCF, uncompressed or BGZF-compressed
+		 */
+		public Builder(@Nonnull InputStream in) {
+			Preconditions.checkNotNull(in, "Input stream cannot be null");
+			m_in = new BufferedInputStream(in, 1 << 16);
+		}
+
+		/**
+		 * As for {@link VcfDataParser.Builder#deferColumns()}.
+		 */
+		@Nonnull
+		public Builder deferColumns() {
+			m_deferColumns = true;
+			return this;
+		}
+
+		/**
+		 * Skips the sample data of each record without decoding it, so that positions have no FORMAT and no samples.
+		 */
+		@Nonnull
+		public Builder siteOnly() {
+			m_siteOnly = true;
+			return this;
+		}
+
+		/**
+		 * Keeps only these INFO keys; other entries are skipped without being decoded.
+		 * Can be called more than once.
+		 */
+		@Nonnull
+		public Builder keepInfoKeys(@Nonnull Collection<String> keys) {
+			Preconditions.checkNotNull(keys, "INFO keys cannot be null");
+			if (m_infoKeys == null) {
+				m_infoKeys = new LinkedHashSet<>();
+			}
+			m_infoKeys.addAll(keys);
+			return this;
+		}
+
+		/**
+		 * Keeps only the samples with these names, in the order of the file. The names are resolved when the header is
+		 * read, by {@link #build()}. Can be called more than once.
+		 */
+		@Nonnull
+		public Builder keepSampleNames(@Nonnull Collection<String> sampleNames) {
+			Preconditions.checkNotNull(sampleNames, "Sample names cannot be null");
+			if (m_sampleNames == null) {
+				m_sampleNames = new LinkedHashSet<>();
+			}
+			m_sampleNames.addAll(sampleNames);
+			return this;
+		}
+
+		/**
+		 * Keeps only the samples at these 0-based indices, in the order of the file.
+		 * Can be called more than once.
+		 */
+		@Nonnull
+		public Builder keepSamples(@Nonnull Collection<Integer> sampleIndices) {
+			Preconditions.checkNotNull(sampleIndices, "Sample indices cannot be null");
+			Preconditions.checkArgument(sampleIndices.stream().allMatch(i -> i >= 0), "Sample indices must be nonnegative");
+			if (m_sampleIndices == null) {
+				m_sampleIndices = new TreeSet<>();
+			}
+			m_sampleIndices.addAll(sampleIndices);
+			return this;
+		}
+
+		/**
+		 * Reads the header.
+		 * @throws IllegalStateException If columns are deferred and also projected, or if samples are kept for a site-only reader
+		 * @throws IllegalArgumentException If a sample name is not in the header
+		 * @throws BadDataFormatException If the header is not valid BCF2
+		 * @throws UncheckedIOException If reading the header fails
+		 */
+		@Nonnull
+		@Override
+		public BcfReader build() {
+			boolean keepsSamples = m_sampleIndices != null || m_sampleNames != null;
+			Preconditions.checkState(!m_deferColumns || !m_siteOnly && m_infoKeys == null && !keepsSamples,
+					"Deferred columns cannot also be site-only or keep only some INFO keys or samples");
+			Preconditions.checkState(!m_siteOnly || !keepsSamples, "A site-only reader cannot keep samples");
+			try {
+				return new BcfReader(this);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,365 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.parsers.ObjectBuilder;
+import org.pharmgkb.parsers.model.GeneralizedBigDecimal;
+import org.pharmgkb.parsers.utils.BgzfOutputStream;
+import org.pharmgkb.parsers.vcf.model.VcfFieldDecoders;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+import org.pharmgkb.parsers.vcf.model.VcfTypedField;
+import org.pharmgkb.parsers.vcf.model.allele.VcfAllele;
+import org.pharmgkb.parsers.vcf.utils.VcfEscapers;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+/**
+ * Writes BCF2 (version 2.2): the binary form of VCF, which {@link BcfReader} reads back.
+ * The header is the VCF metadata as text; each record stores contigs and FILTER, INFO, and FORMAT keys as indices into
+ * dictionaries built from the header, and values as typed binary vectors using the Type of their ##INFO or ##FORMAT line.
+ * For that reason, every contig, FILTER, INFO key, and FORMAT key must be declared in the header.
+ * Float values and QUAL are stored as 32-bit floats, so they are read back as the nearest float, without trailing zeros.
+ * By default, the output is BGZF-compressed, as it is for bcftools.
+ * Example:
+ * <code>
+ *     try (BcfWriter writer = new BcfWriter.Builder(file, metadata).build()) {
+ *         new VcfDataParser().parseAll(Files.lines(vcfFile)).forEach(writer::write);
+ *     }
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class BcfWriter implements Closeable {
+
+	static final byte[] MAGIC = {'B', 'C', 'F', 2, 2};
+
+	private final OutputStream m_out;
+	private final VcfFieldDecoders m_fields;
+	private final BcfDictionary m_dictionary;
+	private final int m_nSamples;
+
+	private final BcfCodec.Buffer m_shared = new BcfCodec.Buffer();
+	private final BcfCodec.Buffer m_indiv = new BcfCodec.Buffer();
+	private final BcfCodec.Buffer m_lengths = new BcfCodec.Buffer();
+
+	private long m_nRecords = 0;
+
+	private BcfWriter(@Nonnull Builder builder) throws IOException {
+		m_out = builder.m_compress? new BgzfOutputStream(builder.m_out, builder.m_level) : builder.m_out;
+		m_fields = builder.m_metadata.getFieldDecoders();
+		m_dictionary = new BcfDictionary(builder.m_metadata);
+		m_nSamples = builder.m_metadata.getSampleNames().size();
+		byte[] text = (new VcfMetadataWriter().apply(builder.m_metadata).collect(Collectors.joining("\n")) + "\n\0")
+				.getBytes(StandardCharsets.UTF_8);
+		m_out.write(MAGIC);
+		m_lengths.writeInt32(text.length);
+		m_out.write(m_lengths.array(), 0, m_lengths.size());
+		m_out.write(text);
+	}
+
+	/**
+	 * @throws IllegalArgumentException If the position uses an undeclared contig or key, has a value that does not match
+	 * its declared Type, or has a different number of samples than the header
+	 * @throws UncheckedIOException If writing fails
+	 */
+	public void write(@Nonnull VcfPosition position) {
+		Preconditions.checkNotNull(position, "Position cannot be null");
+		Preconditions.checkArgument(position.getPosition() <= Integer.MAX_VALUE, "BCF positions must fit in 32 bits");
+		Preconditions.checkArgument(position.getNSamples() == m_nSamples || position.getFormat().isEmpty() && position.getNSamples() == 0,
+				"Position has " + position.getNSamples() + " samples, but the header has " + m_nSamples);
+		m_shared.reset();
+		m_indiv.reset();
+		writeShared(position);
+		writeIndiv(position);
+		m_lengths.reset();
+		m_lengths.writeInt32(m_shared.size());
+		m_lengths.writeInt32(m_indiv.size());
+		try {
+			m_out.write(m_lengths.array(), 0, m_lengths.size());
+			m_out.write(m_shared.array(), 0, m_shared.size());
+			m_out.write(m_indiv.array(), 0, m_indiv.size());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		m_nRecords++;
+	}
+
+	/**
+	 * @throws IllegalArgumentException As for {@link #write(VcfPosition)}
+	 * @throws UncheckedIOException If writing fails
+	 */
+	public void writeAll(@Nonnull Stream<? extends VcfPosition> positions) {
+		Preconditions.checkNotNull(positions, "Positions cannot be null");
+		positions.forEachOrdered(this::write);
+	}
+
+	private void writeShared(@Nonnull VcfPosition position) {
+		m_shared.writeInt32(m_dictionary.contigIndex(position.getChromosome()));
+		m_shared.writeInt32((int) position.getPosition());
+		m_shared.writeInt32(position.getRef().toVcfString().length());
+		m_shared.writeInt32(position.getQuality().map(BcfWriter::qualityBits).orElse(BcfCodec.FLOAT_MISSING));
+		m_shared.writeInt32(position.getAllAlleles().size() << 16 | position.getInfo().keySet().size());
+		m_shared.writeInt32(position.getFormat().size() << 24 | (position.getFormat().isEmpty()? 0 : m_nSamples));
+		m_shared.writeTypedString(position.getIds().stream()
+				.map(VcfEscapers.ID::escape)
+				.collect(Collectors.joining(";")));
+		for (VcfAllele allele : position.getAllAlleles()) {
+			m_shared.writeTypedString(allele.toVcfString());
+		}
+		m_shared.writeTypedInts(position.getFilters().stream()
+				.mapToInt(m_dictionary::stringIndex)
+				.toArray());
+		for (Map.Entry<String, Collection<String>> entry : position.getInfo().asMap().entrySet()) {
+			m_shared.writeTypedInt(m_dictionary.stringIndex(entry.getKey()));
+			writeInfoValue(m_fields.info(entry.getKey()), List.copyOf(entry.getValue()));
+		}
+	}
+
+	private static int qualityBits(@Nonnull GeneralizedBigDecimal quality) {
+		if (quality.isNan()) {
+			return Float.floatToRawIntBits(Float.NaN);
+		}
+		if (quality.isInfinite()) {
+			return Float.floatToRawIntBits(quality.isPositiveInfinity()? Float.POSITIVE_INFINITY : Float.NEGATIVE_INFINITY);
+		}
+		return Float.floatToRawIntBits(quality.getValue().orElseThrow().floatValue());
+	}
+
+	private void writeInfoValue(@Nonnull VcfTypedField field, @Nonnull List<String> values) {
+		if (values.size() == 1 && values.get(0).isEmpty()) {
+			m_shared.writeDescriptor(BcfCodec.MISSING, 0);
+		} else if (field.isInteger()) {
+			m_shared.writeTypedInts(values.stream().mapToInt(v -> parseInt(field, v)).toArray());
+		} else if (field.isNumeric()) {
+			m_shared.writeTypedFloats(values.stream().mapToInt(v -> parseFloatBits(field, v)).toArray());
+		} else {
+			m_shared.writeTypedString(values.stream()
+					.map(VcfEscapers.INFO_VALUE::escape)
+					.collect(Collectors.joining(",")));
+		}
+	}
+
+	private void writeIndiv(@Nonnull VcfPosition position) {
+		int nSamples = position.getNSamples();
+		int[][] ints = new int[nSamples][];
+		byte[][] chars = new byte[nSamples][];
+		for (String key : position.getFormat()) {
+			m_indiv.writeTypedInt(m_dictionary.stringIndex(key));
+			VcfTypedField field = m_fields.format(key);
+			boolean genotype = key.equals("GT");
+			boolean isInt = genotype || field.isInteger();
+			if (isInt || field.isNumeric()) {
+				int width = 0;
+				int type = BcfCodec.FLOAT;
+				for (int s = 0; s < nSamples; s++) {
+					String value = position.getSample(s).get(key).orElse(".");
+					ints[s] = genotype? encodeGenotype(value) : encodeNumbers(field, value, isInt);
+					width = Math.max(width, ints[s].length);
+				}
+				if (isInt) {
+					int min = 0;
+					int max = 0;
+					for (int[] sample : ints) {
+						for (int value : sample) {
+							if (value != Integer.MIN_VALUE) {
+								min = Math.min(min, value);
+								max = Math.max(max, value);
+							}
+						}
+					}
+					type = BcfCodec.intType(min, max);
+				}
+				m_indiv.writeDescriptor(type, width);
+				for (int[] sample : ints) {
+					m_indiv.writeInts(type, sample, sample.length, width);
+				}
+			} else {
+				int width = 0;
+				for (int s = 0; s < nSamples; s++) {
+					String value = position.getSample(s).get(key).orElse(".");
+					chars[s] = value.equals(".")? new byte[0] : VcfEscapers.SAMPLE.escape(value).getBytes(StandardCharsets.UTF_8);
+					width = Math.max(width, chars[s].length);
+				}
+				m_indiv.writeDescriptor(BcfCodec.CHAR, width);
+				for (byte[] sample : chars) {
+					m_indiv.writeBytes(sample, sample.length, width);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Encodes each allele as {@code (index + 1) << 1 | phased}, where a missing allele has index -1.
+	 */
+	@Nonnull
+	private static int[] encodeGenotype(@Nonnull String value) {
+		if (value.equals(".")) {
+			return new int[] {0};
+		}
+		int n = 1;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '/' || c == '|') {
+				n++;
+			}
+		}
+		int[] alleles = new int[n];
+		int start = 0;
+		boolean phased = false;
+		for (int i = 0; i < n; i++) {
+			int end = start;
+			while (end < value.length() && value.charAt(end) != '/' && value.charAt(end) != '|') {
+				end++;
+			}
+			String allele = value.substring(start, end);
+			int index;
+			try {
+				index = allele.equals(".")? -1 : Integer.parseInt(allele);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("GT " + value + " is invalid", e);
+			}
+			alleles[i] = (index + 1) << 1 | (phased? 1 : 0);
+			phased = end < value.length() && value.charAt(end) == '|';
+			start = end + 1;
+		}
+		return alleles;
+	}
+
+	@Nonnull
+	private static int[] encodeNumbers(@Nonnull VcfTypedField field, @Nonnull String value, boolean isInt) {
+		if (value.equals(".")) {
+			return new int[] {isInt? Integer.MIN_VALUE : BcfCodec.FLOAT_MISSING};
+		}
+		String[] values = value.split(",", -1);
+		int[] encoded = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			encoded[i] = isInt? parseInt(field, values[i]) : parseFloatBits(field, values[i]);
+		}
+		return encoded;
+	}
+
+	private static int parseInt(@Nonnull VcfTypedField field, @Nonnull String value) {
+		if (value.equals(".")) {
+			return Integer.MIN_VALUE;
+		}
+		try {
+			int parsed = Integer.parseInt(value);
+			Preconditions.checkArgument(parsed > Integer.MIN_VALUE + 7, field.getKey() + " value " + value + " is too small for BCF");
+			return parsed;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(field.getKey() + " value " + value + " is not an integer", e);
+		}
+	}
+
+	private static int parseFloatBits(@Nonnull VcfTypedField field, @Nonnull String value) {
+		if (value.equals(".")) {
+			return BcfCodec.FLOAT_MISSING;
+		}
+		try {
+			return Float.floatToRawIntBits(BcfCodec.parseFloat(value));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(field.getKey() + " value " + value + " is not a number", e);
+		}
+	}
+
+	@Nonnegative
+	public long nRecordsWritten() {
+		return m_nRecords;
+	}
+
+	/**
+	 * Ends the current BGZF block, if compressing, and flushes.
+	 * @throws UncheckedIOException If flushing fails
+	 */
+	public void flush() {
+		try {
+			m_out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_out.close();
+	}
+
+	@Override
+	public String toString() {
+		return "BcfWriter{" +
+				"nSamples=" + m_nSamples +
+				", nRecords=" + m_nRecords +
+				'}';
+	}
+
+	@NotThreadSafe
+	public static class Builder implements ObjectBuilder<BcfWriter> {
+
+		private final OutputStream m_out;
+		private final VcfMetadataCollection m_metadata;
+		private boolean m_compress = true;
+		private int m_level = Deflater.DEFAULT_COMPRESSION;
+
+		public Builder(@Nonnull Path file, @Nonnull VcfMetadataCollection metadata) throws IOException {
+			this(new BufferedOutputStream(Files.newOutputStream(Preconditions.checkNotNull(file, "File cannot be null"))), metadata);
+		}
+
+		public Builder(@Nonnull OutputStream out, @Nonnull VcfMetadataCollection metadata) {
+			Preconditions.checkNotNull(out, "Output stream cannot be null");
+			Preconditions.checkNotNull(metadata, "Metadata cannot be null");
+			m_out = out;
+			m_metadata = metadata;
+		}
+
+		/**
+		 * @param level A {@link Deflater} compression level
+		 */
+		@Nonnull
+		public Builder setCompressionLevel(int level) {
+			Preconditions.checkArgument(level >= Deflater.DEFAULT_COMPRESSION && level <= Deflater.BEST_COMPRESSION,
+					"Compression level " + level + " is invalid");
+			m_level = level;
+			return this;
+		}
+
+		/**
+		 * Writes uncompressed BCF, which is faster to write and read but not BGZF-indexable.
+		 */
+		@Nonnull
+		public Builder uncompressed() {
+			m_compress = false;
+			return this;
+		}
+
+		/**
+		 * Writes the header.
+		 * @throws IllegalArgumentException If an {@code IDX} property in the header is not an integer
+		 * @throws UncheckedIOException If writing the header fails
+		 */
+		@Nonnull
+		@Override
+		public BcfWriter build() {
+			try {
+				return new BcfWriter(this);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
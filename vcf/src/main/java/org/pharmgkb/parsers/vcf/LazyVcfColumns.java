@@ -0,0 +1,132 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.vcf.model.DeferredVcfColumns;
+import org.pharmgkb.parsers.vcf.model.VcfFormatSchema;
+import org.pharmgkb.parsers.vcf.model.VcfInfo;
+import org.pharmgkb.parsers.vcf.model.VcfSample;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Optional;
+
+/**
+ * The INFO, FORMAT, and sample columns of a VCF line, kept as the line and the offsets of the columns.
+ * Created by {@link VcfDataParser} when it is {@link VcfDataParser.Builder#deferColumns() deferring columns}.
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+class LazyVcfColumns implements DeferredVcfColumns {
+
+	private final String m_line;
+	private final long m_lineNumber;
+	private final int m_infoStart;
+	private final int m_infoEnd;
+	private final int m_formatEnd; // -1 if there is no FORMAT
+	private final int m_nSamples;
+
+	// the start of each sample column, found on first access
+	private volatile int[] m_sampleStarts;
+
+	/**
+	 * @param infoStart The index in {@code line} of the first character of INFO
+	 */
+	LazyVcfColumns(@Nonnull String line, @Nonnegative int infoStart, @Nonnegative long lineNumber) {
+		m_line = line;
+		m_lineNumber = lineNumber;
+		m_infoStart = infoStart;
+		m_infoEnd = endOfColumn(infoStart);
+		if (m_infoEnd == line.length()) {
+			m_formatEnd = -1;
+			m_nSamples = 0;
+		} else {
+			m_formatEnd = endOfColumn(m_infoEnd + 1);
+			int nSamples = 0;
+			for (int i = m_formatEnd; i < line.length(); i++) {
+				if (line.charAt(i) == '\t') {
+					nSamples++;
+				}
+			}
+			m_nSamples = nSamples;
+		}
+	}
+
+	private int endOfColumn(int start) {
+		int tab = m_line.indexOf('\t', start);
+		return tab < 0? m_line.length() : tab;
+	}
+
+	@Nonnull
+	@Override
+	public VcfInfo decodeInfo() throws BadDataFormatException {
+		try {
+			return new VcfInfo(ImmutableMultimap.copyOf(VcfDataParser.parseInfo(m_line.substring(m_infoStart, m_infoEnd))));
+		} catch (IllegalArgumentException | BadDataFormatException e) {
+			throw new BadDataFormatException(m_lineNumber, m_line, e);
+		}
+	}
+
+	@Nonnull
+	@Override
+	public ImmutableList<String> decodeFormat() throws BadDataFormatException {
+		if (m_formatEnd < 0) {
+			return ImmutableList.of();
+		}
+		try {
+			return ImmutableList.copyOf(VcfDataParser.parseFormat(m_line.substring(m_infoEnd + 1, m_formatEnd)));
+		} catch (IllegalArgumentException e) {
+			throw new BadDataFormatException(m_lineNumber, m_line, e);
+		}
+	}
+
+	@Nonnegative
+	@Override
+	public int getNSamples() {
+		return m_nSamples;
+	}
+
+	@Nonnull
+	@Override
+	public VcfSample decodeSample(@Nonnegative int index, @Nonnull ImmutableList<String> format) throws BadDataFormatException {
+		if (index < 0 || index >= m_nSamples) {
+			throw new IndexOutOfBoundsException("Sample " + index + " does not exist; there are " + m_nSamples);
+		}
+		int[] starts = m_sampleStarts;
+		if (starts == null) {
+			starts = new int[m_nSamples];
+			int tab = m_formatEnd;
+			for (int i = 0; i < m_nSamples; i++) {
+				starts[i] = tab + 1;
+				tab = endOfColumn(tab + 1);
+			}
+			m_sampleStarts = starts;
+		}
+		try {
+			VcfSample sample = VcfDataParser.parseSample(VcfFormatSchema.of(format), m_line.substring(starts[index], endOfColumn(starts[index])));
+			if (sample.size() != format.size()) {
+				throw new IllegalArgumentException("Sample at index " + index + " has properties [" + String.join(",", sample.keySet())
+						+ "], but expected [" + String.join(",", format) + "]");
+			}
+			return sample;
+		} catch (IllegalArgumentException e) {
+			throw new BadDataFormatException(m_lineNumber, m_line, e);
+		}
+	}
+
+	@Nonnull
+	@Override
+	public Optional<String> getSourceLine() {
+		return Optional.of(m_line);
+	}
+
+	@Override
+	public String toString() {
+		return "LazyVcfColumns{" +
+				"lineNumber=" + m_lineNumber +
+				", nSamples=" + m_nSamples +
+				'}';
+	}
+}
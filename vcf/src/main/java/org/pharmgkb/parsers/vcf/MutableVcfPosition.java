@@ -0,0 +1,323 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ReusableRecord;
+import org.pharmgkb.parsers.utils.DecimalParser;
+import org.pharmgkb.parsers.utils.DelimitedFields;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+import org.pharmgkb.parsers.vcf.model.extra.PackedGenotypes;
+import org.pharmgkb.parsers.vcf.model.extra.ReservedFormatProperty;
+import org.pharmgkb.parsers.vcf.utils.VcfEscapers;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * A reusable view of one VCF data line, filled by {@link VcfDataParser#forEach}.
+ * The chromosome and position are read when the line is set; the chromosome String is reused from the previous
+ * line when it is the same. Other columns are read only when asked for, and only methods that return a String,
+ * list, or {@link Optional} allocate.
+ * <strong>As with {@link VcfPosition}, the position is 0-based.</strong>
+ * @author Douglas Myers-Turnbull
+ * @see VcfPosition
+ */
+@NotThreadSafe
+public class MutableVcfPosition implements ReusableRecord<VcfPosition> {
+
+	private final VcfDataParser m_parser;
+	private final DelimitedFields m_fields = new DelimitedFields('\t');
+
+	private String m_line = "";
+	private long m_lineNumber = 0;
+	private String m_rawChromosome = "";
+	private String m_chromosome = "";
+	private long m_position;
+
+	MutableVcfPosition(@Nonnull VcfDataParser parser) {
+		m_parser = parser;
+	}
+
+	void set(@Nonnull String line, long lineNumber) throws BadDataFormatException {
+		m_line = line;
+		m_lineNumber = lineNumber;
+		m_fields.reset(line);
+		try {
+			if (m_fields.size() < 8) {
+				throw new IllegalArgumentException("There are only " + m_fields.size() + " columns");
+			}
+			if (m_fields.length(0) != m_rawChromosome.length()
+					|| !line.regionMatches(0, m_rawChromosome, 0, m_rawChromosome.length())) {
+				m_rawChromosome = m_fields.get(0);
+				m_chromosome = VcfEscapers.CHROMOSOME.unescape(m_rawChromosome);
+			}
+			try {
+				m_position = m_fields.parseLong(1) - 1; // VCF is 1-based
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Position " + m_fields.get(1) + " is not numerical");
+			}
+		} catch (IllegalArgumentException e) {
+			throw m_parser.getErrorPolicy().badLine(lineNumber, line, e);
+		}
+	}
+
+	@Nonnull
+	public String getChromosome() {
+		return m_chromosome;
+	}
+
+	/**
+	 * @return The 0-based position
+	 */
+	@Nonnegative
+	public long getPosition() {
+		return m_position;
+	}
+
+	/**
+	 * @return The unescaped IDs, or an empty list for {@code .}
+	 */
+	@Nonnull
+	public List<String> getIds() {
+		return split(2, ';', VcfEscapers.ID::unescape);
+	}
+
+	@Nonnull
+	public String getRef() {
+		return m_fields.get(3);
+	}
+
+	/**
+	 * @return The alternate alleles, or an empty list for {@code .}
+	 */
+	@Nonnull
+	public List<String> getAlts() {
+		return split(4, ',', Function.identity());
+	}
+
+	public boolean hasQuality() {
+		return !m_fields.isDot(5);
+	}
+
+	/**
+	 * @throws IllegalStateException If {@link #hasQuality()} is false
+	 * @throws NumberFormatException If QUAL is not a number
+	 */
+	public double getQuality() {
+		if (!hasQuality()) {
+			throw new IllegalStateException("Line #" + m_lineNumber + " has no QUAL");
+		}
+		return DecimalParser.parseDouble(m_fields.get(5));
+	}
+
+	/**
+	 * @return The unescaped filters, or an empty list for {@code .}
+	 */
+	@Nonnull
+	public List<String> getFilters() {
+		return split(6, ';', VcfEscapers.FILTER::unescape);
+	}
+
+	/**
+	 * Checks without allocating.
+	 * @return Whether FILTER is exactly {@code PASS}
+	 */
+	public boolean isPass() {
+		return m_fields.fieldEquals(6, "PASS");
+	}
+
+	/**
+	 * Looks for the key without allocating.
+	 */
+	public boolean hasInfo(@Nonnull String key) {
+		return findInfo(key) > -1;
+	}
+
+	/**
+	 * @return The unescaped values, or an empty list if the key is absent;
+	 * as with {@link VcfDataParser}, a flag has the single value {@code ""}
+	 */
+	@Nonnull
+	public List<String> getInfo(@Nonnull String key) {
+		int start = findInfo(key);
+		if (start < 0) {
+			return Collections.emptyList();
+		}
+		int end = m_line.indexOf(';', start);
+		if (end < 0 || end > m_fields.end(7)) {
+			end = m_fields.end(7);
+		}
+		List<String> values = new ArrayList<>(2);
+		int valueStart = start;
+		for (int i = start; i <= end; i++) {
+			if (i == end || m_line.charAt(i) == ',') {
+				values.add(VcfEscapers.INFO_VALUE.unescape(m_line.substring(valueStart, i)));
+				valueStart = i + 1;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @return The index in the line of the first character of the value (or of the end of a flag), or -1
+	 */
+	private int findInfo(@Nonnull String key) {
+		if (m_fields.isDot(7)) {
+			return -1;
+		}
+		int end = m_fields.end(7);
+		int i = m_fields.start(7);
+		while (i < end) {
+			int keyEnd = i + key.length();
+			if (keyEnd <= end && m_line.regionMatches(i, key, 0, key.length())) {
+				if (keyEnd == end || m_line.charAt(keyEnd) == ';') {
+					return keyEnd; // flag
+				}
+				if (m_line.charAt(keyEnd) == '=') {
+					return keyEnd + 1;
+				}
+			}
+			int next = m_line.indexOf(';', i);
+			if (next < 0 || next >= end) {
+				return -1;
+			}
+			i = next + 1;
+		}
+		return -1;
+	}
+
+	@Nonnegative
+	public int getNSamples() {
+		return Math.max(0, m_fields.size() - 9);
+	}
+
+	/**
+	 * Finds the value without allocating until the final substring.
+	 * @param sample The 0-based index of the sample column
+	 * @param key A FORMAT key, such as {@code GT}
+	 * @return The unescaped value, or empty if the key is not in FORMAT or the sample has fewer values than FORMAT
+	 * @throws IndexOutOfBoundsException If the sample does not exist
+	 */
+	@Nonnull
+	public Optional<String> getSampleValue(@Nonnegative int sample, @Nonnull String key) {
+		if (sample < 0 || sample >= getNSamples()) {
+			throw new IndexOutOfBoundsException("Sample " + sample + " does not exist; there are " + getNSamples());
+		}
+		int index = indexOfFormat(key);
+		if (index < 0) {
+			return Optional.empty();
+		}
+		int field = 9 + sample;
+		int end = m_fields.end(field);
+		int start = m_fields.start(field);
+		for (int i = 0; i < index; i++) {
+			int colon = m_line.indexOf(':', start);
+			if (colon < 0 || colon >= end) {
+				return Optional.empty();
+			}
+			start = colon + 1;
+		}
+		int colon = m_line.indexOf(':', start);
+		if (colon > -1 && colon < end) {
+			end = colon;
+		}
+		return Optional.of(VcfEscapers.SAMPLE.unescape(m_line.substring(start, end)));
+	}
+
+	/**
+	 * Reads the GT value of every sample straight from the line into packed calls, without allocating per sample.
+	 * @throws BadDataFormatException If a GT value is invalid
+	 */
+	@Nonnull
+	public PackedGenotypes getPackedGenotypes() throws BadDataFormatException {
+		PackedGenotypes.Builder builder = new PackedGenotypes.Builder(getNSamples());
+		int index = indexOfFormat(ReservedFormatProperty.Genotype.getId());
+		if (index < 0) {
+			return builder.build();
+		}
+		try {
+			for (int sample = 0; sample < getNSamples(); sample++) {
+				int end = m_fields.end(9 + sample);
+				int start = m_fields.start(9 + sample);
+				for (int i = 0; i < index && start <= end; i++) {
+					int colon = m_line.indexOf(':', start);
+					start = colon < 0 || colon >= end? end + 1 : colon + 1;
+				}
+				if (start <= end) {
+					int colon = m_line.indexOf(':', start);
+					builder.setCall(sample, m_line, start, colon < 0 || colon > end? end : colon);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			throw new BadDataFormatException(m_lineNumber, m_line, e);
+		}
+		return builder.build();
+	}
+
+	private int indexOfFormat(@Nonnull String key) {
+		if (m_fields.size() < 9) {
+			return -1;
+		}
+		int end = m_fields.end(8);
+		int start = m_fields.start(8);
+		int index = 0;
+		while (start <= end) {
+			int colon = m_line.indexOf(':', start);
+			int keyEnd = colon < 0 || colon > end? end : colon;
+			if (keyEnd - start == key.length() && m_line.regionMatches(start, key, 0, key.length())) {
+				return index;
+			}
+			start = keyEnd + 1;
+			index++;
+		}
+		return -1;
+	}
+
+	@Nonnull
+	private List<String> split(@Nonnegative int field, char delimiter, @Nonnull Function<String, String> unescaper) {
+		if (m_fields.isDot(field)) {
+			return Collections.emptyList();
+		}
+		List<String> values = new ArrayList<>(2);
+		int end = m_fields.end(field);
+		int valueStart = m_fields.start(field);
+		for (int i = valueStart; i <= end; i++) {
+			if (i == end || m_line.charAt(i) == delimiter) {
+				values.add(unescaper.apply(m_line.substring(valueStart, i)));
+				valueStart = i + 1;
+			}
+		}
+		return values;
+	}
+
+	@Nonnull
+	@Override
+	public String getLine() {
+		return m_line;
+	}
+
+	@Override
+	public long getLineNumber() {
+		return m_lineNumber;
+	}
+
+	@Nonnull
+	@Override
+	public VcfPosition freeze() throws BadDataFormatException {
+		return m_parser.parse(m_line, m_lineNumber);
+	}
+
+	@Override
+	public String toString() {
+		return "MutableVcfPosition{" +
+				"lineNumber=" + m_lineNumber +
+				", chromosome=" + m_chromosome +
+				", position=" + m_position +
+				'}';
+	}
+}
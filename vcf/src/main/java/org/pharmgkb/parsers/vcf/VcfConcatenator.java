@@ -0,0 +1,577 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ObjectBuilder;
+import org.pharmgkb.parsers.utils.BgzfInputStream;
+import org.pharmgkb.parsers.utils.BgzfOutputStream;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfContigMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfFormatMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfHeaderMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfIdMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfInfoMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfVersionMetadata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Concatenates VCF files with the same samples, such as one file per chromosome, without parsing their positions.
+ * The headers are checked for compatibility and merged into one, and then each file's data section is copied with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+ * BGZF files (see {@link BgzfOutputStream}) are copied as whole compressed blocks, so only the header and the block
+ * where each data section starts are recompressed; the output is BGZF. Other GZIP files are not supported.
+ * Only the last position of each file and the first of the next are checked for sort order.
+ * Example:
+ * <code>
+ *     new VcfConcatenator.Builder().add(chr1).add(chr2).build().write(output);
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class VcfConcatenator {
+
+	private static final int sf_headerSize = 18;
+	private static final int sf_tailWindow = 1 << 17;
+
+	private final List<Input> m_inputs;
+	private final VcfMetadataCollection m_metadata;
+	private final boolean m_bgzf;
+
+	private VcfConcatenator(@Nonnull Builder builder) {
+		List<Input> inputs = new ArrayList<>(builder.m_files.size());
+		for (Path file : builder.m_files) {
+			inputs.add(Input.read(file));
+		}
+		m_inputs = List.copyOf(inputs);
+		m_bgzf = m_inputs.get(0).m_bgzf;
+		for (Input input : m_inputs) {
+			Preconditions.checkArgument(input.m_bgzf == m_bgzf, "Cannot concatenate BGZF and uncompressed files: "
+					+ m_inputs.get(0).m_file + " and " + input.m_file);
+		}
+		m_metadata = mergeMetadata(m_inputs.stream().map(input -> input.m_metadata).collect(Collectors.toList()));
+		if (builder.m_checkOrder) {
+			checkOrder();
+		}
+	}
+
+	/**
+	 * Unions the metadata lines of {@code collections}, keeping the first line for each ID and the first version line.
+	 * @throws IllegalArgumentException If the samples differ, if an INFO or FORMAT ID has different Number or Type
+	 *                                  values, or if a contig has different lengths
+	 */
+	@Nonnull
+	public static VcfMetadataCollection mergeMetadata(@Nonnull List<VcfMetadataCollection> collections) {
+		Preconditions.checkNotNull(collections, "Metadata cannot be null");
+		Preconditions.checkArgument(!collections.isEmpty(), "There must be at least one metadata collection");
+		List<String> samples = collections.get(0).getSampleNames();
+		VcfMetadataCollection.Builder builder = new VcfMetadataCollection.Builder();
+		Map<String, VcfMetadata> seen = new HashMap<>();
+		boolean hasVersion = false;
+		for (VcfMetadataCollection collection : collections) {
+			Preconditions.checkArgument(collection.getSampleNames().equals(samples),
+					"Samples " + collection.getSampleNames() + " differ from " + samples);
+			for (VcfMetadata line : collection.getLines()) {
+				if (line instanceof VcfVersionMetadata) {
+					if (!hasVersion) {
+						builder.addLine(line);
+						hasVersion = true;
+					}
+				} else if (!(line instanceof VcfHeaderMetadata)) {
+					String key = line instanceof VcfIdMetadata?
+							line.getClass().getSimpleName() + "\t" + ((VcfIdMetadata) line).getId() : line.toVcfLine();
+					VcfMetadata first = seen.putIfAbsent(key, line);
+					if (first == null) {
+						builder.addLine(line);
+					} else {
+						checkCompatible(first, line);
+					}
+				}
+			}
+		}
+		return builder.addLine(new VcfHeaderMetadata(samples)).build();
+	}
+
+	private static void checkCompatible(@Nonnull VcfMetadata first, @Nonnull VcfMetadata line) {
+		boolean compatible = true;
+		if (first instanceof VcfInfoMetadata) {
+			VcfInfoMetadata a = (VcfInfoMetadata) first, b = (VcfInfoMetadata) line;
+			compatible = a.getNumber().toString().equals(b.getNumber().toString()) && a.getType() == b.getType();
+		} else if (first instanceof VcfFormatMetadata) {
+			VcfFormatMetadata a = (VcfFormatMetadata) first, b = (VcfFormatMetadata) line;
+			compatible = a.getNumber().toString().equals(b.getNumber().toString()) && a.getType() == b.getType();
+		} else if (first instanceof VcfContigMetadata) {
+			compatible = ((VcfContigMetadata) first).getLength() == ((VcfContigMetadata) line).getLength();
+		}
+		Preconditions.checkArgument(compatible, "Metadata lines conflict: " + first.toVcfLine() + " and " + line.toVcfLine());
+	}
+
+	/**
+	 * Compares the last position of each file with the first position of the next non-empty file.
+	 * Contigs are ordered by their ##contig lines; if either is missing, the pair is unsorted only if the next file
+	 * starts on a contig that an earlier file started or ended on.
+	 */
+	private void checkOrder() {
+		Map<String, Integer> ranks = new HashMap<>();
+		m_metadata.getContig().keySet().forEach(contig -> ranks.put(contig, ranks.size()));
+		Set<String> seen = new HashSet<>();
+		Input previous = null;
+		for (Input input : m_inputs) {
+			if (input.m_firstLine == null) {
+				continue;
+			}
+			if (previous != null) {
+				String lastContig = contig(previous.m_lastLine), firstContig = contig(input.m_firstLine);
+				boolean sorted;
+				if (lastContig.equals(firstContig)) {
+					sorted = position(input.m_firstLine) >= position(previous.m_lastLine);
+				} else {
+					Integer lastRank = ranks.get(lastContig), firstRank = ranks.get(firstContig);
+					sorted = !seen.contains(firstContig) && (lastRank == null || firstRank == null || firstRank > lastRank);
+				}
+				if (!sorted) {
+					throw new BadDataFormatException(input.m_file + " starts at " + firstContig + ":" + position(input.m_firstLine)
+							+ ", before the end of " + previous.m_file + " at " + lastContig + ":" + position(previous.m_lastLine));
+				}
+			}
+			seen.add(contig(input.m_firstLine));
+			seen.add(contig(input.m_lastLine));
+			previous = input;
+		}
+	}
+
+	@Nonnull
+	private static String contig(@Nonnull String line) {
+		int tab = line.indexOf('\t');
+		if (tab < 0) {
+			throw new BadDataFormatException("Line " + line + " has too few columns");
+		}
+		return line.substring(0, tab);
+	}
+
+	/**
+	 * @return The 1-based POS
+	 */
+	private static long position(@Nonnull String line) {
+		int tab = line.indexOf('\t');
+		int next = line.indexOf('\t', tab + 1);
+		try {
+			return Long.parseLong(line, tab + 1, next < 0? line.length() : next, 10);
+		} catch (NumberFormatException | IndexOutOfBoundsException e) {
+			throw new BadDataFormatException("Line " + line.substring(0, Math.min(line.length(), 100)) + " has an invalid POS", e);
+		}
+	}
+
+	/**
+	 * Writes the merged header and then every file's positions to {@code output}, replacing it.
+	 * The output is BGZF if the inputs are.
+	 * @throws UncheckedIOException If a file cannot be read or written
+	 */
+	public void write(@Nonnull Path output) throws UncheckedIOException {
+		Preconditions.checkNotNull(output, "Output cannot be null");
+		StringBuilder header = new StringBuilder();
+		new VcfMetadataWriter().apply(m_metadata).forEach(line -> header.append(line).append('\n'));
+		try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			write(out, encode(header.toString().getBytes(StandardCharsets.UTF_8)));
+			for (Input input : m_inputs) {
+				if (input.m_firstLine == null) {
+					continue;
+				}
+				try (FileChannel in = FileChannel.open(input.m_file, StandardOpenOption.READ)) {
+					long start = input.m_dataStart;
+					if (m_bgzf) {
+						start = copyPartialBlock(input, in, out);
+					}
+					transfer(in, start, input.m_dataEnd, out);
+				}
+				if (!input.m_endsWithNewline) {
+					write(out, encode(new byte[] {'\n'}));
+				}
+			}
+			if (m_bgzf) {
+				write(out, BgzfOutputStream.EOF_BLOCK);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write " + output, e);
+		}
+	}
+
+	/**
+	 * Recompresses the rest of the block where the data section starts, if it does not start a block.
+	 * @return The offset of the first whole block to copy
+	 */
+	private long copyPartialBlock(@Nonnull Input input, @Nonnull FileChannel in, @Nonnull FileChannel out) throws IOException {
+		long address = input.m_dataStart >>> 16;
+		if ((input.m_dataStart & 0xffff) == 0) {
+			return address;
+		}
+		try (BgzfInputStream bgzf = new BgzfInputStream(FileChannel.open(input.m_file, StandardOpenOption.READ))) {
+			bgzf.seek(input.m_dataStart);
+			write(out, encode(bgzf.readNBytes(bgzf.available())));
+		}
+		ByteBuffer header = readFully(in, address, sf_headerSize);
+		return address + (header.getShort(16) & 0xffff) + 1;
+	}
+
+	private static void transfer(@Nonnull FileChannel in, long start, long end, @Nonnull FileChannel out) throws IOException {
+		while (start < end) {
+			long n = in.transferTo(start, end - start, out);
+			if (n <= 0) {
+				throw new IOException("Could not copy bytes " + start + "-" + end);
+			}
+			start += n;
+		}
+	}
+
+	private static void write(@Nonnull FileChannel out, @Nonnull byte[] bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	/**
+	 * @return {@code bytes} as BGZF blocks without the EOF block if the output is BGZF; otherwise, {@code bytes}
+	 */
+	@Nonnull
+	private byte[] encode(@Nonnull byte[] bytes) throws IOException {
+		if (!m_bgzf) {
+			return bytes;
+		}
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 64);
+		try (BgzfOutputStream out = new BgzfOutputStream(compressed)) {
+			out.write(bytes);
+		}
+		return Arrays.copyOf(compressed.toByteArray(), compressed.size() - BgzfOutputStream.EOF_BLOCK.length);
+	}
+
+	@Nonnull
+	private static ByteBuffer readFully(@Nonnull FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				break;
+			}
+		}
+		return buffer.flip();
+	}
+
+	private static boolean isBgzfHeader(@Nonnull ByteBuffer buffer, int offset) {
+		return offset + sf_headerSize <= buffer.limit()
+				&& (buffer.get(offset) & 0xff) == 0x1f && (buffer.get(offset + 1) & 0xff) == 0x8b
+				&& (buffer.get(offset + 3) & 0x04) != 0
+				&& buffer.get(offset + 12) == 'B' && buffer.get(offset + 13) == 'C';
+	}
+
+	@Nonnull
+	public VcfMetadataCollection getMetadata() {
+		return m_metadata;
+	}
+
+	/**
+	 * @return Whether the inputs, and so the output, are BGZF
+	 */
+	public boolean isBgzf() {
+		return m_bgzf;
+	}
+
+	@Override
+	public String toString() {
+		return "VcfConcatenator{" +
+				"files=" + m_inputs.stream().map(input -> input.m_file).collect(Collectors.toList()) +
+				", bgzf=" + m_bgzf +
+				'}';
+	}
+
+	/**
+	 * A file's header, the bounds of its data section, and its first and last lines.
+	 */
+	@Immutable
+	private static final class Input {
+
+		private final Path m_file;
+		private final boolean m_bgzf;
+		private final VcfMetadataCollection m_metadata;
+		private final long m_dataStart; // a virtual offset for BGZF
+		private final long m_dataEnd; // a byte offset, before any EOF block
+		private final String m_firstLine; // null if there are no positions
+		private final String m_lastLine;
+		private final boolean m_endsWithNewline;
+
+		private Input(@Nonnull Path file, boolean bgzf, @Nonnull VcfMetadataCollection metadata, long dataStart,
+				long dataEnd, @Nullable String firstLine, @Nullable String lastLine, boolean endsWithNewline) {
+			m_file = file;
+			m_bgzf = bgzf;
+			m_metadata = metadata;
+			m_dataStart = dataStart;
+			m_dataEnd = dataEnd;
+			m_firstLine = firstLine;
+			m_lastLine = lastLine;
+			m_endsWithNewline = endsWithNewline;
+		}
+
+		/**
+		 * Reads the header and first line from the start, and the last line from the end.
+		 */
+		@Nonnull
+		static Input read(@Nonnull Path file) throws UncheckedIOException {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				long size = channel.size();
+				ByteBuffer magic = readFully(channel, 0, sf_headerSize);
+				boolean gzip = magic.limit() >= 2 && (magic.get(0) & 0xff) == 0x1f && (magic.get(1) & 0xff) == 0x8b;
+				boolean bgzf = gzip && isBgzfHeader(magic, 0);
+				if (gzip && !bgzf) {
+					throw new BadDataFormatException(file + " is compressed but not BGZF, so it cannot be concatenated");
+				}
+				List<String> header = new ArrayList<>();
+				String firstLine = null;
+				long dataStart;
+				InputStream in;
+				Offset offset;
+				if (bgzf) {
+					BgzfInputStream bgzfIn = new BgzfInputStream(FileChannel.open(file, StandardOpenOption.READ));
+					in = bgzfIn;
+					offset = bgzfIn::getVirtualOffset;
+				} else {
+					in = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file), 65536));
+					offset = ((CountingInputStream) in)::getCount;
+				}
+				try (in) {
+					while (true) {
+						dataStart = offset.get();
+						String line = readLine(in);
+						if (line == null) {
+							break;
+						}
+						if (!line.startsWith("#")) {
+							firstLine = line;
+							break;
+						}
+						header.add(line);
+					}
+				}
+				VcfMetadataCollection metadata;
+				try {
+					metadata = new VcfMetadataParser().apply(header.stream());
+				} catch (RuntimeException e) {
+					throw new BadDataFormatException("Invalid header in " + file, e);
+				}
+				if (firstLine == null) {
+					return new Input(file, bgzf, metadata, dataStart, dataStart, null, null, true);
+				}
+				long dataEnd = size;
+				if (bgzf && size >= BgzfOutputStream.EOF_BLOCK.length
+						&& Arrays.equals(readFully(channel, size - BgzfOutputStream.EOF_BLOCK.length, BgzfOutputStream.EOF_BLOCK.length).array(), BgzfOutputStream.EOF_BLOCK)) {
+					dataEnd = size - BgzfOutputStream.EOF_BLOCK.length;
+				}
+				byte[] tail = bgzf? bgzfTail(file, channel, dataStart) : readFully(channel, Math.max(dataStart, size - sf_tailWindow), (int) Math.min(sf_tailWindow, size - dataStart)).array();
+				boolean endsWithNewline = tail.length > 0 && tail[tail.length - 1] == '\n';
+				String lastLine = lastLine(tail);
+				if (lastLine == null) {
+					lastLine = lastLineByScanning(file, bgzf, dataStart);
+				}
+				return new Input(file, bgzf, metadata, dataStart, dataEnd, firstLine, lastLine, endsWithNewline);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not read " + file, e);
+			}
+		}
+
+		@FunctionalInterface
+		private interface Offset {
+			long get() throws IOException;
+		}
+
+		/**
+		 * @return The next line without its line terminator, or null at the end
+		 */
+		@Nullable
+		private static String readLine(@Nonnull InputStream in) throws IOException {
+			ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+			int b;
+			while ((b = in.read()) >= 0 && b != '\n') {
+				line.write(b);
+			}
+			if (b < 0 && line.size() == 0) {
+				return null;
+			}
+			String text = line.toString(StandardCharsets.UTF_8);
+			return text.endsWith("\r")? text.substring(0, text.length() - 1) : text;
+		}
+
+		/**
+		 * @return The last line in {@code bytes}, or null if it might have started before them
+		 */
+		@Nullable
+		private static String lastLine(@Nonnull byte[] bytes) {
+			int end = bytes.length;
+			if (end > 0 && bytes[end - 1] == '\n') {
+				end--;
+			}
+			if (end > 0 && bytes[end - 1] == '\r') {
+				end--;
+			}
+			for (int i = end - 1; i >= 0; i--) {
+				if (bytes[i] == '\n') {
+					return new String(bytes, i + 1, end - i - 1, StandardCharsets.UTF_8);
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Inflates the last blocks, which are found by searching backward for a chain of block headers that ends
+		 * exactly at the end of the file.
+		 */
+		@Nonnull
+		private static byte[] bgzfTail(@Nonnull Path file, @Nonnull FileChannel channel, long dataStart) throws IOException {
+			long size = channel.size();
+			long from = Math.max(0, size - sf_tailWindow);
+			ByteBuffer buffer = readFully(channel, from, (int) (size - from));
+			for (int p = 0; p < buffer.limit(); p++) {
+				if (isBgzfHeader(buffer, p) && chainEndsAt(buffer, p)) {
+					long virtualOffset = Math.max((from + p) << 16, dataStart);
+					try (BgzfInputStream in = new BgzfInputStream(FileChannel.open(file, StandardOpenOption.READ))) {
+						in.seek(virtualOffset);
+						return in.readAllBytes();
+					}
+				}
+			}
+			throw new IOException("Could not find the last BGZF blocks of " + file);
+		}
+
+		private static boolean chainEndsAt(@Nonnull ByteBuffer buffer, int offset) {
+			while (isBgzfHeader(buffer, offset)) {
+				offset += (buffer.getShort(offset + 16) & 0xffff) + 1;
+			}
+			return offset == buffer.limit();
+		}
+
+		/**
+		 * Reads the whole data section, for a last line too long for the tail.
+		 */
+		@Nonnull
+		private static String lastLineByScanning(@Nonnull Path file, boolean bgzf, long dataStart) throws IOException {
+			InputStream in;
+			if (bgzf) {
+				BgzfInputStream bgzfIn = new BgzfInputStream(FileChannel.open(file, StandardOpenOption.READ));
+				bgzfIn.seek(dataStart);
+				in = bgzfIn;
+			} else {
+				in = new BufferedInputStream(Files.newInputStream(file), 65536);
+				in.skipNBytes(dataStart);
+			}
+			try (in) {
+				String last = null, line;
+				while ((line = readLine(in)) != null) {
+					last = line;
+				}
+				return Objects.requireNonNull(last);
+			}
+		}
+	}
+
+	/**
+	 * Counts the bytes read one at a time, for the uncompressed header.
+	 */
+	@NotThreadSafe
+	private static final class CountingInputStream extends FilterInputStream {
+
+		private long m_count = 0;
+
+		CountingInputStream(@Nonnull InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			if (b >= 0) {
+				m_count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(@Nonnull byte[] bytes, int offset, int length) throws IOException {
+			int n = in.read(bytes, offset, length);
+			if (n > 0) {
+				m_count += n;
+			}
+			return n;
+		}
+
+		long getCount() {
+			return m_count;
+		}
+	}
+
+	@NotThreadSafe
+	public static class Builder implements ObjectBuilder<VcfConcatenator> {
+
+		private final List<Path> m_files = new ArrayList<>();
+		private boolean m_checkOrder = true;
+
+		/**
+		 * Adds a file to concatenate after those already added.
+		 */
+		@Nonnull
+		public Builder add(@Nonnull Path file) {
+			Preconditions.checkNotNull(file, "File cannot be null");
+			m_files.add(file);
+			return this;
+		}
+
+		/**
+		 * Checks that each file's first position is not before the last position of the file before it; true by default.
+		 * Different contigs are compared by the order of their ##contig lines. For a contig without one, this only
+		 * checks that it does not appear again after a different contig, and only at the starts and ends of files.
+		 */
+		@Nonnull
+		public Builder setCheckOrder(boolean checkOrder) {
+			m_checkOrder = checkOrder;
+			return this;
+		}
+
+		/**
+		 * Reads the headers and the first and last lines of the files.
+		 * @throws IllegalArgumentException If there are no files, or their headers are incompatible
+		 *                                  (see {@link #mergeMetadata(List)}), or some are BGZF and others are not
+		 * @throws BadDataFormatException If a header is invalid, a file is compressed but not BGZF, or the files are out of order
+		 * @throws UncheckedIOException If a file cannot be read
+		 */
+		@Nonnull
+		@Override
+		public VcfConcatenator build() {
+			Preconditions.checkArgument(!m_files.isEmpty(), "There must be at least one file");
+			return new VcfConcatenator(this);
+		}
+	}
+}
@@ -1,22 +1,33 @@
 package org.pharmgkb.parsers.vcf;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
 import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ErrorPolicy;
 import org.pharmgkb.parsers.LineParser;
-import org.pharmgkb.parsers.model.GeneralizedBigDecimal;
+import org.pharmgkb.parsers.ObjectBuilder;
+import org.pharmgkb.parsers.ReusingLineParser;
+import org.pharmgkb.parsers.cache.SidecarCache;
+import org.pharmgkb.parsers.vcf.model.VcfFormatSchema;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
 import org.pharmgkb.parsers.vcf.model.VcfPosition;
 import org.pharmgkb.parsers.vcf.model.VcfSample;
 import org.pharmgkb.parsers.vcf.utils.VcfEscapers;
+import org.pharmgkb.parsers.vcf.utils.VcfPatterns;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandles;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -27,7 +38,7 @@
  * @author Douglas Myers-Turnbull
  */
 @ThreadSafe
-public class VcfDataParser implements LineParser<VcfPosition> {
+public class VcfDataParser implements LineParser<VcfPosition>, ReusingLineParser<MutableVcfPosition> {
 
 	private static final long sf_logEvery = 10000;
 
@@ -40,28 +51,151 @@ public class VcfDataParser implements LineParser<VcfPosition> {
 
 	private AtomicLong m_lineNumber = new AtomicLong(0l);
 
+	private final SidecarCache<List<VcfPosition>> m_sidecarCache;
+
+	private final ErrorPolicy m_errorPolicy;
+
+	private final boolean m_deferColumns;
+
+	private final boolean m_siteOnly;
+
+	// null to keep all
+	private final String[] m_infoKeys;
+	private final int[] m_sampleColumns;
+
+	// null to keep all
+	private final Predicate<String> m_filter;
+
+	public VcfDataParser() {
+		m_sidecarCache = null;
+		m_errorPolicy = ErrorPolicy.failFast();
+		m_deferColumns = false;
+		m_siteOnly = false;
+		m_infoKeys = null;
+		m_sampleColumns = null;
+		m_filter = null;
+	}
+
+	/**
+	 * @param sidecarCache Normally {@code SidecarCache.forRecords(new VcfPositionCodec())}
+	 */
+	public VcfDataParser(@Nonnull SidecarCache<List<VcfPosition>> sidecarCache) {
+		Preconditions.checkNotNull(sidecarCache, "Sidecar cache cannot be null");
+		m_sidecarCache = sidecarCache;
+		m_errorPolicy = ErrorPolicy.failFast();
+		m_deferColumns = false;
+		m_siteOnly = false;
+		m_infoKeys = null;
+		m_sampleColumns = null;
+		m_filter = null;
+	}
+
+	public VcfDataParser(@Nonnull ErrorPolicy errorPolicy) {
+		Preconditions.checkNotNull(errorPolicy, "Error policy cannot be null");
+		m_sidecarCache = null;
+		m_errorPolicy = errorPolicy;
+		m_deferColumns = false;
+		m_siteOnly = false;
+		m_infoKeys = null;
+		m_sampleColumns = null;
+		m_filter = null;
+	}
+
+	public VcfDataParser(@Nonnull Builder builder) {
+		m_sidecarCache = builder.m_sidecarCache;
+		m_errorPolicy = builder.m_errorPolicy;
+		m_deferColumns = builder.m_deferColumns;
+		m_siteOnly = builder.m_siteOnly;
+		m_infoKeys = builder.m_infoKeys == null? null : builder.m_infoKeys.toArray(new String[0]);
+		m_sampleColumns = builder.m_sampleColumns == null? null : builder.m_sampleColumns.stream().mapToInt(i -> i).toArray();
+		m_filter = builder.m_filter;
+	}
+
 	@Nonnull
 	@Override
 	public Stream<VcfPosition> parseAll(@Nonnull Stream<String> stream) throws UncheckedIOException, BadDataFormatException {
-		return stream.filter(s -> !s.startsWith("#")).map(this);
+		return m_errorPolicy.map(stream.filter(this::isRecordLine), this);
+	}
+
+	/**
+	 * @return Whether {@code line} is a position line that passes the {@link Builder#filter(Predicate) filter}, if any.
+	 * A line that the filter cannot read is handled by the {@link ErrorPolicy}.
+	 */
+	@Override
+	public boolean isRecordLine(@Nonnull String line) {
+		if (line.startsWith("#")) {
+			return false;
+		}
+		if (m_filter == null) {
+			return true;
+		}
+		try {
+			if (m_filter.test(line)) {
+				return true;
+			}
+		} catch (BadDataFormatException e) {
+			m_errorPolicy.reject(line, m_errorPolicy.badLine(nextLineNumber(), line, e));
+			return false;
+		}
+		nextLineNumber(); // count it as though it had been parsed
+		return false;
 	}
 
 	@Nonnull
 	@Override
 	public VcfPosition apply(@Nonnull String line) throws BadDataFormatException {
+		return parse(line, nextLineNumber());
+	}
 
-		if (m_lineNumber.incrementAndGet() % sf_logEvery == 0) {
-			sf_logger.debug("Reading line #{}", m_lineNumber);
-		}
+	@Nonnull
+	@Override
+	public MutableVcfPosition newRecord() {
+		return new MutableVcfPosition(this);
+	}
 
+	@Override
+	public void parseInto(@Nonnull String line, @Nonnull MutableVcfPosition record) throws BadDataFormatException {
+		long lineNumber = nextLineNumber();
 		if (line.startsWith("#")) {
-			throw new BadDataFormatException("Line looks like metadata on line #" + m_lineNumber.get() + ": [[[" + line + "]]]");
+			throw m_errorPolicy.badLine(lineNumber, line, new IllegalArgumentException("Line looks like metadata"));
+		}
+		record.set(line, lineNumber);
+	}
+
+	private long nextLineNumber() {
+		long lineNumber = m_lineNumber.incrementAndGet();
+		if (lineNumber % sf_logEvery == 0) {
+			sf_logger.debug("Reading line #{}", lineNumber);
 		}
+		return lineNumber;
+	}
+
+	@Nonnull
+	VcfPosition parse(@Nonnull String line, long lineNumber) throws BadDataFormatException {
 
-		List<String> data = sf_tab.splitToList(line);
+		if (line.startsWith("#")) {
+			throw m_errorPolicy.badLine(lineNumber, line, new IllegalArgumentException("Line looks like metadata"));
+		}
 
 		try {
 
+			List<String> data;
+			int infoStart = -1;
+			if (m_deferColumns || m_siteOnly || m_infoKeys != null || m_sampleColumns != null) {
+				// split only the columns before INFO
+				int tab = -1;
+				for (int i = 0; i < 7; i++) {
+					tab = line.indexOf('\t', tab + 1);
+					if (tab < 0) {
+						throw new IllegalArgumentException("Line has fewer than 8 columns");
+					}
+				}
+				infoStart = tab + 1;
+				data = sf_tab.splitToList(line.substring(0, tab));
+			} else {
+				data = sf_tab.splitToList(line);
+			}
+
 			// CHROM
 			String chromosome = VcfEscapers.CHROMOSOME.unescape(data.get(0));
 
@@ -95,7 +229,7 @@ public VcfPosition apply(@Nonnull String line) throws BadDataFormatException {
 			// QUAL
 			if (!data.get(5).equals(".")) {
 				try {
-					builder.setQuality(Optional.of(new GeneralizedBigDecimal(data.get(5))));
+					builder.setQuality(data.get(5));
 				} catch (NumberFormatException e) {
 					throw new IllegalArgumentException("QUAL is not a number", e);
 				}
@@ -108,60 +242,214 @@ public VcfPosition apply(@Nonnull String line) throws BadDataFormatException {
 				builder.addFilters(unescaped.collect(Collectors.toList()));
 			}
 
-			// INFO
-			Set<String> keysUsed = new HashSet<>();
-			if (!data.get(7).equals(".")) {
-				List<String> props = sf_semicolon.splitToList(data.get(7));
-				for (String prop : props) {
-					int index = prop.indexOf('=');
-					String key, value;
-					if (index == -1) {
-						key = prop;
-						value = ""; // weird!
-					} else {
-						key = prop.substring(0, index);
-						value = prop.substring(index + 1);
-					}
-					if (keysUsed.contains(key)) {
-						throw new BadDataFormatException("Key " + key + " appears more than once in the INFO field");
-					}
-					Stream<String> unescaped = sf_comma.splitToList(value).stream()
-							.map(VcfEscapers.INFO_VALUE::unescape);
-					builder.putInfo(key, unescaped.collect(Collectors.toList()));
-					keysUsed.add(key);
-				}
+			if (m_deferColumns) {
+				builder.setDeferredColumns(new LazyVcfColumns(line, infoStart, lineNumber));
+				return builder.build();
+			}
+			if (infoStart > -1) {
+				return parseProjected(line, infoStart, builder);
 			}
 
+			// INFO
+			builder.putInfo(parseInfo(data.get(7)));
+
 			// FORMAT
 			List<String> format = new ArrayList<>(0);
 			if (data.size() >= 9) {
-				format = sf_colon.splitToList(data.get(8));
+				format = parseFormat(data.get(8));
 			}
 			builder.addFormats(format);
 
 			// samples
+			VcfFormatSchema schema = VcfFormatSchema.of(format);
 			for (int x = 9; x < data.size(); x++) {
-				Stream<String> unescaped = sf_colon.splitToList(data.get(x)).stream()
-						.map(VcfEscapers.SAMPLE::unescape);
-				builder.addSample(new VcfSample.Builder(format, unescaped.collect(Collectors.toList())).build());
+				builder.addSample(parseSample(schema, data.get(x)));
 			}
 
 			return builder.build();
 
-		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
-			throw new BadDataFormatException(
-					"Bad data format on line #" + m_lineNumber.get()
-					+ "; line is [[[" + line + "]]]",
-					e
-			);
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | BadDataFormatException e) {
+			throw m_errorPolicy.badLine(lineNumber, line, e);
 		} catch (RuntimeException e) {
 			// this is a little weird, but it's helpful
 			// not that we're not throwing a BadDataFormatException because we don't expect AIOOB, e.g.
-			e.addSuppressed(new RuntimeException("Failed on line " + m_lineNumber));
+			e.addSuppressed(new RuntimeException("Failed on line " + lineNumber));
 			throw e;
 		}
 	}
 
+	/**
+	 * Reads INFO and, unless {@link #isSiteOnly() site-only}, FORMAT and the samples, skipping unwanted INFO entries and sample columns without allocating.
+	 */
+	@Nonnull
+	private VcfPosition parseProjected(@Nonnull String line, int infoStart, @Nonnull VcfPosition.Builder builder) {
+
+		// INFO
+		int infoEnd = endOfColumn(line, infoStart);
+		if (m_infoKeys == null) {
+			builder.putInfo(parseInfo(line.substring(infoStart, infoEnd)));
+		} else {
+			builder.putInfo(parseInfo(line, infoStart, infoEnd, m_infoKeys));
+		}
+		if (m_siteOnly || infoEnd == line.length()) {
+			return builder.build();
+		}
+
+		// FORMAT
+		int formatEnd = endOfColumn(line, infoEnd + 1);
+		List<String> format = parseFormat(line.substring(infoEnd + 1, formatEnd));
+		builder.addFormats(format);
+
+		// samples
+		VcfFormatSchema schema = VcfFormatSchema.of(format);
+		int start = formatEnd + 1;
+		int sample = 0;
+		int nFound = 0;
+		while (formatEnd < line.length() && (m_sampleColumns == null || nFound < m_sampleColumns.length)) {
+			int end = endOfColumn(line, start);
+			if (m_sampleColumns == null || m_sampleColumns[nFound] == sample) {
+				builder.addSample(parseSample(schema, line.substring(start, end)));
+				nFound++;
+			}
+			if (end == line.length()) {
+				break;
+			}
+			start = end + 1;
+			sample++;
+		}
+		if (m_sampleColumns != null && nFound < m_sampleColumns.length) {
+			throw new IllegalArgumentException("Line has only " + (sample + 1) + " samples");
+		}
+		return builder.build();
+	}
+
+	private static int endOfColumn(@Nonnull String line, int start) {
+		int tab = line.indexOf('\t', start);
+		return tab < 0? line.length() : tab;
+	}
+
+	/**
+	 * Reads an INFO column, unescaping the values.
+	 * @throws IllegalArgumentException If a key is invalid or a value is empty, as for {@link VcfPosition.Builder#putInfo(String, String)}
+	 * @throws BadDataFormatException If a key appears twice
+	 */
+	@Nonnull
+	static ListMultimap<String, String> parseInfo(@Nonnull String column) throws IllegalArgumentException, BadDataFormatException {
+		ListMultimap<String, String> info = LinkedListMultimap.create();
+		if (column.equals(".")) {
+			return info;
+		}
+		for (String prop : sf_semicolon.split(column)) {
+			int index = prop.indexOf('=');
+			if (index == -1) {
+				putInfo(info, prop, ""); // weird!
+			} else {
+				putInfo(info, prop.substring(0, index), prop.substring(index + 1));
+			}
+		}
+		return info;
+	}
+
+	/**
+	 * Reads only the INFO entries whose keys are in {@code keys}, from {@code start} to {@code end} in {@code line};
+	 * other entries are skipped without allocating.
+	 */
+	@Nonnull
+	static ListMultimap<String, String> parseInfo(@Nonnull String line, int start, int end, @Nonnull String[] keys) throws IllegalArgumentException, BadDataFormatException {
+		ListMultimap<String, String> info = LinkedListMultimap.create();
+		if (end - start == 1 && line.charAt(start) == '.') {
+			return info;
+		}
+		while (start < end) {
+			int entryEnd = line.indexOf(';', start);
+			if (entryEnd < 0 || entryEnd > end) {
+				entryEnd = end;
+			}
+			for (String key : keys) {
+				int keyEnd = start + key.length();
+				if (keyEnd <= entryEnd && line.regionMatches(start, key, 0, key.length())) {
+					if (keyEnd == entryEnd) {
+						putInfo(info, key, "");
+						break;
+					} else if (line.charAt(keyEnd) == '=') {
+						putInfo(info, key, line.substring(keyEnd + 1, entryEnd));
+						break;
+					}
+				}
+			}
+			start = entryEnd + 1;
+		}
+		return info;
+	}
+
+	private static void putInfo(@Nonnull ListMultimap<String, String> info, @Nonnull String key, @Nonnull String value) throws IllegalArgumentException, BadDataFormatException {
+		if (info.containsKey(key)) {
+			throw new BadDataFormatException("Key " + key + " appears more than once in the INFO field");
+		}
+		if (!VcfPatterns.SINGLE_INFO_KEY_PATTERN.matcher(key).matches()) {
+			throw new IllegalArgumentException("INFO key \"" + key + "\" is invalid");
+		}
+		List<String> values = sf_comma.splitToList(value);
+		for (String v : values) {
+			if (v.isEmpty() && values.size() > 1) {
+				throw new IllegalArgumentException("INFO value can only be a singleton list of an empty string or a list of non-empty strings");
+			}
+			info.put(key, VcfEscapers.INFO_VALUE.unescape(v));
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException If a key is invalid
+	 */
+	@Nonnull
+	static List<String> parseFormat(@Nonnull String column) throws IllegalArgumentException {
+		List<String> format = sf_colon.splitToList(column);
+		for (String key : format) {
+			if (!VcfPatterns.SINGLE_FORMAT_PATTERN.matcher(key).matches()) {
+				throw new IllegalArgumentException("FORMAT \"" + key + "\" is invalid");
+			}
+		}
+		return format;
+	}
+
+	/**
+	 * Reads a sample column, unescaping the values.
+	 * @throws IllegalArgumentException If there are more values than FORMAT keys
+	 */
+	@Nonnull
+	static VcfSample parseSample(@Nonnull VcfFormatSchema schema, @Nonnull String column) throws IllegalArgumentException {
+		List<String> values = sf_colon.splitToList(column).stream()
+				.map(VcfEscapers.SAMPLE::unescape)
+				.collect(Collectors.toList());
+		return new VcfSample(schema, values);
+	}
+
+	/**
+	 * @return Whether INFO, FORMAT, and samples are left undecoded until first accessed
+	 */
+	public boolean isDeferringColumns() {
+		return m_deferColumns;
+	}
+
+	/**
+	 * @return Whether lines are read only through INFO, without FORMAT or samples
+	 */
+	public boolean isSiteOnly() {
+		return m_siteOnly;
+	}
+
+	@Nonnull
+	@Override
+	public ErrorPolicy getErrorPolicy() {
+		return m_errorPolicy;
+	}
+
+	@Nonnull
+	@Override
+	public Optional<SidecarCache<List<VcfPosition>>> getSidecarCache() {
+		return Optional.ofNullable(m_sidecarCache);
+	}
+
 	@Nonnegative
 	@Override
 	public long nLinesProcessed() {
@@ -172,6 +460,141 @@ public long nLinesProcessed() {
 	public String toString() {
 		return "VcfDataParser{" +
 				"lineNumber=" + m_lineNumber.get() +
+				", deferColumns=" + m_deferColumns +
+				", siteOnly=" + m_siteOnly +
+				", filtered=" + (m_filter != null) +
 				'}';
 	}
+
+	@NotThreadSafe
+	public static class Builder implements ObjectBuilder<VcfDataParser> {
+
+		private SidecarCache<List<VcfPosition>> m_sidecarCache = null;
+		private ErrorPolicy m_errorPolicy = ErrorPolicy.failFast();
+		private boolean m_deferColumns = false;
+		private boolean m_siteOnly = false;
+		private Set<String> m_infoKeys = null;
+		private SortedSet<Integer> m_sampleColumns = null;
+		private Predicate<String> m_filter = null;
+
+		/**
+		 * @param sidecarCache Normally {@code SidecarCache.forRecords(new VcfPositionCodec())}
+		 */
+		@Nonnull
+		public Builder setSidecarCache(@Nonnull SidecarCache<List<VcfPosition>> sidecarCache) {
+			Preconditions.checkNotNull(sidecarCache, "Sidecar cache cannot be null");
+			m_sidecarCache = sidecarCache;
+			return this;
+		}
+
+		@Nonnull
+		public Builder setErrorPolicy(@Nonnull ErrorPolicy errorPolicy) {
+			Preconditions.checkNotNull(errorPolicy, "Error policy cannot be null");
+			m_errorPolicy = errorPolicy;
+			return this;
+		}
+
+		/**
+		 * Leaves INFO, FORMAT, and the samples undecoded until they are first accessed, which is much faster when
+		 * there are many samples but few are read. Errors in those columns are then thrown as
+		 * {@link BadDataFormatException BadDataFormatExceptions} on first access, outside the parser's {@link ErrorPolicy}.
+		 * The {@link VcfPosition} API is the same either way.
+		 */
+		@Nonnull
+		public Builder deferColumns() {
+			m_deferColumns = true;
+			return this;
+		}
+
+		/**
+		 * Stops reading each line after INFO, so that positions have no FORMAT and no samples.
+		 * For site-level work such as annotation, lift-over, and counting, this skips nearly all of a line from a
+		 * large cohort. Can be combined with {@link #keepInfoKeys(Collection)}.
+		 */
+		@Nonnull
+		public Builder siteOnly() {
+			m_siteOnly = true;
+			return this;
+		}
+
+		/**
+		 * Keeps only these INFO keys; other entries are skipped without being unescaped or copied.
+		 * Can be called more than once.
+		 */
+		@Nonnull
+		public Builder keepInfoKeys(@Nonnull Collection<String> keys) {
+			Preconditions.checkNotNull(keys, "INFO keys cannot be null");
+			if (m_infoKeys == null) {
+				m_infoKeys = new LinkedHashSet<>();
+			}
+			m_infoKeys.addAll(keys);
+			return this;
+		}
+
+		/**
+		 * Keeps only the samples with these names, in the order of the file, skipping the other sample columns
+		 * without copying them. Can be called more than once.
+		 * @param metadata Resolves the names to column indices once
+		 * @throws IllegalArgumentException If a name is not one of the samples in {@code metadata}
+		 */
+		@Nonnull
+		public Builder keepSamples(@Nonnull VcfMetadataCollection metadata, @Nonnull Collection<String> sampleNames) {
+			Preconditions.checkNotNull(metadata, "Metadata cannot be null");
+			Preconditions.checkNotNull(sampleNames, "Sample names cannot be null");
+			List<String> allNames = metadata.getSampleNames();
+			List<Integer> indices = new ArrayList<>(sampleNames.size());
+			for (String name : sampleNames) {
+				int index = allNames.indexOf(name);
+				Preconditions.checkArgument(index > -1, "Sample " + name + " is not in the VCF header");
+				indices.add(index);
+			}
+			return keepSamples(indices);
+		}
+
+		/**
+		 * Keeps only the samples at these 0-based indices, in the order of the file.
+		 * Can be called more than once.
+		 */
+		@Nonnull
+		public Builder keepSamples(@Nonnull Collection<Integer> sampleIndices) {
+			Preconditions.checkNotNull(sampleIndices, "Sample indices cannot be null");
+			Preconditions.checkArgument(sampleIndices.stream().allMatch(i -> i >= 0), "Sample indices must be nonnegative");
+			if (m_sampleColumns == null) {
+				m_sampleColumns = new TreeSet<>();
+			}
+			m_sampleColumns.addAll(sampleIndices);
+			return this;
+		}
+
+		/**
+		 * Skips position lines that fail {@code filter}, which is applied to the raw line before it is parsed,
+		 * such as a {@link VcfFilterExpression}. Applies to {@link #parseAll(Stream)}, {@link #collectAll(Stream)},
+		 * and {@link #forEach(Stream, java.util.function.Consumer)}, but not to {@link #apply(String)}.
+		 * Can be called more than once; lines must pass every filter.
+		 */
+		@Nonnull
+		public Builder filter(@Nonnull Predicate<String> filter) {
+			Preconditions.checkNotNull(filter, "Filter cannot be null");
+			m_filter = m_filter == null? filter : m_filter.and(filter);
+			return this;
+		}
+
+		/**
+		 * @throws IllegalStateException If columns are deferred and also projected, if samples are kept for a
+		 * site-only parser, or if a sidecar cache is used with projection or a filter (it would store the partial
+		 * or filtered positions)
+		 */
+		@Nonnull
+		@Override
+		public VcfDataParser build() {
+			boolean projected = m_siteOnly || m_infoKeys != null || m_sampleColumns != null;
+			Preconditions.checkState(!m_deferColumns || !projected,
+					"Deferred columns cannot also be site-only or keep only some INFO keys or samples");
+			Preconditions.checkState(!m_siteOnly || m_sampleColumns == null, "A site-only parser cannot keep samples");
+			Preconditions.checkState(m_sidecarCache == null || !projected,
+					"A sidecar cache cannot be used with a site-only parser or one that keeps only some INFO keys or samples");
+			Preconditions.checkState(m_sidecarCache == null || m_filter == null, "A sidecar cache cannot be used with a filter");
+			return new VcfDataParser(this);
+		}
+	}
 }
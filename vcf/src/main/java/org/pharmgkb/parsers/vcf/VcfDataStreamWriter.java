@@ -0,0 +1,183 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.parsers.ObjectBuilder;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Writes VCF position lines straight to an {@link OutputStream} as UTF-8, through one reusable byte buffer.
+ * Writes the same lines as {@link VcfDataWriter}, but without creating a String or intermediate lists per line:
+ * values are escaped only when they contain a character that needs it, and positions are written digit by digit.
+ * A position parsed with deferred columns, or a {@link MutableVcfPosition}, is copied from the line it was read from.
+ * Example:
+ * <code>
+ *     try (VcfDataStreamWriter writer = new VcfDataStreamWriter.Builder(file).setMetadata(metadata).build()) {
+ *         new VcfDataParser.Builder().deferColumns().build().parseAll(Files.lines(vcfFile)).forEach(writer::write);
+ *     }
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class VcfDataStreamWriter implements Closeable {
+
+	private final OutputStream m_out;
+	private final VcfLineBuffer m_buffer;
+	private final int m_bufferSize;
+
+	private long m_nLines = 0;
+
+	private VcfDataStreamWriter(@Nonnull Builder builder) throws IOException {
+		m_out = builder.m_out;
+		m_bufferSize = builder.m_bufferSize;
+		m_buffer = new VcfLineBuffer(m_bufferSize + 1024);
+		if (builder.m_metadata != null) {
+			new VcfMetadataWriter().apply(builder.m_metadata).forEachOrdered(line -> {
+				m_buffer.appendString(line);
+				m_buffer.appendByte('\n');
+			});
+			drain();
+		}
+	}
+
+	/**
+	 * @throws UncheckedIOException If writing fails
+	 */
+	public void write(@Nonnull VcfPosition position) {
+		Preconditions.checkNotNull(position, "Position cannot be null");
+		m_buffer.appendPosition(position);
+		endLine();
+	}
+
+	/**
+	 * Writes the line {@code position} currently holds, unchanged.
+	 * @throws UncheckedIOException If writing fails
+	 */
+	public void write(@Nonnull MutableVcfPosition position) {
+		Preconditions.checkNotNull(position, "Position cannot be null");
+		m_buffer.appendString(position.getLine());
+		endLine();
+	}
+
+	/**
+	 * @throws UncheckedIOException If writing fails
+	 */
+	public void writeAll(@Nonnull Stream<? extends VcfPosition> positions) {
+		Preconditions.checkNotNull(positions, "Positions cannot be null");
+		positions.forEachOrdered(this::write);
+	}
+
+	private void endLine() {
+		m_buffer.appendByte('\n');
+		m_nLines++;
+		if (m_buffer.length() >= m_bufferSize) {
+			drain();
+		}
+	}
+
+	private void drain() {
+		try {
+			m_buffer.writeTo(m_out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		m_buffer.clear();
+	}
+
+	@Nonnegative
+	public long nLinesWritten() {
+		return m_nLines;
+	}
+
+	/**
+	 * Writes any buffered lines and flushes the underlying stream.
+	 * @throws UncheckedIOException If writing fails
+	 */
+	public void flush() {
+		drain();
+		try {
+			m_out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			m_buffer.writeTo(m_out);
+			m_buffer.clear();
+		} finally {
+			m_out.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "VcfDataStreamWriter{" +
+				"bufferSize=" + m_bufferSize +
+				", nLines=" + m_nLines +
+				'}';
+	}
+
+	@NotThreadSafe
+	public static class Builder implements ObjectBuilder<VcfDataStreamWriter> {
+
+		private final OutputStream m_out;
+		private VcfMetadataCollection m_metadata;
+		private int m_bufferSize = 64 * 1024;
+
+		public Builder(@Nonnull Path file) throws IOException {
+			this(Files.newOutputStream(Preconditions.checkNotNull(file, "File cannot be null")));
+		}
+
+		public Builder(@Nonnull OutputStream out) {
+			Preconditions.checkNotNull(out, "Output stream cannot be null");
+			m_out = out;
+		}
+
+		/**
+		 * @param metadata Metadata and header lines to write first, or null to write only positions
+		 */
+		@Nonnull
+		public Builder setMetadata(@Nullable VcfMetadataCollection metadata) {
+			m_metadata = metadata;
+			return this;
+		}
+
+		/**
+		 * @param bufferSize Lines are written to the stream once at least this many bytes are buffered
+		 */
+		@Nonnull
+		public Builder setBufferSize(@Nonnegative int bufferSize) {
+			Preconditions.checkArgument(bufferSize > 0, "Buffer size must be positive");
+			m_bufferSize = bufferSize;
+			return this;
+		}
+
+		/**
+		 * @throws UncheckedIOException If writing the metadata fails
+		 */
+		@Nonnull
+		@Override
+		public VcfDataStreamWriter build() {
+			try {
+				return new VcfDataStreamWriter(this);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -51,7 +51,7 @@ public void write(@Nonnull Stream<? extends VcfMetadata> metadata, @Nonnull Stre
 		VcfDataWriter writer = new VcfDataWriter();
 		positions.forEach(p -> {
 			m_writer.println(writer.apply(p));
-			if (writer.nLinesProcessed() % m_flushEvery == 0) {
+			if (m_flushEvery > 0 && writer.nLinesProcessed() % m_flushEvery == 0) {
 				m_writer.flush();
 			}
 		});
@@ -0,0 +1,575 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.escape.CharacterEscaper;
+import org.pharmgkb.parsers.utils.DecimalParser;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfInfoMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfInfoType;
+import org.pharmgkb.parsers.vcf.utils.VcfEscapers;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.DoublePredicate;
+import java.util.function.Predicate;
+
+/**
+ * A filter on VCF position lines, written in a small subset of the bcftools expression language and compiled once
+ * against the metadata. It runs on the raw line, reading only the columns and INFO entries it needs, so positions
+ * that fail are never parsed. Use it with {@link VcfDataParser.Builder#filter(Predicate)}, or on lines directly.
+ * Example:
+ * <code>
+ *     VcfFilterExpression filter = VcfFilterExpression.compile("QUAL&gt;30 &amp;&amp; INFO/DP&gt;10 &amp;&amp; FILTER==\"PASS\"", metadata);
+ *     VcfDataParser parser = new VcfDataParser.Builder().filter(filter).build();
+ * </code>
+ * The language:
+ * <ul>
+ *     <li>Fields are {@code CHROM}, {@code POS} (1-based, as written), {@code ID}, {@code REF}, {@code ALT},
+ *     {@code QUAL}, {@code FILTER}, and {@code INFO/KEY} (or just {@code KEY}) for any INFO key in the metadata.
+ *     {@code INFO/KEY[i]} selects the 0-based {@code i}th value. FORMAT fields are not supported.</li>
+ *     <li>Each comparison is between a field and a number or a quoted string, with {@code ==} (or {@code =}),
+ *     {@code !=}, {@code <}, {@code <=}, {@code >}, or {@code >=}. An INFO Flag is used alone.</li>
+ *     <li>Comparisons are combined with {@code &&} (or {@code &}), {@code ||} (or {@code |}), {@code !}, and parentheses.</li>
+ * </ul>
+ * The semantics:
+ * <ul>
+ *     <li>QUAL, POS, and INFO Integer and Float fields compare as numbers, and are true if any value matches;
+ *     a missing value matches nothing.</li>
+ *     <li>Other fields allow only {@code ==} and {@code !=}. {@code ==} is true if any value (any ALT, ID, or INFO
+ *     value) equals the string, and {@code !=} is its negation.</li>
+ *     <li>{@code FILTER=="A;B"} is true if the set of filters is exactly {A, B}, in any order.</li>
+ *     <li>{@code =="."} is true if the field is missing, and {@code !="."} if it is present.</li>
+ * </ul>
+ * @author Douglas Myers-Turnbull
+ */
+@Immutable
+public final class VcfFilterExpression implements Predicate<String> {
+
+	private static final int sf_infoColumn = 7;
+
+	private final String m_expression;
+	private final Node m_root;
+
+	private VcfFilterExpression(@Nonnull String expression, @Nonnull Node root) {
+		m_expression = expression;
+		m_root = root;
+	}
+
+	/**
+	 * @throws IllegalArgumentException If the expression is invalid, uses an INFO key that is not in {@code metadata},
+	 *                                  or compares a field in a way its type does not allow
+	 */
+	@Nonnull
+	public static VcfFilterExpression compile(@Nonnull String expression, @Nonnull VcfMetadataCollection metadata) throws IllegalArgumentException {
+		Preconditions.checkNotNull(expression, "Expression cannot be null");
+		Preconditions.checkNotNull(metadata, "Metadata cannot be null");
+		return new VcfFilterExpression(expression, new Compiler(expression, metadata).compile());
+	}
+
+	/**
+	 * @param line A position line, not metadata
+	 * @throws BadDataFormatException If the line has too few columns, or a numeric field that is not a number
+	 */
+	@Override
+	public boolean test(@Nonnull String line) throws BadDataFormatException {
+		return m_root.test(new Line(line));
+	}
+
+	@Nonnull
+	public String getExpression() {
+		return m_expression;
+	}
+
+	@Override
+	public String toString() {
+		return "VcfFilterExpression{" +
+				"expression='" + m_expression + '\'' +
+				'}';
+	}
+
+	@FunctionalInterface
+	private interface Node {
+		boolean test(@Nonnull Line line);
+	}
+
+	@FunctionalInterface
+	private interface ElementTest {
+		boolean test(@Nonnull String text, int start, int end);
+	}
+
+	/**
+	 * A position line whose first 8 columns are found as they are needed.
+	 */
+	private static final class Line {
+
+		private final String m_text;
+		private final int[] m_ends = new int[sf_infoColumn + 1];
+		private int m_nFound = 0;
+
+		Line(@Nonnull String text) {
+			m_text = text;
+		}
+
+		int start(int column) {
+			return column == 0? 0 : end(column - 1) + 1;
+		}
+
+		int end(int column) {
+			while (m_nFound <= column) {
+				if (m_nFound > 0 && m_ends[m_nFound - 1] == m_text.length()) {
+					throw new BadDataFormatException("Line has only " + m_nFound + " columns");
+				}
+				int tab = m_text.indexOf('\t', m_nFound == 0? 0 : m_ends[m_nFound - 1] + 1);
+				m_ends[m_nFound++] = tab < 0? m_text.length() : tab;
+			}
+			return m_ends[column];
+		}
+	}
+
+	private enum Kind {NUMBER, STRING, FILTER, FLAG}
+
+	/**
+	 * Where a field is in a line, and how to compare it.
+	 */
+	@Immutable
+	private static final class Field {
+
+		private final String m_name;
+		private final Kind m_kind;
+		private final int m_column;
+		private final String m_infoKey; // null for columns
+		private final char m_separator; // between values, or 0
+		private final int m_index; // the value to compare, or -1 for any
+		private final CharacterEscaper m_escaper;
+
+		Field(@Nonnull String name, @Nonnull Kind kind, int column, @Nullable String infoKey, char separator, int index,
+				@Nullable CharacterEscaper escaper) {
+			m_name = name;
+			m_kind = kind;
+			m_column = column;
+			m_infoKey = infoKey;
+			m_separator = separator;
+			m_index = index;
+			m_escaper = escaper;
+		}
+
+		/**
+		 * @return The start and end of the field's text packed into a long, or -1 if it is missing
+		 */
+		long find(@Nonnull Line line) {
+			int start = line.start(m_column);
+			int end = line.end(m_column);
+			if (m_infoKey != null) {
+				return findInfo(line.m_text, start, end);
+			}
+			return isDot(line.m_text, start, end)? -1 : pack(start, end);
+		}
+
+		private long findInfo(@Nonnull String text, int start, int end) {
+			if (isDot(text, start, end)) {
+				return -1;
+			}
+			while (start < end) {
+				int entryEnd = text.indexOf(';', start);
+				if (entryEnd < 0 || entryEnd > end) {
+					entryEnd = end;
+				}
+				int keyEnd = start + m_infoKey.length();
+				if (keyEnd <= entryEnd && text.regionMatches(start, m_infoKey, 0, m_infoKey.length())) {
+					if (keyEnd == entryEnd) {
+						return pack(keyEnd, keyEnd);
+					}
+					if (text.charAt(keyEnd) == '=') {
+						return isDot(text, keyEnd + 1, entryEnd)? -1 : pack(keyEnd + 1, entryEnd);
+					}
+				}
+				start = entryEnd + 1;
+			}
+			return -1;
+		}
+
+		/**
+		 * @return Whether any value, or the selected one, passes; missing values never do
+		 */
+		boolean anyElement(@Nonnull Line line, @Nonnull ElementTest test) {
+			long range = find(line);
+			if (range < 0) {
+				return false;
+			}
+			String text = line.m_text;
+			int start = (int) (range >>> 32), end = (int) range;
+			if (m_separator == 0) {
+				return test.test(text, start, end);
+			}
+			int index = 0;
+			while (true) {
+				int elementEnd = text.indexOf(m_separator, start);
+				if (elementEnd < 0 || elementEnd > end) {
+					elementEnd = end;
+				}
+				if ((m_index < 0 || m_index == index) && !isDot(text, start, elementEnd) && test.test(text, start, elementEnd)) {
+					return true;
+				}
+				if (elementEnd == end || m_index == index) {
+					return false;
+				}
+				start = elementEnd + 1;
+				index++;
+			}
+		}
+
+		double parse(@Nonnull String text, int start, int end) {
+			try {
+				return DecimalParser.parseDouble(text, start, end);
+			} catch (NumberFormatException e) {
+				throw new BadDataFormatException(m_name + " value " + text.substring(start, end) + " is not a number", e);
+			}
+		}
+
+		boolean equals(@Nonnull String text, int start, int end, @Nonnull String literal) {
+			if (text.regionMatches(start, literal, 0, end - start) && literal.length() == end - start) {
+				return true;
+			}
+			// compare escaped text only after unescaping it
+			return m_escaper != null && text.indexOf('%', start) > -1 && text.indexOf('%', start) < end
+					&& m_escaper.unescape(text.substring(start, end)).equals(literal);
+		}
+
+		@Override
+		public String toString() {
+			return m_name;
+		}
+	}
+
+	private static long pack(int start, int end) {
+		return (long) start << 32 | end;
+	}
+
+	private static boolean isDot(@Nonnull String text, int start, int end) {
+		return end - start == 1 && text.charAt(start) == '.';
+	}
+
+	private enum TokenType {LEFT, RIGHT, NOT, AND, OR, OPERATOR, LEFT_BRACKET, RIGHT_BRACKET, STRING, NUMBER, WORD, END}
+
+	@Immutable
+	private static final class Token {
+
+		private final TokenType m_type;
+		private final String m_text;
+		private final int m_position;
+
+		Token(@Nonnull TokenType type, @Nonnull String text, int position) {
+			m_type = type;
+			m_text = text;
+			m_position = position;
+		}
+	}
+
+	/**
+	 * A recursive-descent compiler from an expression to a tree of {@link Node Nodes}.
+	 */
+	private static final class Compiler {
+
+		private final String m_expression;
+		private final VcfMetadataCollection m_metadata;
+		private final List<Token> m_tokens;
+		private int m_next = 0;
+
+		Compiler(@Nonnull String expression, @Nonnull VcfMetadataCollection metadata) {
+			m_expression = expression;
+			m_metadata = metadata;
+			m_tokens = tokenize(expression);
+		}
+
+		@Nonnull
+		Node compile() {
+			Node root = or();
+			expect(TokenType.END);
+			return root;
+		}
+
+		@Nonnull
+		private Node or() {
+			Node node = and();
+			while (peek().m_type == TokenType.OR) {
+				m_next++;
+				Node left = node, right = and();
+				node = line -> left.test(line) || right.test(line);
+			}
+			return node;
+		}
+
+		@Nonnull
+		private Node and() {
+			Node node = unary();
+			while (peek().m_type == TokenType.AND) {
+				m_next++;
+				Node left = node, right = unary();
+				node = line -> left.test(line) && right.test(line);
+			}
+			return node;
+		}
+
+		@Nonnull
+		private Node unary() {
+			Token token = peek();
+			if (token.m_type == TokenType.NOT) {
+				m_next++;
+				Node node = unary();
+				return line -> !node.test(line);
+			}
+			if (token.m_type == TokenType.LEFT) {
+				m_next++;
+				Node node = or();
+				expect(TokenType.RIGHT);
+				return node;
+			}
+			return comparison();
+		}
+
+		@Nonnull
+		private Node comparison() {
+			Token first = peek();
+			Object left = operand();
+			if (peek().m_type != TokenType.OPERATOR) {
+				if (left instanceof Field && ((Field) left).m_kind == Kind.FLAG) {
+					Field field = (Field) left;
+					return line -> field.find(line) >= 0;
+				}
+				throw error("Expected a comparison", peek());
+			}
+			String operator = m_tokens.get(m_next++).m_text;
+			Object right = operand();
+			if (left instanceof Field == right instanceof Field) {
+				throw error("A comparison needs one field and one value", first);
+			}
+			if (left instanceof Field) {
+				return compare((Field) left, operator, (Token) right);
+			}
+			return compare((Field) right, flip(operator), (Token) left);
+		}
+
+		/**
+		 * @return A {@link Field}, or a {@link Token} that is a number or string
+		 */
+		@Nonnull
+		private Object operand() {
+			Token token = m_tokens.get(m_next++);
+			if (token.m_type == TokenType.NUMBER || token.m_type == TokenType.STRING) {
+				return token;
+			}
+			if (token.m_type != TokenType.WORD) {
+				throw error("Expected a field or value", token);
+			}
+			int index = -1;
+			if (peek().m_type == TokenType.LEFT_BRACKET) {
+				m_next++;
+				Token number = m_tokens.get(m_next++);
+				try {
+					index = Integer.parseInt(number.m_text);
+				} catch (NumberFormatException e) {
+					throw error("Expected an index", number);
+				}
+				Preconditions.checkArgument(index >= 0, "Index " + index + " is negative");
+				expect(TokenType.RIGHT_BRACKET);
+			}
+			Field field = field(token, index);
+			if (index > -1 && field.m_infoKey == null) {
+				throw error("Only INFO fields can be indexed", token);
+			}
+			return field;
+		}
+
+		@Nonnull
+		private Field field(@Nonnull Token token, int index) {
+			String name = token.m_text;
+			switch (name) {
+				case "CHROM": return new Field(name, Kind.STRING, 0, null, (char) 0, -1, VcfEscapers.CHROMOSOME);
+				case "POS": return new Field(name, Kind.NUMBER, 1, null, (char) 0, -1, null);
+				case "ID": return new Field(name, Kind.STRING, 2, null, ';', -1, VcfEscapers.ID);
+				case "REF": return new Field(name, Kind.STRING, 3, null, (char) 0, -1, null);
+				case "ALT": return new Field(name, Kind.STRING, 4, null, ',', -1, null);
+				case "QUAL": return new Field(name, Kind.NUMBER, 5, null, (char) 0, -1, null);
+				case "FILTER": return new Field(name, Kind.FILTER, 6, null, (char) 0, -1, VcfEscapers.FILTER);
+			}
+			if (name.startsWith("FORMAT/") || name.startsWith("FMT/")) {
+				throw error("FORMAT fields are not supported", token);
+			}
+			String key = name.startsWith("INFO/")? name.substring("INFO/".length()) : name;
+			VcfInfoMetadata info = m_metadata.getInfo().get(key);
+			if (info == null) {
+				throw error(name + " is not a field or an INFO key in the metadata", token);
+			}
+			VcfInfoType type = info.getType();
+			Kind kind = type == VcfInfoType.Flag? Kind.FLAG
+					: type == VcfInfoType.Integer || type == VcfInfoType.Float? Kind.NUMBER : Kind.STRING;
+			return new Field("INFO/" + key, kind, sf_infoColumn, key, ',', index, VcfEscapers.INFO_VALUE);
+		}
+
+		@Nonnull
+		private Node compare(@Nonnull Field field, @Nonnull String operator, @Nonnull Token value) {
+			boolean equality = operator.equals("==") || operator.equals("!=");
+			boolean negate = operator.equals("!=");
+			if (value.m_type == TokenType.STRING && value.m_text.equals(".")) {
+				if (!equality) {
+					throw error("Missing values can only be tested with == or !=", value);
+				}
+				return line -> field.find(line) < 0 != negate;
+			}
+			switch (field.m_kind) {
+				case FLAG:
+					throw error("Flag " + field + " cannot be compared; use it alone or with !", value);
+				case NUMBER:
+					if (value.m_type != TokenType.NUMBER) {
+						throw error(field + " is numeric but " + value.m_text + " is not a number", value);
+					}
+					DoublePredicate predicate = numeric(operator, Double.parseDouble(value.m_text));
+					ElementTest test = (text, start, end) -> predicate.test(field.parse(text, start, end));
+					return line -> field.anyElement(line, test);
+				case FILTER:
+					if (!equality) {
+						throw error("FILTER can only be compared with == or !=", value);
+					}
+					Set<String> filters = Set.of(value.m_text.split(";"));
+					return line -> filters(field, line).equals(filters) != negate;
+				default:
+					if (!equality) {
+						throw error(field + " is not numeric, so it can only be compared with == or !=", value);
+					}
+					String literal = value.m_text;
+					return line -> field.anyElement(line, (text, start, end) -> field.equals(text, start, end, literal)) != negate;
+			}
+		}
+
+		@Nonnull
+		private static Set<String> filters(@Nonnull Field field, @Nonnull Line line) {
+			long range = field.find(line);
+			if (range < 0) {
+				return Set.of();
+			}
+			String text = line.m_text;
+			int start = (int) (range >>> 32), end = (int) range;
+			Set<String> filters = new HashSet<>(4);
+			while (start <= end) {
+				int filterEnd = text.indexOf(';', start);
+				if (filterEnd < 0 || filterEnd > end) {
+					filterEnd = end;
+				}
+				filters.add(VcfEscapers.FILTER.unescape(text.substring(start, filterEnd)));
+				start = filterEnd + 1;
+			}
+			return filters;
+		}
+
+		@Nonnull
+		private static DoublePredicate numeric(@Nonnull String operator, double value) {
+			switch (operator) {
+				case "==": return v -> v == value;
+				case "!=": return v -> v != value;
+				case "<": return v -> v < value;
+				case "<=": return v -> v <= value;
+				case ">": return v -> v > value;
+				case ">=": return v -> v >= value;
+				default: throw new IllegalStateException("Unknown operator " + operator);
+			}
+		}
+
+		@Nonnull
+		private static String flip(@Nonnull String operator) {
+			switch (operator) {
+				case "<": return ">";
+				case "<=": return ">=";
+				case ">": return "<";
+				case ">=": return "<=";
+				default: return operator;
+			}
+		}
+
+		@Nonnull
+		private Token peek() {
+			return m_tokens.get(m_next);
+		}
+
+		private void expect(@Nonnull TokenType type) {
+			Token token = m_tokens.get(m_next);
+			if (token.m_type != type) {
+				throw error("Expected " + type.name().toLowerCase().replace('_', ' '), token);
+			}
+			m_next++;
+		}
+
+		@Nonnull
+		private IllegalArgumentException error(@Nonnull String message, @Nonnull Token token) {
+			return new IllegalArgumentException(message + " at character " + token.m_position + " of \"" + m_expression + "\"");
+		}
+
+		@Nonnull
+		private static List<Token> tokenize(@Nonnull String expression) {
+			List<Token> tokens = new ArrayList<>();
+			int i = 0;
+			while (i < expression.length()) {
+				char c = expression.charAt(i);
+				int start = i;
+				if (Character.isWhitespace(c)) {
+					i++;
+				} else if (c == '(' || c == ')' || c == '[' || c == ']') {
+					TokenType type = c == '('? TokenType.LEFT : c == ')'? TokenType.RIGHT
+							: c == '['? TokenType.LEFT_BRACKET : TokenType.RIGHT_BRACKET;
+					tokens.add(new Token(type, String.valueOf(c), start));
+					i++;
+				} else if (c == '&' || c == '|') {
+					i += i + 1 < expression.length() && expression.charAt(i + 1) == c? 2 : 1;
+					tokens.add(new Token(c == '&'? TokenType.AND : TokenType.OR, expression.substring(start, i), start));
+				} else if (c == '=' || c == '!' || c == '<' || c == '>') {
+					boolean twoChars = i + 1 < expression.length() && expression.charAt(i + 1) == '=';
+					i += twoChars? 2 : 1;
+					String text = expression.substring(start, i);
+					if (text.equals("!")) {
+						tokens.add(new Token(TokenType.NOT, text, start));
+					} else {
+						tokens.add(new Token(TokenType.OPERATOR, text.equals("=")? "==" : text, start));
+					}
+				} else if (c == '"' || c == '\'') {
+					int end = expression.indexOf(c, i + 1);
+					if (end < 0) {
+						throw new IllegalArgumentException("Unterminated string at character " + start + " of \"" + expression + "\"");
+					}
+					tokens.add(new Token(TokenType.STRING, expression.substring(i + 1, end), start));
+					i = end + 1;
+				} else if (Character.isDigit(c) || (c == '-' || c == '+' || c == '.') && i + 1 < expression.length()
+						&& (Character.isDigit(expression.charAt(i + 1)) || expression.charAt(i + 1) == '.')) {
+					i++;
+					while (i < expression.length() && (Character.isLetterOrDigit(expression.charAt(i)) || expression.charAt(i) == '.'
+							|| (expression.charAt(i) == '-' || expression.charAt(i) == '+')
+							&& (expression.charAt(i - 1) == 'e' || expression.charAt(i - 1) == 'E'))) {
+						i++;
+					}
+					String text = expression.substring(start, i);
+					boolean number = true;
+					try {
+						Double.parseDouble(text);
+					} catch (NumberFormatException e) {
+						number = false; // a word that starts with a digit, such as an INFO key like 1000G
+					}
+					tokens.add(new Token(number? TokenType.NUMBER : TokenType.WORD, text, start));
+				} else if (Character.isLetter(c) || c == '_') {
+					while (i < expression.length() && (Character.isLetterOrDigit(expression.charAt(i))
+							|| expression.charAt(i) == '_' || expression.charAt(i) == '.' || expression.charAt(i) == '/')) {
+						i++;
+					}
+					tokens.add(new Token(TokenType.WORD, expression.substring(start, i), start));
+				} else {
+					throw new IllegalArgumentException("Unexpected character " + c + " at character " + start + " of \"" + expression + "\"");
+				}
+			}
+			tokens.add(new Token(TokenType.END, "", expression.length()));
+			return tokens;
+		}
+	}
+}
@@ -0,0 +1,759 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ObjectBuilder;
+import org.pharmgkb.parsers.utils.BgzfInputStream;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Maps every ID in the ID column of a VCF file to the offset of its line, for looking up positions by rsID without
+ * reading the whole file. Works on plain files, where offsets are byte offsets, and on BGZF files, where they are
+ * virtual offsets (see {@link BgzfInputStream}); other GZIP files cannot be indexed.
+ * The index is a sidecar file ({@link #getSidecar(Path)}) of 64-bit ID hashes and offsets sorted by hash, preceded by a
+ * Bloom filter of the hashes. It is memory-mapped rather than read, so opening it is cheap even for dbSNP, and
+ * IDs that are not in the file are usually rejected by the Bloom filter without touching the table.
+ * Like {@link org.pharmgkb.parsers.cache.SidecarCache} without a checksum, the sidecar is trusted while the VCF's size
+ * and modification time are unchanged.
+ * Building sorts runs of {@link Builder#setRunSize(int)} entries in memory and merges them from temporary files.
+ * Example:
+ * <code>
+ *     VcfIdIndex index = VcfIdIndex.of(dbsnp); // builds the sidecar the first time
+ *     List&lt;VcfPosition&gt; positions = index.lookup(List.of("rs1065852", "rs4986893"));
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class VcfIdIndex {
+
+	public static final String SUFFIX = ".bioio-ids";
+
+	private static final Logger sf_logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final int sf_magic = 0x42494944; // "BIID"
+	private static final int sf_version = 1;
+	private static final int sf_headerSize = 48;
+	private static final int sf_bufferSize = 1 << 20;
+	private static final long sf_fnvBasis = 0xcbf29ce484222325L;
+	private static final long sf_fnvPrime = 0x100000001b3L;
+
+	private final Path m_file;
+	private final boolean m_bgzf;
+	private final int m_nHashes;
+	private final long m_nBloomBits;
+	private final long m_size;
+	private final MappedLongs m_bloom;
+	private final MappedLongs m_entries; // hash, offset, hash, offset, ...
+
+	private VcfIdIndex(@Nonnull Path file, @Nonnull Path sidecar) throws IOException {
+		m_file = file;
+		try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(sf_headerSize);
+			while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+				// keep reading
+			}
+			header.flip();
+			if (header.limit() < sf_headerSize || header.getInt() != sf_magic || header.getInt() != sf_version) {
+				throw new IOException(sidecar + " is not an ID index");
+			}
+			header.getLong(); // size
+			header.getLong(); // modification time
+			m_nHashes = header.getInt();
+			m_bgzf = header.getInt() != 0;
+			long nBloomWords = header.getLong();
+			m_size = header.getLong();
+			m_nBloomBits = nBloomWords * 64;
+			if (channel.size() < sf_headerSize + 8 * nBloomWords + 16 * m_size) {
+				throw new IOException(sidecar + " is truncated");
+			}
+			m_bloom = new MappedLongs(channel, FileChannel.MapMode.READ_ONLY, sf_headerSize, nBloomWords);
+			m_entries = new MappedLongs(channel, FileChannel.MapMode.READ_ONLY, sf_headerSize + 8 * nBloomWords, 2 * m_size);
+		}
+	}
+
+	/**
+	 * Loads the index from its sidecar file, or builds it with the default settings.
+	 * @throws BadDataFormatException If the file is compressed but not BGZF
+	 * @throws UncheckedIOException If the file or sidecar cannot be read or written
+	 */
+	@Nonnull
+	public static VcfIdIndex of(@Nonnull Path file) throws UncheckedIOException {
+		return load(file).orElseGet(() -> new Builder(file).build());
+	}
+
+	/**
+	 * @return The index, or empty if the sidecar is missing, stale, or unreadable
+	 */
+	@Nonnull
+	public static Optional<VcfIdIndex> load(@Nonnull Path file) throws UncheckedIOException {
+		Path sidecar = getSidecar(file);
+		if (!Files.isRegularFile(sidecar)) {
+			return Optional.empty();
+		}
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(sidecar))) {
+			if (in.readInt() != sf_magic || in.readInt() != sf_version) {
+				sf_logger.debug("Sidecar {} has a different format", sidecar);
+				return Optional.empty();
+			}
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			if (in.readLong() != attributes.size() || in.readLong() != attributes.lastModifiedTime().toMillis()) {
+				sf_logger.debug("Sidecar {} is stale", sidecar);
+				return Optional.empty();
+			}
+		} catch (IOException e) {
+			sf_logger.warn("Could not read sidecar {}; ignoring it", sidecar, e);
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(new VcfIdIndex(file, sidecar));
+		} catch (IOException e) {
+			sf_logger.warn("Could not read sidecar {}; ignoring it", sidecar, e);
+			return Optional.empty();
+		}
+	}
+
+	@Nonnull
+	public static Path getSidecar(@Nonnull Path file) {
+		return file.resolveSibling(file.getFileName() + SUFFIX);
+	}
+
+	/**
+	 * @return False if {@code id} is certainly not in the file
+	 */
+	public boolean mightContain(@Nonnull String id) {
+		return mightContain(hash(id));
+	}
+
+	private boolean mightContain(long hash) {
+		if (m_nBloomBits == 0) {
+			return false;
+		}
+		long h2 = bloomStep(hash);
+		for (int i = 0; i < m_nHashes; i++) {
+			long bit = Long.remainderUnsigned(hash + i * h2, m_nBloomBits);
+			if ((m_bloom.get(bit >>> 6) & 1L << (bit & 63)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return The sorted offsets of the lines that may contain {@code id}; a line with another ID of the same hash can
+	 *         be included
+	 */
+	@Nonnull
+	public long[] getOffsets(@Nonnull String id) {
+		long hash = hash(id);
+		if (!mightContain(hash)) {
+			return new long[0];
+		}
+		long lo = 0, hi = m_size;
+		while (lo < hi) {
+			long mid = (lo + hi) >>> 1;
+			if (m_entries.get(2 * mid) < hash) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		long end = lo;
+		while (end < m_size && m_entries.get(2 * end) == hash) {
+			end++;
+		}
+		long[] offsets = new long[(int) (end - lo)];
+		for (long i = lo; i < end; i++) {
+			offsets[(int) (i - lo)] = m_entries.get(2 * i + 1);
+		}
+		return offsets;
+	}
+
+	/**
+	 * Reads and parses the positions with any of {@code ids}, reading only their lines.
+	 * @return The positions, in file order, each once
+	 * @throws UncheckedIOException If the file cannot be read
+	 * @throws BadDataFormatException If a line cannot be parsed
+	 */
+	@Nonnull
+	public List<VcfPosition> lookup(@Nonnull Collection<String> ids) throws UncheckedIOException {
+		Preconditions.checkNotNull(ids, "IDs cannot be null");
+		Set<String> wanted = new HashSet<>(ids);
+		long[] offsets = wanted.stream()
+				.flatMapToLong(id -> Arrays.stream(getOffsets(id)))
+				.sorted()
+				.distinct()
+				.toArray();
+		if (offsets.length == 0) {
+			return List.of();
+		}
+		VcfDataParser parser = new VcfDataParser();
+		List<VcfPosition> positions = new ArrayList<>(offsets.length);
+		ByteArrayOutputStream line = new ByteArrayOutputStream(1024);
+		try (FileChannel channel = FileChannel.open(m_file, StandardOpenOption.READ);
+				BgzfInputStream bgzf = m_bgzf? new BgzfInputStream(channel) : null) {
+			ByteBuffer buffer = ByteBuffer.allocate(4096);
+			for (long offset : offsets) {
+				line.reset();
+				if (bgzf != null) {
+					bgzf.seek(offset);
+					readLine(bgzf, line);
+				} else {
+					readLine(channel, buffer, offset, line);
+				}
+				VcfPosition position = parser.apply(line.toString(StandardCharsets.UTF_8));
+				// skip lines that only share a hash
+				if (position.getIds().stream().anyMatch(wanted::contains)) {
+					positions.add(position);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read " + m_file, e);
+		}
+		return positions;
+	}
+
+	private static void readLine(@Nonnull InputStream in, @Nonnull ByteArrayOutputStream line) throws IOException {
+		int b;
+		while ((b = in.read()) >= 0 && b != '\n') {
+			if (b != '\r') {
+				line.write(b);
+			}
+		}
+	}
+
+	private static void readLine(@Nonnull FileChannel channel, @Nonnull ByteBuffer buffer, long offset,
+			@Nonnull ByteArrayOutputStream line) throws IOException {
+		while (true) {
+			buffer.clear();
+			int n = channel.read(buffer, offset);
+			if (n <= 0) {
+				return;
+			}
+			for (int i = 0; i < n; i++) {
+				byte b = buffer.get(i);
+				if (b == '\n') {
+					return;
+				}
+				if (b != '\r') {
+					line.write(b);
+				}
+			}
+			offset += n;
+		}
+	}
+
+	/**
+	 * @return The number of (ID, line) pairs
+	 */
+	@Nonnegative
+	public long size() {
+		return m_size;
+	}
+
+	/**
+	 * FNV-1a, then the MurmurHash3 finalizer so that the Bloom filter's bits are well mixed.
+	 */
+	private static long hash(@Nonnull String id) {
+		long hash = sf_fnvBasis;
+		for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+			hash = (hash ^ (b & 0xff)) * sf_fnvPrime;
+		}
+		return mix(hash);
+	}
+
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private static long bloomStep(long hash) {
+		return Long.rotateLeft(hash, 32) * 0x9e3779b97f4a7c15L | 1;
+	}
+
+	@Override
+	public String toString() {
+		return "VcfIdIndex{" +
+				"file=" + m_file +
+				", bgzf=" + m_bgzf +
+				", size=" + m_size +
+				", bloomBits=" + m_nBloomBits +
+				'}';
+	}
+
+	/**
+	 * Longs in a file, mapped in pieces because a single mapping is limited to 2 GiB.
+	 */
+	private static class MappedLongs {
+
+		private static final int sf_chunkBits = 27; // 1 GiB
+
+		private final MappedByteBuffer[] m_chunks;
+
+		MappedLongs(@Nonnull FileChannel channel, @Nonnull FileChannel.MapMode mode, long start, long count) throws IOException {
+			int nChunks = (int) ((count + (1L << sf_chunkBits) - 1) >>> sf_chunkBits);
+			m_chunks = new MappedByteBuffer[nChunks];
+			for (int c = 0; c < nChunks; c++) {
+				long first = (long) c << sf_chunkBits;
+				m_chunks[c] = channel.map(mode, start + 8 * first, 8 * Math.min(1L << sf_chunkBits, count - first));
+			}
+		}
+
+		long get(long index) {
+			return m_chunks[(int) (index >>> sf_chunkBits)].getLong((int) (index & (1L << sf_chunkBits) - 1) << 3);
+		}
+
+		void set(long index, long value) {
+			m_chunks[(int) (index >>> sf_chunkBits)].putLong((int) (index & (1L << sf_chunkBits) - 1) << 3, value);
+		}
+
+		void force() {
+			for (MappedByteBuffer chunk : m_chunks) {
+				chunk.force();
+			}
+		}
+	}
+
+	@NotThreadSafe
+	public static class Builder implements ObjectBuilder<VcfIdIndex> {
+
+		private final Path m_file;
+		private int m_bitsPerId = 10;
+		private int m_runSize = 8 * 1024 * 1024;
+
+		public Builder(@Nonnull Path file) {
+			Preconditions.checkNotNull(file, "File cannot be null");
+			m_file = file;
+		}
+
+		/**
+		 * Sets the size of the Bloom filter; 10 bits by default, for about 1% false positives.
+		 */
+		@Nonnull
+		public Builder setBitsPerId(@Nonnegative int bits) {
+			Preconditions.checkArgument(bits > 0 && bits <= 64, "Bits per ID must be between 1 and 64");
+			m_bitsPerId = bits;
+			return this;
+		}
+
+		/**
+		 * Sets the number of IDs to sort in memory before writing a sorted run to a temporary file;
+		 * 8M by default, which needs up to 128 MiB. Memory grows with the IDs read, so small files need little.
+		 */
+		@Nonnull
+		public Builder setRunSize(@Nonnegative int size) {
+			Preconditions.checkArgument(size > 0, "Run size must be positive");
+			m_runSize = size;
+			return this;
+		}
+
+		/**
+		 * Reads the file once and writes the sidecar, replacing any existing one.
+		 * @throws BadDataFormatException If the file is compressed but not BGZF
+		 * @throws UncheckedIOException If the file cannot be read or the sidecar cannot be written
+		 */
+		@Nonnull
+		@Override
+		public VcfIdIndex build() throws UncheckedIOException {
+			Path sidecar = getSidecar(m_file);
+			List<Path> runs = new ArrayList<>();
+			try {
+				Path temp = Files.createTempFile(sidecar.toAbsolutePath().getParent(), sidecar.getFileName().toString(), ".tmp");
+				try {
+					BasicFileAttributes attributes = Files.readAttributes(m_file, BasicFileAttributes.class);
+					Run run = new Run(m_runSize);
+					boolean bgzf = scan(run, runs, sidecar);
+					write(temp, attributes, bgzf, run, runs);
+					try {
+						Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					} catch (AtomicMoveNotSupportedException e) {
+						Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+					}
+				} finally {
+					Files.deleteIfExists(temp);
+					for (Path path : runs) {
+						Files.deleteIfExists(path);
+					}
+				}
+				return new VcfIdIndex(m_file, sidecar);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not index " + m_file, e);
+			}
+		}
+
+		/**
+		 * @return Whether the file is BGZF
+		 */
+		private boolean scan(@Nonnull Run run, @Nonnull List<Path> runs, @Nonnull Path sidecar) throws IOException {
+			try (FileChannel channel = FileChannel.open(m_file, StandardOpenOption.READ)) {
+				ByteBuffer magic = ByteBuffer.allocate(18);
+				while (magic.hasRemaining() && channel.read(magic, magic.position()) >= 0) {
+					// keep reading
+				}
+				boolean gzip = magic.position() >= 2 && (magic.get(0) & 0xff) == 0x1f && (magic.get(1) & 0xff) == 0x8b;
+				boolean bgzf = gzip && magic.position() == 18 && (magic.get(3) & 0x04) != 0 && magic.get(12) == 'B' && magic.get(13) == 'C';
+				if (gzip && !bgzf) {
+					throw new BadDataFormatException(m_file + " is compressed but not BGZF, so it cannot be indexed");
+				}
+				try (BgzfInputStream bgzfIn = bgzf? new BgzfInputStream(channel) : null) {
+					scan(bgzf? bgzfIn : Channels.newInputStream(channel), bgzfIn, run, runs, sidecar);
+				}
+				return bgzf;
+			}
+		}
+
+		/**
+		 * Reads every ID into {@code run}, spilling full runs to files.
+		 */
+		private void scan(@Nonnull InputStream in, @Nullable BgzfInputStream bgzfIn, @Nonnull Run run, @Nonnull List<Path> runs,
+				@Nonnull Path sidecar) throws IOException {
+			byte[] bytes = new byte[sf_bufferSize];
+			long base = 0; // the offset of bytes[0]; reads from BGZF never cross a block
+			boolean atLineStart = true;
+			boolean comment = false;
+			long lineStart = 0;
+			int nTabs = 0;
+			long hash = sf_fnvBasis;
+			int idLength = 0;
+			boolean dot = false;
+			while (true) {
+				if (bgzfIn != null) {
+					base = bgzfIn.getVirtualOffset();
+				}
+				int n = in.read(bytes);
+				if (n < 0) {
+					break;
+				}
+				for (int i = 0; i < n; i++) {
+					byte b = bytes[i];
+					if (atLineStart) {
+						lineStart = base + i;
+						comment = b == '#';
+						nTabs = 0;
+						atLineStart = false;
+					}
+					if (b == '\n') {
+						atLineStart = true;
+						if (nTabs == 2) { // the ID column was the last
+							add(run, runs, sidecar, hash, idLength, dot, lineStart);
+						}
+						continue;
+					}
+					if (comment || nTabs > 2 || b == '\r') {
+						continue;
+					}
+					if (b == '\t') {
+						if (nTabs == 2) {
+							add(run, runs, sidecar, hash, idLength, dot, lineStart);
+						}
+						if (++nTabs == 2) {
+							hash = sf_fnvBasis;
+							idLength = 0;
+						}
+					} else if (nTabs == 2) {
+						if (b == ';') {
+							add(run, runs, sidecar, hash, idLength, dot, lineStart);
+							hash = sf_fnvBasis;
+							idLength = 0;
+						} else {
+							dot = idLength == 0 && b == '.';
+							hash = (hash ^ (b & 0xff)) * sf_fnvPrime;
+							idLength++;
+						}
+					}
+				}
+				if (bgzfIn == null) {
+					base += n;
+				}
+			}
+			if (!atLineStart && nTabs == 2) {
+				add(run, runs, sidecar, hash, idLength, dot, lineStart);
+			}
+		}
+
+		private void add(@Nonnull Run run, @Nonnull List<Path> runs, @Nonnull Path sidecar, long hash, int idLength,
+				boolean dot, long offset) throws IOException {
+			if (idLength == 0 || idLength == 1 && dot) {
+				return;
+			}
+			if (run.m_size == run.m_capacity) {
+				run.sort();
+				Path path = Files.createTempFile(sidecar.toAbsolutePath().getParent(), sidecar.getFileName().toString(), ".run");
+				runs.add(path);
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), sf_bufferSize))) {
+					out.writeInt(run.m_size);
+					for (int i = 0; i < run.m_size; i++) {
+						out.writeLong(run.m_hashes[i]);
+						out.writeLong(run.m_offsets[i]);
+					}
+				}
+				run.m_total += run.m_size;
+				run.m_size = 0;
+			}
+			run.ensureSpace();
+			run.m_hashes[run.m_size] = mix(hash);
+			run.m_offsets[run.m_size] = offset;
+			run.m_size++;
+		}
+
+		/**
+		 * Merges the runs into the sidecar: the header, the Bloom filter, then the entries.
+		 */
+		private void write(@Nonnull Path temp, @Nonnull BasicFileAttributes attributes, boolean bgzf, @Nonnull Run last,
+				@Nonnull List<Path> runs) throws IOException {
+			last.sort();
+			long total = last.m_total + last.m_size;
+			long nBloomWords = total == 0? 0 : Math.max(1, (total * m_bitsPerId + 63) / 64);
+			long nBloomBits = nBloomWords * 64;
+			int nHashes = Math.max(1, (int) Math.round(m_bitsPerId * Math.log(2)));
+			List<Cursor> cursors = new ArrayList<>();
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				MappedLongs bloom = new MappedLongs(channel, FileChannel.MapMode.READ_WRITE, sf_headerSize, nBloomWords);
+				for (Path path : runs) {
+					cursors.add(new Cursor(new DataInputStream(new BufferedInputStream(Files.newInputStream(path), sf_bufferSize))));
+				}
+				cursors.add(new Cursor(last));
+				PriorityQueue<Cursor> queue = new PriorityQueue<>();
+				for (Cursor cursor : cursors) {
+					if (cursor.next()) {
+						queue.add(cursor);
+					}
+				}
+				ByteBuffer buffer = ByteBuffer.allocate(sf_bufferSize);
+				long position = sf_headerSize + 8 * nBloomWords;
+				long size = 0;
+				long lastHash = 0, lastOffset = -1;
+				while (!queue.isEmpty()) {
+					Cursor cursor = queue.poll();
+					long hash = cursor.m_hash, offset = cursor.m_offset;
+					if (cursor.next()) {
+						queue.add(cursor);
+					}
+					if (hash == lastHash && offset == lastOffset) {
+						continue; // the same ID twice on a line
+					}
+					lastHash = hash;
+					lastOffset = offset;
+					long h2 = bloomStep(hash);
+					for (int i = 0; i < nHashes; i++) {
+						long bit = Long.remainderUnsigned(hash + i * h2, nBloomBits);
+						bloom.set(bit >>> 6, bloom.get(bit >>> 6) | 1L << (bit & 63));
+					}
+					if (buffer.remaining() < 16) {
+						position += writeFully(channel, buffer.flip(), position);
+						buffer.clear();
+					}
+					buffer.putLong(hash).putLong(offset);
+					size++;
+				}
+				writeFully(channel, buffer.flip(), position);
+				bloom.force();
+				ByteBuffer header = ByteBuffer.allocate(sf_headerSize)
+						.putInt(sf_magic)
+						.putInt(sf_version)
+						.putLong(attributes.size())
+						.putLong(attributes.lastModifiedTime().toMillis())
+						.putInt(nHashes)
+						.putInt(bgzf? 1 : 0)
+						.putLong(nBloomWords)
+						.putLong(size);
+				writeFully(channel, header.flip(), 0);
+				channel.force(true);
+			} finally {
+				for (Cursor cursor : cursors) {
+					cursor.close();
+				}
+			}
+		}
+
+		private static int writeFully(@Nonnull FileChannel channel, @Nonnull ByteBuffer buffer, long position) throws IOException {
+			int n = buffer.remaining();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer, position + n - buffer.remaining());
+			}
+			return n;
+		}
+
+		@Override
+		public String toString() {
+			return "VcfIdIndex.Builder{" +
+					"file=" + m_file +
+					", bitsPerId=" + m_bitsPerId +
+					", runSize=" + m_runSize +
+					'}';
+		}
+	}
+
+	/**
+	 * Hashes and offsets to sort together.
+	 */
+	private static class Run {
+
+		private static final int sf_initialCapacity = 1024;
+
+		private final int m_capacity;
+		private long[] m_hashes;
+		private long[] m_offsets;
+		private int m_size = 0;
+		private long m_total = 0; // in earlier runs
+
+		/**
+		 * @param capacity The most entries to hold; the arrays start small and grow toward it as entries are added
+		 */
+		Run(int capacity) {
+			m_capacity = capacity;
+			m_hashes = new long[Math.min(capacity, sf_initialCapacity)];
+			m_offsets = new long[m_hashes.length];
+		}
+
+		/**
+		 * Doubles the arrays, up to the capacity, if they are full.
+		 */
+		void ensureSpace() {
+			if (m_size == m_hashes.length) {
+				int length = (int) Math.min(m_capacity, 2L * m_hashes.length);
+				m_hashes = Arrays.copyOf(m_hashes, length);
+				m_offsets = Arrays.copyOf(m_offsets, length);
+			}
+		}
+
+		void sort() {
+			sort(0, m_size);
+		}
+
+		/**
+		 * Quicksort by hash, then offset; recursing into the smaller side keeps the stack shallow.
+		 */
+		private void sort(int from, int to) {
+			while (to - from > 16) {
+				int mid = (from + to) >>> 1;
+				long pivotHash = m_hashes[mid], pivotOffset = m_offsets[mid];
+				int i = from, j = to - 1;
+				while (i <= j) {
+					while (compare(i, pivotHash, pivotOffset) < 0) i++;
+					while (compare(j, pivotHash, pivotOffset) > 0) j--;
+					if (i <= j) {
+						swap(i++, j--);
+					}
+				}
+				if (j + 1 - from < to - i) {
+					sort(from, j + 1);
+					from = i;
+				} else {
+					sort(i, to);
+					to = j + 1;
+				}
+			}
+			for (int i = from + 1; i < to; i++) {
+				for (int j = i; j > from && compare(j - 1, m_hashes[j], m_offsets[j]) > 0; j--) {
+					swap(j - 1, j);
+				}
+			}
+		}
+
+		private int compare(int i, long hash, long offset) {
+			int c = Long.compare(m_hashes[i], hash);
+			return c != 0? c : Long.compare(m_offsets[i], offset);
+		}
+
+		private void swap(int i, int j) {
+			long hash = m_hashes[i], offset = m_offsets[i];
+			m_hashes[i] = m_hashes[j];
+			m_offsets[i] = m_offsets[j];
+			m_hashes[j] = hash;
+			m_offsets[j] = offset;
+		}
+	}
+
+	/**
+	 * The next entry of a sorted run, from a file or from memory.
+	 */
+	private static class Cursor implements Comparable<Cursor> {
+
+		private final DataInputStream m_in;
+		private final Run m_run;
+		private long m_remaining;
+		private int m_index = 0;
+		private long m_hash;
+		private long m_offset;
+
+		Cursor(@Nonnull DataInputStream in) throws IOException {
+			m_in = in;
+			m_run = null;
+			m_remaining = in.readInt();
+		}
+
+		Cursor(@Nonnull Run run) {
+			m_in = null;
+			m_run = run;
+			m_remaining = run.m_size;
+		}
+
+		boolean next() throws IOException {
+			if (m_remaining == 0) {
+				return false;
+			}
+			m_remaining--;
+			if (m_in != null) {
+				m_hash = m_in.readLong();
+				m_offset = m_in.readLong();
+			} else {
+				m_hash = m_run.m_hashes[m_index];
+				m_offset = m_run.m_offsets[m_index];
+				m_index++;
+			}
+			return true;
+		}
+
+		void close() throws IOException {
+			if (m_in != null) {
+				m_in.close();
+			}
+		}
+
+		@Override
+		public int compareTo(@Nonnull Cursor o) {
+			int c = Long.compare(m_hash, o.m_hash);
+			return c != 0? c : Long.compare(m_offset, o.m_offset);
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.collect.ImmutableList;
+import org.pharmgkb.parsers.escape.Rfc3986Escaper;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+import org.pharmgkb.parsers.vcf.model.VcfSample;
+import org.pharmgkb.parsers.vcf.utils.VcfEscapers;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * A reusable UTF-8 buffer that encodes one {@link VcfPosition} at a time, shared by {@link VcfDataWriter} and
+ * {@link VcfDataStreamWriter}.
+ * Values are escaped only if {@link Rfc3986Escaper#needsEscaping(CharSequence)} finds a character that needs it,
+ * numbers are written digit by digit, and a position that still has its {@link VcfPosition#getSourceLine() source line}
+ * is copied as-is.
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+final class VcfLineBuffer {
+
+	private byte[] m_bytes;
+	private int m_length;
+
+	// appends sample values; a field so that writing samples doesn't allocate a lambda per sample
+	private final BiConsumer<String, String> m_sampleAppender = new BiConsumer<>() {
+		@Override
+		public void accept(String key, String value) {
+			if (m_first) {
+				m_first = false;
+			} else {
+				appendByte(':');
+			}
+			appendEscaped(value, VcfEscapers.SAMPLE);
+		}
+	};
+	private boolean m_first;
+
+	VcfLineBuffer(@Nonnegative int initialCapacity) {
+		m_bytes = new byte[Math.max(16, initialCapacity)];
+	}
+
+	void clear() {
+		m_length = 0;
+	}
+
+	@Nonnegative
+	int length() {
+		return m_length;
+	}
+
+	/**
+	 * Appends the VCF line for {@code position}, without a line terminator.
+	 */
+	void appendPosition(@Nonnull VcfPosition position) {
+		// an immutable position always matches the line it was parsed from
+		String line = position.getSourceLine().orElse(null);
+		if (line != null) {
+			appendString(line);
+			return;
+		}
+		appendString(position.getChromosome());
+		appendByte('\t');
+		appendLong(position.getPosition() + 1); // VCF is 1-based
+		appendByte('\t');
+		appendJoined(position.getIds(), ',', VcfEscapers.ID);
+		appendByte('\t');
+		appendString(position.getRef().toVcfString());
+		appendByte('\t');
+		if (position.getAlts().isEmpty()) {
+			appendByte('.');
+		} else {
+			for (int i = 0; i < position.getAlts().size(); i++) {
+				if (i > 0) {
+					appendByte(',');
+				}
+				appendString(position.getAlts().get(i).toVcfString());
+			}
+		}
+		appendByte('\t');
+		if (position.hasQuality()) {
+			appendString(position.getQualityString().get());
+		} else {
+			appendByte('.');
+		}
+		appendByte('\t');
+		appendJoined(position.getFilters(), ';', VcfEscapers.FILTER);
+		appendByte('\t');
+		boolean firstInfo = true;
+		for (Map.Entry<String, Collection<String>> entry : position.getInfo().asMap().entrySet()) {
+			if (!firstInfo) {
+				appendByte(';');
+			}
+			firstInfo = false;
+			appendString(entry.getKey());
+			if (!isFlag(entry.getValue())) {
+				appendByte('=');
+				boolean firstValue = true;
+				for (String value : entry.getValue()) {
+					if (!firstValue) {
+						appendByte(',');
+					}
+					firstValue = false;
+					appendEscaped(value, VcfEscapers.INFO_VALUE);
+				}
+			}
+		}
+		ImmutableList<String> format = position.getFormat();
+		if (!format.isEmpty()) {
+			appendByte('\t');
+			for (int i = 0; i < format.size(); i++) {
+				if (i > 0) {
+					appendByte(':');
+				}
+				appendEscaped(format.get(i), VcfEscapers.FORMAT);
+			}
+			for (int i = 0; i < position.getNSamples(); i++) {
+				appendByte('\t');
+				VcfSample sample = position.getSample(i);
+				m_first = true;
+				sample.forEach(m_sampleAppender);
+			}
+		}
+	}
+
+	/**
+	 * An INFO entry is written as a bare key if it has no values or only empty ones.
+	 */
+	private static boolean isFlag(@Nonnull Collection<String> values) {
+		for (String value : values) {
+			if (!value.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void appendJoined(@Nonnull List<String> values, char delimiter, @Nonnull Rfc3986Escaper escaper) {
+		if (values.isEmpty()) {
+			appendByte('.');
+			return;
+		}
+		for (int i = 0; i < values.size(); i++) {
+			if (i > 0) {
+				appendByte(delimiter);
+			}
+			appendEscaped(values.get(i), escaper);
+		}
+	}
+
+	void appendEscaped(@Nonnull String value, @Nonnull Rfc3986Escaper escaper) {
+		appendString(escaper.needsEscaping(value)? escaper.escape(value) : value);
+	}
+
+	/**
+	 * Appends {@code string} as UTF-8, copying ASCII characters directly.
+	 */
+	void appendString(@Nonnull String string) {
+		int n = string.length();
+		ensureCapacity(n);
+		int start = m_length;
+		for (int i = 0; i < n; i++) {
+			char c = string.charAt(i);
+			if (c >= 0x80) {
+				m_length = start;
+				appendBytes(string.getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+			m_bytes[m_length++] = (byte) c;
+		}
+	}
+
+	void appendBytes(@Nonnull byte[] bytes) {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, m_bytes, m_length, bytes.length);
+		m_length += bytes.length;
+	}
+
+	void appendByte(char c) {
+		ensureCapacity(1);
+		m_bytes[m_length++] = (byte) c;
+	}
+
+	/**
+	 * Appends the decimal digits of {@code value} without creating a String.
+	 */
+	void appendLong(long value) {
+		ensureCapacity(20);
+		if (value < 0) {
+			m_bytes[m_length++] = '-';
+		} else {
+			value = -value; // work with negatives so that Long.MIN_VALUE doesn't overflow
+		}
+		int nDigits = 1;
+		for (long v = value; v <= -10; v /= 10) {
+			nDigits++;
+		}
+		for (int i = m_length + nDigits - 1; i >= m_length; i--) {
+			m_bytes[i] = (byte) ('0' - (value % 10));
+			value /= 10;
+		}
+		m_length += nDigits;
+	}
+
+	void writeTo(@Nonnull OutputStream out) throws IOException {
+		out.write(m_bytes, 0, m_length);
+	}
+
+	@Nonnull
+	String asString() {
+		return new String(m_bytes, 0, m_length, StandardCharsets.UTF_8);
+	}
+
+	private void ensureCapacity(int extra) {
+		if (m_length + extra > m_bytes.length) {
+			m_bytes = Arrays.copyOf(m_bytes, Math.max(m_bytes.length * 2, m_length + extra));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "VcfLineBuffer{" +
+				"length=" + m_length +
+				", capacity=" + m_bytes.length +
+				'}';
+	}
+}
@@ -0,0 +1,614 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ObjectBuilder;
+import org.pharmgkb.parsers.model.GeneralizedBigDecimal;
+import org.pharmgkb.parsers.vcf.model.VcfFormatSchema;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+import org.pharmgkb.parsers.vcf.model.VcfSample;
+import org.pharmgkb.parsers.vcf.model.VcfTypedField;
+import org.pharmgkb.parsers.vcf.model.allele.VcfAllele;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfHeaderMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfIdMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfMetadata;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfNumberFlag;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfVersionMetadata;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Merges coordinate-sorted VCFs with different samples into one multi-sample VCF, streaming.
+ * The header is the union of the input headers, with the samples of each input in turn.
+ * Records at the same position with the same REF are merged into one:
+ * <ul>
+ *     <li>IDs, ALTs, and FILTERs are unioned; FILTER is PASS only if no record failed a filter</li>
+ *     <li>QUAL is the highest of the records'</li>
+ *     <li>Each INFO key is taken from the first input that has it</li>
+ *     <li>FORMAT is the union of the records' keys, with GT first</li>
+ *     <li>GT and Number=A, R, and G values are remapped to the merged ALT order</li>
+ *     <li>Samples of inputs without the record, and values missing from a record, are {@code .}</li>
+ * </ul>
+ * INFO values that summarize samples, such as AC and AN, are not recomputed.
+ * Each input is read by its own thread into a queue of {@link Builder#setReadAhead(int) bounded size}, so memory is
+ * proportional to the number of inputs rather than to the size of the files.
+ * Contigs are ordered by the merged ##contig lines, then by first appearance; each input must be sorted in that order.
+ * Example:
+ * <code>
+ *     try (VcfMerger merger = new VcfMerger.Builder().add(file1).add(file2).build()) {
+ *         VcfFileWriter.concat(merger.getMetadata(), merger.stream()).forEach(out::println);
+ *     }
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class VcfMerger implements Closeable, Iterator<VcfPosition> {
+
+	private final VcfMetadataCollection m_metadata;
+	private final List<Input> m_inputs;
+	private final int[] m_sampleOffsets;
+	private final Map<String, ? extends VcfTypedField> m_info;
+	private final Map<String, ? extends VcfTypedField> m_format;
+	private final Map<String, Integer> m_contigRanks = new HashMap<>();
+
+	private final VcfPosition[] m_heads;
+	private final Deque<VcfPosition> m_pending = new ArrayDeque<>();
+
+	private VcfMerger(@Nonnull Builder builder) {
+		m_metadata = mergeMetadata(builder.m_metadata);
+		m_inputs = new ArrayList<>(builder.m_inputs.size());
+		m_sampleOffsets = new int[builder.m_inputs.size() + 1];
+		for (int i = 0; i < builder.m_inputs.size(); i++) {
+			Stream<VcfPosition> positions = builder.m_inputs.get(i);
+			m_inputs.add(builder.m_readAhead > 0? new ReadAhead(positions, builder.m_readAhead, i) : new Direct(positions));
+			m_sampleOffsets[i + 1] = m_sampleOffsets[i] + builder.m_metadata.get(i).getSampleNames().size();
+		}
+		m_info = m_metadata.getFieldDecoders().getInfoFields();
+		m_format = m_metadata.getFieldDecoders().getFormatFields();
+		m_metadata.getContig().keySet().forEach(contig -> m_contigRanks.put(contig, m_contigRanks.size()));
+		m_heads = new VcfPosition[m_inputs.size()];
+		for (int i = 0; i < m_heads.length; i++) {
+			m_heads[i] = m_inputs.get(i).next();
+		}
+	}
+
+	/**
+	 * Unions the metadata lines of {@code collections}, keeping the first line for each ID and the first version line,
+	 * and concatenates their samples.
+	 * @throws IllegalArgumentException If two collections have a sample with the same name
+	 */
+	@Nonnull
+	public static VcfMetadataCollection mergeMetadata(@Nonnull List<VcfMetadataCollection> collections) {
+		Preconditions.checkNotNull(collections, "Metadata cannot be null");
+		Preconditions.checkArgument(!collections.isEmpty(), "There must be at least one metadata collection");
+		VcfMetadataCollection.Builder builder = new VcfMetadataCollection.Builder();
+		Set<String> seen = new HashSet<>();
+		Set<String> samples = new LinkedHashSet<>();
+		boolean hasVersion = false;
+		for (VcfMetadataCollection collection : collections) {
+			for (VcfMetadata line : collection.getLines()) {
+				if (line instanceof VcfVersionMetadata) {
+					if (!hasVersion) {
+						builder.addLine(line);
+						hasVersion = true;
+					}
+				} else if (line instanceof VcfHeaderMetadata) {
+					for (String sample : ((VcfHeaderMetadata) line).getSampleNames()) {
+						Preconditions.checkArgument(samples.add(sample), "Sample " + sample + " is in more than one input");
+					}
+				} else if (seen.add(line instanceof VcfIdMetadata?
+						line.getClass().getSimpleName() + "\t" + ((VcfIdMetadata) line).getId() : line.toVcfLine())) {
+					builder.addLine(line);
+				}
+			}
+		}
+		return builder.addLine(new VcfHeaderMetadata(new ArrayList<>(samples))).build();
+	}
+
+	@Nonnull
+	public VcfMetadataCollection getMetadata() {
+		return m_metadata;
+	}
+
+	/**
+	 * @throws BadDataFormatException If an input is malformed or not sorted
+	 * @throws UncheckedIOException If reading an input fails
+	 */
+	@Override
+	public boolean hasNext() {
+		if (m_pending.isEmpty()) {
+			mergeNext();
+		}
+		return !m_pending.isEmpty();
+	}
+
+	/**
+	 * @throws BadDataFormatException If an input is malformed or not sorted
+	 * @throws UncheckedIOException If reading an input fails
+	 */
+	@Nonnull
+	@Override
+	public VcfPosition next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return m_pending.removeFirst();
+	}
+
+	/**
+	 * @return The remaining merged positions, in order
+	 */
+	@Nonnull
+	public Stream<VcfPosition> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * Takes every record at the lowest position among the inputs and merges those with the same REF.
+	 */
+	private void mergeNext() {
+		VcfPosition lowest = null;
+		for (VcfPosition head : m_heads) {
+			if (head != null && (lowest == null || compare(head, lowest) < 0)) {
+				lowest = head;
+			}
+		}
+		if (lowest == null) {
+			return;
+		}
+		// a group holds up to one record per input, for one REF
+		Map<String, List<VcfPosition[]>> groups = new LinkedHashMap<>();
+		for (int i = 0; i < m_heads.length; i++) {
+			while (m_heads[i] != null && compare(m_heads[i], lowest) == 0) {
+				VcfPosition record = m_heads[i];
+				List<VcfPosition[]> sameRef = groups.computeIfAbsent(record.getRef().toVcfString(), k -> new ArrayList<>(1));
+				int finalI = i;
+				VcfPosition[] group = sameRef.stream().filter(g -> g[finalI] == null).findFirst().orElse(null);
+				if (group == null) {
+					group = new VcfPosition[m_heads.length];
+					sameRef.add(group);
+				}
+				group[i] = record;
+				m_heads[i] = m_inputs.get(i).next();
+				if (m_heads[i] != null && compare(m_heads[i], record) < 0) {
+					throw new BadDataFormatException("Input #" + (i + 1) + " is not sorted: " + m_heads[i].getChromosome() + ":"
+							+ (m_heads[i].getPosition() + 1) + " follows " + record.getChromosome() + ":" + (record.getPosition() + 1));
+				}
+			}
+		}
+		groups.values().forEach(sameRef -> sameRef.forEach(group -> m_pending.add(merge(group))));
+	}
+
+	private int compare(@Nonnull VcfPosition a, @Nonnull VcfPosition b) {
+		int byContig = Integer.compare(rank(a.getChromosome()), rank(b.getChromosome()));
+		return byContig != 0? byContig : Long.compare(a.getPosition(), b.getPosition());
+	}
+
+	private int rank(@Nonnull String contig) {
+		return m_contigRanks.computeIfAbsent(contig, c -> m_contigRanks.size());
+	}
+
+	@Nonnull
+	private VcfPosition merge(@Nonnull VcfPosition[] group) {
+		VcfPosition first = Arrays.stream(group).filter(r -> r != null).findFirst().orElseThrow();
+		VcfPosition.Builder builder = new VcfPosition.Builder(first.getChromosome(), first.getPosition(), first.getRef().toVcfString());
+
+		// ALTs, and the new index of each allele of each record
+		Map<String, Integer> alleles = new LinkedHashMap<>();
+		alleles.put(first.getRef().toVcfString(), 0);
+		int[][] mappings = new int[group.length][];
+		for (int i = 0; i < group.length; i++) {
+			if (group[i] != null) {
+				List<VcfAllele> recordAlleles = group[i].getAllAlleles();
+				mappings[i] = new int[recordAlleles.size()];
+				for (int k = 1; k < recordAlleles.size(); k++) {
+					String allele = recordAlleles.get(k).toVcfString();
+					Integer index = alleles.get(allele);
+					if (index == null) {
+						index = alleles.size();
+						alleles.put(allele, index);
+						builder.addAlt(recordAlleles.get(k));
+					}
+					mappings[i][k] = index;
+				}
+			}
+		}
+		int nAlleles = alleles.size();
+
+		// site columns
+		Optional<GeneralizedBigDecimal> quality = Optional.empty();
+		Set<String> filters = new LinkedHashSet<>();
+		boolean passed = false;
+		Set<String> info = new HashSet<>();
+		Set<String> format = new LinkedHashSet<>();
+		for (int i = 0; i < group.length; i++) {
+			VcfPosition record = group[i];
+			if (record == null) {
+				continue;
+			}
+			builder.addIdsIfNotPresent(record.getIds());
+			Optional<GeneralizedBigDecimal> q = record.getQuality().filter(v -> !v.isNan());
+			if (q.isPresent() && (quality.isEmpty() || q.get().compareTo(quality.get()) > 0)) {
+				quality = q;
+			}
+			for (String filter : record.getFilters()) {
+				if (filter.equals("PASS")) {
+					passed = true;
+				} else {
+					filters.add(filter);
+				}
+			}
+			for (String key : record.getInfo().keySet()) {
+				if (info.add(key)) {
+					builder.putInfo(key, remap(List.copyOf(record.getInfo().get(key)), m_info.get(key), mappings[i], nAlleles));
+				}
+			}
+			if (record.getFormat().contains("GT")) {
+				format.add("GT");
+			}
+		}
+		builder.setQuality(quality);
+		if (!filters.isEmpty()) {
+			builder.addFilters(filters);
+		} else if (passed) {
+			builder.setFilterToPass();
+		}
+		for (VcfPosition record : group) {
+			if (record != null) {
+				format.addAll(record.getFormat());
+			}
+		}
+		if (format.isEmpty()) {
+			return builder.build();
+		}
+
+		// samples
+		List<String> keys = List.copyOf(format);
+		builder.addFormats(keys);
+		VcfFormatSchema schema = VcfFormatSchema.of(keys);
+		List<String> missing = keys.stream().map(k -> ".").collect(Collectors.toList());
+		for (int i = 0; i < group.length; i++) {
+			int nSamples = m_sampleOffsets[i + 1] - m_sampleOffsets[i];
+			VcfPosition record = group[i];
+			for (int s = 0; s < nSamples; s++) {
+				if (record == null || s >= record.getNSamples()) {
+					builder.addSample(new VcfSample(schema, missing));
+					continue;
+				}
+				VcfSample sample = record.getSample(s);
+				List<String> values = new ArrayList<>(keys.size());
+				for (String key : keys) {
+					Optional<String> value = sample.get(key);
+					if (value.isEmpty()) {
+						values.add(".");
+					} else if (key.equals("GT")) {
+						values.add(remapGenotype(value.get(), mappings[i]));
+					} else {
+						values.add(String.join(",", remap(Arrays.asList(value.get().split(",", -1)), m_format.get(key), mappings[i], nAlleles)));
+					}
+				}
+				builder.addSample(new VcfSample(schema, values));
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Moves Number=A, R, or G values to the merged allele indices, filling new alleles with {@code .}.
+	 * Other values, and values that do not have the declared count, are returned unchanged.
+	 */
+	@Nonnull
+	private static List<String> remap(@Nonnull List<String> values, @Nullable VcfTypedField field, @Nonnull int[] mapping, @Nonnegative int nAlleles) {
+		if (field == null || isIdentity(mapping, nAlleles)) {
+			return values;
+		}
+		Optional<VcfNumberFlag> number = field.getNumber().asReservedFlag();
+		if (number.isEmpty() || number.get() == VcfNumberFlag.UNKNOWN_OR_UNBOUNDED) {
+			return values;
+		}
+		int nOld = mapping.length;
+		String[] remapped;
+		switch (number.get()) {
+			case ONE_PER_ALT:
+				if (values.size() != nOld - 1) {
+					return values;
+				}
+				remapped = missing(nAlleles - 1);
+				for (int k = 1; k < nOld; k++) {
+					remapped[mapping[k] - 1] = values.get(k - 1);
+				}
+				break;
+			case ONE_PER_ALT_OR_REF:
+				if (values.size() != nOld) {
+					return values;
+				}
+				remapped = missing(nAlleles);
+				for (int k = 0; k < nOld; k++) {
+					remapped[mapping[k]] = values.get(k);
+				}
+				break;
+			default: // ONE_PER_GENOTYPE, diploid
+				if (values.size() == nOld) { // haploid
+					remapped = missing(nAlleles);
+					for (int k = 0; k < nOld; k++) {
+						remapped[mapping[k]] = values.get(k);
+					}
+				} else if (values.size() == nOld * (nOld + 1) / 2) {
+					remapped = missing(nAlleles * (nAlleles + 1) / 2);
+					for (int k = 0; k < nOld; k++) {
+						for (int j = 0; j <= k; j++) {
+							int a = Math.min(mapping[j], mapping[k]);
+							int b = Math.max(mapping[j], mapping[k]);
+							remapped[b * (b + 1) / 2 + a] = values.get(k * (k + 1) / 2 + j);
+						}
+					}
+				} else {
+					return values;
+				}
+		}
+		return Arrays.asList(remapped);
+	}
+
+	@Nonnull
+	private static String[] missing(@Nonnegative int n) {
+		String[] values = new String[n];
+		Arrays.fill(values, ".");
+		return values;
+	}
+
+	private static boolean isIdentity(@Nonnull int[] mapping, @Nonnegative int nAlleles) {
+		if (mapping.length != nAlleles) {
+			return false;
+		}
+		for (int k = 0; k < mapping.length; k++) {
+			if (mapping[k] != k) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Replaces each allele index in a GT value, keeping the separators and missing alleles.
+	 * @throws BadDataFormatException If an allele index is not in the record
+	 */
+	@Nonnull
+	static String remapGenotype(@Nonnull String genotype, @Nonnull int[] mapping) {
+		StringBuilder sb = new StringBuilder(genotype.length());
+		int i = 0;
+		while (i < genotype.length()) {
+			char c = genotype.charAt(i);
+			if (c >= '0' && c <= '9') {
+				int start = i;
+				while (i < genotype.length() && genotype.charAt(i) >= '0' && genotype.charAt(i) <= '9') {
+					i++;
+				}
+				int allele = Integer.parseInt(genotype.substring(start, i));
+				if (allele >= mapping.length) {
+					throw new BadDataFormatException("GT " + genotype + " refers to allele " + allele + ", but there are only " + mapping.length);
+				}
+				sb.append(mapping[allele]);
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Stops the read-ahead threads and closes the inputs.
+	 */
+	@Override
+	public void close() {
+		RuntimeException failure = null;
+		for (Input input : m_inputs) {
+			try {
+				input.close();
+			} catch (RuntimeException e) {
+				failure = failure == null? e : failure;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "VcfMerger{" +
+				"nInputs=" + m_inputs.size() +
+				", nSamples=" + m_sampleOffsets[m_inputs.size()] +
+				'}';
+	}
+
+	private interface Input extends AutoCloseable {
+
+		/**
+		 * @return The next record, or null at the end
+		 */
+		@Nullable
+		VcfPosition next();
+
+		@Override
+		void close();
+	}
+
+	private static class Direct implements Input {
+
+		private final Stream<VcfPosition> m_stream;
+		private final Iterator<VcfPosition> m_positions;
+
+		Direct(@Nonnull Stream<VcfPosition> stream) {
+			m_stream = stream;
+			m_positions = stream.iterator();
+		}
+
+		@Nullable
+		@Override
+		public VcfPosition next() {
+			return m_positions.hasNext()? m_positions.next() : null;
+		}
+
+		@Override
+		public void close() {
+			m_stream.close();
+		}
+	}
+
+	/**
+	 * Reads records on a daemon thread into a bounded queue.
+	 */
+	private static class ReadAhead implements Input {
+
+		private static final Object sf_end = new Object();
+
+		private final Stream<VcfPosition> m_stream;
+		private final BlockingQueue<Object> m_queue;
+		private final Thread m_thread;
+		private boolean m_done = false;
+
+		ReadAhead(@Nonnull Stream<VcfPosition> stream, @Nonnegative int capacity, @Nonnegative int index) {
+			m_stream = stream;
+			m_queue = new ArrayBlockingQueue<>(capacity);
+			Iterator<VcfPosition> positions = stream.iterator();
+			m_thread = new Thread(() -> {
+				try {
+					while (positions.hasNext()) {
+						m_queue.put(positions.next());
+					}
+					m_queue.put(sf_end);
+				} catch (InterruptedException ignored) {
+					// closed
+				} catch (RuntimeException e) {
+					try {
+						m_queue.put(e);
+					} catch (InterruptedException ignored) {
+						// closed
+					}
+				}
+			}, "vcf-merge-" + index);
+			m_thread.setDaemon(true);
+			m_thread.start();
+		}
+
+		@Nullable
+		@Override
+		public VcfPosition next() {
+			if (m_done) {
+				return null;
+			}
+			Object next;
+			try {
+				next = m_queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while reading ahead", e);
+			}
+			if (next == sf_end) {
+				m_done = true;
+				return null;
+			}
+			if (next instanceof RuntimeException) {
+				m_done = true;
+				throw (RuntimeException) next;
+			}
+			return (VcfPosition) next;
+		}
+
+		@Override
+		public void close() {
+			m_thread.interrupt();
+			m_stream.close();
+		}
+	}
+
+	@NotThreadSafe
+	public static class Builder implements ObjectBuilder<VcfMerger> {
+
+		private final List<VcfMetadataCollection> m_metadata = new ArrayList<>();
+		private final List<Stream<VcfPosition>> m_inputs = new ArrayList<>();
+		private int m_readAhead = 1024;
+
+		/**
+		 * Adds a VCF file, reading its metadata now.
+		 * @throws UncheckedIOException If the file cannot be read
+		 * @throws BadDataFormatException If its metadata is invalid
+		 */
+		@Nonnull
+		public Builder add(@Nonnull Path file) {
+			Preconditions.checkNotNull(file, "File cannot be null");
+			VcfMetadataCollection metadata;
+			try (Stream<String> lines = Files.lines(file)) {
+				metadata = new VcfMetadataParser().apply(lines);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return add(metadata, new VcfDataParser().parseAll(file));
+		}
+
+		/**
+		 * Adds sorted positions, such as from a {@link BcfReader}, whose samples are those of {@code metadata}.
+		 */
+		@Nonnull
+		public Builder add(@Nonnull VcfMetadataCollection metadata, @Nonnull Stream<VcfPosition> positions) {
+			Preconditions.checkNotNull(metadata, "Metadata cannot be null");
+			Preconditions.checkNotNull(positions, "Positions cannot be null");
+			m_metadata.add(metadata);
+			m_inputs.add(positions);
+			return this;
+		}
+
+		/**
+		 * @param records The number of records each input thread may read ahead; 0 reads the inputs on the calling thread
+		 */
+		@Nonnull
+		public Builder setReadAhead(@Nonnegative int records) {
+			Preconditions.checkArgument(records >= 0, "Read-ahead must be nonnegative");
+			m_readAhead = records;
+			return this;
+		}
+
+		/**
+		 * Starts reading the inputs.
+		 * @throws IllegalStateException If there are no inputs
+		 * @throws IllegalArgumentException If two inputs have a sample with the same name
+		 */
+		@Nonnull
+		@Override
+		public VcfMerger build() {
+			Preconditions.checkState(!m_inputs.isEmpty(), "There must be at least one input");
+			return new VcfMerger(this);
+		}
+	}
+}
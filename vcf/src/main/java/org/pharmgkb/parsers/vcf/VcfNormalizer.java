@@ -0,0 +1,517 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ObjectBuilder;
+import org.pharmgkb.parsers.vcf.model.VcfInfo;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+import org.pharmgkb.parsers.vcf.model.VcfSample;
+import org.pharmgkb.parsers.vcf.model.VcfTypedField;
+import org.pharmgkb.parsers.vcf.model.allele.VcfAllele;
+import org.pharmgkb.parsers.vcf.model.allele.VcfBasesAllele;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfNumberFlag;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Normalizes variants as in Tan, Abecasis, and Kang (2015): splits multiallelic positions into one position per ALT,
+ * then trims bases shared by every allele and shifts indels as far left as the reference allows.
+ * When splitting, GT and INFO and FORMAT values with Number=A, R, or G are reduced to the REF and the one ALT; other
+ * ALTs in a GT become the REF, as in {@code bcftools norm -m-}.
+ * Numbers are taken from the metadata, or assumed for AD, ADF, ADR, PL, GL, GP, AC, and AF if they are not declared.
+ * Positions with symbolic, breakend, or {@code *} alleles are split but not aligned.
+ * The reference is read through a window of {@link Builder#setWindowSize(int) fixed size} that slides forward with the
+ * input, so a coordinate-sorted file reads each base of the reference about once, in order.
+ * Since positions can move left, {@link #normalize(Stream)} holds positions until the input is
+ * {@link Builder#setMaxShift(int) far enough} past them, and emits them sorted.
+ * Example:
+ * <code>
+ *     RandomAccessFastaBaseReader fasta = new RandomAccessFastaBaseReader.Builder(genome).build();
+ *     VcfNormalizer normalizer = new VcfNormalizer.Builder(metadata, (chromosome, start, length) -&gt; {
+ *         return fasta.read(chromosome, start, Math.min(length, contigLengths.get(chromosome) - start));
+ *     }).build();
+ *     normalizer.normalize(new VcfDataParser().parseAll(file)).forEach(writer::writeLine);
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class VcfNormalizer {
+
+	private static final Map<String, VcfNumberFlag> sf_defaultInfoNumbers = Map.of(
+			"AC", VcfNumberFlag.ONE_PER_ALT,
+			"AF", VcfNumberFlag.ONE_PER_ALT
+	);
+	private static final Map<String, VcfNumberFlag> sf_defaultFormatNumbers = Map.of(
+			"AD", VcfNumberFlag.ONE_PER_ALT_OR_REF,
+			"ADF", VcfNumberFlag.ONE_PER_ALT_OR_REF,
+			"ADR", VcfNumberFlag.ONE_PER_ALT_OR_REF,
+			"PL", VcfNumberFlag.ONE_PER_GENOTYPE,
+			"GL", VcfNumberFlag.ONE_PER_GENOTYPE,
+			"GP", VcfNumberFlag.ONE_PER_GENOTYPE
+	);
+
+	private final Reference m_reference;
+	private final Map<String, VcfNumberFlag> m_infoNumbers;
+	private final Map<String, VcfNumberFlag> m_formatNumbers;
+	private final boolean m_split;
+	private final boolean m_leftAlign;
+	private final boolean m_checkRef;
+	private final int m_windowSize;
+	private final int m_maxShift;
+
+	// the cached window of the reference
+	private String m_windowChromosome = null;
+	private long m_windowStart = 0;
+	private String m_window = "";
+
+	private long m_nSplit = 0;
+	private long m_nRealigned = 0;
+	private long m_nWindowReads = 0;
+
+	private VcfNormalizer(@Nonnull Builder builder) {
+		m_reference = builder.m_reference;
+		m_infoNumbers = numbers(sf_defaultInfoNumbers, builder.m_metadata.getFieldDecoders().getInfoFields());
+		m_formatNumbers = numbers(sf_defaultFormatNumbers, builder.m_metadata.getFieldDecoders().getFormatFields());
+		m_split = builder.m_split;
+		m_leftAlign = builder.m_leftAlign;
+		m_checkRef = builder.m_checkRef;
+		m_windowSize = builder.m_windowSize;
+		m_maxShift = builder.m_maxShift;
+	}
+
+	@Nonnull
+	private static Map<String, VcfNumberFlag> numbers(@Nonnull Map<String, VcfNumberFlag> defaults,
+			@Nonnull Map<String, ? extends VcfTypedField> fields) {
+		Map<String, VcfNumberFlag> numbers = new HashMap<>(defaults);
+		fields.forEach((key, field) -> {
+			Optional<VcfNumberFlag> flag = field.getNumber().asReservedFlag();
+			if (flag.isPresent()) {
+				numbers.put(key, flag.get());
+			} else {
+				numbers.remove(key);
+			}
+		});
+		return numbers;
+	}
+
+	/**
+	 * Normalizes a coordinate-sorted stream lazily.
+	 * The output is sorted too, unless an indel moves left by more than {@link Builder#setMaxShift(int)}.
+	 * Closing the returned stream closes {@code positions}.
+	 * @throws BadDataFormatException As in {@link #normalize(VcfPosition)}, when the stream is read
+	 */
+	@Nonnull
+	public Stream<VcfPosition> normalize(@Nonnull Stream<VcfPosition> positions) {
+		Preconditions.checkNotNull(positions, "Positions cannot be null");
+		Iterator<VcfPosition> input = positions.iterator();
+		Iterator<VcfPosition> output = new Iterator<>() {
+
+			private final List<VcfPosition> m_held = new ArrayList<>(); // sorted by position
+			private final Deque<VcfPosition> m_ready = new ArrayDeque<>();
+			private String m_chromosome = null;
+
+			@Override
+			public boolean hasNext() {
+				while (m_ready.isEmpty() && (input.hasNext() || !m_held.isEmpty())) {
+					if (!input.hasNext()) {
+						release(Long.MAX_VALUE);
+						continue;
+					}
+					VcfPosition next = input.next();
+					if (!next.getChromosome().equals(m_chromosome)) {
+						release(Long.MAX_VALUE);
+						m_chromosome = next.getChromosome();
+					} else {
+						release(next.getPosition() - m_maxShift);
+					}
+					for (VcfPosition normalized : normalize(next)) {
+						int i = m_held.size();
+						while (i > 0 && m_held.get(i - 1).getPosition() > normalized.getPosition()) {
+							i--;
+						}
+						m_held.add(i, normalized);
+					}
+				}
+				return !m_ready.isEmpty();
+			}
+
+			/**
+			 * Moves the held positions before {@code end} to the output.
+			 */
+			private void release(long end) {
+				int n = 0;
+				while (n < m_held.size() && m_held.get(n).getPosition() < end) {
+					m_ready.add(m_held.get(n));
+					n++;
+				}
+				m_held.subList(0, n).clear();
+			}
+
+			@Override
+			public VcfPosition next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return m_ready.removeFirst();
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(output, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(positions::close);
+	}
+
+	/**
+	 * Splits and aligns one position.
+	 * @return The normalized positions, one per ALT if splitting, in the order of the ALTs; {@code position} itself if
+	 *         nothing changed
+	 * @throws BadDataFormatException If REF does not match the reference, or the position is past the end of its
+	 *                                reference sequence
+	 * @throws UncheckedIOException If the reference cannot be read
+	 */
+	@Nonnull
+	public List<VcfPosition> normalize(@Nonnull VcfPosition position) {
+		Preconditions.checkNotNull(position, "VcfPosition cannot be null");
+		int nAlts = position.getAlts().size();
+		if (!m_split || nAlts < 2) {
+			return List.of(align(position));
+		}
+		m_nSplit++;
+		List<VcfPosition> split = new ArrayList<>(nAlts);
+		for (int k = 1; k <= nAlts; k++) {
+			split.add(align(select(position, k)));
+		}
+		return split;
+	}
+
+	/**
+	 * @return A biallelic position with only the REF and the {@code k}th allele
+	 */
+	@Nonnull
+	private VcfPosition select(@Nonnull VcfPosition position, @Nonnegative int k) {
+		int nAlleles = position.getAllAlleles().size();
+		VcfPosition.Builder builder = new VcfPosition.Builder(position.getChromosome(), position.getPosition(), position.getRef().toVcfString())
+				.addIds(position.getIds())
+				.addAlt(position.getAlts().get(k - 1))
+				.addFilters(position.getFilters());
+		position.getQualityString().ifPresent(builder::setQuality);
+		VcfInfo info = position.getInfo();
+		for (String key : info.keySet()) {
+			builder.putInfo(key, select(List.copyOf(info.get(key)), m_infoNumbers.get(key), k, nAlleles));
+		}
+		if (position.getFormat().isEmpty()) {
+			return builder.build();
+		}
+		builder.addFormats(position.getFormat());
+		int[] mapping = new int[nAlleles];
+		mapping[k] = 1;
+		for (VcfSample sample : position.getSamples()) {
+			List<String> keys = sample.getSchema().getKeys();
+			List<String> values = new ArrayList<>(sample.values());
+			for (int i = 0; i < values.size(); i++) {
+				String key = keys.get(i);
+				String value = values.get(i);
+				if (key.equals("GT")) {
+					values.set(i, VcfMerger.remapGenotype(value, mapping));
+				} else if (m_formatNumbers.containsKey(key) && !value.equals(".")) {
+					List<String> selected = select(Arrays.asList(value.split(",", -1)), m_formatNumbers.get(key), k, nAlleles);
+					values.set(i, String.join(",", selected));
+				}
+			}
+			builder.addSample(new VcfSample(sample.getSchema(), values));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Reduces Number=A, R, or G values to those of the REF and the {@code k}th allele.
+	 * Other values, and values that do not have the declared count, are returned unchanged.
+	 */
+	@Nonnull
+	private static List<String> select(@Nonnull List<String> values, @Nullable VcfNumberFlag number, @Nonnegative int k,
+			@Nonnegative int nAlleles) {
+		if (number == null) {
+			return values;
+		}
+		switch (number) {
+			case ONE_PER_ALT:
+				return values.size() == nAlleles - 1? List.of(values.get(k - 1)) : values;
+			case ONE_PER_ALT_OR_REF:
+				return values.size() == nAlleles? List.of(values.get(0), values.get(k)) : values;
+			case ONE_PER_GENOTYPE:
+				if (values.size() == nAlleles) { // haploid
+					return List.of(values.get(0), values.get(k));
+				}
+				if (values.size() == nAlleles * (nAlleles + 1) / 2) {
+					int homozygous = k * (k + 1) / 2 + k;
+					return List.of(values.get(0), values.get(k * (k + 1) / 2), values.get(homozygous));
+				}
+				return values;
+			default:
+				return values;
+		}
+	}
+
+	/**
+	 * Trims and left-aligns the alleles of {@code position} together.
+	 */
+	@Nonnull
+	private VcfPosition align(@Nonnull VcfPosition position) {
+		List<VcfAllele> alleles = position.getAllAlleles();
+		if (alleles.size() < 2 || !alleles.stream().allMatch(a -> a instanceof VcfBasesAllele)) {
+			return position;
+		}
+		String chromosome = position.getChromosome();
+		String ref = position.getRef().toVcfString();
+		if (m_checkRef) {
+			for (int i = 0; i < ref.length(); i++) {
+				char base = upper(ref.charAt(i));
+				char expected = upper(base(chromosome, position.getPosition() + i));
+				if (base != expected && base != 'N' && expected != 'N') {
+					throw new BadDataFormatException("REF " + ref + " at " + chromosome + ":" + (position.getPosition() + 1)
+							+ " does not match the reference");
+				}
+			}
+		}
+		if (!m_leftAlign) {
+			return position;
+		}
+		String[] strings = new String[alleles.size()];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = alleles.get(i).toVcfString();
+			if (i > 0 && strings[i].equalsIgnoreCase(ref)) {
+				return position; // could never stop shifting
+			}
+		}
+		long start = position.getPosition();
+		boolean changed = false;
+		// while every allele ends in the same base, drop it, first extending to the left if an allele would be empty
+		while (sameLast(strings)) {
+			if (Arrays.stream(strings).anyMatch(s -> s.length() == 1)) {
+				if (start == 0) {
+					break;
+				}
+				start--;
+				char base = upper(base(chromosome, start));
+				for (int i = 0; i < strings.length; i++) {
+					strings[i] = base + strings[i];
+				}
+			}
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = strings[i].substring(0, strings[i].length() - 1);
+			}
+			changed = true;
+		}
+		// then drop the first base while every allele starts with the same one and has at least 2
+		while (sameFirst(strings)) {
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = strings[i].substring(1);
+			}
+			start++;
+			changed = true;
+		}
+		if (!changed) {
+			return position;
+		}
+		m_nRealigned++;
+		VcfPosition.Builder builder = new VcfPosition.Builder(chromosome, start, strings[0])
+				.addIds(position.getIds())
+				.addFilters(position.getFilters())
+				.putInfo(position.getInfo().getMap())
+				.addFormats(position.getFormat())
+				.addSamples(position.getSamples());
+		for (int i = 1; i < strings.length; i++) {
+			builder.addAlt(strings[i]);
+		}
+		position.getQualityString().ifPresent(builder::setQuality);
+		return builder.build();
+	}
+
+	private static boolean sameLast(@Nonnull String[] strings) {
+		char last = upper(strings[0].charAt(strings[0].length() - 1));
+		for (String string : strings) {
+			if (upper(string.charAt(string.length() - 1)) != last) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean sameFirst(@Nonnull String[] strings) {
+		char first = upper(strings[0].charAt(0));
+		for (String string : strings) {
+			if (string.length() < 2 || upper(string.charAt(0)) != first) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static char upper(char base) {
+		return base >= 'a' && base <= 'z'? (char) (base - 32) : base;
+	}
+
+	/**
+	 * @return The reference base at the 0-based {@code position}, from the window
+	 */
+	private char base(@Nonnull String chromosome, @Nonnegative long position) {
+		if (!chromosome.equals(m_windowChromosome) || position < m_windowStart || position >= m_windowStart + m_window.length()) {
+			// slide forward, keeping some bases behind for left shifts; or, when moving left, end at the position
+			long start = chromosome.equals(m_windowChromosome) && position < m_windowStart?
+					position - m_windowSize + 1 : position - m_windowSize / 4;
+			m_windowStart = Math.max(0, start);
+			m_window = m_reference.getBases(chromosome, m_windowStart, m_windowSize);
+			m_windowChromosome = chromosome;
+			m_nWindowReads++;
+			if (position >= m_windowStart + m_window.length()) {
+				throw new BadDataFormatException(chromosome + ":" + (position + 1) + " is past the end of the reference");
+			}
+		}
+		return m_window.charAt((int) (position - m_windowStart));
+	}
+
+	/**
+	 * @return The number of multiallelic positions that were split
+	 */
+	@Nonnegative
+	public long getNSplit() {
+		return m_nSplit;
+	}
+
+	/**
+	 * @return The number of positions that were trimmed or shifted
+	 */
+	@Nonnegative
+	public long getNRealigned() {
+		return m_nRealigned;
+	}
+
+	/**
+	 * @return The number of times the reference was read
+	 */
+	@Nonnegative
+	public long getNWindowReads() {
+		return m_nWindowReads;
+	}
+
+	@Override
+	public String toString() {
+		return "VcfNormalizer{" +
+				"split=" + m_split +
+				", leftAlign=" + m_leftAlign +
+				", windowSize=" + m_windowSize +
+				", maxShift=" + m_maxShift +
+				", nSplit=" + m_nSplit +
+				", nRealigned=" + m_nRealigned +
+				", nWindowReads=" + m_nWindowReads +
+				'}';
+	}
+
+	/**
+	 * A source of reference bases, such as a FASTA file.
+	 */
+	@FunctionalInterface
+	public interface Reference {
+
+		/**
+		 * @param start 0-based
+		 * @return Up to {@code length} bases beginning at {@code start}; fewer only at the end of the sequence
+		 * @throws UncheckedIOException If the reference cannot be read
+		 */
+		@Nonnull
+		String getBases(@Nonnull String chromosome, @Nonnegative long start, @Nonnegative int length);
+	}
+
+	@NotThreadSafe
+	public static class Builder implements ObjectBuilder<VcfNormalizer> {
+
+		private final VcfMetadataCollection m_metadata;
+		private final Reference m_reference;
+		private boolean m_split = true;
+		private boolean m_leftAlign = true;
+		private boolean m_checkRef = true;
+		private int m_windowSize = 64 * 1024;
+		private int m_maxShift = 1000;
+
+		/**
+		 * @param metadata For the Number of INFO and FORMAT fields
+		 */
+		public Builder(@Nonnull VcfMetadataCollection metadata, @Nonnull Reference reference) {
+			Preconditions.checkNotNull(metadata, "Metadata cannot be null");
+			Preconditions.checkNotNull(reference, "Reference cannot be null");
+			m_metadata = metadata;
+			m_reference = reference;
+		}
+
+		/**
+		 * Splits multiallelic positions into one position per ALT; true by default.
+		 */
+		@Nonnull
+		public Builder setSplit(boolean split) {
+			m_split = split;
+			return this;
+		}
+
+		/**
+		 * Trims and left-aligns alleles; true by default.
+		 */
+		@Nonnull
+		public Builder setLeftAlign(boolean leftAlign) {
+			m_leftAlign = leftAlign;
+			return this;
+		}
+
+		/**
+		 * Fails on a REF that does not match the reference, ignoring case and N; true by default.
+		 */
+		@Nonnull
+		public Builder setCheckRef(boolean checkRef) {
+			m_checkRef = checkRef;
+			return this;
+		}
+
+		/**
+		 * Sets the number of reference bases read at once; 64 KiB by default.
+		 */
+		@Nonnull
+		public Builder setWindowSize(@Nonnegative int bases) {
+			Preconditions.checkArgument(bases >= 4, "Window size must be at least 4");
+			m_windowSize = bases;
+			return this;
+		}
+
+		/**
+		 * Sets how far behind the input a normalized position can be emitted by {@link VcfNormalizer#normalize(Stream)}, which is
+		 * the largest left shift that keeps the output sorted; 1000 bases by default.
+		 */
+		@Nonnull
+		public Builder setMaxShift(@Nonnegative int bases) {
+			Preconditions.checkArgument(bases >= 0, "Maximum shift must be nonnegative");
+			m_maxShift = bases;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public VcfNormalizer build() {
+			return new VcfNormalizer(this);
+		}
+	}
+}
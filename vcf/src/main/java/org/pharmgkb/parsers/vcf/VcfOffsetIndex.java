@@ -0,0 +1,330 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.cache.BinaryInput;
+import org.pharmgkb.parsers.cache.BinaryOutput;
+import org.pharmgkb.parsers.cache.RecordCodec;
+import org.pharmgkb.parsers.cache.SidecarCache;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+/**
+ * A sparse index of an uncompressed, coordinate-sorted VCF file: the byte offset of every Nth position, and of the
+ * first position of each contig. Built in one pass that reads only CHROM and POS.
+ * {@link #of(Path)} keeps the index in a sidecar file (see {@link SidecarCache}) that is trusted while the VCF's size
+ * and modification time are unchanged, so loading it does not read the VCF.
+ * Use with {@link VcfRegionReader}.
+ * @author Douglas Myers-Turnbull
+ */
+@Immutable
+public class VcfOffsetIndex {
+
+	public static final String SUFFIX = ".bioio-offsets";
+	public static final int DEFAULT_INTERVAL = 1024;
+
+	private static final int sf_bufferSize = 1 << 20;
+
+	private static final RecordCodec<VcfOffsetIndex> sf_codec = new RecordCodec<>() {
+
+		@Nonnull
+		@Override
+		public String getId() {
+			return "vcf-offset-index/1";
+		}
+
+		@Override
+		public void write(@Nonnull VcfOffsetIndex index, @Nonnull BinaryOutput out) {
+			out.writeLong(index.m_dataStart);
+			out.writeInt(index.m_contigs.size());
+			for (int c = 0; c < index.m_contigs.size(); c++) {
+				out.writeString(index.m_contigs.get(c));
+				out.writeInt(index.m_contigStarts[c]);
+			}
+			out.writeInt(index.m_positions.length);
+			for (int i = 0; i < index.m_positions.length; i++) {
+				out.writeLong(index.m_positions[i]);
+				out.writeLong(index.m_offsets[i]);
+			}
+		}
+
+		@Nonnull
+		@Override
+		public VcfOffsetIndex read(@Nonnull BinaryInput in) {
+			long dataStart = in.readLong();
+			int nContigs = in.readInt();
+			List<String> contigs = new ArrayList<>(nContigs);
+			int[] contigStarts = new int[nContigs + 1];
+			for (int c = 0; c < nContigs; c++) {
+				contigs.add(in.readString());
+				contigStarts[c] = in.readInt();
+			}
+			int n = in.readInt();
+			contigStarts[nContigs] = n;
+			long[] positions = new long[n];
+			long[] offsets = new long[n];
+			for (int i = 0; i < n; i++) {
+				positions[i] = in.readLong();
+				offsets[i] = in.readLong();
+			}
+			return new VcfOffsetIndex(dataStart, contigs, contigStarts, positions, offsets);
+		}
+	};
+
+	private final long m_dataStart;
+	private final List<String> m_contigs;
+	private final Map<String, Integer> m_contigIndices = new HashMap<>();
+	private final int[] m_contigStarts; // the first entry of each contig, then the number of entries
+	private final long[] m_positions;
+	private final long[] m_offsets;
+
+	private VcfOffsetIndex(long dataStart, @Nonnull List<String> contigs, @Nonnull int[] contigStarts,
+			@Nonnull long[] positions, @Nonnull long[] offsets) {
+		m_dataStart = dataStart;
+		m_contigs = List.copyOf(contigs);
+		m_contigStarts = contigStarts;
+		m_positions = positions;
+		m_offsets = offsets;
+		for (int c = 0; c < m_contigs.size(); c++) {
+			m_contigIndices.put(m_contigs.get(c), c);
+		}
+	}
+
+	/**
+	 * Loads the index from its sidecar file, or builds it with {@link #DEFAULT_INTERVAL} and writes the sidecar.
+	 * @throws BadDataFormatException If the file is not sorted
+	 * @throws UncheckedIOException If the file cannot be read
+	 */
+	@Nonnull
+	public static VcfOffsetIndex of(@Nonnull Path file) throws UncheckedIOException {
+		return new SidecarCache<>(sf_codec, SUFFIX, false).get(file, () -> build(file, DEFAULT_INTERVAL));
+	}
+
+	/**
+	 * Writes the index to its sidecar file, replacing any existing one.
+	 */
+	public void store(@Nonnull Path file) throws UncheckedIOException {
+		new SidecarCache<>(sf_codec, SUFFIX, false).store(file, this);
+	}
+
+	/**
+	 * Reads {@code file} once.
+	 * @param interval Index every {@code interval}th position
+	 * @throws BadDataFormatException If the file is compressed, or not sorted: a contig is split, or positions decrease
+	 * @throws UncheckedIOException If the file cannot be read
+	 */
+	@Nonnull
+	public static VcfOffsetIndex build(@Nonnull Path file, @Nonnegative int interval) throws UncheckedIOException {
+		Preconditions.checkArgument(interval > 0, "Interval must be positive");
+		List<String> contigs = new ArrayList<>();
+		List<Integer> contigStarts = new ArrayList<>();
+		long[] positions = new long[64];
+		long[] offsets = new long[64];
+		int n = 0;
+		long dataStart = -1;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(sf_bufferSize);
+			byte[] key = new byte[256]; // CHROM, a tab, and POS
+			int keyLength = 0;
+			int nTabs = 0;
+			boolean atLineStart = true;
+			boolean comment = false;
+			long lineStart = 0;
+			long offset = 0;
+			long nRecords = 0;
+			byte[] contig = new byte[0];
+			long lastPosition = -1;
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				if (offset == 0 && buffer.limit() >= 2 && (buffer.get(0) & 0xff) == 0x1f && (buffer.get(1) & 0xff) == 0x8b) {
+					throw new BadDataFormatException(file + " is compressed");
+				}
+				while (buffer.hasRemaining()) {
+					byte b = buffer.get();
+					if (atLineStart) {
+						lineStart = offset;
+						comment = b == '#';
+						keyLength = 0;
+						nTabs = 0;
+						atLineStart = false;
+					}
+					offset++;
+					if (b == '\n') {
+						atLineStart = true;
+						if (!comment && nTabs < 2 && (nTabs > 0 || keyLength > 0)) {
+							throw new BadDataFormatException("Line at byte " + lineStart + " has fewer than 3 columns");
+						}
+						continue;
+					}
+					if (comment || nTabs >= 2 || b == '\r') {
+						continue;
+					}
+					if (b != '\t' || ++nTabs < 2) {
+						if (keyLength == key.length) {
+							key = Arrays.copyOf(key, key.length * 2);
+						}
+						key[keyLength++] = b;
+						continue;
+					}
+					// CHROM and POS are complete
+					if (dataStart < 0) {
+						dataStart = lineStart;
+					}
+					int tab = indexOf(key, keyLength, (byte) '\t');
+					long position = parsePosition(key, tab + 1, keyLength, lineStart);
+					boolean newContig = !Arrays.equals(key, 0, tab, contig, 0, contig.length);
+					if (newContig) {
+						String chromosome = new String(key, 0, tab, StandardCharsets.UTF_8);
+						if (contigs.contains(chromosome)) {
+							throw new BadDataFormatException("Contig " + chromosome + " is not contiguous at byte " + lineStart);
+						}
+						contigs.add(chromosome);
+						contigStarts.add(n);
+						contig = Arrays.copyOf(key, tab);
+					} else if (position < lastPosition) {
+						throw new BadDataFormatException("Positions are not sorted at " + contigs.get(contigs.size() - 1)
+								+ ":" + (position + 1));
+					}
+					if (newContig || nRecords % interval == 0) {
+						if (n == positions.length) {
+							positions = Arrays.copyOf(positions, n * 2);
+							offsets = Arrays.copyOf(offsets, n * 2);
+						}
+						positions[n] = position;
+						offsets[n] = lineStart;
+						n++;
+					}
+					lastPosition = position;
+					nRecords++;
+				}
+				buffer.clear();
+			}
+			if (!atLineStart && !comment && nTabs < 2 && (nTabs > 0 || keyLength > 0)) {
+				throw new BadDataFormatException("The last line of " + file + " has fewer than 3 columns");
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not index " + file, e);
+		}
+		int[] starts = new int[contigs.size() + 1];
+		for (int c = 0; c < contigs.size(); c++) {
+			starts[c] = contigStarts.get(c);
+		}
+		starts[contigs.size()] = n;
+		return new VcfOffsetIndex(dataStart, contigs, starts, Arrays.copyOf(positions, n), Arrays.copyOf(offsets, n));
+	}
+
+	private static int indexOf(@Nonnull byte[] bytes, int length, byte b) {
+		for (int i = 0; i < length; i++) {
+			if (bytes[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The 0-based position
+	 */
+	private static long parsePosition(@Nonnull byte[] bytes, int start, int end, long lineStart) {
+		if (start == end) {
+			throw new BadDataFormatException("Line at byte " + lineStart + " has no POS");
+		}
+		long position = 0;
+		for (int i = start; i < end; i++) {
+			if (bytes[i] < '0' || bytes[i] > '9') {
+				throw new BadDataFormatException("POS at byte " + lineStart + " is not a number");
+			}
+			position = position * 10 + (bytes[i] - '0');
+		}
+		return position - 1;
+	}
+
+	/**
+	 * Binary-searches the index.
+	 * @param position 0-based
+	 * @return The offset of a line of {@code contig} at or before the first position at or after {@code position};
+	 *         or empty if the contig has no positions
+	 */
+	@Nonnull
+	public OptionalLong getOffset(@Nonnull String contig, long position) {
+		Integer c = m_contigIndices.get(contig);
+		if (c == null) {
+			return OptionalLong.empty();
+		}
+		// the last entry before position, or the contig's first entry, which is its first line
+		int lo = m_contigStarts[c], hi = m_contigStarts[c + 1] - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (m_positions[mid] < position) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return OptionalLong.of(m_offsets[lo]);
+	}
+
+	/**
+	 * @return The offset of the first line that is not metadata or the header, or -1 if there are no positions
+	 */
+	public long getDataStart() {
+		return m_dataStart;
+	}
+
+	/**
+	 * @return The contigs, in file order
+	 */
+	@Nonnull
+	public List<String> getContigs() {
+		return m_contigs;
+	}
+
+	/**
+	 * @return The number of positions indexed
+	 */
+	@Nonnegative
+	public int size() {
+		return m_positions.length;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		VcfOffsetIndex that = (VcfOffsetIndex) o;
+		return m_dataStart == that.m_dataStart &&
+				m_contigs.equals(that.m_contigs) &&
+				Arrays.equals(m_contigStarts, that.m_contigStarts) &&
+				Arrays.equals(m_positions, that.m_positions) &&
+				Arrays.equals(m_offsets, that.m_offsets);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * m_contigs.hashCode() + Arrays.hashCode(m_offsets);
+	}
+
+	@Override
+	public String toString() {
+		return "VcfOffsetIndex{" +
+				"dataStart=" + m_dataStart +
+				", nContigs=" + m_contigs.size() +
+				", size=" + m_positions.length +
+				'}';
+	}
+}
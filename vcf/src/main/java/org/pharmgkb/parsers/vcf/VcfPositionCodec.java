@@ -0,0 +1,110 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.pharmgkb.parsers.cache.BinaryInput;
+import org.pharmgkb.parsers.cache.BinaryOutput;
+import org.pharmgkb.parsers.cache.RecordCodec;
+import org.pharmgkb.parsers.vcf.model.VcfFormatSchema;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+import org.pharmgkb.parsers.vcf.model.VcfSample;
+import org.pharmgkb.parsers.vcf.model.allele.VcfAllele;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary form of a {@link VcfPosition}, for {@link org.pharmgkb.parsers.cache.SidecarCache}.
+ * All strings are stored unescaped, exactly as {@link VcfDataParser} returns them.
+ * Example:
+ * <code>
+ *     VcfDataParser parser = new VcfDataParser(SidecarCache.forRecords(new VcfPositionCodec()));
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class VcfPositionCodec implements RecordCodec<VcfPosition> {
+
+	@Nonnull
+	@Override
+	public String getId() {
+		return "vcf-position/1";
+	}
+
+	@Override
+	public void write(@Nonnull VcfPosition position, @Nonnull BinaryOutput out) {
+		out.writeString(position.getChromosome());
+		out.writeLong(position.getPosition());
+		out.writeString(position.getRef().toVcfString());
+		writeStrings(position.getIds(), out);
+		out.writeInt(position.getAlts().size());
+		for (VcfAllele alt : position.getAlts()) {
+			out.writeString(alt.toVcfString());
+		}
+		out.writeString(position.getQualityString().orElse(null));
+		writeStrings(position.getFilters(), out);
+		out.writeInt(position.getInfo().asMap().size());
+		for (Map.Entry<String, Collection<String>> entry : position.getInfo().asMap().entrySet()) {
+			out.writeString(entry.getKey());
+			writeStrings(entry.getValue(), out);
+		}
+		writeStrings(position.getFormat(), out);
+		out.writeInt(position.getSamples().size());
+		for (VcfSample sample : position.getSamples()) {
+			writeStrings(sample.values(), out); // keys are the FORMAT
+		}
+	}
+
+	@Nonnull
+	@Override
+	public VcfPosition read(@Nonnull BinaryInput in) {
+		//noinspection ConstantConditions
+		VcfPosition.Builder builder = new VcfPosition.Builder(in.readString(), in.readLong(), in.readString());
+		builder.addIds(readStrings(in));
+		builder.addAlts(readStrings(in));
+		String quality = in.readString();
+		if (quality != null) {
+			builder.setQuality(quality);
+		}
+		builder.addFilters(readStrings(in));
+		int nInfo = in.readInt();
+		for (int i = 0; i < nInfo; i++) {
+			//noinspection ConstantConditions
+			builder.putInfo(in.readString(), readStrings(in));
+		}
+		List<String> format = readStrings(in);
+		builder.addFormats(format);
+		int nSamples = in.readInt();
+		VcfFormatSchema schema = VcfFormatSchema.of(format);
+		for (int i = 0; i < nSamples; i++) {
+			builder.addSample(new VcfSample(schema, readStrings(in)));
+		}
+		return builder.build();
+	}
+
+	private static void writeStrings(@Nonnull Collection<String> strings, @Nonnull BinaryOutput out) {
+		out.writeInt(strings.size());
+		for (String string : strings) {
+			out.writeString(string);
+		}
+	}
+
+	@Nonnull
+	private static List<String> readStrings(@Nonnull BinaryInput in) {
+		int n = in.readInt();
+		List<String> strings = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			strings.add(in.readString());
+		}
+		return strings;
+	}
+
+	@Override
+	public String toString() {
+		return "VcfPositionCodec{" +
+				"id=" + getId() +
+				'}';
+	}
+}
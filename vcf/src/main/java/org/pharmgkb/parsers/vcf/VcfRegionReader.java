@@ -0,0 +1,330 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ObjectBuilder;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.stream.Stream;
+
+/**
+ * Reads the positions in a region of an uncompressed, coordinate-sorted VCF file without reading from the top.
+ * With a {@link VcfOffsetIndex}, the first line to read is found by binary search over the index.
+ * Without one, the file itself is bisected: each step reads the line after a byte offset and compares its CHROM and POS,
+ * using the order of the ##contig lines, until the range is smaller than {@link Builder#setScanBytes(int)}.
+ * Either way, only lines near the region are read.
+ * Positions are selected by POS alone, not by the span of REF.
+ * Example:
+ * <code>
+ *     VcfRegionReader reader = new VcfRegionReader.Builder(file).setIndex(VcfOffsetIndex.of(file)).build();
+ *     try (Stream&lt;VcfPosition&gt; positions = reader.query("chr2", 1_000_000, 2_000_000)) {
+ *         ...
+ *     }
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class VcfRegionReader {
+
+	private final Path m_file;
+	private final VcfOffsetIndex m_index;
+	private final VcfDataParser m_parser;
+	private final int m_scanBytes;
+	private final long m_dataStart;
+	private final Map<String, Integer> m_contigRanks = new HashMap<>();
+
+	private VcfRegionReader(@Nonnull Builder builder) {
+		m_file = builder.m_file;
+		m_index = builder.m_index;
+		m_parser = builder.m_parser;
+		m_scanBytes = builder.m_scanBytes;
+		if (m_index != null) {
+			m_dataStart = m_index.getDataStart();
+		} else {
+			m_dataStart = findDataStart(m_file);
+			VcfMetadataCollection metadata;
+			try (Stream<String> lines = Files.lines(m_file)) {
+				metadata = new VcfMetadataParser().apply(lines);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not read " + m_file, e);
+			}
+			metadata.getContig().keySet().forEach(contig -> m_contigRanks.put(contig, m_contigRanks.size()));
+		}
+	}
+
+	/**
+	 * @return The offset of the first line that does not start with {@code #}, or -1 if there is none
+	 */
+	private static long findDataStart(@Nonnull Path file) throws UncheckedIOException {
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 65536)) {
+			long offset = 0;
+			boolean atLineStart = true;
+			int b;
+			while ((b = in.read()) >= 0) {
+				if (atLineStart && b != '#') {
+					return offset;
+				}
+				atLineStart = b == '\n';
+				offset++;
+			}
+			return -1;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read " + file, e);
+		}
+	}
+
+	/**
+	 * Parses the positions of {@code contig} whose POS is in a range.
+	 * The stream must be closed.
+	 * @param start 0-based, inclusive
+	 * @param end 0-based, exclusive
+	 * @throws BadDataFormatException As in {@link #queryLines(String, long, long)}, or if a line cannot be parsed
+	 */
+	@Nonnull
+	public Stream<VcfPosition> query(@Nonnull String contig, long start, long end) {
+		return queryLines(contig, start, end).map(m_parser::apply);
+	}
+
+	/**
+	 * Reads the lines of {@code contig} whose POS is in a range.
+	 * The stream must be closed.
+	 * @param start 0-based, inclusive
+	 * @param end 0-based, exclusive
+	 * @throws IllegalStateException If there is no index and the contig is not in the ##contig lines
+	 * @throws BadDataFormatException If there is no index and the file has a contig that is not in the ##contig lines
+	 * @throws UncheckedIOException If the file cannot be read
+	 */
+	@Nonnull
+	public Stream<String> queryLines(@Nonnull String contig, long start, long end) throws UncheckedIOException {
+		Preconditions.checkNotNull(contig, "Contig cannot be null");
+		Preconditions.checkArgument(start <= end, "Start " + start + " is after end " + end);
+		if (m_dataStart < 0) {
+			return Stream.empty();
+		}
+		OptionalLong offset = m_index != null? m_index.getOffset(contig, start) : OptionalLong.of(bisect(contig, start));
+		if (offset.isEmpty()) {
+			return Stream.empty();
+		}
+		BufferedReader reader;
+		try {
+			InputStream in = Files.newInputStream(m_file);
+			in.skipNBytes(offset.getAsLong());
+			reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 65536);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read " + m_file, e);
+		}
+		String prefix = contig + "\t";
+		Stream<String> lines = reader.lines();
+		if (m_index == null) {
+			// bisection can stop before the contig
+			int rank = rank(contig);
+			lines = lines.dropWhile(line -> compare(line, rank, start) < 0);
+		} else {
+			lines = lines.dropWhile(line -> line.startsWith(prefix) && position(line) < start);
+		}
+		return lines.takeWhile(line -> line.startsWith(prefix) && position(line) < end)
+				.onClose(() -> {
+					try {
+						reader.close();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+	}
+
+	/**
+	 * @return The offset of a line at or before the first line at or after {@code position}
+	 */
+	private long bisect(@Nonnull String contig, long position) throws UncheckedIOException {
+		int rank = rank(contig);
+		try (FileChannel channel = FileChannel.open(m_file, StandardOpenOption.READ)) {
+			long lo = m_dataStart; // always a line before the target
+			long hi = channel.size();
+			ByteBuffer buffer = ByteBuffer.allocate(4096);
+			while (hi - lo > m_scanBytes) {
+				long mid = (lo + hi) >>> 1;
+				long line = nextLineStart(channel, buffer, mid, hi);
+				if (line < 0) {
+					hi = mid;
+					continue;
+				}
+				String key = readKey(channel, buffer, line);
+				if (compare(key, rank, position) < 0) {
+					lo = line;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read " + m_file, e);
+		}
+	}
+
+	/**
+	 * @return The offset of the first line that starts at or after {@code from} and before {@code to}, or -1
+	 */
+	private static long nextLineStart(@Nonnull FileChannel channel, @Nonnull ByteBuffer buffer, long from, long to) throws IOException {
+		long offset = from - 1;
+		while (offset < to) {
+			buffer.clear();
+			int n = channel.read(buffer, offset);
+			if (n <= 0) {
+				return -1;
+			}
+			for (int i = 0; i < n; i++) {
+				if (buffer.get(i) == '\n') {
+					long line = offset + i + 1;
+					return line < to? line : -1;
+				}
+			}
+			offset += n;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The line's CHROM and POS columns, separated by a tab
+	 */
+	@Nonnull
+	private static String readKey(@Nonnull FileChannel channel, @Nonnull ByteBuffer buffer, long line) throws IOException {
+		StringBuilder sb = new StringBuilder(32);
+		long offset = line;
+		int nTabs = 0;
+		while (true) {
+			buffer.clear();
+			int n = channel.read(buffer, offset);
+			if (n <= 0) {
+				return sb.toString();
+			}
+			for (int i = 0; i < n; i++) {
+				byte b = buffer.get(i);
+				if (b == '\n' || b == '\t' && ++nTabs == 2) {
+					return sb.toString();
+				}
+				sb.append((char) (b & 0xff));
+			}
+			offset += n;
+		}
+	}
+
+	private int rank(@Nonnull String contig) {
+		Integer rank = m_contigRanks.get(contig);
+		if (rank == null) {
+			throw new IllegalStateException("Contig " + contig + " is not in the ##contig lines, so " + m_file
+					+ " cannot be bisected without an index");
+		}
+		return rank;
+	}
+
+	/**
+	 * Compares a line, or its key, to a contig and position.
+	 */
+	private int compare(@Nonnull String line, int rank, long position) {
+		int tab = line.indexOf('\t');
+		if (tab < 0) {
+			throw new BadDataFormatException("Line " + line + " has too few columns");
+		}
+		Integer lineRank = m_contigRanks.get(line.substring(0, tab));
+		if (lineRank == null) {
+			throw new BadDataFormatException("Contig " + line.substring(0, tab) + " is not in the ##contig lines, so " + m_file
+					+ " cannot be bisected without an index");
+		}
+		int byContig = Integer.compare(lineRank, rank);
+		return byContig != 0? byContig : Long.compare(position(line), position);
+	}
+
+	/**
+	 * @return The 0-based position of a line, or of a key
+	 */
+	private static long position(@Nonnull String line) {
+		int tab = line.indexOf('\t');
+		int next = line.indexOf('\t', tab + 1);
+		try {
+			return Long.parseLong(line, tab + 1, next < 0? line.length() : next, 10) - 1;
+		} catch (NumberFormatException | IndexOutOfBoundsException e) {
+			throw new BadDataFormatException("Line " + line.substring(0, Math.min(line.length(), 100)) + " has an invalid POS", e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "VcfRegionReader{" +
+				"file=" + m_file +
+				", indexed=" + (m_index != null) +
+				", dataStart=" + m_dataStart +
+				'}';
+	}
+
+	@NotThreadSafe
+	public static class Builder implements ObjectBuilder<VcfRegionReader> {
+
+		private final Path m_file;
+		private VcfOffsetIndex m_index = null;
+		private VcfDataParser m_parser = new VcfDataParser();
+		private int m_scanBytes = 64 * 1024;
+
+		public Builder(@Nonnull Path file) {
+			Preconditions.checkNotNull(file, "File cannot be null");
+			m_file = file;
+		}
+
+		/**
+		 * Uses an index of the file, such as {@link VcfOffsetIndex#of(Path)}, instead of bisecting it.
+		 */
+		@Nonnull
+		public Builder setIndex(@Nullable VcfOffsetIndex index) {
+			m_index = index;
+			return this;
+		}
+
+		@Nonnull
+		public Builder setParser(@Nonnull VcfDataParser parser) {
+			Preconditions.checkNotNull(parser, "Parser cannot be null");
+			m_parser = parser;
+			return this;
+		}
+
+		/**
+		 * Sets the size of a range of the file below which bisection stops and lines are read in order; 64 KiB by default.
+		 */
+		@Nonnull
+		public Builder setScanBytes(@Nonnegative int bytes) {
+			Preconditions.checkArgument(bytes > 0, "Bytes must be positive");
+			m_scanBytes = bytes;
+			return this;
+		}
+
+		/**
+		 * Reads the header if there is no index.
+		 * @throws UncheckedIOException If the file cannot be read
+		 * @throws BadDataFormatException If the metadata is invalid
+		 */
+		@Nonnull
+		@Override
+		public VcfRegionReader build() {
+			return new VcfRegionReader(this);
+		}
+	}
+}
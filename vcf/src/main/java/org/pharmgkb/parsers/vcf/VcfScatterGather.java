@@ -0,0 +1,457 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ObjectBuilder;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Runs a function on every position of a VCF file in parallel, and gathers the results back in file order.
+ * An uncompressed file is split into {@link Shard shards} by one byte scan: one per contig, and more for contigs that
+ * are larger than {@link Builder#setMaxShardBytes(long) a maximum size}. Each shard is read and parsed by its own
+ * {@link VcfDataParser}. A compressed file cannot be split, so it is read sequentially in chunks of about the same
+ * size that are parsed and processed in parallel.
+ * At most twice as many shards as threads are held in memory at once.
+ * Example:
+ * <code>
+ *     VcfScatterGather scatter = new VcfScatterGather.Builder(input).setThreads(64).build();
+ *     try (VcfFileWriter writer = new VcfFileWriter.Builder(output).build()) {
+ *         scatter.run(writer, scatter.getMetadata(), position -&gt; Stream.of(annotate(position)));
+ *     }
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class VcfScatterGather {
+
+	private final Path m_file;
+	private final int m_nThreads;
+	private final long m_maxShardBytes;
+	private final Supplier<VcfDataParser> m_newParser;
+	private final boolean m_compressed;
+	private final VcfMetadataCollection m_metadata;
+
+	private VcfScatterGather(@Nonnull Builder builder) throws IOException {
+		m_file = builder.m_file;
+		m_nThreads = builder.m_nThreads;
+		m_maxShardBytes = builder.m_maxShardBytes;
+		m_newParser = builder.m_newParser;
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(m_file))) {
+			in.mark(2);
+			m_compressed = in.read() == 0x1f && in.read() == 0x8b;
+		}
+		try (Stream<String> lines = lines(openReader())) {
+			m_metadata = new VcfMetadataParser().apply(lines);
+		}
+	}
+
+	@Nonnull
+	public VcfMetadataCollection getMetadata() {
+		return m_metadata;
+	}
+
+	/**
+	 * Finds the shards of an uncompressed file by reading the first column of every line.
+	 * @return The shards in file order, or an empty list for a compressed file
+	 * @throws UncheckedIOException If the file cannot be read
+	 */
+	@Nonnull
+	public List<Shard> getShards() {
+		if (m_compressed) {
+			return Collections.emptyList();
+		}
+		try (InputStream in = Files.newInputStream(m_file)) {
+			return findShards(in, m_maxShardBytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not scan " + m_file, e);
+		}
+	}
+
+	/**
+	 * Splits {@code in} at the line boundaries where the contig changes, and within a contig every time a shard
+	 * reaches {@code maxShardBytes}. Metadata lines are not in any shard.
+	 */
+	@Nonnull
+	static List<Shard> findShards(@Nonnull InputStream in, @Nonnegative long maxShardBytes) throws IOException {
+		List<Shard> shards = new ArrayList<>();
+		byte[] buffer = new byte[1 << 20];
+		byte[] contig = new byte[64];
+		int contigLength = 0;
+		byte[] line = new byte[64]; // the first column of the current line
+		int lineLength = 0;
+		boolean inFirstColumn = true;
+		boolean metadata = false;
+		long lineStart = 0;
+		long shardStart = -1;
+		long offset = 0;
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			for (int i = 0; i < n; i++, offset++) {
+				byte b = buffer[i];
+				if (b == '\n') {
+					inFirstColumn = true;
+					lineLength = 0;
+					lineStart = offset + 1;
+					continue;
+				}
+				if (!inFirstColumn) {
+					continue;
+				}
+				if (offset == lineStart) {
+					metadata = b == '#';
+				}
+				if (metadata) {
+					inFirstColumn = false;
+				} else if (b == '\t') {
+					inFirstColumn = false;
+					boolean sameContig = shardStart >= 0 && Arrays.equals(contig, 0, contigLength, line, 0, lineLength);
+					if (!sameContig || lineStart - shardStart >= maxShardBytes) {
+						if (shardStart >= 0) {
+							shards.add(new Shard(new String(contig, 0, contigLength, StandardCharsets.UTF_8), shardStart, lineStart));
+						}
+						shardStart = lineStart;
+						contig = Arrays.copyOf(line, Math.max(contig.length, lineLength));
+						contigLength = lineLength;
+					}
+				} else {
+					if (lineLength == line.length) {
+						line = Arrays.copyOf(line, line.length * 2);
+					}
+					line[lineLength++] = b;
+				}
+			}
+		}
+		if (shardStart >= 0) {
+			shards.add(new Shard(new String(contig, 0, contigLength, StandardCharsets.UTF_8), shardStart, offset));
+		}
+		return shards;
+	}
+
+	/**
+	 * Applies {@code function} to every position in parallel and writes the results, in file order, with {@code writer}.
+	 * @param metadata The metadata to write, such as {@link #getMetadata()} with new INFO lines
+	 * @throws BadDataFormatException If a line cannot be parsed
+	 * @throws UncheckedIOException If the file cannot be read
+	 */
+	public void run(@Nonnull VcfFileWriter writer, @Nonnull VcfMetadataCollection metadata,
+			@Nonnull Function<? super VcfPosition, ? extends Stream<? extends VcfPosition>> function) {
+		Preconditions.checkNotNull(writer, "Writer cannot be null");
+		Preconditions.checkNotNull(metadata, "Metadata cannot be null");
+		try (Stream<VcfPosition> results = apply(function)) {
+			writer.write(metadata, results);
+		}
+	}
+
+	/**
+	 * Applies {@code function} to every position in parallel.
+	 * The stream must be closed to stop the threads if it is not read to the end.
+	 * @return The results, in file order
+	 */
+	@Nonnull
+	public Stream<VcfPosition> apply(@Nonnull Function<? super VcfPosition, ? extends Stream<? extends VcfPosition>> function) {
+		Preconditions.checkNotNull(function, "Function cannot be null");
+		Iterator<Callable<List<VcfPosition>>> tasks = m_compressed? chunkTasks(function) : shardTasks(function);
+		Gatherer gatherer = new Gatherer(tasks, m_nThreads);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(gatherer, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.flatMap(List::stream)
+				.onClose(gatherer::close);
+	}
+
+	@Nonnull
+	private Iterator<Callable<List<VcfPosition>>> shardTasks(@Nonnull Function<? super VcfPosition, ? extends Stream<? extends VcfPosition>> function) {
+		return getShards().stream()
+				.map(shard -> (Callable<List<VcfPosition>>) () -> {
+					try (SeekableByteChannel channel = Files.newByteChannel(m_file)) {
+						channel.position(shard.getStart());
+						InputStream in = ByteStreams.limit(Channels.newInputStream(channel), shard.getEnd() - shard.getStart());
+						try (Stream<String> lines = lines(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16))) {
+							return process(m_newParser.get().parseAll(lines), function);
+						}
+					}
+				})
+				.iterator();
+	}
+
+	/**
+	 * Reads the lines on the calling thread, in chunks of about {@link #m_maxShardBytes} characters.
+	 */
+	@Nonnull
+	private Iterator<Callable<List<VcfPosition>>> chunkTasks(@Nonnull Function<? super VcfPosition, ? extends Stream<? extends VcfPosition>> function) {
+		BufferedReader reader = openReader();
+		Iterator<String> lines = lines(reader).filter(line -> !line.startsWith("#")).iterator();
+		return new Iterator<>() {
+			private boolean m_done = false;
+			@Override
+			public boolean hasNext() {
+				if (!m_done && !lines.hasNext()) {
+					m_done = true;
+					try {
+						reader.close();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				return !m_done;
+			}
+			@Override
+			public Callable<List<VcfPosition>> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				List<String> chunk = new ArrayList<>();
+				long size = 0;
+				while (size < m_maxShardBytes && lines.hasNext()) {
+					String line = lines.next();
+					chunk.add(line);
+					size += line.length() + 1;
+				}
+				return () -> process(m_newParser.get().parseAll(chunk.stream()), function);
+			}
+		};
+	}
+
+	@Nonnull
+	private static List<VcfPosition> process(@Nonnull Stream<VcfPosition> positions,
+			@Nonnull Function<? super VcfPosition, ? extends Stream<? extends VcfPosition>> function) {
+		return positions.flatMap(function).collect(Collectors.toList());
+	}
+
+	@Nonnull
+	private BufferedReader openReader() {
+		try {
+			InputStream in = Files.newInputStream(m_file);
+			if (m_compressed) {
+				in = new GZIPInputStream(in, 1 << 16);
+			}
+			return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read " + m_file, e);
+		}
+	}
+
+	@Nonnull
+	private static Stream<String> lines(@Nonnull BufferedReader reader) {
+		return reader.lines().onClose(() -> {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	@Override
+	public String toString() {
+		return "VcfScatterGather{" +
+				"file=" + m_file +
+				", nThreads=" + m_nThreads +
+				", maxShardBytes=" + m_maxShardBytes +
+				'}';
+	}
+
+	/**
+	 * Submits tasks to a pool, keeping a bounded number in flight, and returns their results in submission order.
+	 */
+	private static class Gatherer implements Iterator<List<VcfPosition>> {
+
+		private final Iterator<Callable<List<VcfPosition>>> m_tasks;
+		private final ExecutorService m_pool;
+		private final int m_maxInFlight;
+		private final Deque<Future<List<VcfPosition>>> m_inFlight = new ArrayDeque<>();
+
+		Gatherer(@Nonnull Iterator<Callable<List<VcfPosition>>> tasks, @Nonnegative int nThreads) {
+			m_tasks = tasks;
+			m_maxInFlight = 2 * nThreads;
+			m_pool = Executors.newFixedThreadPool(nThreads, runnable -> {
+				Thread thread = new Thread(runnable, "vcf-scatter");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (m_inFlight.size() < m_maxInFlight && m_tasks.hasNext()) {
+				m_inFlight.add(m_pool.submit(m_tasks.next()));
+			}
+			if (m_inFlight.isEmpty()) {
+				m_pool.shutdown();
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public List<VcfPosition> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			try {
+				return m_inFlight.removeFirst().get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new IllegalStateException("Interrupted while gathering", e);
+			} catch (ExecutionException e) {
+				close();
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				if (e.getCause() instanceof IOException) {
+					throw new UncheckedIOException((IOException) e.getCause());
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+
+		void close() {
+			m_pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * A range of whole lines of one contig.
+	 */
+	@Immutable
+	public static class Shard {
+
+		private final String m_contig;
+		private final long m_start;
+		private final long m_end;
+
+		Shard(@Nonnull String contig, @Nonnegative long start, @Nonnegative long end) {
+			m_contig = contig;
+			m_start = start;
+			m_end = end;
+		}
+
+		@Nonnull
+		public String getContig() {
+			return m_contig;
+		}
+
+		/**
+		 * @return The byte offset of the first line
+		 */
+		@Nonnegative
+		public long getStart() {
+			return m_start;
+		}
+
+		/**
+		 * @return The byte offset after the last line
+		 */
+		@Nonnegative
+		public long getEnd() {
+			return m_end;
+		}
+
+		@Override
+		public String toString() {
+			return "Shard{" +
+					"contig=" + m_contig +
+					", start=" + m_start +
+					", end=" + m_end +
+					'}';
+		}
+	}
+
+	@NotThreadSafe
+	public static class Builder implements ObjectBuilder<VcfScatterGather> {
+
+		private final Path m_file;
+		private int m_nThreads = Runtime.getRuntime().availableProcessors();
+		private long m_maxShardBytes = 64L << 20;
+		private Supplier<VcfDataParser> m_newParser = VcfDataParser::new;
+
+		public Builder(@Nonnull Path file) {
+			Preconditions.checkNotNull(file, "File cannot be null");
+			m_file = file;
+		}
+
+		/**
+		 * Defaults to the number of processors.
+		 */
+		@Nonnull
+		public Builder setThreads(@Nonnegative int nThreads) {
+			Preconditions.checkArgument(nThreads > 0, "Number of threads must be positive");
+			m_nThreads = nThreads;
+			return this;
+		}
+
+		/**
+		 * Defaults to 64 MiB.
+		 */
+		@Nonnull
+		public Builder setMaxShardBytes(@Nonnegative long maxShardBytes) {
+			Preconditions.checkArgument(maxShardBytes > 0, "Maximum shard size must be positive");
+			m_maxShardBytes = maxShardBytes;
+			return this;
+		}
+
+		/**
+		 * @param newParser Creates the parser for each shard, for example to {@link VcfDataParser.Builder#keepInfoKeys keep only some INFO keys}
+		 */
+		@Nonnull
+		public Builder setParser(@Nonnull Supplier<VcfDataParser> newParser) {
+			Preconditions.checkNotNull(newParser, "Parser supplier cannot be null");
+			m_newParser = newParser;
+			return this;
+		}
+
+		/**
+		 * Reads the metadata.
+		 * @throws UncheckedIOException If the file cannot be read
+		 * @throws BadDataFormatException If the metadata is invalid
+		 */
+		@Nonnull
+		@Override
+		public VcfScatterGather build() {
+			try {
+				return new VcfScatterGather(this);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not read " + m_file, e);
+			}
+		}
+	}
+}
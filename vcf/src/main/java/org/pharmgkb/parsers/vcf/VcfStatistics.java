@@ -0,0 +1,818 @@
+package org.pharmgkb.parsers.vcf;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.scan.LineScanner;
+import org.pharmgkb.parsers.scan.LineTally;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+import org.pharmgkb.parsers.vcf.model.allele.VcfAllele;
+import org.pharmgkb.parsers.vcf.model.extra.PackedGenotypes;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collector;
+
+/**
+ * Quality-control statistics over the sites and samples of a VCF file, gathered in one pass: allele frequency,
+ * call rate, heterozygosity, Hardy-Weinberg equilibrium, and transitions and transversions per site; and calls,
+ * heterozygous and homozygous-alternate calls, and transitions and transversions per sample.
+ * Genotypes are read as in {@link PackedGenotypes}: a call is its number of non-reference alleles, and a call that is
+ * not diploid is missing.
+ * Statistics are mergeable, so parts of a file can be read by separate instances and {@link #merge(VcfStatistics) merged}
+ * in file order. {@link #of(Path)} reads raw lines in parallel with {@link LineScanner}, without parsing anything except
+ * REF, ALT, FORMAT, and GT; {@link #collector(boolean)} does the same for a stream of parsed positions.
+ * Example:
+ * <code>
+ *     VcfStatistics stats = VcfStatistics.of(file, true);
+ *     double tiTv = stats.getTiTvRatio();
+ *     for (VcfStatistics.Site site : stats.getSites()) {
+ *         if (site.getHwePValue() &lt; 1e-6) ...
+ *     }
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class VcfStatistics implements LineTally<VcfStatistics> {
+
+	private final boolean m_keepSites;
+	private final List<Site> m_sites = new ArrayList<>();
+
+	private long m_nSites = 0;
+	private long m_nCalls = 0;
+	private long m_nTransitions = 0;
+	private long m_nTransversions = 0;
+	private long m_nMultiallelic = 0;
+
+	// set from the first site
+	private int m_nSamples = -1;
+	private long[] m_sampleCalled;
+	private long[] m_sampleHeterozygous;
+	private long[] m_sampleHomozygousAlt;
+	private long[] m_sampleTransitions;
+	private long[] m_sampleTransversions;
+
+	private PackedGenotypes.Builder m_genotypes; // reused by the raw-line path
+
+	/**
+	 * Does not keep per-site statistics.
+	 */
+	public VcfStatistics() {
+		this(false);
+	}
+
+	/**
+	 * @param keepSites Keep a {@link Site} for every position, in order
+	 */
+	public VcfStatistics(boolean keepSites) {
+		m_keepSites = keepSites;
+	}
+
+	/**
+	 * Reads {@code file}, which may be compressed, in parallel, without keeping per-site statistics.
+	 * @throws BadDataFormatException If a data line is invalid
+	 * @throws UncheckedIOException If the file cannot be read
+	 */
+	@Nonnull
+	public static VcfStatistics of(@Nonnull Path file) throws UncheckedIOException {
+		return of(file, false);
+	}
+
+	/**
+	 * Reads {@code file}, which may be compressed, in parallel.
+	 * @param keepSites Keep a {@link Site} for every position, in file order
+	 * @throws BadDataFormatException If a data line is invalid
+	 * @throws UncheckedIOException If the file cannot be read
+	 */
+	@Nonnull
+	public static VcfStatistics of(@Nonnull Path file, boolean keepSites) throws UncheckedIOException {
+		return new LineScanner().scan(file, () -> new VcfStatistics(keepSites));
+	}
+
+	/**
+	 * For {@link java.util.stream.Stream#collect(Collector) collecting} a stream of positions, which may be parallel.
+	 * @param keepSites Keep a {@link Site} for every position, in encounter order
+	 */
+	@Nonnull
+	public static Collector<VcfPosition, ?, VcfStatistics> collector(boolean keepSites) {
+		return Collector.of(
+				() -> new VcfStatistics(keepSites),
+				VcfStatistics::accept,
+				(a, b) -> {
+					a.merge(b);
+					return a;
+				}
+		);
+	}
+
+	/**
+	 * Reads one line of a VCF file: metadata, the header, or a position.
+	 * @throws BadDataFormatException If the line is a position that has fewer than 5 columns, has a different number of
+	 *                                samples than the previous positions, or has an invalid GT value
+	 */
+	@Override
+	public void accept(@Nonnull ByteBuffer bytes, @Nonnegative int start, @Nonnegative int end) {
+		if (start == end || bytes.get(start) == '#') {
+			return;
+		}
+		// columns 0-4 and 8
+		int[] tabs = new int[9];
+		int nTabs = 0;
+		int i = start;
+		for (; i < end && nTabs < 9; i++) {
+			if (bytes.get(i) == '\t') {
+				tabs[nTabs++] = i;
+			}
+		}
+		if (nTabs < 4) {
+			throw new BadDataFormatException("Position " + decode(bytes, start, Math.min(end, start + 100)) + " has too few columns");
+		}
+		int refStart = tabs[2] + 1, refEnd = tabs[3];
+		int altStart = tabs[3] + 1, altEnd = nTabs > 4? tabs[4] : end;
+		int nAlts = 0, nTransitions = 0, nTransversions = 0;
+		if (altEnd - altStart != 1 || bytes.get(altStart) != '.') {
+			for (int a = altStart; a <= altEnd; a++) {
+				if (a == altEnd || bytes.get(a) == ',') {
+					if (refEnd - refStart == 1 && a - altStart == 1) {
+						int type = substitution((char) bytes.get(refStart), (char) bytes.get(altStart));
+						nTransitions += type == 1? 1 : 0;
+						nTransversions += type == 2? 1 : 0;
+					}
+					nAlts++;
+					altStart = a + 1;
+				}
+			}
+		}
+		// samples
+		int nSamples = 0;
+		int gtIndex = -1;
+		if (nTabs == 9) {
+			for (int s = i; s <= end; s++) {
+				if (s == end || bytes.get(s) == '\t') {
+					nSamples++;
+				}
+			}
+			gtIndex = findGt(bytes, tabs[7] + 1, tabs[8]);
+		}
+		if (m_genotypes == null || m_nSamples != nSamples) {
+			m_genotypes = new PackedGenotypes.Builder(nSamples);
+		}
+		ByteView view = new ByteView(bytes);
+		int sampleStart = i;
+		for (int sample = 0; sample < nSamples; sample++) {
+			int sampleEnd = sampleStart;
+			while (sampleEnd < end && bytes.get(sampleEnd) != '\t') {
+				sampleEnd++;
+			}
+			// find the subfield at gtIndex
+			int gtStart = sampleStart;
+			for (int k = 0; k < gtIndex && gtStart <= sampleEnd; k++) {
+				while (gtStart < sampleEnd && bytes.get(gtStart) != ':') {
+					gtStart++;
+				}
+				gtStart++;
+			}
+			if (gtIndex < 0 || gtStart > sampleEnd) {
+				m_genotypes.setMissing(sample);
+			} else {
+				int gtEnd = gtStart;
+				while (gtEnd < sampleEnd && bytes.get(gtEnd) != ':') {
+					gtEnd++;
+				}
+				try {
+					m_genotypes.setCall(sample, view, gtStart, gtEnd);
+				} catch (IllegalArgumentException e) {
+					throw new BadDataFormatException(e.getMessage() + " in sample #" + sample, e);
+				}
+			}
+			sampleStart = sampleEnd + 1;
+		}
+		String chromosome = null;
+		long position = 0;
+		if (m_keepSites) {
+			chromosome = decode(bytes, start, tabs[0]);
+			try {
+				position = Long.parseLong(decode(bytes, tabs[0] + 1, tabs[1])) - 1;
+			} catch (NumberFormatException e) {
+				throw new BadDataFormatException("POS " + decode(bytes, tabs[0] + 1, tabs[1]) + " is not a number", e);
+			}
+		}
+		add(chromosome, position, nAlts, nTransitions, nTransversions, m_genotypes.build());
+	}
+
+	/**
+	 * Adds a parsed position.
+	 * @throws BadDataFormatException If the position has a different number of samples than the previous positions
+	 */
+	public void accept(@Nonnull VcfPosition position) {
+		Preconditions.checkNotNull(position, "VcfPosition cannot be null");
+		String ref = position.getRef().toVcfString();
+		int nTransitions = 0, nTransversions = 0;
+		for (VcfAllele alt : position.getAlts()) {
+			String string = alt.toVcfString();
+			if (ref.length() == 1 && string.length() == 1) {
+				int type = substitution(ref.charAt(0), string.charAt(0));
+				nTransitions += type == 1? 1 : 0;
+				nTransversions += type == 2? 1 : 0;
+			}
+		}
+		add(position.getChromosome(), position.getPosition(), position.getAlts().size(), nTransitions, nTransversions,
+				PackedGenotypes.of(position));
+	}
+
+	/**
+	 * Adds a position read with {@link VcfDataParser#forEach}, without building a {@link VcfPosition}.
+	 * @throws BadDataFormatException If a GT value is invalid, or the position has a different number of samples than
+	 *                                the previous positions
+	 */
+	public void accept(@Nonnull MutableVcfPosition position) throws BadDataFormatException {
+		Preconditions.checkNotNull(position, "MutableVcfPosition cannot be null");
+		String ref = position.getRef();
+		List<String> alts = position.getAlts();
+		int nTransitions = 0, nTransversions = 0;
+		for (String alt : alts) {
+			if (ref.length() == 1 && alt.length() == 1) {
+				int type = substitution(ref.charAt(0), alt.charAt(0));
+				nTransitions += type == 1? 1 : 0;
+				nTransversions += type == 2? 1 : 0;
+			}
+		}
+		add(m_keepSites? position.getChromosome() : null, m_keepSites? position.getPosition() : 0,
+				alts.size(), nTransitions, nTransversions, position.getPackedGenotypes());
+	}
+
+	private void add(@Nullable String chromosome, long position, int nAlts, int nTransitions, int nTransversions,
+			@Nonnull PackedGenotypes genotypes) {
+		int nSamples = genotypes.getNSamples();
+		if (m_nSamples < 0) {
+			initSamples(nSamples);
+		} else if (nSamples != m_nSamples) {
+			throw new BadDataFormatException("Position " + (chromosome == null? "" : chromosome + ":" + position + " ")
+					+ "has " + nSamples + " samples instead of " + m_nSamples);
+		}
+		int nCalled = genotypes.getNCalled();
+		m_nSites++;
+		m_nCalls += nCalled;
+		m_nTransitions += nTransitions;
+		m_nTransversions += nTransversions;
+		if (nAlts > 1) {
+			m_nMultiallelic++;
+		}
+		boolean snv = nAlts == 1 && nTransitions + nTransversions == 1;
+		long[] substitutions = nTransitions == 1? m_sampleTransitions : m_sampleTransversions;
+		if (nCalled > 0) {
+			for (int sample = 0; sample < nSamples; sample++) {
+				int altCount = genotypes.getAltCount(sample);
+				if (altCount < 0) {
+					continue;
+				}
+				m_sampleCalled[sample]++;
+				if (altCount == 1) {
+					m_sampleHeterozygous[sample]++;
+				} else if (altCount == 2) {
+					m_sampleHomozygousAlt[sample]++;
+				}
+				if (snv && altCount > 0) {
+					substitutions[sample]++;
+				}
+			}
+		}
+		if (m_keepSites) {
+			m_sites.add(new Site(chromosome, position, nSamples, nCalled, genotypes.getNHeterozygous(),
+					genotypes.getNHomozygousAlt(), nTransitions, nTransversions));
+		}
+	}
+
+	private void initSamples(int nSamples) {
+		m_nSamples = nSamples;
+		m_sampleCalled = new long[nSamples];
+		m_sampleHeterozygous = new long[nSamples];
+		m_sampleHomozygousAlt = new long[nSamples];
+		m_sampleTransitions = new long[nSamples];
+		m_sampleTransversions = new long[nSamples];
+	}
+
+	/**
+	 * Adds the results of {@code next}, which read the positions immediately after the ones this instance read.
+	 * Order only matters for {@link #getSites()}.
+	 * @throws IllegalArgumentException If {@code next} read a different number of samples
+	 */
+	@Override
+	public void merge(@Nonnull VcfStatistics next) {
+		if (next.m_nSamples < 0) {
+			return;
+		}
+		if (m_nSamples < 0) {
+			initSamples(next.m_nSamples);
+		}
+		Preconditions.checkArgument(m_nSamples == next.m_nSamples,
+				"Cannot merge statistics for " + next.m_nSamples + " samples into " + m_nSamples);
+		m_nSites += next.m_nSites;
+		m_nCalls += next.m_nCalls;
+		m_nTransitions += next.m_nTransitions;
+		m_nTransversions += next.m_nTransversions;
+		m_nMultiallelic += next.m_nMultiallelic;
+		for (int sample = 0; sample < m_nSamples; sample++) {
+			m_sampleCalled[sample] += next.m_sampleCalled[sample];
+			m_sampleHeterozygous[sample] += next.m_sampleHeterozygous[sample];
+			m_sampleHomozygousAlt[sample] += next.m_sampleHomozygousAlt[sample];
+			m_sampleTransitions[sample] += next.m_sampleTransitions[sample];
+			m_sampleTransversions[sample] += next.m_sampleTransversions[sample];
+		}
+		m_sites.addAll(next.m_sites);
+	}
+
+	/**
+	 * @return The number of samples, or 0 if no position has been read
+	 */
+	@Nonnegative
+	public int getNSamples() {
+		return Math.max(m_nSamples, 0);
+	}
+
+	@Nonnegative
+	public long getNSites() {
+		return m_nSites;
+	}
+
+	/**
+	 * @return The number of positions with more than one ALT allele
+	 */
+	@Nonnegative
+	public long getNMultiallelic() {
+		return m_nMultiallelic;
+	}
+
+	/**
+	 * @return The number of single-base ALT alleles that are a transition (A↔G or C↔T) from a single-base REF
+	 */
+	@Nonnegative
+	public long getNTransitions() {
+		return m_nTransitions;
+	}
+
+	/**
+	 * @return The number of single-base ALT alleles that are a transversion from a single-base REF
+	 */
+	@Nonnegative
+	public long getNTransversions() {
+		return m_nTransversions;
+	}
+
+	/**
+	 * @return The ratio of transitions to transversions, or NaN if there are no transversions
+	 */
+	public double getTiTvRatio() {
+		return m_nTransversions == 0? Double.NaN : (double) m_nTransitions / m_nTransversions;
+	}
+
+	/**
+	 * @return The fraction of all genotypes that were called, or NaN if there are none
+	 */
+	public double getCallRate() {
+		long total = m_nSites * getNSamples();
+		return total == 0? Double.NaN : (double) m_nCalls / total;
+	}
+
+	/**
+	 * @return The statistics of {@code sample}, by its index in the header
+	 */
+	@Nonnull
+	public SampleStatistics getSample(@Nonnegative int sample) {
+		Preconditions.checkElementIndex(sample, getNSamples(), "Sample");
+		return new SampleStatistics(sample, m_nSites, m_sampleCalled[sample], m_sampleHeterozygous[sample],
+				m_sampleHomozygousAlt[sample], m_sampleTransitions[sample], m_sampleTransversions[sample]);
+	}
+
+	/**
+	 * @return The statistics of every sample, in header order
+	 */
+	@Nonnull
+	public List<SampleStatistics> getSamples() {
+		List<SampleStatistics> samples = new ArrayList<>(getNSamples());
+		for (int sample = 0; sample < getNSamples(); sample++) {
+			samples.add(getSample(sample));
+		}
+		return samples;
+	}
+
+	/**
+	 * @return The statistics of every position, in order, or an empty list if sites are not kept
+	 */
+	@Nonnull
+	public List<Site> getSites() {
+		return Collections.unmodifiableList(m_sites);
+	}
+
+	/**
+	 * @return 1 for a transition, 2 for a transversion, or 0 if either base is not A, C, G, or T, or they are the same
+	 */
+	private static int substitution(char ref, char alt) {
+		int a = baseCode(ref), b = baseCode(alt);
+		if (a < 0 || b < 0 || a == b) {
+			return 0;
+		}
+		// A=0, G=1 are purines; C=2, T=3 are pyrimidines
+		return (a >>> 1) == (b >>> 1)? 1 : 2;
+	}
+
+	private static int baseCode(char base) {
+		switch (base) {
+			case 'A': case 'a': return 0;
+			case 'G': case 'g': return 1;
+			case 'C': case 'c': return 2;
+			case 'T': case 't': return 3;
+			default: return -1;
+		}
+	}
+
+	private static int findGt(@Nonnull ByteBuffer bytes, int start, int end) {
+		int index = 0;
+		int keyStart = start;
+		for (int i = start; i <= end; i++) {
+			if (i == end || bytes.get(i) == ':') {
+				if (i - keyStart == 2 && bytes.get(keyStart) == 'G' && bytes.get(keyStart + 1) == 'T') {
+					return index;
+				}
+				index++;
+				keyStart = i + 1;
+			}
+		}
+		return -1;
+	}
+
+	@Nonnull
+	private static String decode(@Nonnull ByteBuffer bytes, int start, int end) {
+		byte[] array = new byte[end - start];
+		for (int i = start; i < end; i++) {
+			array[i - start] = bytes.get(i);
+		}
+		return new String(array, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * The exact test of Hardy-Weinberg equilibrium of Wigginton, Cutler, and Abecasis (2005), for two alleles.
+	 * @return The probability of a sample at least as extreme as the one given, or 1 if there are no calls
+	 */
+	public static double hweExactPValue(@Nonnegative int nHeterozygous, @Nonnegative int nHomozygousRef,
+			@Nonnegative int nHomozygousAlt) {
+		Preconditions.checkArgument(nHeterozygous >= 0 && nHomozygousRef >= 0 && nHomozygousAlt >= 0,
+				"Counts must be nonnegative");
+		int nRareHomozygous = Math.min(nHomozygousRef, nHomozygousAlt);
+		int nCommonHomozygous = Math.max(nHomozygousRef, nHomozygousAlt);
+		int nGenotypes = nHeterozygous + nRareHomozygous + nCommonHomozygous;
+		if (nGenotypes == 0) {
+			return 1;
+		}
+		int nRare = 2 * nRareHomozygous + nHeterozygous;
+		double[] probabilities = new double[nRare + 1];
+		// start at the most likely number of heterozygotes, which has the same parity as nRare
+		int mid = (int) ((long) nRare * (2L * nGenotypes - nRare) / (2L * nGenotypes));
+		if ((nRare & 1) != (mid & 1)) {
+			mid++;
+		}
+		probabilities[mid] = 1;
+		double sum = 1;
+		int rare = (nRare - mid) / 2;
+		int common = nGenotypes - mid - rare;
+		for (int het = mid; het > 1; het -= 2) {
+			probabilities[het - 2] = probabilities[het] * het * (het - 1) / (4.0 * (rare + 1) * (common + 1));
+			sum += probabilities[het - 2];
+			rare++;
+			common++;
+		}
+		rare = (nRare - mid) / 2;
+		common = nGenotypes - mid - rare;
+		for (int het = mid; het <= nRare - 2; het += 2) {
+			probabilities[het + 2] = probabilities[het] * 4.0 * rare * common / ((het + 2.0) * (het + 1.0));
+			sum += probabilities[het + 2];
+			rare--;
+			common--;
+		}
+		double observed = probabilities[nHeterozygous];
+		double p = 0;
+		for (double probability : probabilities) {
+			if (probability <= observed) {
+				p += probability;
+			}
+		}
+		return Math.min(1, p / sum);
+	}
+
+	@Override
+	public String toString() {
+		return "VcfStatistics{" +
+				"nSamples=" + getNSamples() +
+				", nSites=" + m_nSites +
+				", nMultiallelic=" + m_nMultiallelic +
+				", callRate=" + getCallRate() +
+				", tiTv=" + getTiTvRatio() +
+				'}';
+	}
+
+	/**
+	 * Reads ASCII bytes as characters, for {@link PackedGenotypes.Builder#setCall(int, CharSequence, int, int)}.
+	 */
+	private static final class ByteView implements CharSequence {
+
+		private final ByteBuffer bytes;
+
+		ByteView(@Nonnull ByteBuffer bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		public int length() {
+			return bytes.limit();
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) (bytes.get(index) & 0xff);
+		}
+
+		@Nonnull
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return decode(bytes, start, end);
+		}
+	}
+
+	/**
+	 * The statistics of one position.
+	 * Counts treat every ALT allele as one non-reference allele, so the Hardy-Weinberg test is of REF against the rest.
+	 */
+	@Immutable
+	public static class Site {
+
+		private final String m_chromosome;
+		private final long m_position;
+		private final int m_nSamples;
+		private final int m_nCalled;
+		private final int m_nHeterozygous;
+		private final int m_nHomozygousAlt;
+		private final int m_nTransitions;
+		private final int m_nTransversions;
+
+		Site(@Nonnull String chromosome, long position, int nSamples, int nCalled, int nHeterozygous,
+				int nHomozygousAlt, int nTransitions, int nTransversions) {
+			m_chromosome = chromosome;
+			m_position = position;
+			m_nSamples = nSamples;
+			m_nCalled = nCalled;
+			m_nHeterozygous = nHeterozygous;
+			m_nHomozygousAlt = nHomozygousAlt;
+			m_nTransitions = nTransitions;
+			m_nTransversions = nTransversions;
+		}
+
+		@Nonnull
+		public String getChromosome() {
+			return m_chromosome;
+		}
+
+		/**
+		 * @return The 0-based position
+		 */
+		public long getPosition() {
+			return m_position;
+		}
+
+		@Nonnegative
+		public int getNCalled() {
+			return m_nCalled;
+		}
+
+		@Nonnegative
+		public int getNMissing() {
+			return m_nSamples - m_nCalled;
+		}
+
+		@Nonnegative
+		public int getNHeterozygous() {
+			return m_nHeterozygous;
+		}
+
+		@Nonnegative
+		public int getNHomozygousAlt() {
+			return m_nHomozygousAlt;
+		}
+
+		@Nonnegative
+		public int getNHomozygousRef() {
+			return m_nCalled - m_nHeterozygous - m_nHomozygousAlt;
+		}
+
+		/**
+		 * @return The number of single-base ALT alleles that are transitions from the REF
+		 */
+		@Nonnegative
+		public int getNTransitions() {
+			return m_nTransitions;
+		}
+
+		/**
+		 * @return The number of single-base ALT alleles that are transversions from the REF
+		 */
+		@Nonnegative
+		public int getNTransversions() {
+			return m_nTransversions;
+		}
+
+		/**
+		 * @return The fraction of called alleles that are not reference, or NaN if no sample was called
+		 */
+		public double getAltAlleleFrequency() {
+			return m_nCalled == 0? Double.NaN : (m_nHeterozygous + 2.0 * m_nHomozygousAlt) / (2 * m_nCalled);
+		}
+
+		/**
+		 * @return The fraction of samples that were called, or NaN if there are no samples
+		 */
+		public double getCallRate() {
+			return m_nSamples == 0? Double.NaN : (double) m_nCalled / m_nSamples;
+		}
+
+		/**
+		 * @return The fraction of called samples that are heterozygous, or NaN if no sample was called
+		 */
+		public double getHeterozygosity() {
+			return m_nCalled == 0? Double.NaN : (double) m_nHeterozygous / m_nCalled;
+		}
+
+		/**
+		 * Calculated on each call.
+		 * @see VcfStatistics#hweExactPValue(int, int, int)
+		 */
+		public double getHwePValue() {
+			return hweExactPValue(m_nHeterozygous, getNHomozygousRef(), m_nHomozygousAlt);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Site site = (Site) o;
+			return m_position == site.m_position &&
+					m_nSamples == site.m_nSamples &&
+					m_nCalled == site.m_nCalled &&
+					m_nHeterozygous == site.m_nHeterozygous &&
+					m_nHomozygousAlt == site.m_nHomozygousAlt &&
+					m_nTransitions == site.m_nTransitions &&
+					m_nTransversions == site.m_nTransversions &&
+					m_chromosome.equals(site.m_chromosome);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(new long[] {m_chromosome.hashCode(), m_position, m_nCalled, m_nHeterozygous, m_nHomozygousAlt});
+		}
+
+		@Override
+		public String toString() {
+			return "Site{" +
+					"chromosome=" + m_chromosome +
+					", position=" + m_position +
+					", nCalled=" + m_nCalled +
+					", nMissing=" + getNMissing() +
+					", nHeterozygous=" + m_nHeterozygous +
+					", nHomozygousAlt=" + m_nHomozygousAlt +
+					", nTransitions=" + m_nTransitions +
+					", nTransversions=" + m_nTransversions +
+					'}';
+		}
+	}
+
+	/**
+	 * The statistics of one sample over every position.
+	 */
+	@Immutable
+	public static class SampleStatistics {
+
+		private final int m_sample;
+		private final long m_nSites;
+		private final long m_nCalled;
+		private final long m_nHeterozygous;
+		private final long m_nHomozygousAlt;
+		private final long m_nTransitions;
+		private final long m_nTransversions;
+
+		SampleStatistics(int sample, long nSites, long nCalled, long nHeterozygous, long nHomozygousAlt,
+				long nTransitions, long nTransversions) {
+			m_sample = sample;
+			m_nSites = nSites;
+			m_nCalled = nCalled;
+			m_nHeterozygous = nHeterozygous;
+			m_nHomozygousAlt = nHomozygousAlt;
+			m_nTransitions = nTransitions;
+			m_nTransversions = nTransversions;
+		}
+
+		/**
+		 * @return The index of the sample in the header
+		 */
+		@Nonnegative
+		public int getSample() {
+			return m_sample;
+		}
+
+		@Nonnegative
+		public long getNCalled() {
+			return m_nCalled;
+		}
+
+		@Nonnegative
+		public long getNMissing() {
+			return m_nSites - m_nCalled;
+		}
+
+		@Nonnegative
+		public long getNHeterozygous() {
+			return m_nHeterozygous;
+		}
+
+		@Nonnegative
+		public long getNHomozygousAlt() {
+			return m_nHomozygousAlt;
+		}
+
+		/**
+		 * @return The number of non-reference calls at biallelic transitions
+		 */
+		@Nonnegative
+		public long getNTransitions() {
+			return m_nTransitions;
+		}
+
+		/**
+		 * @return The number of non-reference calls at biallelic transversions
+		 */
+		@Nonnegative
+		public long getNTransversions() {
+			return m_nTransversions;
+		}
+
+		/**
+		 * @return The fraction of positions where this sample is missing, or NaN if there are no positions
+		 */
+		public double getMissingness() {
+			return m_nSites == 0? Double.NaN : (double) getNMissing() / m_nSites;
+		}
+
+		/**
+		 * @return The fraction of called positions that are heterozygous, or NaN if none were called
+		 */
+		public double getHeterozygosity() {
+			return m_nCalled == 0? Double.NaN : (double) m_nHeterozygous / m_nCalled;
+		}
+
+		/**
+		 * @return The ratio of transitions to transversions, or NaN if there are no transversions
+		 */
+		public double getTiTvRatio() {
+			return m_nTransversions == 0? Double.NaN : (double) m_nTransitions / m_nTransversions;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			SampleStatistics that = (SampleStatistics) o;
+			return m_sample == that.m_sample &&
+					m_nSites == that.m_nSites &&
+					m_nCalled == that.m_nCalled &&
+					m_nHeterozygous == that.m_nHeterozygous &&
+					m_nHomozygousAlt == that.m_nHomozygousAlt &&
+					m_nTransitions == that.m_nTransitions &&
+					m_nTransversions == that.m_nTransversions;
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(new long[] {m_sample, m_nSites, m_nCalled, m_nHeterozygous, m_nHomozygousAlt});
+		}
+
+		@Override
+		public String toString() {
+			return "SampleStatistics{" +
+					"sample=" + m_sample +
+					", nCalled=" + m_nCalled +
+					", nMissing=" + getNMissing() +
+					", nHeterozygous=" + m_nHeterozygous +
+					", nHomozygousAlt=" + m_nHomozygousAlt +
+					", nTransitions=" + m_nTransitions +
+					", nTransversions=" + m_nTransversions +
+					'}';
+		}
+	}
+}
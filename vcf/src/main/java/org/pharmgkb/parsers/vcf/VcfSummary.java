@@ -0,0 +1,58 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.pharmgkb.parsers.scan.LineScanner;
+import org.pharmgkb.parsers.scan.TabularSummary;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Counts of the positions (data lines), metadata and header lines, and positions per chromosome in a VCF file,
+ * read without parsing anything beyond the CHROM column.
+ * Plain and BGZF-compressed files are scanned in parallel; see {@link LineScanner}.
+ * Example:
+ * <code>
+ *     VcfSummary summary = VcfSummary.of(file);
+ *     long nVariants = summary.getNDataLines();
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@NotThreadSafe
+public class VcfSummary extends TabularSummary<VcfSummary> {
+
+	private long m_nMetadataLines = 0;
+
+	@Nonnull
+	public static VcfSummary of(@Nonnull Path file) throws UncheckedIOException {
+		return new LineScanner().scan(file, VcfSummary::new);
+	}
+
+	@Override
+	protected boolean isComment(@Nonnull ByteBuffer bytes, @Nonnegative int start, @Nonnegative int end) {
+		if (bytes.get(start) != '#') {
+			return false;
+		}
+		if (end - start > 1 && bytes.get(start + 1) == '#') {
+			m_nMetadataLines++;
+		}
+		return true;
+	}
+
+	@Override
+	public void merge(@Nonnull VcfSummary next) {
+		super.merge(next);
+		m_nMetadataLines += next.m_nMetadataLines;
+	}
+
+	/**
+	 * @return The number of lines beginning with {@code ##}; these are included in {@link #getNCommentLines()}
+	 */
+	@Nonnegative
+	public long getNMetadataLines() {
+		return m_nMetadataLines;
+	}
+}
@@ -2,9 +2,18 @@
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import org.pharmgkb.parsers.ObjectBuilder;
+import org.pharmgkb.parsers.vcf.model.VcfFormatField;
+import org.pharmgkb.parsers.vcf.model.VcfFormatSchema;
+import org.pharmgkb.parsers.vcf.model.VcfInfoField;
 import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
 import org.pharmgkb.parsers.vcf.model.VcfPosition;
+import org.pharmgkb.parsers.vcf.model.VcfSample;
+import org.pharmgkb.parsers.vcf.model.VcfTypedField;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfFormatNumber;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,13 +24,30 @@
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.Serial;
 import java.lang.invoke.MethodHandles;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 /**
  * Checks errors arising from a contradiction between metadata and VCF positions.
  * This class is implemented to {@link Consumer consume} a {@link VcfPosition VcfPositions} and perform a specified action for each error found.
  * The recommended use is with {@link java.util.stream.Stream#peek(Consumer)} before reading or before writing (but before both is likely unnecessary).
+ * It is safe to use on parallel streams, so validation can run alongside parsing:
+ * <code>
+ *     VcfValidator.Report report = new VcfValidator.Report(10);
+ *     VcfValidator validator = new VcfValidator.Builder(metadata).setAction(report).build();
+ *     new VcfDataParser().parseAll(lines.parallel()).peek(validator).forEach(...);
+ *     System.out.println(report);
+ * </code>
+ *
+ * The declared INFO, FORMAT, and FILTER keys are collected when the validator is built, and ##SAMPLE lines are
+ * compared with the header only once, on the first position.
+ * Declared INFO and FORMAT values are also checked against their Type and Number; for {@code Number=G}, both haploid
+ * and diploid counts are accepted, and {@code GT} is not checked.
+ * Only errors allocate.
  * @author Douglas Myers-Turnbull
  */
 @ThreadSafe
@@ -33,34 +59,178 @@ public class VcfValidator implements Consumer<VcfPosition> {
 
 	private final VcfMetadataCollection m_metadata;
 
+	private final ImmutableSet<String> m_filters;
+	private final ImmutableMap<String, VcfInfoField> m_info;
+	private final ImmutableMap<String, VcfFormatField> m_format;
+	private final ImmutableList<String> m_undeclaredSamples;
+	private final int m_nSamples;
+
+	private final AtomicBoolean m_checkedSamples = new AtomicBoolean(false);
+
+	// the declared field for each key of the last FORMAT seen, or null if undeclared
+	private volatile FormatFields m_lastFormat = new FormatFields(VcfFormatSchema.empty(), new VcfFormatField[0]);
+
 	private VcfValidator(@Nonnull Consumer<? super InvalidProperty> action, @Nonnull VcfMetadataCollection metadata) {
 		m_action = action;
 		m_metadata = metadata;
+		m_filters = ImmutableSet.<String>builder().addAll(metadata.getFilter().keySet()).add("PASS").build();
+		m_info = metadata.getFieldDecoders().getInfoFields();
+		m_format = metadata.getFieldDecoders().getFormatFields();
+		Set<String> headerSamples = new HashSet<>(metadata.getSampleNames());
+		m_undeclaredSamples = metadata.getSample().keySet().stream()
+				.filter(s -> !headerSamples.contains(s))
+				.collect(ImmutableList.toImmutableList());
+		m_nSamples = metadata.getSampleNames().size();
 	}
 
 	@Override
 	public void accept(@Nonnull VcfPosition position) {
 		Preconditions.checkNotNull(position, "VcfPosition cannot be null");
-		m_metadata.getSample().keySet().stream()
-				.filter(k -> m_metadata.getHeader().getSampleNames().contains(k))
-				.map(s -> new InvalidProperty(position.getChromosome(), position.getPosition(), s, PropertyType.SAMPLE))
-				.forEach(m_action);
-		m_metadata.getHeader().getSampleNames().stream()
-				.filter(k -> m_metadata.getSample().containsKey(k))
-				.map(s -> new InvalidProperty(position.getChromosome(), position.getPosition(), s, PropertyType.SAMPLE))
-				.forEach(m_action);
-		position.getFilters().stream()
-				.filter(s -> !m_metadata.getFilter().containsKey(s))
-				.map(s -> new InvalidProperty(position.getChromosome(), position.getPosition(), s, PropertyType.FILTER))
-				.forEach(m_action);
-		position.getFormat().stream()
-				.filter(s -> !m_metadata.getFormat().containsKey(s))
-				.map(s -> new InvalidProperty(position.getChromosome(), position.getPosition(), s, PropertyType.FORMAT))
-				.forEach(m_action);
-		position.getInfo().entries().stream()
-				.filter(e -> !m_metadata.getFormat().containsKey(e.getKey()))
-				.map(e -> new InvalidProperty(position.getChromosome(), position.getPosition(), e.getKey(), PropertyType.INFO))
-				.forEach(m_action);
+		if (!m_checkedSamples.get() && m_checkedSamples.compareAndSet(false, true)) {
+			for (String sample : m_undeclaredSamples) {
+				invalid(position, sample, PropertyType.SAMPLE);
+			}
+		}
+		if (position.getNSamples() != m_nSamples) {
+			invalid(position, "(" + position.getNSamples() + " samples instead of " + m_nSamples + ")", PropertyType.SAMPLE);
+		}
+		for (String filter : position.getFilters()) {
+			if (!m_filters.contains(filter)) {
+				invalid(position, filter, PropertyType.FILTER);
+			}
+		}
+		int nAlts = position.getAlts().size();
+		for (Map.Entry<String, Collection<String>> entry : position.getInfo().asMap().entrySet()) {
+			VcfInfoField field = m_info.get(entry.getKey());
+			if (field == null) {
+				invalid(position, entry.getKey(), PropertyType.INFO);
+			} else if (!isValidInfo(field, entry.getValue(), nAlts)) {
+				invalid(position, entry.getKey(), PropertyType.INFO_VALUE);
+			}
+		}
+		if (position.getNSamples() == 0 && position.getFormat().isEmpty()) {
+			return;
+		}
+		VcfFormatSchema schema = position.getNSamples() > 0? position.getSample(0).getSchema() : VcfFormatSchema.of(position.getFormat());
+		VcfFormatField[] fields = formatFields(schema);
+		for (int k = 0; k < fields.length; k++) {
+			if (fields[k] == null) {
+				invalid(position, schema.getKeys().get(k), PropertyType.FORMAT);
+			}
+		}
+		for (int i = 0; i < position.getNSamples(); i++) {
+			VcfSample sample = position.getSample(i);
+			VcfFormatField[] sampleFields = sample.getSchema() == schema? fields : formatFields(sample.getSchema());
+			for (int k = 0; k < sample.size(); k++) {
+				VcfFormatField field = sampleFields[k];
+				if (field != null && !field.getKey().equals("GT")) {
+					String value = sample.get(field.getKey()).orElse(".");
+					if (!isValidFormat(field, value, nAlts)) {
+						invalid(position, field.getKey(), PropertyType.FORMAT_VALUE);
+					}
+				}
+			}
+		}
+	}
+
+	@Nonnull
+	private VcfFormatField[] formatFields(@Nonnull VcfFormatSchema schema) {
+		FormatFields last = m_lastFormat;
+		if (last.schema != schema) {
+			VcfFormatField[] fields = new VcfFormatField[schema.size()];
+			for (int k = 0; k < fields.length; k++) {
+				fields[k] = m_format.get(schema.getKeys().get(k));
+			}
+			last = new FormatFields(schema, fields);
+			m_lastFormat = last;
+		}
+		return last.fields;
+	}
+
+	private void invalid(@Nonnull VcfPosition position, @Nonnull String key, @Nonnull PropertyType type) {
+		m_action.accept(new InvalidProperty(position.getChromosome(), position.getPosition(), key, type));
+	}
+
+	private static boolean isValidInfo(@Nonnull VcfInfoField field, @Nonnull Collection<String> values, int nAlts) {
+		if (field.isFlag()) {
+			return values.size() == 1 && values.iterator().next().isEmpty();
+		}
+		if (values.size() == 1 && values.iterator().next().equals(".")) {
+			return true;
+		}
+		if (!isValidCount(field.getNumber(), values.size(), nAlts)) {
+			return false;
+		}
+		for (String value : values) {
+			if (!isValidElement(field, value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isValidFormat(@Nonnull VcfFormatField field, @Nonnull String value, int nAlts) {
+		if (value.equals(".")) {
+			return true;
+		}
+		int count = 1;
+		int start = 0;
+		for (int i = 0; i <= value.length(); i++) {
+			if (i == value.length() || value.charAt(i) == ',') {
+				if (!isValidElement(field, value.substring(start, i))) {
+					return false;
+				}
+				if (i < value.length()) {
+					count++;
+				}
+				start = i + 1;
+			}
+		}
+		return isValidCount(field.getNumber(), count, nAlts);
+	}
+
+	private static boolean isValidCount(@Nonnull VcfFormatNumber number, int count, int nAlts) {
+		Optional<Long> fixed = number.asNumber();
+		if (fixed.isPresent()) {
+			return count == fixed.get();
+		}
+		//noinspection OptionalGetWithoutIsPresent
+		return switch (number.asReservedFlag().get()) {
+			case ONE_PER_ALT -> count == nAlts;
+			case ONE_PER_ALT_OR_REF -> count == nAlts + 1;
+			case ONE_PER_GENOTYPE -> count == (nAlts + 1) * (nAlts + 2) / 2 || count == nAlts + 1;
+			case UNKNOWN_OR_UNBOUNDED -> true;
+		};
+	}
+
+	private static boolean isValidElement(@Nonnull VcfTypedField field, @Nonnull String value) {
+		if (value.equals(".")) {
+			return true;
+		}
+		if (field.isInteger()) {
+			try {
+				Long.parseLong(value);
+				return true;
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+		if (field.isNumeric()) {
+			if (value.equalsIgnoreCase("nan") || value.equalsIgnoreCase("inf") || value.equalsIgnoreCase("-inf")
+					|| value.equalsIgnoreCase("infinity") || value.equalsIgnoreCase("-infinity")) {
+				return true;
+			}
+			try {
+				Double.parseDouble(value);
+				return true;
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+		if (field.isCharacter()) {
+			return value.length() == 1;
+		}
+		return true;
 	}
 
 	@NotThreadSafe
@@ -176,10 +346,112 @@ public String toString() {
 	}
 
 	/**
-	 * What property is wrong: INFO, FORMAT, FILTER, or SAMPLE.
+	 * What property is wrong: an undeclared INFO, FORMAT, or FILTER key; a SAMPLE that does not match the header;
+	 * or an INFO or FORMAT value with the wrong Type or Number.
 	 */
 	public enum PropertyType {
-		INFO, FORMAT, FILTER, SAMPLE
+		INFO, FORMAT, FILTER, SAMPLE, INFO_VALUE, FORMAT_VALUE
+	}
+
+	/**
+	 * An {@link #setAction(Consumer) action} that counts invalid properties per type and key, and keeps the first few
+	 * examples of each.
+	 * With a parallel stream, the examples are the first received rather than the first in the file.
+	 */
+	@ThreadSafe
+	public static class Report implements Consumer<InvalidProperty> {
+
+		private final int m_nExamples;
+		private final ConcurrentMap<PropertyType, ConcurrentMap<String, Tally>> m_tallies = new ConcurrentHashMap<>();
+
+		/**
+		 * @param nExamples The maximum number of examples to keep per type and key
+		 */
+		public Report(@Nonnegative int nExamples) {
+			Preconditions.checkArgument(nExamples >= 0, "Number of examples must be nonnegative");
+			m_nExamples = nExamples;
+		}
+
+		@Override
+		public void accept(@Nonnull InvalidProperty invalid) {
+			Tally tally = m_tallies.computeIfAbsent(invalid.getSource(), t -> new ConcurrentHashMap<>())
+					.computeIfAbsent(invalid.getKey(), k -> new Tally());
+			tally.count.increment();
+			if (tally.examples.size() < m_nExamples) {
+				synchronized (tally.examples) {
+					if (tally.examples.size() < m_nExamples) {
+						tally.examples.add(invalid);
+					}
+				}
+			}
+		}
+
+		public boolean isEmpty() {
+			return m_tallies.isEmpty();
+		}
+
+		@Nonnegative
+		public long getTotal() {
+			return m_tallies.values().stream()
+					.flatMap(m -> m.values().stream())
+					.mapToLong(t -> t.count.sum())
+					.sum();
+		}
+
+		/**
+		 * @return The number of invalid properties per key, for this type
+		 */
+		@Nonnull
+		public ImmutableMap<String, Long> getCounts(@Nonnull PropertyType type) {
+			ImmutableMap.Builder<String, Long> counts = ImmutableMap.builder();
+			m_tallies.getOrDefault(type, new ConcurrentHashMap<>()).entrySet().stream()
+					.sorted(Map.Entry.comparingByKey())
+					.forEach(e -> counts.put(e.getKey(), e.getValue().count.sum()));
+			return counts.build();
+		}
+
+		@Nonnull
+		public ImmutableList<InvalidProperty> getExamples(@Nonnull PropertyType type, @Nonnull String key) {
+			Tally tally = m_tallies.getOrDefault(type, new ConcurrentHashMap<>()).get(key);
+			if (tally == null) {
+				return ImmutableList.of();
+			}
+			synchronized (tally.examples) {
+				return ImmutableList.copyOf(tally.examples);
+			}
+		}
+
+		/**
+		 * @return One line per type and key, with the count and examples
+		 */
+		@Nonnull
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder("VcfValidator.Report{total=").append(getTotal()).append('}');
+			for (PropertyType type : PropertyType.values()) {
+				getCounts(type).forEach((key, count) -> {
+					sb.append(System.lineSeparator()).append(type).append('\t').append(key).append('\t').append(count);
+					for (InvalidProperty example : getExamples(type, key)) {
+						sb.append('\t').append(example.getChromosome()).append(':').append(example.getPosition());
+					}
+				});
+			}
+			return sb.toString();
+		}
+
+		private static class Tally {
+			private final LongAdder count = new LongAdder();
+			private final List<InvalidProperty> examples = new ArrayList<>(2);
+		}
+	}
+
+	private static class FormatFields {
+		private final VcfFormatSchema schema;
+		private final VcfFormatField[] fields;
+		FormatFields(@Nonnull VcfFormatSchema schema, @Nonnull VcfFormatField[] fields) {
+			this.schema = schema;
+			this.fields = fields;
+		}
 	}
 
 	/**
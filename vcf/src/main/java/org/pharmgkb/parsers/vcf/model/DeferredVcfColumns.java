@@ -0,0 +1,43 @@
+package org.pharmgkb.parsers.vcf.model;
+
+import com.google.common.collect.ImmutableList;
+import org.pharmgkb.parsers.BadDataFormatException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.Optional;
+
+/**
+ * The INFO, FORMAT, and sample columns of a VCF line, left undecoded until a {@link VcfPosition} first needs them.
+ * See {@link VcfPosition.Builder#setDeferredColumns(DeferredVcfColumns)}.
+ * Implementations must be thread-safe and must return equal results every time; {@link VcfPosition} memoizes the
+ * results but may decode a column more than once if two threads ask for it at the same time.
+ * @author Douglas Myers-Turnbull
+ */
+public interface DeferredVcfColumns {
+
+	@Nonnull
+	VcfInfo decodeInfo() throws BadDataFormatException;
+
+	@Nonnull
+	ImmutableList<String> decodeFormat() throws BadDataFormatException;
+
+	@Nonnegative
+	int getNSamples();
+
+	/**
+	 * @param format The result of {@link #decodeFormat()}
+	 */
+	@Nonnull
+	VcfSample decodeSample(@Nonnegative int index, @Nonnull ImmutableList<String> format) throws BadDataFormatException;
+
+	/**
+	 * @return The whole VCF line these columns were cut from, if the implementation kept it;
+	 *         a writer can emit it in place of re-encoding the {@link VcfPosition}
+	 */
+	@Nonnull
+	default Optional<String> getSourceLine() {
+		return Optional.empty();
+	}
+
+}
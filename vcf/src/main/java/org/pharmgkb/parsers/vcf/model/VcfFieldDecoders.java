@@ -0,0 +1,69 @@
+package org.pharmgkb.parsers.vcf.model;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Typed accessors for every INFO and FORMAT field declared in a VCF header, resolved once from each field's Type and
+ * Number. This replaces {@link org.pharmgkb.parsers.vcf.utils.VcfConversionUtils} on hot paths: the type is not looked
+ * up per value, and values are returned as primitives instead of boxed lists.
+ * Get an instance from {@link VcfMetadataCollection#getFieldDecoders()}, which builds it once per header.
+ * @author Douglas Myers-Turnbull
+ */
+@Immutable
+public class VcfFieldDecoders {
+
+	private final ImmutableMap<String, VcfInfoField> m_info;
+	private final ImmutableMap<String, VcfFormatField> m_format;
+
+	public VcfFieldDecoders(@Nonnull VcfMetadataCollection metadata) {
+		Preconditions.checkNotNull(metadata, "Metadata cannot be null");
+		ImmutableMap.Builder<String, VcfInfoField> info = ImmutableMap.builder();
+		metadata.getInfo().forEach((key, value) -> info.put(key, new VcfInfoField(key, value)));
+		m_info = info.build();
+		ImmutableMap.Builder<String, VcfFormatField> format = ImmutableMap.builder();
+		metadata.getFormat().forEach((key, value) -> format.put(key, new VcfFormatField(key, value)));
+		m_format = format.build();
+	}
+
+	/**
+	 * @throws IllegalArgumentException If the header has no ##INFO line for {@code key}
+	 */
+	@Nonnull
+	public VcfInfoField info(@Nonnull String key) {
+		VcfInfoField field = m_info.get(key);
+		Preconditions.checkArgument(field != null, "INFO " + key + " is not declared in the header");
+		return field;
+	}
+
+	/**
+	 * @throws IllegalArgumentException If the header has no ##FORMAT line for {@code key}
+	 */
+	@Nonnull
+	public VcfFormatField format(@Nonnull String key) {
+		VcfFormatField field = m_format.get(key);
+		Preconditions.checkArgument(field != null, "FORMAT " + key + " is not declared in the header");
+		return field;
+	}
+
+	@Nonnull
+	public ImmutableMap<String, VcfInfoField> getInfoFields() {
+		return m_info;
+	}
+
+	@Nonnull
+	public ImmutableMap<String, VcfFormatField> getFormatFields() {
+		return m_format;
+	}
+
+	@Override
+	public String toString() {
+		return "VcfFieldDecoders{" +
+				"info=" + m_info.keySet() +
+				", format=" + m_format.keySet() +
+				'}';
+	}
+}
@@ -0,0 +1,107 @@
+package org.pharmgkb.parsers.vcf.model;
+
+import org.pharmgkb.parsers.vcf.model.metadata.VcfFormatMetadata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A typed FORMAT field from a {@link VcfFieldDecoders}.
+ * The index of the key in each sample's {@link VcfFormatSchema} is remembered for the last schema seen, so reading
+ * the same field from every sample of a position, or from consecutive positions with the same FORMAT, is an array lookup.
+ * Example:
+ * <code>
+ *     VcfFormatField depths = metadata.getFieldDecoders().format("AD");
+ *     int[] ad = depths.getIntArray(position.getSample(0));
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@ThreadSafe
+public class VcfFormatField extends VcfTypedField {
+
+	private volatile Resolved m_last = new Resolved(VcfFormatSchema.empty(), -1);
+
+	VcfFormatField(@Nonnull String key, @Nonnull VcfFormatMetadata metadata) {
+		super(key, metadata.getNumber(), switch (metadata.getType()) {
+			case Integer -> Kind.Integer;
+			case Float -> Kind.Float;
+			case Character -> Kind.Character;
+			case String -> Kind.String;
+		});
+	}
+
+	/**
+	 * @return The raw value, or null if the sample does not have it
+	 */
+	@Nullable
+	private String value(@Nonnull VcfSample sample) {
+		Resolved last = m_last;
+		if (last.schema != sample.getSchema()) {
+			last = new Resolved(sample.getSchema(), sample.getSchema().indexOf(getKey()));
+			m_last = last;
+		}
+		return sample.getValue(last.index);
+	}
+
+	/**
+	 * @return The first value, or {@link #MISSING_INT} if it is absent or {@code .}
+	 * @throws IllegalStateException If the Type is not Integer
+	 * @throws IllegalArgumentException If the value is not an integer
+	 */
+	public int getInt(@Nonnull VcfSample sample) {
+		requireInteger();
+		String value = value(sample);
+		if (value == null) {
+			return MISSING_INT;
+		}
+		int comma = value.indexOf(',');
+		return toInt(value, 0, comma < 0? value.length() : comma);
+	}
+
+	/**
+	 * @return The first value, or NaN if it is absent or {@code .}
+	 * @throws IllegalStateException If the Type is not Integer or Float
+	 * @throws IllegalArgumentException If the value is not a number
+	 */
+	public double getDouble(@Nonnull VcfSample sample) {
+		requireNumeric();
+		String value = value(sample);
+		if (value == null) {
+			return Double.NaN;
+		}
+		int comma = value.indexOf(',');
+		return toDouble(value, 0, comma < 0? value.length() : comma);
+	}
+
+	/**
+	 * @return Every value, or an empty array if the value is absent or {@code .}
+	 * @throws IllegalStateException If the Type is not Integer
+	 */
+	@Nonnull
+	public int[] getIntArray(@Nonnull VcfSample sample) {
+		requireInteger();
+		String value = value(sample);
+		return value == null? new int[0] : toIntArray(value);
+	}
+
+	/**
+	 * @return Every value, or an empty array if the value is absent or {@code .}
+	 * @throws IllegalStateException If the Type is not Integer or Float
+	 */
+	@Nonnull
+	public double[] getDoubleArray(@Nonnull VcfSample sample) {
+		requireNumeric();
+		String value = value(sample);
+		return value == null? new double[0] : toDoubleArray(value);
+	}
+
+	private static class Resolved {
+		private final VcfFormatSchema schema;
+		private final int index;
+		Resolved(@Nonnull VcfFormatSchema schema, int index) {
+			this.schema = schema;
+			this.index = index;
+		}
+	}
+}
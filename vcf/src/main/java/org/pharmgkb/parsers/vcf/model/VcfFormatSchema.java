@@ -0,0 +1,119 @@
+package org.pharmgkb.parsers.vcf.model;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.pharmgkb.parsers.vcf.model.extra.ReservedFormatProperty;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.util.List;
+
+/**
+ * The ordered FORMAT keys shared by {@link VcfSample VcfSamples}, so that each sample only stores its values.
+ * Schemas are interned: every sample with the same keys, across all positions, shares one instance.
+ * @author Douglas Myers-Turnbull
+ */
+@Immutable
+public class VcfFormatSchema {
+
+	private static final Interner<VcfFormatSchema> sf_interner = Interners.newWeakInterner();
+
+	private static final VcfFormatSchema sf_empty = of(ImmutableList.of());
+
+	// consecutive lines nearly always have the same FORMAT
+	private static volatile VcfFormatSchema sf_last = sf_empty;
+
+	private final ImmutableList<String> m_keys;
+	private final ImmutableSet<String> m_keySet;
+	private final ImmutableMap<String, Integer> m_indices;
+	private final int[] m_reservedIndices; // by ordinal, -1 if absent
+
+	private VcfFormatSchema(@Nonnull ImmutableList<String> keys) {
+		m_keys = keys;
+		m_keySet = ImmutableSet.copyOf(keys);
+		Preconditions.checkArgument(m_keySet.size() == keys.size(), "FORMAT keys [" + String.join(",", keys) + "] contain duplicates");
+		ImmutableMap.Builder<String, Integer> indices = ImmutableMap.builder();
+		for (int i = 0; i < keys.size(); i++) {
+			indices.put(keys.get(i), i);
+		}
+		m_indices = indices.build();
+		m_reservedIndices = new int[ReservedFormatProperty.values().length];
+		for (ReservedFormatProperty property : ReservedFormatProperty.values()) {
+			m_reservedIndices[property.ordinal()] = m_indices.getOrDefault(property.getId(), -1);
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException If a key appears more than once
+	 */
+	@Nonnull
+	public static VcfFormatSchema of(@Nonnull List<String> keys) {
+		Preconditions.checkNotNull(keys, "FORMAT keys cannot be null");
+		VcfFormatSchema last = sf_last;
+		if (last != null && last.m_keys.equals(keys)) {
+			return last;
+		}
+		VcfFormatSchema schema = sf_interner.intern(new VcfFormatSchema(ImmutableList.copyOf(keys)));
+		sf_last = schema;
+		return schema;
+	}
+
+	@Nonnull
+	public static VcfFormatSchema empty() {
+		return sf_empty;
+	}
+
+	@Nonnull
+	public ImmutableList<String> getKeys() {
+		return m_keys;
+	}
+
+	@Nonnull
+	public ImmutableSet<String> keySet() {
+		return m_keySet;
+	}
+
+	/**
+	 * @return The index of {@code key}, or -1
+	 */
+	public int indexOf(@Nonnull String key) {
+		return m_indices.getOrDefault(key, -1);
+	}
+
+	/**
+	 * @return The index of {@code key}, or -1
+	 */
+	public int indexOf(@Nonnull ReservedFormatProperty key) {
+		return m_reservedIndices[key.ordinal()];
+	}
+
+	@Nonnegative
+	public int size() {
+		return m_keys.size();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		VcfFormatSchema that = (VcfFormatSchema) o;
+		return m_keys.equals(that.m_keys);
+	}
+
+	@Override
+	public int hashCode() {
+		return m_keys.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "VcfFormatSchema{" +
+				"keys=" + String.join(":", m_keys) +
+				'}';
+	}
+}
@@ -0,0 +1,92 @@
+package org.pharmgkb.parsers.vcf.model;
+
+import com.google.common.collect.ImmutableCollection;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfInfoMetadata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.util.Iterator;
+
+/**
+ * A typed INFO field from a {@link VcfFieldDecoders}.
+ * Example:
+ * <code>
+ *     VcfInfoField depth = metadata.getFieldDecoders().info("DP");
+ *     int dp = depth.getInt(position.getInfo());
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@Immutable
+public class VcfInfoField extends VcfTypedField {
+
+	VcfInfoField(@Nonnull String key, @Nonnull VcfInfoMetadata metadata) {
+		super(key, metadata.getNumber(), switch (metadata.getType()) {
+			case Integer -> Kind.Integer;
+			case Float -> Kind.Float;
+			case Flag -> Kind.Flag;
+			case Character -> Kind.Character;
+			case String -> Kind.String;
+		});
+	}
+
+	/**
+	 * @return Whether the key is present; works for any Type
+	 */
+	public boolean getFlag(@Nonnull VcfInfo info) {
+		return info.containsKey(getKey());
+	}
+
+	/**
+	 * @return The first value, or {@link #MISSING_INT} if it is absent or {@code .}
+	 * @throws IllegalStateException If the Type is not Integer
+	 * @throws IllegalArgumentException If the value is not an integer
+	 */
+	public int getInt(@Nonnull VcfInfo info) {
+		requireInteger();
+		Iterator<String> values = info.get(getKey()).iterator();
+		return values.hasNext()? toInt(values.next()) : MISSING_INT;
+	}
+
+	/**
+	 * @return The first value, or NaN if it is absent or {@code .}
+	 * @throws IllegalStateException If the Type is not Integer or Float
+	 * @throws IllegalArgumentException If the value is not a number
+	 */
+	public double getDouble(@Nonnull VcfInfo info) {
+		requireNumeric();
+		Iterator<String> values = info.get(getKey()).iterator();
+		return values.hasNext()? toDouble(values.next()) : Double.NaN;
+	}
+
+	/**
+	 * @return Every value, or an empty array if the key is absent
+	 * @throws IllegalStateException If the Type is not Integer
+	 */
+	@Nonnull
+	public int[] getIntArray(@Nonnull VcfInfo info) {
+		requireInteger();
+		ImmutableCollection<String> values = info.get(getKey());
+		int[] array = new int[values.size()];
+		int i = 0;
+		for (String value : values) {
+			array[i++] = toInt(value);
+		}
+		return array;
+	}
+
+	/**
+	 * @return Every value, or an empty array if the key is absent
+	 * @throws IllegalStateException If the Type is not Integer or Float
+	 */
+	@Nonnull
+	public double[] getDoubleArray(@Nonnull VcfInfo info) {
+		requireNumeric();
+		ImmutableCollection<String> values = info.get(getKey());
+		double[] array = new double[values.size()];
+		int i = 0;
+		for (String value : values) {
+			array[i++] = toDouble(value);
+		}
+		return array;
+	}
+}
@@ -38,6 +38,8 @@ public class VcfMetadataCollection {
 	private final ImmutableList<VcfRawMetadata> m_assembly;
 	private final ImmutableList<VcfRawMetadata> m_pedigreeDb;
 
+	private volatile VcfFieldDecoders m_fieldDecoders;
+
 	/**
 	 * @return The VCF header line, minus the {@code ##vcfVersion=}
 	 */
@@ -110,6 +112,19 @@ public ImmutableList<String> getSampleNames() {
 		return m_header.getSampleNames();
 	}
 
+	/**
+	 * @return Typed accessors for the ##INFO and ##FORMAT fields, built on first use
+	 */
+	@Nonnull
+	public VcfFieldDecoders getFieldDecoders() {
+		VcfFieldDecoders decoders = m_fieldDecoders;
+		if (decoders == null) {
+			decoders = new VcfFieldDecoders(this);
+			m_fieldDecoders = decoders;
+		}
+		return decoders;
+	}
+
 	private VcfMetadataCollection(@Nonnull Builder builder) {
 
 		m_vcfVersion = builder.m_vcfVersion;
@@ -8,6 +8,7 @@
 import org.pharmgkb.parsers.model.GeneralizedBigDecimal;
 import org.pharmgkb.parsers.model.Locus;
 import org.pharmgkb.parsers.model.Strand;
+import org.pharmgkb.parsers.utils.DecimalParser;
 import org.pharmgkb.parsers.vcf.model.allele.VcfAllele;
 import org.pharmgkb.parsers.vcf.model.allele.VcfBasesAllele;
 import org.pharmgkb.parsers.vcf.model.extra.ReservedFormatProperty;
@@ -24,12 +25,15 @@
 import javax.annotation.concurrent.NotThreadSafe;
 import java.lang.invoke.MethodHandles;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * Stores the entire contents of a single non-metadata (and non-header) VCF line.
  * Note that this includes all sample data. Also be aware that positions are 0-based while VCF itself is 1-based.
+ * A position built with {@link Builder#setDeferredColumns(DeferredVcfColumns) deferred columns} decodes INFO,
+ * FORMAT, and each sample only when first accessed, and then keeps the result.
  * @author Douglas Myers-Turnbull
  */
 @Immutable
@@ -42,15 +46,27 @@ public class VcfPosition {
 	private final ImmutableList<String> m_ids;
 	private final VcfBasesAllele m_ref;
 	private final ImmutableList<VcfAllele> m_alts;
-	private final Optional<GeneralizedBigDecimal> m_quality;
+	private final ImmutableList<VcfAllele> m_allAlleles;
+	// QUAL as written, or null if it is missing; the GeneralizedBigDecimal is only built if asked for
+	private final String m_qualityString;
+	private final double m_qualityDouble;
+	private volatile Optional<GeneralizedBigDecimal> m_quality;
 	private final ImmutableList<String> m_filters;
-	private final VcfInfo m_info;
-	private final ImmutableList<String> m_format;
-	private final ImmutableList<VcfSample> m_samples;
+	// these are null until decoded if m_deferred is set
+	private volatile VcfInfo m_info;
+	private volatile ImmutableList<String> m_format;
+	private volatile ImmutableList<VcfSample> m_samples;
+	private final DeferredVcfColumns m_deferred;
+	private final AtomicReferenceArray<VcfSample> m_deferredSamples;
 
 	@Nonnull
 	public ImmutableList<String> getFormat() {
-		return m_format;
+		ImmutableList<String> format = m_format;
+		if (format == null) {
+			format = m_deferred.decodeFormat();
+			m_format = format;
+		}
+		return format;
 	}
 
 	@Nonnull
@@ -81,8 +97,7 @@ public ImmutableList<String> getIds() {
 
 	@Nonnull
 	public ImmutableList<VcfAllele> getAllAlleles() {
-		// note that this isn't fast
-		return new ImmutableList.Builder<VcfAllele>().add(m_ref).addAll(m_alts).build();
+		return m_allAlleles;
 	}
 
 	@Nonnull
@@ -95,9 +110,36 @@ public ImmutableList<VcfAllele> getAlts() {
 		return m_alts;
 	}
 
+	/**
+	 * Creates the {@link GeneralizedBigDecimal} on first call; use {@link #getQualityAsDouble()} where a double suffices.
+	 */
 	@Nonnull
 	public Optional<GeneralizedBigDecimal> getQuality() {
-		return m_quality;
+		Optional<GeneralizedBigDecimal> quality = m_quality;
+		if (quality == null) {
+			quality = Optional.of(new GeneralizedBigDecimal(m_qualityString));
+			m_quality = quality;
+		}
+		return quality;
+	}
+
+	public boolean hasQuality() {
+		return m_qualityString != null;
+	}
+
+	/**
+	 * @return QUAL exactly as written, without creating a {@link GeneralizedBigDecimal}
+	 */
+	@Nonnull
+	public Optional<String> getQualityString() {
+		return Optional.ofNullable(m_qualityString);
+	}
+
+	/**
+	 * @return QUAL as a double, which is NaN if QUAL is missing or {@code NaN}, and infinite for {@code Inf} and {@code -Inf}
+	 */
+	public double getQualityAsDouble() {
+		return m_qualityDouble;
 	}
 
 	@Nonnull
@@ -107,12 +149,50 @@ public ImmutableList<String> getFilters() {
 
 	@Nonnull
 	public VcfInfo getInfo() {
-		return m_info;
+		VcfInfo info = m_info;
+		if (info == null) {
+			info = m_deferred.decodeInfo();
+			m_info = info;
+		}
+		return info;
 	}
 
 	@Nonnull
 	public ImmutableList<VcfSample> getSamples() {
-		return m_samples;
+		ImmutableList<VcfSample> samples = m_samples;
+		if (samples == null) {
+			ImmutableList.Builder<VcfSample> builder = ImmutableList.builderWithExpectedSize(getNSamples());
+			for (int i = 0; i < getNSamples(); i++) {
+				builder.add(getSample(i));
+			}
+			samples = builder.build();
+			m_samples = samples;
+		}
+		return samples;
+	}
+
+	/**
+	 * With deferred columns, this decodes only the one sample.
+	 * @param index Starting at 0
+	 */
+	@Nonnull
+	public VcfSample getSample(@Nonnegative int index) {
+		ImmutableList<VcfSample> samples = m_samples;
+		if (samples != null) {
+			return samples.get(index);
+		}
+		VcfSample sample = m_deferredSamples.get(index);
+		if (sample == null) {
+			sample = m_deferred.decodeSample(index, getFormat());
+			m_deferredSamples.set(index, sample);
+		}
+		return sample;
+	}
+
+	@Nonnegative
+	public int getNSamples() {
+		ImmutableList<VcfSample> samples = m_samples;
+		return samples == null? m_deferredSamples.length() : samples.size();
 	}
 
 	/**
@@ -121,7 +201,7 @@ public ImmutableList<VcfSample> getSamples() {
 	@Nonnull
 	public ImmutableList<Optional<VcfGenotype>> getGenotypes() {
 		ImmutableList.Builder<Optional<VcfGenotype>> builder = new ImmutableList.Builder<>();
-		for (int i = 0; i < m_samples.size(); i++) {
+		for (int i = 0; i < getNSamples(); i++) {
 			builder.add(getGenotype(i));
 		}
 		return builder.build();
@@ -132,7 +212,17 @@ public ImmutableList<Optional<VcfGenotype>> getGenotypes() {
 	 */
 	@Nonnull
 	public Optional<VcfGenotype> getGenotype(@Nonnegative int index) {
-		return VcfGenotype.fromGtString(this, m_samples.get(index).get(ReservedFormatProperty.Genotype));
+		return VcfGenotype.fromGtString(this, getSample(index).get(ReservedFormatProperty.Genotype));
+	}
+
+	/**
+	 * @return The line this position was parsed from, if it was built with deferred columns that kept it.
+	 *         Because positions are immutable, the line always describes this position exactly.
+	 * @see DeferredVcfColumns#getSourceLine()
+	 */
+	@Nonnull
+	public Optional<String> getSourceLine() {
+		return m_deferred == null? Optional.empty() : m_deferred.getSourceLine();
 	}
 
 	private VcfPosition(@Nonnull Builder builder) {
@@ -141,11 +231,20 @@ private VcfPosition(@Nonnull Builder builder) {
 		m_ids = ImmutableList.copyOf(builder.m_ids);
 		m_ref = builder.m_ref;
 		m_alts = ImmutableList.copyOf(builder.m_alts);
+		m_allAlleles = ImmutableList.<VcfAllele>builderWithExpectedSize(m_alts.size() + 1).add(m_ref).addAll(m_alts).build();
+		m_qualityString = builder.m_qualityString;
+		m_qualityDouble = builder.m_qualityDouble;
 		m_quality = builder.m_quality;
 		m_filters = ImmutableList.copyOf(builder.m_filters);
-		m_info = new VcfInfo(ImmutableMultimap.copyOf(builder.m_info));
-		m_format = ImmutableList.copyOf(builder.m_format);
-		m_samples = ImmutableList.copyOf(builder.m_samples);
+		m_deferred = builder.m_deferred;
+		if (m_deferred == null) {
+			m_info = new VcfInfo(ImmutableMultimap.copyOf(builder.m_info));
+			m_format = ImmutableList.copyOf(builder.m_format);
+			m_samples = ImmutableList.copyOf(builder.m_samples);
+			m_deferredSamples = null;
+		} else {
+			m_deferredSamples = new AtomicReferenceArray<>(m_deferred.getNSamples());
+		}
 	}
 
 	@Override
@@ -158,16 +257,16 @@ public boolean equals(@Nullable Object o) {
 				Objects.equal(m_ids, that.m_ids) &&
 				Objects.equal(m_ref, that.m_ref) &&
 				Objects.equal(m_alts, that.m_alts) &&
-				Objects.equal(m_quality, that.m_quality) &&
+				Objects.equal(getQuality(), that.getQuality()) &&
 				Objects.equal(m_filters, that.m_filters) &&
-				Objects.equal(m_info, that.m_info) &&
-				Objects.equal(m_format, that.m_format) &&
-				Objects.equal(m_samples, that.m_samples);
+				Objects.equal(getInfo(), that.getInfo()) &&
+				Objects.equal(getFormat(), that.getFormat()) &&
+				Objects.equal(getSamples(), that.getSamples());
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(m_chromosome, m_position, m_ids, m_ref, m_alts, m_quality, m_filters, m_info, m_format, m_samples);
+		return Objects.hashCode(m_chromosome, m_position, m_ids, m_ref, m_alts, getQuality(), m_filters, getInfo(), getFormat(), getSamples());
 	}
 
 	@Nonnull
@@ -179,13 +278,13 @@ public String toString() {
 				.add("ids", String.join(",", m_ids))
 				.add("ref", m_ref)
 				.add("alts", m_alts.stream().map(Object::toString).collect(Collectors.joining(",")))
-				.add("quality", m_quality)
+				.add("quality", getQuality())
 				.add("filters", String.join(",", m_filters))
-				.add("info", m_info.asMap().entrySet().stream()
+				.add("info", getInfo().asMap().entrySet().stream()
             .map(e -> e.getKey() + "=" + String.join(",", e.getValue()))
             .collect(Collectors.joining(";")))
-				.add("format", String.join(",", m_format))
-				.add("samples", m_samples.stream()
+				.add("format", String.join(",", getFormat()))
+				.add("samples", getSamples().stream()
             .map(Object::toString)
             .collect(Collectors.joining(",")))
 				.toString();
@@ -204,11 +303,14 @@ public static class Builder implements ObjectBuilder<VcfPosition> {
 
 		private List<String> m_ids = new ArrayList<>();
 		private List<VcfAllele> m_alts = new ArrayList<>();
-		private Optional<GeneralizedBigDecimal> m_quality = Optional.empty();
+		private String m_qualityString = null;
+		private double m_qualityDouble = Double.NaN;
+		private Optional<GeneralizedBigDecimal> m_quality = Optional.empty(); // null until built from m_qualityString
 		private List<String> m_filters = new ArrayList<>();
 		private LinkedListMultimap<String, String> m_info = LinkedListMultimap.create();
 		private List<String> m_format = new ArrayList<>();
 		private List<VcfSample> m_samples = new ArrayList<>();
+		private DeferredVcfColumns m_deferred = null;
 
 		@SuppressWarnings("DuplicatedCode")
 		public Builder(@Nonnull Builder builder) {
@@ -218,12 +320,15 @@ public Builder(@Nonnull Builder builder) {
 			m_ids.addAll(builder.m_ids);
 			m_ref = builder.m_ref;
 			m_alts.addAll(builder.m_alts);
+			m_qualityString = builder.m_qualityString;
+			m_qualityDouble = builder.m_qualityDouble;
 			m_quality = builder.m_quality;
 			m_filters.addAll(builder.m_filters);
 			builder.m_info.entries().forEach(e -> m_info.put(e.getKey(), e.getValue()));
 			m_format.addAll(builder.m_format);
 			m_format.addAll(builder.m_format);
 			m_samples.addAll(builder.m_samples);
+			m_deferred = builder.m_deferred;
 		}
 
 		@SuppressWarnings("DuplicatedCode")
@@ -234,12 +339,14 @@ public Builder(@Nonnull VcfPosition position) {
 			m_ids.addAll(position.m_ids);
 			m_ref = position.m_ref;
 			m_alts.addAll(position.m_alts);
+			m_qualityString = position.m_qualityString;
+			m_qualityDouble = position.m_qualityDouble;
 			m_quality = position.m_quality;
 			m_filters.addAll(position.m_filters);
-			position.m_info.entries().forEach(e -> m_info.put(e.getKey(), e.getValue()));
-			m_format.addAll(position.m_format);
-			m_format = ImmutableList.copyOf(position.m_format);
-			m_samples.addAll(position.m_samples);
+			position.getInfo().entries().forEach(e -> m_info.put(e.getKey(), e.getValue()));
+			m_format.addAll(position.getFormat());
+			m_format = ImmutableList.copyOf(position.getFormat());
+			m_samples.addAll(position.getSamples());
 		}
 
 		public Builder(@Nonnull String chromosome, long position, @Nonnull String ref) {
@@ -320,6 +427,22 @@ public Builder addAlt(@Nonnull VcfAllele alt) {
 		public Builder setQuality(@Nonnull Optional<GeneralizedBigDecimal> quality) {
 			Preconditions.checkNotNull(quality, "Quality cannot be null");
 			m_quality = quality;
+			m_qualityString = quality.map(GeneralizedBigDecimal::toString).orElse(null);
+			m_qualityDouble = m_qualityString == null? Double.NaN : DecimalParser.parseDouble(m_qualityString);
+			return this;
+		}
+
+		/**
+		 * Sets QUAL from its VCF text, which is checked and converted to a double without creating a {@link GeneralizedBigDecimal}.
+		 * @param quality A number, {@code NaN}, {@code Inf}, {@code +Inf}, or {@code -Inf}; not {@code .}
+		 * @throws NumberFormatException If {@code quality} is none of those
+		 */
+		@Nonnull
+		public Builder setQuality(@Nonnull String quality) {
+			Preconditions.checkNotNull(quality, "Quality cannot be null");
+			m_qualityDouble = DecimalParser.parseDouble(quality);
+			m_qualityString = quality;
+			m_quality = null;
 			return this;
 		}
 
@@ -411,6 +534,17 @@ public Builder addSample(@Nonnull VcfSample sample) {
 			return this;
 		}
 
+		/**
+		 * Makes the position decode INFO, FORMAT, and samples from {@code columns} on first access,
+		 * instead of taking them from this builder, which must not have any.
+		 */
+		@Nonnull
+		public Builder setDeferredColumns(@Nonnull DeferredVcfColumns columns) {
+			Preconditions.checkNotNull(columns, "Deferred columns cannot be null");
+			m_deferred = columns;
+			return this;
+		}
+
 		@Nonnull
 		public Builder clearIds() {
 			m_ids.clear();
@@ -465,6 +599,8 @@ public VcfPosition build() {
 			Preconditions.checkState(new HashSet<>(m_filters).size() == m_filters.size(), "Position has a duplicate FILTER");
 			Preconditions.checkState(new HashSet<>(m_ids).size() == m_ids.size(), "Position has a duplicate ID");
 			Preconditions.checkState(new HashSet<>(m_info.keySet()).size() == m_info.keySet().size(), "Position has a duplicate INFO key");
+			Preconditions.checkState(m_deferred == null || m_info.isEmpty() && m_format.isEmpty() && m_samples.isEmpty(),
+					"Position has deferred columns but also INFO, FORMAT, or samples");
 
 			for (int i = 0; i < m_samples.size(); i++) {
 				if (!ImmutableList.copyOf(m_samples.get(i).keySet()).equals(m_format)) {
@@ -5,6 +5,7 @@
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableCollection;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.pharmgkb.parsers.ObjectBuilder;
@@ -21,11 +22,11 @@
 import java.lang.invoke.MethodHandles;
 import java.util.*;
 import java.util.function.BiConsumer;
-import java.util.stream.Collectors;
 
 /**
  * The data of a single sample in a VCF position (non-metadata and non-header) line.
- * This class is just a wrapper for an ordered map of sample properties.
+ * This class is an ordered map of sample properties, stored as a shared {@link VcfFormatSchema} and an array of values.
+ * Trailing values may be absent, in which case their keys are too.
  * @author Douglas Myers-Turnbull
  */
 @Immutable
@@ -33,20 +34,62 @@ public class VcfSample {
 
 	private static final Logger sf_logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-	private final ImmutableMap<String, String> m_properties;
+	private final VcfFormatSchema m_schema;
+	private final String[] m_values;
 
 	public VcfSample(@Nonnull Builder builder) {
-		m_properties = ImmutableMap.copyOf(builder.m_properties);
+		m_schema = VcfFormatSchema.of(new ArrayList<>(builder.m_properties.keySet()));
+		m_values = builder.m_properties.values().toArray(new String[0]);
+	}
+
+	/**
+	 * The fast way to create a sample, used by the parser.
+	 * @param values The values in the order of {@code schema}; trailing values may be omitted
+	 * @throws IllegalArgumentException If there are more values than keys
+	 */
+	public VcfSample(@Nonnull VcfFormatSchema schema, @Nonnull List<String> values) {
+		Preconditions.checkNotNull(schema, "FORMAT schema cannot be null");
+		Preconditions.checkNotNull(values, "Values cannot be null");
+		// apparently, trailing fields can be dropped
+		Preconditions.checkArgument(schema.size() >= values.size(), "Number of FORMAT properties (" + schema.size()
+				+ ") is less than the number of SAMPLE values (" + values.size() + ")");
+		m_schema = schema;
+		m_values = values.toArray(new String[0]);
+		for (String value : m_values) {
+			Preconditions.checkNotNull(value, "Sample value cannot be null");
+		}
+	}
+
+	/**
+	 * @return The FORMAT keys, which may include keys whose values were dropped from the end; see {@link #keySet()}
+	 */
+	@Nonnull
+	public VcfFormatSchema getSchema() {
+		return m_schema;
 	}
 
 	@Nonnull
 	public Optional<String> get(@Nonnull String key) {
-		return Optional.ofNullable(m_properties.get(key));
+		return value(m_schema.indexOf(key));
 	}
 
 	@Nonnull
 	public Optional<String> get(@Nonnull ReservedFormatProperty key) {
-		return Optional.ofNullable(m_properties.get(key.getId()));
+		return value(m_schema.indexOf(key));
+	}
+
+	@Nonnull
+	private Optional<String> value(int index) {
+		return index > -1 && index < m_values.length? Optional.of(m_values[index]) : Optional.empty();
+	}
+
+	/**
+	 * For {@link VcfFormatField}.
+	 * @return The raw value at {@code index} in the {@link #getSchema() schema}, or null
+	 */
+	@Nullable
+	String getValue(int index) {
+		return index > -1 && index < m_values.length? m_values[index] : null;
 	}
 
 	/**
@@ -54,68 +97,99 @@ public Optional<String> get(@Nonnull ReservedFormatProperty key) {
 	 */
 	@Nonnull
 	public Optional<?> getConverted(@Nonnull ReservedFormatProperty key) {
-		return VcfConversionUtils.convertProperty(key, Optional.ofNullable(m_properties.get(key.getId())));
+		return VcfConversionUtils.convertProperty(key, get(key));
 	}
 
 	@Nonnull
 	public ImmutableCollection<String> values() {
-		return m_properties.values();
+		return ImmutableList.copyOf(m_values);
 	}
 
 	public ImmutableSet<Map.Entry<String, String>> entrySet() {
-		return m_properties.entrySet();
+		return asMap().entrySet();
 	}
 
 	public ImmutableSet<String> keySet() {
-		return m_properties.keySet();
+		if (m_values.length == m_schema.size()) {
+			return m_schema.keySet();
+		}
+		return ImmutableSet.copyOf(m_schema.getKeys().subList(0, m_values.length));
 	}
 
 	public boolean containsKey(@Nonnull ReservedFormatProperty key) {
-		return m_properties.containsKey(key.getId());
+		int index = m_schema.indexOf(key);
+		return index > -1 && index < m_values.length;
 	}
 
 	public boolean containsKey(@Nonnull String key) {
-		return m_properties.containsKey(key);
+		int index = m_schema.indexOf(key);
+		return index > -1 && index < m_values.length;
 	}
 
 	public boolean containsValue(@Nonnull String value) {
-		return m_properties.containsValue(value);
+		for (String v : m_values) {
+			if (v.equals(value)) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	public boolean isEmpty() {
-		return m_properties.isEmpty();
+		return m_values.length == 0;
 	}
 
 	public int size() {
-		return m_properties.size();
+		return m_values.length;
 	}
 
 	public void forEach(@Nonnull BiConsumer<? super String, ? super String> action) {
-		m_properties.forEach(action);
+		for (int i = 0; i < m_values.length; i++) {
+			action.accept(m_schema.getKeys().get(i), m_values[i]);
+		}
 	}
 
+	/**
+	 * @return A copy as an ordered map
+	 */
+	@Nonnull
+	public ImmutableMap<String, String> asMap() {
+		ImmutableMap.Builder<String, String> map = ImmutableMap.builderWithExpectedSize(m_values.length);
+		forEach(map::put);
+		return map.build();
+	}
+
+	/**
+	 * Equal to another sample with the same properties, regardless of order.
+	 */
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
 		VcfSample vcfSample = (VcfSample) o;
-		return Objects.equal(m_properties, vcfSample.m_properties);
+		if (m_schema == vcfSample.m_schema && m_values.length == vcfSample.m_values.length) {
+			return Arrays.equals(m_values, vcfSample.m_values);
+		}
+		return Objects.equal(asMap(), vcfSample.asMap());
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(m_properties);
+		// same as Map.hashCode, which does not depend on order
+		int hash = 0;
+		for (int i = 0; i < m_values.length; i++) {
+			hash += m_schema.getKeys().get(i).hashCode() ^ m_values[i].hashCode();
+		}
+		return hash;
 	}
 
 	@Nonnull
 	@Override
 	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		forEach((key, value) -> sb.append(sb.length() == 0? "" : ",").append(key).append('=').append(value));
 		return MoreObjects.toStringHelper(this)
-				.add("properties",
-						m_properties.entrySet().stream()
-						.map(e -> e.getKey() + "=" + e.getValue())
-						.collect(Collectors.joining(","))
-				)
+				.add("properties", sb)
 				.toString();
 	}
 
@@ -152,7 +226,7 @@ public Builder(@Nonnull Builder builder) {
 
 		public Builder(@Nonnull VcfSample sample) {
 			Preconditions.checkNotNull(sample, "VcfSample cannot be null");
-			sample.m_properties.forEach((key, value) -> m_properties.put(key, value));
+			sample.forEach((key, value) -> m_properties.put(key, value));
 		}
 
 		@Nonnull
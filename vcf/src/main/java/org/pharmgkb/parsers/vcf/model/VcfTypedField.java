@@ -0,0 +1,174 @@
+package org.pharmgkb.parsers.vcf.model;
+
+import org.pharmgkb.parsers.utils.DecimalParser;
+import org.pharmgkb.parsers.vcf.model.metadata.VcfFormatNumber;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * An INFO or FORMAT field whose Type and Number were resolved once from the header, for reading values as primitives.
+ * Missing values ({@code .}) are returned as {@link #MISSING_INT} or {@link Double#NaN}.
+ * @author Douglas Myers-Turnbull
+ * @see VcfFieldDecoders
+ */
+@Immutable
+public abstract class VcfTypedField {
+
+	/**
+	 * Returned for a missing integer, as in BCF.
+	 */
+	public static final int MISSING_INT = Integer.MIN_VALUE;
+
+	enum Kind {Integer, Float, Flag, Character, String}
+
+	private final String m_key;
+	private final VcfFormatNumber m_number;
+	private final Kind m_kind;
+
+	VcfTypedField(@Nonnull String key, @Nonnull VcfFormatNumber number, @Nonnull Kind kind) {
+		m_key = key;
+		m_number = number;
+		m_kind = kind;
+	}
+
+	@Nonnull
+	public String getKey() {
+		return m_key;
+	}
+
+	@Nonnull
+	public VcfFormatNumber getNumber() {
+		return m_number;
+	}
+
+	public boolean isInteger() {
+		return m_kind == Kind.Integer;
+	}
+
+	/**
+	 * @return Whether the field is an Integer or Float, which can both be read as doubles
+	 */
+	public boolean isNumeric() {
+		return m_kind == Kind.Integer || m_kind == Kind.Float;
+	}
+
+	public boolean isFlag() {
+		return m_kind == Kind.Flag;
+	}
+
+	public boolean isCharacter() {
+		return m_kind == Kind.Character;
+	}
+
+	void requireInteger() {
+		if (m_kind != Kind.Integer) {
+			throw new IllegalStateException(m_key + " has Type=" + m_kind + ", not Integer");
+		}
+	}
+
+	void requireNumeric() {
+		if (!isNumeric()) {
+			throw new IllegalStateException(m_key + " has Type=" + m_kind + ", not Integer or Float");
+		}
+	}
+
+	int toInt(@Nonnull String value) {
+		return toInt(value, 0, value.length());
+	}
+
+	/**
+	 * Parses {@code value} from {@code start}, inclusive, to {@code end}, exclusive, without a substring.
+	 */
+	int toInt(@Nonnull String value, int start, int end) {
+		if (isMissing(value, start, end)) {
+			return MISSING_INT;
+		}
+		try {
+			return Integer.parseInt(value, start, end, 10);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(m_key + " value " + value.substring(start, end) + " is not an integer", e);
+		}
+	}
+
+	double toDouble(@Nonnull String value) {
+		return toDouble(value, 0, value.length());
+	}
+
+	/**
+	 * Parses {@code value} from {@code start}, inclusive, to {@code end}, exclusive, with {@link DecimalParser}.
+	 * So {@code NaN}, {@code Inf}, and {@code -Inf} are read as for QUAL.
+	 */
+	double toDouble(@Nonnull String value, int start, int end) {
+		if (isMissing(value, start, end)) {
+			return Double.NaN;
+		}
+		try {
+			return DecimalParser.parseDouble(value, start, end);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(m_key + " value " + value.substring(start, end) + " is not a number", e);
+		}
+	}
+
+	private static boolean isMissing(@Nonnull String value, int start, int end) {
+		return start == end || end - start == 1 && value.charAt(start) == '.';
+	}
+
+	/**
+	 * Parses the comma-separated integers in {@code value}.
+	 */
+	@Nonnull
+	int[] toIntArray(@Nonnull String value) {
+		int[] array = new int[countElements(value)];
+		int start = 0;
+		for (int i = 0; i < array.length; i++) {
+			int end = value.indexOf(',', start);
+			if (end < 0) {
+				end = value.length();
+			}
+			array[i] = toInt(value, start, end);
+			start = end + 1;
+		}
+		return array;
+	}
+
+	/**
+	 * Parses the comma-separated numbers in {@code value}.
+	 */
+	@Nonnull
+	double[] toDoubleArray(@Nonnull String value) {
+		double[] array = new double[countElements(value)];
+		int start = 0;
+		for (int i = 0; i < array.length; i++) {
+			int end = value.indexOf(',', start);
+			if (end < 0) {
+				end = value.length();
+			}
+			array[i] = toDouble(value, start, end);
+			start = end + 1;
+		}
+		return array;
+	}
+
+	private static int countElements(@Nonnull String value) {
+		if (value.isEmpty() || value.equals(".")) {
+			return 0;
+		}
+		int n = 1;
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) == ',') {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{" +
+				"key=" + m_key +
+				", number=" + m_number +
+				", type=" + m_kind +
+				'}';
+	}
+}
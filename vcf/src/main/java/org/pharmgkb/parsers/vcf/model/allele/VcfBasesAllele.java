@@ -5,20 +5,35 @@
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
-import java.util.regex.Pattern;
 
 /**
  * A simple VcfAllele that only contains A, T, G, C, and N (and lowercase variants).
+ * {@link #fromVcf(String)} returns one shared instance for each single base, which covers most REFs and ALTs.
  * @author Douglas Myers-Turnbull
  */
 public class VcfBasesAllele implements VcfAllele {
 
-	private static final Pattern sf_pattern = Pattern.compile("[AaCcGgTtNn]+");
+	private static final String sf_bases = "AaCcGgTtNn";
+
+	// shared instances of the single-base alleles, indexed by the base
+	private static final VcfBasesAllele[] sf_singleBases = new VcfBasesAllele[128];
+	static {
+		for (char base : sf_bases.toCharArray()) {
+			sf_singleBases[base] = new VcfBasesAllele(String.valueOf(base));
+		}
+	}
+
 	private final String m_string;
 
 	@Nonnull
 	public static VcfBasesAllele fromVcf(@Nonnull String string) {
 		Preconditions.checkNotNull(string, "Allele string cannot be null");
+		if (string.length() == 1 && string.charAt(0) < sf_singleBases.length) {
+			VcfBasesAllele allele = sf_singleBases[string.charAt(0)];
+			if (allele != null) {
+				return allele;
+			}
+		}
 		return new VcfBasesAllele(string);
 	}
 
@@ -27,11 +42,22 @@ public static VcfBasesAllele fromVcf(@Nonnull String string) {
 	 */
 	public VcfBasesAllele(@Nonnull String string) {
 		Preconditions.checkNotNull(string, "Allele string cannot be null");
-		Preconditions.checkArgument(sf_pattern.matcher(string).matches(),
-				string + " does not look like an allele");
+		Preconditions.checkArgument(isBases(string), string + " does not look like an allele");
 		m_string = string;
 	}
 
+	private static boolean isBases(@Nonnull String string) {
+		if (string.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < string.length(); i++) {
+			if (sf_bases.indexOf(string.charAt(i)) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public String toString() {
 		return MoreObjects.toStringHelper(this)
@@ -6,20 +6,45 @@
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * A VCF named allele, using the {@code <ID>} notation.
+ * {@link #fromVcfAlt(String)} returns the shared constants below for the structural variant codes and for
+ * {@code <NON_REF>} and {@code <*>}.
  * @author Douglas Myers-Turnbull
  */
 public class VcfSymbolicAllele implements VcfAllele {
 
+	public static final VcfSymbolicAllele DEL = new VcfSymbolicAllele("DEL");
+	public static final VcfSymbolicAllele INS = new VcfSymbolicAllele("INS");
+	public static final VcfSymbolicAllele DUP = new VcfSymbolicAllele("DUP");
+	public static final VcfSymbolicAllele INV = new VcfSymbolicAllele("INV");
+	public static final VcfSymbolicAllele CNV = new VcfSymbolicAllele("CNV");
+	public static final VcfSymbolicAllele DUP_TANDEM = new VcfSymbolicAllele("DUP:TANDEM");
+	public static final VcfSymbolicAllele DEL_ME = new VcfSymbolicAllele("DEL:ME");
+	public static final VcfSymbolicAllele INS_ME = new VcfSymbolicAllele("INS:ME");
+	public static final VcfSymbolicAllele NON_REF = new VcfSymbolicAllele("NON_REF");
+	public static final VcfSymbolicAllele ANY = new VcfSymbolicAllele("*");
+
+	private static final Map<String, VcfSymbolicAllele> sf_common = Stream.of(
+			DEL, INS, DUP, INV, CNV, DUP_TANDEM, DEL_ME, INS_ME, NON_REF, ANY
+	).collect(Collectors.toUnmodifiableMap(VcfSymbolicAllele::toVcfString, Function.identity()));
+
 	private final String m_id;
 
 	@Nonnull
 	public static VcfSymbolicAllele fromVcfAlt(@Nonnull String string) {
 		Preconditions.checkNotNull(string, "Allele string cannot be null");
 		Preconditions.checkArgument(string.startsWith("<") && string.endsWith(">"));
+		VcfSymbolicAllele common = sf_common.get(string);
+		if (common != null) {
+			return common;
+		}
 		return new VcfSymbolicAllele(
 				VcfEscapers.SYMBOLIC_ALT_ID.unescape(string.substring(1, string.length() - 1))
 		);
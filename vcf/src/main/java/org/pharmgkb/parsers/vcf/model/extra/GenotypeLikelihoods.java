@@ -1,88 +1,351 @@
 package org.pharmgkb.parsers.vcf.model.extra;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import org.pharmgkb.parsers.model.GeneralizedBigDecimal;
 import org.pharmgkb.parsers.vcf.model.VcfPosition;
+import org.pharmgkb.parsers.vcf.model.VcfTypedField;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
- * Parses out the {@code GL} string into a map from {@link VcfGenotype genotypes} to their likelihoods.
+ * Reads the {@code GL} and {@code PL} values of a position, ordered as in {@link GenotypeOrdering}.
+ * {@link #getLikelihoods(int)} maps each {@link VcfGenotype} to its likelihood; the other methods use primitive arrays
+ * and never build genotypes. The {@code *Matrix} methods return one flat array for all samples, with the
+ * likelihoods of sample {@code s} at {@code [s * nGenotypes, (s + 1) * nGenotypes)}, and the static methods work on
+ * those arrays across all samples at once.
+ * Missing GL values are NaN, and missing PL values are {@link VcfTypedField#MISSING_INT}.
+ * Example:
+ * <code>
+ *     GenotypeLikelihoods likelihoods = new GenotypeLikelihoods(position);
+ *     double[] gl = likelihoods.getGlMatrix();
+ *     int[] best = GenotypeLikelihoods.bestGenotypes(gl, likelihoods.getOrdering().size());
+ * </code>
  * @author Douglas Myers-Turnbull
  */
 public class GenotypeLikelihoods {
 
 	private final VcfPosition m_position;
+	private final GenotypeOrdering m_ordering;
 
+	/**
+	 * Assumes diploid samples, as the VCF specification says to when the ploidy is unknown.
+	 */
 	public GenotypeLikelihoods(@Nonnull VcfPosition position) {
+		this(position, 2);
+	}
+
+	public GenotypeLikelihoods(@Nonnull VcfPosition position, @Nonnegative int ploidy) {
+		Preconditions.checkNotNull(position, "VcfPosition cannot be null");
 		m_position = position;
+		m_ordering = GenotypeOrdering.of(ploidy, position.getAllAlleles().size());
+	}
+
+	@Nonnull
+	public GenotypeOrdering getOrdering() {
+		return m_ordering;
 	}
 
 	/**
 	 * Returns a map from each {@link VcfGenotype} to its likelihood, or {@link Optional#empty()} if the {@code GL} is not present.
-	 * TODO Fix
+	 * The ploidy and phasing are taken from the sample's GT if it has one.
+	 * @throws IllegalArgumentException If the number of GL values does not match the number of genotypes
 	 */
 	@Nonnull
 	public Optional<ImmutableMap<VcfGenotype, GeneralizedBigDecimal>> getLikelihoods(@Nonnegative int index) {
 
 		VcfGenotype genotype = m_position.getGenotype(index).orElse(null);
-		int ploidy = genotype==null? 2 : genotype.ploidy(); // VCF spec says assume diploid
+		GenotypeOrdering ordering = genotype == null? m_ordering : GenotypeOrdering.of(genotype.ploidy(), m_ordering.nAlleles());
 		boolean isPhased = genotype != null && genotype.isPhased();
 
-		List<GeneralizedBigDecimal> likelihoods =
-				(List<GeneralizedBigDecimal>) m_position.getSamples()
-				.get(index)
-				.getConverted(ReservedFormatProperty.GenotypeLikelihoods)
-				.orElse(null);
-		if (likelihoods == null) return Optional.empty();
-
-		List<VcfGenotype> genotypes =
-				ordering(ploidy, m_position.getAlts().size() + 1, ImmutableList.of(), new ArrayList<>(ploidy*(m_position.getAlts().size()+1)))
-						.stream()
-						.map(l -> new VcfGenotype.Builder(m_position, isPhased)
-								.requirePloidy(ploidy)
-//								.addAlleles() // TODO
-								.build()
-						).collect(Collectors.toList());
-
-		ImmutableMap.Builder<VcfGenotype, GeneralizedBigDecimal> map = new ImmutableMap.Builder<>();
-		if (genotypes.size() != likelihoods.size()) {
+		String value = m_position.getSample(index).get(ReservedFormatProperty.GenotypeLikelihoods).orElse(null);
+		if (value == null) return Optional.empty();
+
+		if (ordering.size() != countValues(value)) {
 			throw new IllegalArgumentException("Length of GL does not match length expected from GT");
 		}
-		for (int i = 0; i < genotypes.size(); i++) {
-			map.put(genotypes.get(i), likelihoods.get(i));
+		ImmutableMap.Builder<VcfGenotype, GeneralizedBigDecimal> map = ImmutableMap.builderWithExpectedSize(ordering.size());
+		int start = 0;
+		for (int i = 0; i < ordering.size(); i++) {
+			int end = value.indexOf(',', start);
+			VcfGenotype key = new VcfGenotype.Builder(m_position, isPhased)
+					.addAlleles(ordering.getAlleles(i))
+					.build();
+			map.put(key, new GeneralizedBigDecimal(value.substring(start, end < 0? value.length() : end)));
+			start = end + 1;
 		}
+		return Optional.of(map.build());
+	}
 
-		return Optional.of(ImmutableMap.copyOf(map.build()));
+	/**
+	 * @return The log10-scaled GL values of sample {@code index}, or {@link Optional#empty()} if it has no GL
+	 * @throws IllegalArgumentException If a value is not a number
+	 */
+	@Nonnull
+	public Optional<double[]> getGl(@Nonnegative int index) {
+		Optional<String> value = m_position.getSample(index).get(ReservedFormatProperty.GenotypeLikelihoods);
+		if (value.isEmpty() || value.get().equals(".")) {
+			return Optional.empty();
+		}
+		double[] gl = new double[countValues(value.get())];
+		parseGl(value.get(), gl, 0, gl.length);
+		return Optional.of(gl);
 	}
 
-	private List<ImmutableList<Integer>> ordering(int p, int n, List<Integer> suffix, List<ImmutableList<Integer>> results) {
-		/*
-		Ordering (P , N , suffix =""):
-		for a in 0 . . . N
-		if (P == 1) println str (a) + suffix
-		if (P > 1) Ordering (P -1, a, str (a) + suffix )
-		 */
-		for (int i = 0; i < n; i++) {
-			ImmutableList<Integer> appended = new ImmutableList.Builder<Integer>()
-					.add(i).addAll(suffix)
-					.build();
-			if (p == 1) results.add(appended);
-			if (p > 1) return ordering(p - 1, n, appended, results);
+	/**
+	 * @return The phred-scaled PL values of sample {@code index}, or {@link Optional#empty()} if it has no PL
+	 * @throws IllegalArgumentException If a value is not an integer
+	 */
+	@Nonnull
+	public Optional<int[]> getPl(@Nonnegative int index) {
+		Optional<String> value = m_position.getSample(index).get(ReservedFormatProperty.PhredScaledGenotypeLikelihoods);
+		if (value.isEmpty() || value.get().equals(".")) {
+			return Optional.empty();
 		}
-		return results;
+		int[] pl = new int[countValues(value.get())];
+		parsePl(value.get(), pl, 0, pl.length);
+		return Optional.of(pl);
+	}
+
+	/**
+	 * Reads GL for every sample, converting from PL for samples that have only PL.
+	 * Samples with neither are all NaN.
+	 * @return nSamples * {@link GenotypeOrdering#size()} values
+	 * @throws IllegalArgumentException If a sample has the wrong number of values or a value is not a number
+	 */
+	@Nonnull
+	public double[] getGlMatrix() {
+		int nGenotypes = m_ordering.size();
+		double[] gl = new double[m_position.getNSamples() * nGenotypes];
+		int[] pl = null;
+		for (int s = 0; s < m_position.getNSamples(); s++) {
+			Optional<String> value = m_position.getSample(s).get(ReservedFormatProperty.GenotypeLikelihoods);
+			if (value.isPresent() && !value.get().equals(".")) {
+				parseGl(value.get(), gl, s * nGenotypes, nGenotypes);
+				continue;
+			}
+			value = m_position.getSample(s).get(ReservedFormatProperty.PhredScaledGenotypeLikelihoods);
+			if (value.isPresent() && !value.get().equals(".")) {
+				if (pl == null) {
+					pl = new int[nGenotypes];
+				}
+				parsePl(value.get(), pl, 0, nGenotypes);
+				for (int g = 0; g < nGenotypes; g++) {
+					gl[s * nGenotypes + g] = plToGl(pl[g]);
+				}
+			} else {
+				Arrays.fill(gl, s * nGenotypes, (s + 1) * nGenotypes, Double.NaN);
+			}
+		}
+		return gl;
+	}
+
+	/**
+	 * Reads PL for every sample. Samples without PL are all {@link VcfTypedField#MISSING_INT}.
+	 * @return nSamples * {@link GenotypeOrdering#size()} values
+	 * @throws IllegalArgumentException If a sample has the wrong number of values or a value is not an integer
+	 */
+	@Nonnull
+	public int[] getPlMatrix() {
+		int nGenotypes = m_ordering.size();
+		int[] pl = new int[m_position.getNSamples() * nGenotypes];
+		for (int s = 0; s < m_position.getNSamples(); s++) {
+			Optional<String> value = m_position.getSample(s).get(ReservedFormatProperty.PhredScaledGenotypeLikelihoods);
+			if (value.isPresent() && !value.get().equals(".")) {
+				parsePl(value.get(), pl, s * nGenotypes, nGenotypes);
+			} else {
+				Arrays.fill(pl, s * nGenotypes, (s + 1) * nGenotypes, VcfTypedField.MISSING_INT);
+			}
+		}
+		return pl;
+	}
+
+	/**
+	 * Converts PL values to GL values: {@code GL = -PL / 10}. Missing values become NaN.
+	 */
+	@Nonnull
+	public static double[] plToGl(@Nonnull int[] pl) {
+		double[] gl = new double[pl.length];
+		for (int i = 0; i < pl.length; i++) {
+			gl[i] = plToGl(pl[i]);
+		}
+		return gl;
+	}
+
+	private static double plToGl(int pl) {
+		return pl == VcfTypedField.MISSING_INT? Double.NaN : -pl / 10.0;
+	}
+
+	/**
+	 * Converts GL values to PL values, normalizing each sample so that its most likely genotype has PL 0.
+	 * A sample with any NaN value gets {@link VcfTypedField#MISSING_INT} for every genotype.
+	 */
+	@Nonnull
+	public static int[] glToPl(@Nonnull double[] gl, @Nonnegative int nGenotypes) {
+		checkMatrix(gl.length, nGenotypes);
+		int[] pl = new int[gl.length];
+		for (int start = 0; start < gl.length; start += nGenotypes) {
+			double max = max(gl, start, nGenotypes);
+			for (int i = start; i < start + nGenotypes; i++) {
+				pl[i] = Double.isNaN(max)? VcfTypedField.MISSING_INT : (int) Math.min(Math.round(-10 * (gl[i] - max)), Integer.MAX_VALUE);
+			}
+		}
+		return pl;
+	}
+
+	/**
+	 * Subtracts the maximum GL of each sample from that sample's values, in place, so that each maximum becomes 0.
+	 * Samples with a NaN value become all NaN.
+	 */
+	public static void normalizeGl(@Nonnull double[] gl, @Nonnegative int nGenotypes) {
+		checkMatrix(gl.length, nGenotypes);
+		for (int start = 0; start < gl.length; start += nGenotypes) {
+			double max = max(gl, start, nGenotypes);
+			for (int i = start; i < start + nGenotypes; i++) {
+				gl[i] -= max;
+			}
+		}
+	}
+
+	/**
+	 * @return For each sample, the index of the genotype with the highest GL, or -1 if the sample has a NaN value;
+	 *         ties go to the first genotype
+	 */
+	@Nonnull
+	public static int[] bestGenotypes(@Nonnull double[] gl, @Nonnegative int nGenotypes) {
+		checkMatrix(gl.length, nGenotypes);
+		int[] best = new int[gl.length / nGenotypes];
+		for (int s = 0; s < best.length; s++) {
+			int start = s * nGenotypes;
+			int argmax = Double.isNaN(max(gl, start, nGenotypes))? -1 : 0;
+			for (int g = 1; g < nGenotypes && argmax > -1; g++) {
+				if (gl[start + g] > gl[start + argmax]) {
+					argmax = g;
+				}
+			}
+			best[s] = argmax;
+		}
+		return best;
+	}
+
+	/**
+	 * @return For each sample, the index of the genotype with the lowest PL, or -1 if the sample has a missing value;
+	 *         ties go to the first genotype
+	 */
+	@Nonnull
+	public static int[] bestGenotypes(@Nonnull int[] pl, @Nonnegative int nGenotypes) {
+		checkMatrix(pl.length, nGenotypes);
+		int[] best = new int[pl.length / nGenotypes];
+		for (int s = 0; s < best.length; s++) {
+			int start = s * nGenotypes;
+			int argmin = 0;
+			for (int g = 0; g < nGenotypes; g++) {
+				if (pl[start + g] == VcfTypedField.MISSING_INT) {
+					argmin = -1;
+					break;
+				}
+				if (pl[start + g] < pl[start + argmin]) {
+					argmin = g;
+				}
+			}
+			best[s] = argmin;
+		}
+		return best;
+	}
+
+	/**
+	 * @return The maximum, or NaN if any value is NaN
+	 */
+	private static double max(@Nonnull double[] values, int start, int length) {
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = start; i < start + length; i++) {
+			if (Double.isNaN(values[i])) {
+				return Double.NaN;
+			}
+			max = Math.max(max, values[i]);
+		}
+		return max;
+	}
+
+	private static void checkMatrix(int length, int nGenotypes) {
+		Preconditions.checkArgument(nGenotypes > 0, "Number of genotypes must be positive");
+		Preconditions.checkArgument(length % nGenotypes == 0,
+				"Length " + length + " is not a multiple of the number of genotypes " + nGenotypes);
+	}
+
+	private static int countValues(@Nonnull String value) {
+		int n = 1;
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) == ',') {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	private static void parseGl(@Nonnull String value, @Nonnull double[] out, int offset, int expected) {
+		checkCount(value, expected, "GL");
+		int start = 0;
+		for (int i = 0; i < expected; i++) {
+			int end = value.indexOf(',', start);
+			if (end < 0) {
+				end = value.length();
+			}
+			String element = value.substring(start, end);
+			try {
+				out[offset + i] = element.equals(".")? Double.NaN : Double.parseDouble(element);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("GL value " + element + " is not a number", e);
+			}
+			start = end + 1;
+		}
+	}
+
+	private static void parsePl(@Nonnull String value, @Nonnull int[] out, int offset, int expected) {
+		checkCount(value, expected, "PL");
+		int start = 0;
+		for (int i = 0; i < expected; i++) {
+			int end = value.indexOf(',', start);
+			if (end < 0) {
+				end = value.length();
+			}
+			out[offset + i] = parseNonnegativeInt(value, start, end);
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Parses digits without a substring; returns {@link VcfTypedField#MISSING_INT} for {@code .}.
+	 */
+	private static int parseNonnegativeInt(@Nonnull String value, int start, int end) {
+		if (end - start == 1 && value.charAt(start) == '.') {
+			return VcfTypedField.MISSING_INT;
+		}
+		Preconditions.checkArgument(end > start && end - start < 10,
+				"PL value " + value.substring(start, end) + " is not a nonnegative integer");
+		int result = 0;
+		for (int i = start; i < end; i++) {
+			char c = value.charAt(i);
+			Preconditions.checkArgument(c >= '0' && c <= '9',
+					"PL value " + value.substring(start, end) + " is not a nonnegative integer");
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	private static void checkCount(@Nonnull String value, int expected, @Nonnull String key) {
+		int count = countValues(value);
+		Preconditions.checkArgument(count == expected, "Expected " + expected + " " + key + " values but got " + count);
 	}
 
 	@Override
 	public String toString() {
 		return "GenotypeLikelihoods{" +
 				"position=" + m_position +
+				", ordering=" + m_ordering +
 				'}';
 	}
 }
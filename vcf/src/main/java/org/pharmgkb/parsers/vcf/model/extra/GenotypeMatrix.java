@@ -0,0 +1,159 @@
+package org.pharmgkb.parsers.vcf.model.extra;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import org.pharmgkb.parsers.ObjectBuilder;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * The {@link PackedGenotypes} of many positions for the same samples, with per-position and per-sample counts.
+ * Example:
+ * <code>
+ *     GenotypeMatrix.Builder builder = new GenotypeMatrix.Builder(metadata.getSampleNames().size());
+ *     new VcfDataParser().forEach(file, record -&gt; builder.add(record.getPackedGenotypes()));
+ *     double[] callRates = builder.build().getSampleCallRates();
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@Immutable
+public class GenotypeMatrix {
+
+	private final int m_nSamples;
+	private final ImmutableList<PackedGenotypes> m_rows;
+
+	private GenotypeMatrix(@Nonnull Builder builder) {
+		m_nSamples = builder.m_nSamples;
+		m_rows = builder.m_rows.build();
+	}
+
+	@Nonnegative
+	public int getNSamples() {
+		return m_nSamples;
+	}
+
+	@Nonnegative
+	public int getNPositions() {
+		return m_rows.size();
+	}
+
+	@Nonnull
+	public PackedGenotypes getRow(@Nonnegative int position) {
+		return m_rows.get(position);
+	}
+
+	@Nonnull
+	public ImmutableList<PackedGenotypes> getRows() {
+		return m_rows;
+	}
+
+	/**
+	 * @return {@link PackedGenotypes#getAltAlleleFrequency()} for each position
+	 */
+	@Nonnull
+	public double[] getAltAlleleFrequencies() {
+		return m_rows.stream().mapToDouble(PackedGenotypes::getAltAlleleFrequency).toArray();
+	}
+
+	/**
+	 * @return {@link PackedGenotypes#getCallRate()} for each position
+	 */
+	@Nonnull
+	public double[] getPositionCallRates() {
+		return m_rows.stream().mapToDouble(PackedGenotypes::getCallRate).toArray();
+	}
+
+	/**
+	 * @return For each sample, the number of positions where it was called
+	 */
+	@Nonnull
+	public int[] getSampleNCalled() {
+		int[] nCalled = new int[m_nSamples];
+		for (PackedGenotypes row : m_rows) {
+			for (int w = 0; w < (m_nSamples + 63) >>> 6; w++) {
+				long called = ~row.getMissingWord(w);
+				while (called != 0) {
+					int sample = (w << 6) + Long.numberOfTrailingZeros(called);
+					if (sample >= m_nSamples) {
+						break;
+					}
+					nCalled[sample]++;
+					called &= called - 1;
+				}
+			}
+		}
+		return nCalled;
+	}
+
+	/**
+	 * @return For each sample, the fraction of positions where it was called, or NaN if there are no positions
+	 */
+	@Nonnull
+	public double[] getSampleCallRates() {
+		int[] nCalled = getSampleNCalled();
+		double[] rates = new double[m_nSamples];
+		for (int i = 0; i < m_nSamples; i++) {
+			rates[i] = m_rows.isEmpty()? Double.NaN : (double) nCalled[i] / m_rows.size();
+		}
+		return rates;
+	}
+
+	/**
+	 * @return For each sample, the number of positions where it is heterozygous
+	 */
+	@Nonnull
+	public int[] getSampleNHeterozygous() {
+		int[] nHet = new int[m_nSamples];
+		for (PackedGenotypes row : m_rows) {
+			for (int w = 0; w < (m_nSamples + 31) >>> 5; w++) {
+				long het = row.getCallWord(w) & 0x5555555555555555L;
+				while (het != 0) {
+					nHet[(w << 5) + (Long.numberOfTrailingZeros(het) >>> 1)]++;
+					het &= het - 1;
+				}
+			}
+		}
+		return nHet;
+	}
+
+	@Override
+	public String toString() {
+		return "GenotypeMatrix{" +
+				"nSamples=" + m_nSamples +
+				", nPositions=" + m_rows.size() +
+				'}';
+	}
+
+	@NotThreadSafe
+	public static class Builder implements ObjectBuilder<GenotypeMatrix> {
+
+		private final int m_nSamples;
+		private final ImmutableList.Builder<PackedGenotypes> m_rows = ImmutableList.builder();
+
+		public Builder(@Nonnegative int nSamples) {
+			Preconditions.checkArgument(nSamples >= 0, "Number of samples must be nonnegative");
+			m_nSamples = nSamples;
+		}
+
+		/**
+		 * @throws IllegalArgumentException If {@code row} has a different number of samples
+		 */
+		@Nonnull
+		public Builder add(@Nonnull PackedGenotypes row) {
+			Preconditions.checkNotNull(row, "Row cannot be null");
+			Preconditions.checkArgument(row.getNSamples() == m_nSamples, "Row has " + row.getNSamples()
+					+ " samples instead of " + m_nSamples);
+			m_rows.add(row);
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public GenotypeMatrix build() {
+			return new GenotypeMatrix(this);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package org.pharmgkb.parsers.vcf.model.extra;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The order of genotypes in Number=G values such as {@code GL} and {@code PL}, as given in the VCF specification:
+ * each genotype is a multiset of allele indices, and for diploids genotype {@code j/k} (with {@code j <= k}) is at
+ * {@code k(k+1)/2 + j}. Orderings are built once per (ploidy, number of alleles) and shared; get them with {@link #of}.
+ * Example:
+ * <code>
+ *     GenotypeOrdering ordering = GenotypeOrdering.of(2, position.getAllAlleles().size());
+ *     int het = ordering.indexOf(0, 1); // 1
+ *     int[] alleles = ordering.getAlleles(3); // [0, 2]
+ * </code>
+ * @author Douglas Myers-Turnbull
+ */
+@Immutable
+public final class GenotypeOrdering {
+
+	private static final ConcurrentMap<Long, GenotypeOrdering> sf_cache = new ConcurrentHashMap<>();
+
+	private final int m_ploidy;
+	private final int m_nAlleles;
+	private final int[] m_alleles; // ploidy per genotype, ascending within each genotype
+
+	// m_offsets[k][a] is C(a + k, k + 1), the contribution of allele a as the (k+1)th smallest copy
+	private final int[][] m_offsets;
+
+	/**
+	 * @throws IllegalArgumentException If {@code ploidy} or {@code nAlleles} is less than 1, or if there are more
+	 *         genotypes than fit in an array
+	 */
+	@Nonnull
+	public static GenotypeOrdering of(@Nonnegative int ploidy, @Nonnegative int nAlleles) {
+		Preconditions.checkArgument(ploidy > 0, "Ploidy must be positive");
+		Preconditions.checkArgument(nAlleles > 0, "Number of alleles must be positive");
+		return sf_cache.computeIfAbsent((long) ploidy << 32 | nAlleles, k -> new GenotypeOrdering(ploidy, nAlleles));
+	}
+
+	/**
+	 * @return The number of genotypes, which is C(nAlleles + ploidy - 1, ploidy)
+	 * @throws IllegalArgumentException If the count does not fit in an int
+	 */
+	@Nonnegative
+	public static int nGenotypes(@Nonnegative int ploidy, @Nonnegative int nAlleles) {
+		long count = 1;
+		for (int k = 1; k <= ploidy; k++) {
+			count = count * (nAlleles + k - 1) / k;
+			Preconditions.checkArgument(count <= Integer.MAX_VALUE,
+					"Too many genotypes for ploidy " + ploidy + " and " + nAlleles + " alleles");
+		}
+		return (int) count;
+	}
+
+	private GenotypeOrdering(int ploidy, int nAlleles) {
+		m_ploidy = ploidy;
+		m_nAlleles = nAlleles;
+		int size = nGenotypes(ploidy, nAlleles);
+		Preconditions.checkArgument((long) size * ploidy <= Integer.MAX_VALUE,
+				"Too many genotypes for ploidy " + ploidy + " and " + nAlleles + " alleles");
+		m_offsets = new int[ploidy][nAlleles];
+		for (int k = 0; k < ploidy; k++) {
+			for (int a = 0; a < nAlleles; a++) {
+				m_offsets[k][a] = (int) binomial(a + k, k + 1);
+			}
+		}
+		// genotypes are in colexicographic order of their ascending allele indices
+		m_alleles = new int[size * ploidy];
+		int[] current = new int[ploidy];
+		for (int g = 0; g < size; g++) {
+			System.arraycopy(current, 0, m_alleles, g * ploidy, ploidy);
+			int k = 0;
+			while (k < ploidy - 1 && current[k] == current[k + 1]) {
+				k++;
+			}
+			current[k]++;
+			Arrays.fill(current, 0, k, 0);
+		}
+	}
+
+	private static long binomial(int n, int k) {
+		if (k > n) {
+			return 0;
+		}
+		long result = 1;
+		for (int i = 1; i <= k; i++) {
+			result = result * (n - k + i) / i;
+		}
+		return result;
+	}
+
+	@Nonnegative
+	public int ploidy() {
+		return m_ploidy;
+	}
+
+	@Nonnegative
+	public int nAlleles() {
+		return m_nAlleles;
+	}
+
+	/**
+	 * @return The number of genotypes
+	 */
+	@Nonnegative
+	public int size() {
+		return m_alleles.length / m_ploidy;
+	}
+
+	/**
+	 * @param copy From 0 to ploidy - 1; the alleles of each genotype are in ascending order
+	 * @return The index in REF and ALT of the {@code copy}th allele of the {@code genotype}th genotype
+	 */
+	@Nonnegative
+	public int getAllele(@Nonnegative int genotype, @Nonnegative int copy) {
+		Preconditions.checkElementIndex(copy, m_ploidy, "Allele copy");
+		Preconditions.checkElementIndex(genotype, size(), "Genotype");
+		return m_alleles[genotype * m_ploidy + copy];
+	}
+
+	/**
+	 * @return A new array of the allele indices of the {@code genotype}th genotype, in ascending order
+	 */
+	@Nonnull
+	public int[] getAlleles(@Nonnegative int genotype) {
+		Preconditions.checkElementIndex(genotype, size(), "Genotype");
+		return Arrays.copyOfRange(m_alleles, genotype * m_ploidy, (genotype + 1) * m_ploidy);
+	}
+
+	/**
+	 * @param alleles Indices in REF and ALT, in any order
+	 * @return The index of the genotype with exactly these alleles
+	 * @throws IllegalArgumentException If the number of alleles is not the ploidy or an index is out of range
+	 */
+	@Nonnegative
+	public int indexOf(@Nonnull int... alleles) {
+		Preconditions.checkArgument(alleles.length == m_ploidy,
+				"Expected " + m_ploidy + " alleles but got " + alleles.length);
+		for (int allele : alleles) {
+			Preconditions.checkArgument(allele > -1 && allele < m_nAlleles,
+					"Allele index " + allele + " is out of range (0 to " + m_nAlleles + ")");
+		}
+		if (m_ploidy == 2) {
+			int j = Math.min(alleles[0], alleles[1]);
+			int k = Math.max(alleles[0], alleles[1]);
+			return m_offsets[1][k] + j;
+		}
+		int[] sorted = alleles.clone();
+		Arrays.sort(sorted);
+		int index = 0;
+		for (int k = 0; k < m_ploidy; k++) {
+			index += m_offsets[k][sorted[k]];
+		}
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return "GenotypeOrdering{" +
+				"ploidy=" + m_ploidy +
+				", nAlleles=" + m_nAlleles +
+				'}';
+	}
+}
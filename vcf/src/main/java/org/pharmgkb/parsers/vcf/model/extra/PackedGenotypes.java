@@ -0,0 +1,307 @@
+package org.pharmgkb.parsers.vcf.model.extra;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.parsers.ObjectBuilder;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The diploid genotype calls of every sample at one position, packed into 2 bits per call plus bitsets for missing
+ * and phased calls. Counts over all samples use {@link Long#bitCount(long)} on 32 calls at a time.
+ * Each call is stored as its number of non-reference alleles: 0 (homozygous reference), 1 (heterozygous), or 2.
+ * At multiallelic sites, every ALT allele counts, so {@code 1/2} is stored as 2 and {@code 0/2} as 1.
+ * A call is missing if either allele is {@code .}, if the sample has no GT value, or if the call is not diploid.
+ * Example:
+ * <code>
+ *     PackedGenotypes genotypes = record.getPackedGenotypes(); // from a MutableVcfPosition
+ *     double frequency = genotypes.getAltAlleleFrequency();
+ * </code>
+ * @author Douglas Myers-Turnbull
+ * @see GenotypeMatrix
+ */
+@Immutable
+public class PackedGenotypes {
+
+	private static final long sf_lowBits = 0x5555555555555555L;
+
+	private final int m_nSamples;
+	private final long[] m_calls; // 32 per word
+	private final long[] m_missing; // 64 per word
+	private final long[] m_phased; // 64 per word
+
+	private PackedGenotypes(@Nonnull Builder builder) {
+		m_nSamples = builder.m_nSamples;
+		m_calls = builder.m_calls.clone();
+		m_missing = builder.m_missing.clone();
+		m_phased = builder.m_phased.clone();
+	}
+
+	/**
+	 * Reads the GT values of {@code position} without building {@link VcfGenotype VcfGenotypes}.
+	 */
+	@Nonnull
+	public static PackedGenotypes of(@Nonnull VcfPosition position) {
+		Preconditions.checkNotNull(position, "VcfPosition cannot be null");
+		Builder builder = new Builder(position.getNSamples());
+		for (int i = 0; i < position.getNSamples(); i++) {
+			Optional<String> gt = position.getSample(i).get(ReservedFormatProperty.Genotype);
+			if (gt.isPresent()) {
+				builder.setCall(i, gt.get(), 0, gt.get().length());
+			}
+		}
+		return builder.build();
+	}
+
+	@Nonnegative
+	public int getNSamples() {
+		return m_nSamples;
+	}
+
+	/**
+	 * @return The number of non-reference alleles in the call: 0, 1, or 2; or -1 if it is missing
+	 */
+	public int getAltCount(@Nonnegative int sample) {
+		checkSample(sample);
+		if (isMissing(sample)) {
+			return -1;
+		}
+		return (int) (m_calls[sample >>> 5] >>> ((sample & 31) << 1)) & 3;
+	}
+
+	public boolean isMissing(@Nonnegative int sample) {
+		checkSample(sample);
+		return (m_missing[sample >>> 6] & 1L << sample) != 0;
+	}
+
+	public boolean isPhased(@Nonnegative int sample) {
+		checkSample(sample);
+		return (m_phased[sample >>> 6] & 1L << sample) != 0;
+	}
+
+	@Nonnegative
+	public int getNMissing() {
+		int n = 0;
+		for (long word : m_missing) {
+			n += Long.bitCount(word);
+		}
+		return n;
+	}
+
+	@Nonnegative
+	public int getNCalled() {
+		return m_nSamples - getNMissing();
+	}
+
+	@Nonnegative
+	public int getNPhased() {
+		int n = 0;
+		for (long word : m_phased) {
+			n += Long.bitCount(word);
+		}
+		return n;
+	}
+
+	@Nonnegative
+	public int getNHeterozygous() {
+		int n = 0;
+		for (long word : m_calls) {
+			n += Long.bitCount(word & sf_lowBits);
+		}
+		return n;
+	}
+
+	@Nonnegative
+	public int getNHomozygousAlt() {
+		int n = 0;
+		for (long word : m_calls) {
+			n += Long.bitCount(word & ~sf_lowBits);
+		}
+		return n;
+	}
+
+	@Nonnegative
+	public int getNHomozygousRef() {
+		return getNCalled() - getNHeterozygous() - getNHomozygousAlt();
+	}
+
+	/**
+	 * @return The number of non-reference alleles over all called samples
+	 */
+	@Nonnegative
+	public int getNAltAlleles() {
+		int n = 0;
+		for (long word : m_calls) {
+			n += Long.bitCount(word & sf_lowBits) + 2 * Long.bitCount(word & ~sf_lowBits);
+		}
+		return n;
+	}
+
+	/**
+	 * @return The fraction of called alleles that are not reference, or NaN if no sample was called
+	 */
+	public double getAltAlleleFrequency() {
+		int nCalled = getNCalled();
+		return nCalled == 0? Double.NaN : (double) getNAltAlleles() / (2 * nCalled);
+	}
+
+	/**
+	 * @return The fraction of samples that were called, or NaN if there are no samples
+	 */
+	public double getCallRate() {
+		return m_nSamples == 0? Double.NaN : (double) getNCalled() / m_nSamples;
+	}
+
+	/**
+	 * For {@link GenotypeMatrix}.
+	 */
+	long getMissingWord(@Nonnegative int index) {
+		return m_missing[index];
+	}
+
+	/**
+	 * For {@link GenotypeMatrix}.
+	 */
+	long getCallWord(@Nonnegative int index) {
+		return m_calls[index];
+	}
+
+	private void checkSample(int sample) {
+		if (sample < 0 || sample >= m_nSamples) {
+			throw new IndexOutOfBoundsException("Sample " + sample + " does not exist; there are " + m_nSamples);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		PackedGenotypes that = (PackedGenotypes) o;
+		return m_nSamples == that.m_nSamples &&
+				Arrays.equals(m_calls, that.m_calls) &&
+				Arrays.equals(m_missing, that.m_missing) &&
+				Arrays.equals(m_phased, that.m_phased);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * Arrays.hashCode(m_calls) + Arrays.hashCode(m_missing)) + m_nSamples;
+	}
+
+	@Override
+	public String toString() {
+		return "PackedGenotypes{" +
+				"nSamples=" + m_nSamples +
+				", nCalled=" + getNCalled() +
+				", nHeterozygous=" + getNHeterozygous() +
+				", nHomozygousAlt=" + getNHomozygousAlt() +
+				'}';
+	}
+
+	/**
+	 * Starts with every sample missing.
+	 */
+	@NotThreadSafe
+	public static class Builder implements ObjectBuilder<PackedGenotypes> {
+
+		private final int m_nSamples;
+		private final long[] m_calls;
+		private final long[] m_missing;
+		private final long[] m_phased;
+
+		public Builder(@Nonnegative int nSamples) {
+			Preconditions.checkArgument(nSamples >= 0, "Number of samples must be nonnegative");
+			m_nSamples = nSamples;
+			m_calls = new long[(nSamples + 31) >>> 5];
+			m_missing = new long[(nSamples + 63) >>> 6];
+			m_phased = new long[m_missing.length];
+			Arrays.fill(m_missing, -1L);
+			if ((nSamples & 63) != 0) {
+				m_missing[m_missing.length - 1] = (1L << nSamples) - 1; // shift is mod 64
+			}
+		}
+
+		/**
+		 * @param altCount 0, 1, or 2
+		 */
+		@Nonnull
+		public Builder setCall(@Nonnegative int sample, @Nonnegative int altCount, boolean phased) {
+			Preconditions.checkElementIndex(sample, m_nSamples, "Sample");
+			Preconditions.checkArgument(altCount >= 0 && altCount <= 2, "Alt count must be 0, 1, or 2");
+			int shift = (sample & 31) << 1;
+			m_calls[sample >>> 5] = m_calls[sample >>> 5] & ~(3L << shift) | (long) altCount << shift;
+			m_missing[sample >>> 6] &= ~(1L << sample);
+			if (phased) {
+				m_phased[sample >>> 6] |= 1L << sample;
+			} else {
+				m_phased[sample >>> 6] &= ~(1L << sample);
+			}
+			return this;
+		}
+
+		@Nonnull
+		public Builder setMissing(@Nonnegative int sample) {
+			Preconditions.checkElementIndex(sample, m_nSamples, "Sample");
+			m_calls[sample >>> 5] &= ~(3L << ((sample & 31) << 1));
+			m_missing[sample >>> 6] |= 1L << sample;
+			m_phased[sample >>> 6] &= ~(1L << sample);
+			return this;
+		}
+
+		/**
+		 * Reads a GT value, such as {@code 0|1}, directly from {@code chars}, from {@code start} to {@code end}.
+		 * The value is not unescaped, since allele indices and separators never need escaping.
+		 * @throws IllegalArgumentException If the value is not a valid GT
+		 */
+		@Nonnull
+		public Builder setCall(@Nonnegative int sample, @Nonnull CharSequence chars, @Nonnegative int start, @Nonnegative int end) {
+			int nAlleles = 0;
+			int altCount = 0;
+			boolean missing = false;
+			boolean phased = false;
+			int i = start;
+			while (i < end) {
+				char c = chars.charAt(i);
+				if (c == '.') {
+					missing = true;
+					i++;
+				} else if (c >= '0' && c <= '9') {
+					boolean ref = true;
+					while (i < end && (c = chars.charAt(i)) >= '0' && c <= '9') {
+						ref &= c == '0';
+						i++;
+					}
+					if (!ref) {
+						altCount++;
+					}
+				} else {
+					throw new IllegalArgumentException("GT " + chars.subSequence(start, end) + " is invalid");
+				}
+				nAlleles++;
+				if (i < end) {
+					c = chars.charAt(i);
+					if (c != '/' && c != '|' || i + 1 == end) {
+						throw new IllegalArgumentException("GT " + chars.subSequence(start, end) + " is invalid");
+					}
+					phased = c == '|';
+					i++;
+				}
+			}
+			if (missing || nAlleles != 2) {
+				return setMissing(sample);
+			}
+			return setCall(sample, altCount, phased);
+		}
+
+		@Nonnull
+		@Override
+		public PackedGenotypes build() {
+			return new PackedGenotypes(this);
+		}
+	}
+}
@@ -15,7 +15,10 @@
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -26,6 +29,9 @@
  * {@code
  * VcfGenotype genotype = VcfGenotype.fromGtString(position, sample.get(ReservedFormatProperty.Genotype));
  * }
+ * {@code fromGtString} keeps a bounded cache of parsed GT strings like {@code 0/1} and {@code 1|1}, and each cached
+ * GT reuses its last genotype while the alleles are the same, so reading the genotypes of a large cohort at one
+ * position does not allocate per sample.
  * @author Douglas Myers-Turnbull
  */
 @Immutable
@@ -43,21 +49,33 @@ public class VcfGenotype {
 	public static Optional<VcfGenotype> fromGtString(@Nonnull VcfPosition position, @Nonnull Optional<String> gtString) {
 		Preconditions.checkNotNull(position, "VcfPosition cannot be null");
 		Preconditions.checkNotNull(gtString, "Genotype string cannot be null");
-		return gtString.map(gt -> new VcfGenotype.Builder(position, gt.contains("|"))
-				.addAlleles(gt)
-				.build()
-		);
+		return gtString.map(gt -> fromGtString(position, gt));
 	}
 
 	@Nonnull
 	public static VcfGenotype fromGtString(@Nonnull VcfPosition position, @Nonnull String gtString) {
 		Preconditions.checkNotNull(position, "VcfPosition cannot be null");
 		Preconditions.checkNotNull(gtString, "Genotype string cannot be null");
+		GtPattern pattern = GtPattern.of(gtString);
+		if (pattern != null) {
+			VcfGenotype genotype = pattern.genotype(position.getAllAlleles());
+			if (genotype != null) {
+				return genotype;
+			}
+		}
+		// uncached forms, and invalid strings so that they fail as before
 		return new VcfGenotype.Builder(position, gtString.contains("|"))
 				.addAlleles(gtString)
 				.build();
 	}
 
+	private VcfGenotype(@Nonnull ImmutableList<Optional<VcfAllele>> alleles, @Nonnull ImmutableList<Integer> indices,
+			boolean isPhased) {
+		m_alleles = alleles;
+		m_indices = indices;
+		m_isPhased = isPhased;
+	}
+
 	private VcfGenotype(@Nonnull Builder builder) {
 		m_isPhased = builder.m_isPhased;
 		m_alleles = ImmutableList.copyOf(builder.m_alleles);
@@ -314,4 +332,114 @@ public Builder addAlleles(@Nonnull String gtString) {
 		}
 	}
 
+	/**
+	 * A parsed GT string with at least two alleles, one kind of separator, and no missing alleles.
+	 * Other GT strings are parsed by {@link Builder#addAlleles(String)} every time.
+	 */
+	@ThreadSafe
+	private static final class GtPattern {
+
+		private static final int sf_maxCached = 4096;
+		private static final ConcurrentMap<String, GtPattern> sf_cache = new ConcurrentHashMap<>();
+
+		private final ImmutableList<Integer> m_indices;
+		private final int m_maxIndex;
+		private final boolean m_isPhased;
+
+		// the genotype for the most recent allele list, replaced as a unit
+		private volatile Last m_last;
+
+		private GtPattern(@Nonnull ImmutableList<Integer> indices, boolean isPhased) {
+			m_indices = indices;
+			m_maxIndex = indices.stream().mapToInt(Integer::intValue).max().orElse(0);
+			m_isPhased = isPhased;
+		}
+
+		/**
+		 * @return Null if {@code gt} is not in the cached form
+		 */
+		@Nullable
+		static GtPattern of(@Nonnull String gt) {
+			GtPattern pattern = sf_cache.get(gt);
+			if (pattern == null) {
+				pattern = parse(gt);
+				if (pattern != null && sf_cache.size() < sf_maxCached) {
+					sf_cache.putIfAbsent(gt, pattern);
+				}
+			}
+			return pattern;
+		}
+
+		@Nullable
+		private static GtPattern parse(@Nonnull String gt) {
+			char separator = 0;
+			List<Integer> indices = new ArrayList<>(2);
+			int value = 0;
+			int nDigits = 0;
+			for (int i = 0; i <= gt.length(); i++) {
+				char c = i == gt.length()? 0 : gt.charAt(i);
+				if (c >= '0' && c <= '9') {
+					if (++nDigits > 6) {
+						return null;
+					}
+					value = value * 10 + (c - '0');
+				} else if (c == 0 || c == '/' || c == '|') {
+					if (nDigits == 0 || c != 0 && separator != 0 && c != separator) {
+						return null;
+					}
+					if (c != 0) {
+						separator = c;
+					}
+					indices.add(value);
+					value = 0;
+					nDigits = 0;
+				} else {
+					return null;
+				}
+			}
+			if (separator == 0) {
+				return null;
+			}
+			return new GtPattern(ImmutableList.copyOf(indices), separator == '|');
+		}
+
+		/**
+		 * @return Null if an index is out of range for {@code alleles}
+		 */
+		@Nullable
+		VcfGenotype genotype(@Nonnull ImmutableList<VcfAllele> alleles) {
+			if (m_maxIndex >= alleles.size()) {
+				return null;
+			}
+			Last last = m_last;
+			if (last != null && (last.alleles == alleles || last.alleles.equals(alleles))) {
+				return last.genotype;
+			}
+			ImmutableList.Builder<Optional<VcfAllele>> builder = ImmutableList.builderWithExpectedSize(m_indices.size());
+			for (int index : m_indices) {
+				builder.add(Optional.of(alleles.get(index)));
+			}
+			VcfGenotype genotype = new VcfGenotype(builder.build(), m_indices, m_isPhased);
+			m_last = new Last(alleles, genotype);
+			return genotype;
+		}
+
+		private static final class Last {
+			private final ImmutableList<VcfAllele> alleles;
+			private final VcfGenotype genotype;
+			private Last(@Nonnull ImmutableList<VcfAllele> alleles, @Nonnull VcfGenotype genotype) {
+				this.alleles = alleles;
+				this.genotype = genotype;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "GtPattern{" +
+					"indices=" + m_indices +
+					", isPhased=" + m_isPhased +
+					'}';
+		}
+	}
+
 }
@@ -7,6 +7,7 @@
 
 /**
  * Converts a VCF ALT allele string to the appropriate subclass of {@link VcfAllele}.
+ * Single bases, {@code *}, and common symbolic alleles like {@code <DEL>} and {@code <NON_REF>} are shared instances.
  * @author Douglas Myers-Turnbull
  */
 public class VcfAlleleFactory {
@@ -16,14 +17,17 @@ private VcfAlleleFactory() {}
 	@Nonnull
 	public static VcfAllele translate(@Nonnull String string) {
 		Preconditions.checkNotNull(string, "Allele string cannot be null");
-		if (string.startsWith("[") || string.startsWith("]")) {
-			return VcfBreakpointAllele.fromVcfAlt(string);
-		}
-		if (string.startsWith("<")) {
-			return VcfSymbolicAllele.fromVcfAlt(string);
-		}
-		if (string.equals("*")) {
-			return VcfDeletedAllele.DELETED;
+		switch (string.isEmpty()? '\0' : string.charAt(0)) {
+			case '[':
+			case ']':
+				return VcfBreakpointAllele.fromVcfAlt(string);
+			case '<':
+				return VcfSymbolicAllele.fromVcfAlt(string);
+			case '*':
+				if (string.length() == 1) {
+					return VcfDeletedAllele.DELETED;
+				}
+				break;
 		}
 		return VcfBasesAllele.fromVcf(string);
 	}
@@ -0,0 +1,98 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link BcfWriter} and {@link BcfReader}.
+ * @author Douglas Myers-Turnbull
+ */
+public class BcfTest {
+
+	private VcfMetadataCollection metadata() throws Exception {
+		try (Stream<String> lines = Files.lines(file())) {
+			return new VcfMetadataParser().apply(lines);
+		}
+	}
+
+	private Path file() throws Exception {
+		return Paths.get(getClass().getResource("example.vcf").toURI());
+	}
+
+	private byte[] write(boolean compress) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BcfWriter.Builder builder = new BcfWriter.Builder(out, metadata());
+		if (!compress) {
+			builder.uncompressed();
+		}
+		try (BcfWriter writer = builder.build()) {
+			new VcfDataParser().parseAll(Files.lines(file())).forEach(writer::write);
+			assertEquals(5, writer.nRecordsWritten());
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		List<VcfPosition> expected = new VcfDataParser().collectAll(file());
+		for (boolean compress : new boolean[] {true, false}) {
+			try (BcfReader reader = new BcfReader.Builder(new ByteArrayInputStream(write(compress))).build()) {
+				assertEquals(metadata().getLines(), reader.getMetadata().getLines());
+				assertEquals(expected, reader.stream().collect(Collectors.toList()));
+				assertFalse(reader.hasNext());
+			}
+		}
+	}
+
+	@Test
+	public void testDeferred() throws Exception {
+		List<VcfPosition> expected = new VcfDataParser().collectAll(file());
+		try (BcfReader reader = new BcfReader.Builder(new ByteArrayInputStream(write(true))).deferColumns().build()) {
+			List<VcfPosition> positions = reader.stream().collect(Collectors.toList());
+			assertEquals(expected.get(2).getSample(1), positions.get(2).getSample(1));
+			assertEquals(expected, positions);
+		}
+	}
+
+	@Test
+	public void testProjection() throws Exception {
+		List<VcfPosition> expected = new VcfDataParser().collectAll(file());
+		try (BcfReader reader = new BcfReader.Builder(new ByteArrayInputStream(write(true))).siteOnly().keepInfoKeys(List.of("DP")).build()) {
+			List<VcfPosition> positions = reader.stream().collect(Collectors.toList());
+			assertEquals(5, positions.size());
+			assertTrue(positions.get(0).getFormat().isEmpty());
+			assertEquals(0, positions.get(0).getNSamples());
+			assertEquals(List.of("DP"), List.copyOf(positions.get(0).getInfo().keySet()));
+			assertEquals(expected.get(4).getRef(), positions.get(4).getRef());
+			assertEquals(expected.get(4).getAlts(), positions.get(4).getAlts());
+		}
+		try (BcfReader reader = new BcfReader.Builder(new ByteArrayInputStream(write(true))).keepSampleNames(List.of("NA00003")).build()) {
+			VcfPosition position = reader.next();
+			assertEquals(1, position.getNSamples());
+			assertEquals(expected.get(0).getSample(2), position.getSample(0));
+		}
+	}
+
+	@Test
+	public void testUndeclaredContig() throws Exception {
+		try (BcfWriter writer = new BcfWriter.Builder(new ByteArrayOutputStream(), metadata()).build()) {
+			VcfPosition position = new VcfPosition.Builder("21", 10, "A").build();
+			assertThrows(IllegalArgumentException.class, () -> writer.write(position));
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link LazyVcfColumns} through {@link VcfDataParser.Builder#deferColumns()}.
+ * @author Douglas Myers-Turnbull
+ */
+public class LazyVcfColumnsTest {
+
+	@Test
+	public void testSameAsEager() throws Exception {
+		Path file = Paths.get(getClass().getResource("example.vcf").toURI());
+		List<VcfPosition> eager = new VcfDataParser().collectAll(file);
+		List<VcfPosition> lazy = new VcfDataParser.Builder().deferColumns().build().collectAll(file);
+		assertEquals(eager, lazy);
+		for (int i = 0; i < eager.size(); i++) {
+			assertEquals(eager.get(i).getInfo(), lazy.get(i).getInfo());
+			assertEquals(eager.get(i).getNSamples(), lazy.get(i).getNSamples());
+			assertEquals(eager.get(i).getGenotypes(), lazy.get(i).getGenotypes());
+		}
+	}
+
+	@Test
+	public void testSingleSample() {
+		VcfPosition position = new VcfDataParser.Builder().deferColumns().build()
+				.apply("20\t14370\trs6054257\tG\tA\t29\tPASS\tNS=3;DB\tGT:GQ\t0|0:48\t1|0:17\tnot:enough:values");
+		assertEquals(3, position.getNSamples());
+		assertEquals(Optional.of("17"), position.getSample(1).get("GQ"));
+		assertEquals(List.of("GT", "GQ"), position.getFormat());
+		assertThrows(BadDataFormatException.class, () -> position.getSample(2));
+		assertThrows(BadDataFormatException.class, position::getSamples);
+	}
+
+	@Test
+	public void testNoFormat() {
+		VcfPosition position = new VcfDataParser.Builder().deferColumns().build()
+				.apply("20\t14370\t.\tG\tA\t.\t.\t.");
+		assertEquals(0, position.getNSamples());
+		assertEquals(List.of(), position.getFormat());
+		assertEquals(0, position.getInfo().size());
+		assertEquals(new VcfDataParser().apply("20\t14370\t.\tG\tA\t.\t.\t."), position);
+	}
+}
@@ -0,0 +1,62 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link MutableVcfPosition}.
+ * @author Douglas Myers-Turnbull
+ */
+public class MutableVcfPositionTest {
+
+	@Test
+	public void testFreeze() throws Exception {
+		Path file = Paths.get(getClass().getResource("example.vcf").toURI());
+		List<VcfPosition> expected = new VcfDataParser().collectAll(file);
+		List<VcfPosition> frozen = new ArrayList<>();
+		new VcfDataParser().forEach(file, position -> frozen.add(position.freeze()));
+		assertEquals(expected, frozen);
+	}
+
+	@Test
+	public void testFields() {
+		VcfDataParser parser = new VcfDataParser();
+		MutableVcfPosition position = parser.newRecord();
+		parser.parseInto("20\t1110696\trs6040355\tA\tG,T\t67\tPASS\tNS=2;DP=10;AF=0.333,0.667;AA=T;DB\tGT:GQ:DP:HQ\t1|2:21:6:23,27\t2|1:2:0:18,2", position);
+		assertEquals("20", position.getChromosome());
+		assertEquals(1110695, position.getPosition());
+		assertEquals(Collections.singletonList("rs6040355"), position.getIds());
+		assertEquals("A", position.getRef());
+		assertEquals(Arrays.asList("G", "T"), position.getAlts());
+		assertEquals(67, position.getQuality(), 0);
+		assertTrue(position.isPass());
+		assertTrue(position.hasInfo("DB"));
+		assertFalse(position.hasInfo("D"));
+		assertEquals(Arrays.asList("0.333", "0.667"), position.getInfo("AF"));
+		assertEquals(Collections.singletonList(""), position.getInfo("DB"));
+		assertEquals(2, position.getNSamples());
+		assertEquals(Optional.of("2|1"), position.getSampleValue(1, "GT"));
+		assertEquals(Optional.of("23,27"), position.getSampleValue(0, "HQ"));
+		assertEquals(Optional.empty(), position.getSampleValue(0, "XX"));
+		parser.parseInto("20\t17330\t.\tT\tA\t.\tq10\t.", position);
+		assertEquals(17329, position.getPosition());
+		assertEquals(Collections.emptyList(), position.getIds());
+		assertFalse(position.hasQuality());
+		assertFalse(position.isPass());
+		assertEquals(Collections.singletonList("q10"), position.getFilters());
+		assertFalse(position.hasInfo("NS"));
+		assertEquals(0, position.getNSamples());
+	}
+}
@@ -0,0 +1,146 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.utils.BgzfOutputStream;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link VcfConcatenator}.
+ * @author Douglas Myers-Turnbull
+ */
+public class VcfConcatenatorTest {
+
+	private static final String sf_header = "##fileformat=VCFv4.2\n"
+			+ "##contig=<ID=chr1,length=100000>\n"
+			+ "##contig=<ID=chr2,length=100000>\n"
+			+ "##INFO=<ID=DP,Number=1,Type=Integer,Description=\"Depth\">\n";
+	private static final String sf_columns = "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tS1\n";
+
+	private static String data(String contig, int from, int to) {
+		StringBuilder sb = new StringBuilder();
+		for (int pos = from; pos < to; pos++) {
+			sb.append(contig).append('\t').append(pos).append("\t.\tA\tG\t50\tPASS\tDP=").append(pos).append("\tGT\t0/1\n");
+		}
+		return sb.toString();
+	}
+
+	private static Path plain(String text) throws Exception {
+		Path file = Files.createTempFile("concat", ".vcf");
+		file.toFile().deleteOnExit();
+		Files.writeString(file, text);
+		return file;
+	}
+
+	private static Path bgzf(String text) throws Exception {
+		Path file = Files.createTempFile("concat", ".vcf.gz");
+		file.toFile().deleteOnExit();
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		try (OutputStream out = new BgzfOutputStream(Files.newOutputStream(file))) {
+			for (int i = 0; i < bytes.length; i += 700) { // so that the header ends inside a block
+				out.write(bytes, i, Math.min(700, bytes.length - i));
+				out.flush();
+			}
+		}
+		return file;
+	}
+
+	private static List<String> inputs() {
+		String chr1 = data("chr1", 1, 400);
+		String chr2 = data("chr2", 1, 300);
+		return List.of(
+				sf_header + sf_columns + chr1,
+				sf_header + sf_columns, // no positions
+				sf_header + "##INFO=<ID=AF,Number=A,Type=Float,Description=\"Frequency\">\n" + sf_columns
+						+ chr2.substring(0, chr2.length() - 1) // no final newline
+		);
+	}
+
+	private static String expectedData() {
+		return data("chr1", 1, 400) + data("chr2", 1, 300);
+	}
+
+	@Test
+	public void testPlain() throws Exception {
+		VcfConcatenator.Builder builder = new VcfConcatenator.Builder();
+		for (String text : inputs()) {
+			builder.add(plain(text));
+		}
+		VcfConcatenator concatenator = builder.build();
+		assertTrue(concatenator.getMetadata().getInfo().containsKey("AF"));
+		Path output = plain("");
+		concatenator.write(output);
+		String text = Files.readString(output);
+		assertTrue(text.startsWith("##fileformat=VCFv4.2\n"), text);
+		assertTrue(text.contains("##INFO=<ID=AF"));
+		assertTrue(text.endsWith(sf_columns + expectedData()));
+		assertEquals(399 + 299, new VcfDataParser().collectAll(output).size());
+	}
+
+	@Test
+	public void testBgzf() throws Exception {
+		VcfConcatenator.Builder builder = new VcfConcatenator.Builder();
+		for (String text : inputs()) {
+			builder.add(bgzf(text));
+		}
+		VcfConcatenator concatenator = builder.build();
+		assertTrue(concatenator.isBgzf());
+		Path output = plain("");
+		concatenator.write(output);
+		byte[] compressed = Files.readAllBytes(output);
+		assertArrayEquals(BgzfOutputStream.EOF_BLOCK, Arrays.copyOfRange(compressed, compressed.length - 28, compressed.length));
+		String text;
+		try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(output))) {
+			text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		assertTrue(text.endsWith(sf_columns + expectedData()));
+		List<String> lines = text.lines().collect(Collectors.toList());
+		assertEquals(399 + 299, lines.stream().filter(line -> !line.startsWith("#")).count());
+	}
+
+	@Test
+	public void testIncompatible() throws Exception {
+		Path chr1 = plain(sf_header + sf_columns + data("chr1", 1, 10));
+		Path chr2 = plain(sf_header + sf_columns + data("chr2", 1, 10));
+		assertThrows(BadDataFormatException.class, () -> new VcfConcatenator.Builder().add(chr2).add(chr1).build());
+		new VcfConcatenator.Builder().add(chr2).add(chr1).setCheckOrder(false).build();
+		Path overlapping = plain(sf_header + sf_columns + data("chr1", 5, 20));
+		assertThrows(BadDataFormatException.class, () -> new VcfConcatenator.Builder().add(chr1).add(overlapping).build());
+		Path otherSamples = plain(sf_header + sf_columns.replace("S1", "S2") + data("chr2", 1, 10));
+		assertThrows(IllegalArgumentException.class, () -> new VcfConcatenator.Builder().add(chr1).add(otherSamples).build());
+		Path otherType = plain(sf_header.replace("Integer", "Float") + sf_columns + data("chr2", 1, 10));
+		assertThrows(IllegalArgumentException.class, () -> new VcfConcatenator.Builder().add(chr1).add(otherType).build());
+		Path compressed = bgzf(sf_header + sf_columns + data("chr2", 1, 10));
+		assertThrows(IllegalArgumentException.class, () -> new VcfConcatenator.Builder().add(chr1).add(compressed).build());
+	}
+
+	/**
+	 * Tests the order check for contigs without ##contig lines.
+	 */
+	@Test
+	public void testUndeclaredContigs() throws Exception {
+		Path chr1 = plain(sf_header + sf_columns + data("chr1", 1, 10));
+		Path chrX = plain(sf_header + sf_columns + data("chrX", 1, 10));
+		Path chrY = plain(sf_header + sf_columns + data("chrY", 1, 10));
+		new VcfConcatenator.Builder().add(chr1).add(chrX).add(chrY).build();
+		new VcfConcatenator.Builder().add(chrY).add(chrX).build(); // their order is unknown
+		Path chr1Again = plain(sf_header + sf_columns + data("chr1", 20, 30));
+		assertThrows(BadDataFormatException.class, () -> new VcfConcatenator.Builder().add(chr1).add(chrX).add(chr1Again).build());
+		Path chrXAgain = plain(sf_header + sf_columns + data("chrX", 20, 30));
+		assertThrows(BadDataFormatException.class, () -> new VcfConcatenator.Builder().add(chrX).add(chrY).add(chrXAgain).build());
+		new VcfConcatenator.Builder().add(chrX).add(chrXAgain).build();
+	}
+}
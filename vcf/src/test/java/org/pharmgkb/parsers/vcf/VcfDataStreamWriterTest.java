@@ -0,0 +1,91 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link VcfDataStreamWriter} and {@link VcfLineBuffer}.
+ * @author Douglas Myers-Turnbull
+ */
+public class VcfDataStreamWriterTest {
+
+	private Path file() throws Exception {
+		return Paths.get(getClass().getResource("example.vcf").toURI());
+	}
+
+	private String write(List<VcfPosition> positions, int bufferSize) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (VcfDataStreamWriter writer = new VcfDataStreamWriter.Builder(out).setBufferSize(bufferSize).build()) {
+			writer.writeAll(positions.stream());
+			assertEquals(positions.size(), writer.nLinesWritten());
+		}
+		return out.toString(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testSameAsDataWriter() throws Exception {
+		List<VcfPosition> positions = new VcfDataParser().collectAll(file());
+		String expected = positions.stream()
+				.map(new VcfDataWriter())
+				.map(line -> line + "\n")
+				.collect(Collectors.joining());
+		for (int bufferSize : new int[] {1, 100, 64 * 1024}) {
+			assertEquals(expected, write(positions, bufferSize));
+		}
+	}
+
+	@Test
+	public void testSourceLine() throws Exception {
+		String line = "20\t14370\trs1;rs2\tG\tA\t29.0\tPASS\t.\tGT\t0|0";
+		VcfPosition position = new VcfDataParser.Builder().deferColumns().build().apply(line);
+		assertEquals(line + "\n", write(List.of(position), 1024));
+		assertEquals(line, new VcfDataWriter().apply(position));
+	}
+
+	@Test
+	public void testEscaping() throws Exception {
+		VcfPosition position = new VcfPosition.Builder("1", 9, "A")
+				.addId("rs1")
+				.putInfo("NOTE", "a;b")
+				.putInfo("X", "é")
+				.build();
+		String line = "1\t10\trs1\tA\t.\t.\t.\tNOTE=a%3bb;X=é";
+		assertEquals(line + "\n", write(List.of(position), 1024));
+		assertEquals(line, new VcfDataWriter().apply(position));
+	}
+
+	@Test
+	public void testMetadata() throws Exception {
+		VcfMetadataCollection metadata;
+		try (Stream<String> lines = Files.lines(file())) {
+			metadata = new VcfMetadataParser().apply(lines);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (VcfDataStreamWriter writer = new VcfDataStreamWriter.Builder(out).setMetadata(metadata).build()) {
+			new VcfDataParser.Builder().deferColumns().build().parseAll(Files.lines(file())).forEach(writer::write);
+		}
+		assertEquals(Files.readString(file()), out.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testAppendLong() {
+		VcfLineBuffer buffer = new VcfLineBuffer(0);
+		for (long value : new long[] {0, 7, -7, 10, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+			buffer.clear();
+			buffer.appendLong(value);
+			assertEquals(Long.toString(value), buffer.asString());
+		}
+	}
+}
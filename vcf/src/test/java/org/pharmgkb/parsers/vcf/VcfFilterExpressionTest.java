@@ -0,0 +1,105 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.ErrorPolicy;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link VcfFilterExpression}.
+ * @author Douglas Myers-Turnbull
+ */
+public class VcfFilterExpressionTest {
+
+	private static final VcfMetadataCollection sf_metadata = new VcfMetadataParser().apply(Stream.of(
+			"##fileformat=VCFv4.2",
+			"##INFO=<ID=DP,Number=1,Type=Integer,Description=\"Depth\">",
+			"##INFO=<ID=AF,Number=A,Type=Float,Description=\"Allele frequency\">",
+			"##INFO=<ID=DB,Number=0,Type=Flag,Description=\"In dbSNP\">",
+			"##INFO=<ID=GENE,Number=.,Type=String,Description=\"Gene\">",
+			"#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tS1"
+	));
+
+	private static final String sf_line = "chr1\t100\trs1;rs2\tA\tG,T\t45.5\tPASS\tDP=20;AF=0.05,0.3;DB;GENE=CYP2D6\tGT\t0/1";
+
+	private static boolean test(String expression, String line) {
+		return VcfFilterExpression.compile(expression, sf_metadata).test(line);
+	}
+
+	@Test
+	public void testFields() {
+		assertTrue(test("QUAL>30 && INFO/DP>10 && FILTER==\"PASS\"", sf_line));
+		assertFalse(test("QUAL>50", sf_line));
+		assertTrue(test("POS>=100 & POS<=100 & CHROM==\"chr1\"", sf_line));
+		assertTrue(test("ID==\"rs2\"", sf_line));
+		assertFalse(test("ID!=\"rs2\"", sf_line));
+		assertTrue(test("ALT=\"T\" && REF=\"A\"", sf_line));
+		assertTrue(test("AF>0.1", sf_line));
+		assertFalse(test("AF[0]>0.1", sf_line));
+		assertTrue(test("AF[1]>0.1", sf_line));
+		assertTrue(test("DB && GENE==\"CYP2D6\"", sf_line));
+		assertTrue(test("10 < DP", sf_line));
+		assertTrue(test("!(QUAL<40 || DP<10)", sf_line));
+		assertTrue(test("QUAL!=\".\" && DP!=\".\"", sf_line));
+	}
+
+	@Test
+	public void testMissing() {
+		String line = "chr1\t100\t.\tA\tG\t.\tq10;lowDP\tAF=.";
+		assertFalse(test("QUAL>0", line));
+		assertFalse(test("QUAL<=0", line));
+		assertTrue(test("QUAL==\".\"", line));
+		assertFalse(test("DP>0 || AF>0 || DB", line));
+		assertTrue(test("DP==\".\" && AF==\".\" && !DB", line));
+		assertTrue(test("FILTER==\"lowDP;q10\"", line));
+		assertFalse(test("FILTER==\"q10\"", line));
+		assertTrue(test("FILTER!=\"PASS\"", line));
+		assertTrue(test("ID=\".\"", line));
+	}
+
+	@Test
+	public void testInvalid() {
+		for (String expression : List.of("QUAL>", "QUAL>30 &&", "(QUAL>30", "XYZ>1", "GENE<\"a\"", "FORMAT/DP>1",
+				"DP>\"a\"", "DB==1", "QUAL", "1>2", "QUAL>.\"", "QUAL[0]>1", "QUAL>30 QUAL")) {
+			assertThrows(IllegalArgumentException.class, () -> VcfFilterExpression.compile(expression, sf_metadata), expression);
+		}
+		assertThrows(BadDataFormatException.class, () -> test("DP>1", "chr1\t100\t.\tA\tG\t.\tPASS\tDP=x"));
+		assertThrows(BadDataFormatException.class, () -> test("DP>1", "chr1\t100\t.\tA\tG\t."));
+	}
+
+	@Test
+	public void testParser() {
+		List<String> lines = List.of(
+				"##fileformat=VCFv4.2",
+				"chr1\t1\t.\tA\tG\t10\tPASS\tDP=5",
+				"chr1\t2\t.\tA\tG\t50\tPASS\tDP=50",
+				"chr1\t3\t.\tA\tG\t50\tPASS\tDP=bad",
+				"chr1\t4\t.\tA\tG\t60\tq10\tDP=50"
+		);
+		VcfFilterExpression filter = VcfFilterExpression.compile("QUAL>30 && DP>10", sf_metadata);
+		VcfDataParser parser = new VcfDataParser.Builder().setErrorPolicy(ErrorPolicy.skip())
+				.filter(filter)
+				.filter(line -> !line.contains("q10"))
+				.build();
+		List<Long> positions = parser.parseAll(lines.stream()).map(VcfPosition::getPosition).collect(Collectors.toList());
+		assertEquals(List.of(1L), positions);
+		assertEquals(4, parser.nLinesProcessed());
+		assertEquals(1, parser.getErrorPolicy().nRejected());
+		List<Long> reused = new ArrayList<>();
+		parser.forEach(lines.stream(), position -> reused.add(position.getPosition()));
+		assertEquals(List.of(1L), reused);
+		VcfDataParser strict = new VcfDataParser.Builder().filter(filter).build();
+		assertThrows(BadDataFormatException.class, () -> strict.collectAll(lines.stream()));
+	}
+}
@@ -0,0 +1,120 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.utils.BgzfOutputStream;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link VcfIdIndex}.
+ * @author Douglas Myers-Turnbull
+ */
+public class VcfIdIndexTest {
+
+	private static final String sf_header = "##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\n";
+
+	private static String example() {
+		StringBuilder sb = new StringBuilder(sf_header);
+		for (int i = 1; i <= 500; i++) {
+			String id = i % 10 == 0? "." : i % 7 == 0? "rs" + i + ";COSV" + i : "rs" + i;
+			sb.append("1\t").append(i * 10).append('\t').append(id).append("\tA\tG\t.\tPASS\t.\n");
+		}
+		sb.append("2\t5\trs3\tC\tT\t.\tPASS\t."); // a duplicate ID, and no final newline
+		return sb.toString();
+	}
+
+	private static Path tempFile(String suffix) throws Exception {
+		Path file = Files.createTempFile("ids", suffix);
+		file.toFile().deleteOnExit();
+		VcfIdIndex.getSidecar(file).toFile().deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void testLookup() throws Exception {
+		Path plain = tempFile(".vcf");
+		Files.writeString(plain, example());
+		Path bgzf = tempFile(".vcf.gz");
+		try (OutputStream out = new BgzfOutputStream(Files.newOutputStream(bgzf))) {
+			byte[] bytes = example().getBytes(StandardCharsets.UTF_8);
+			for (int i = 0; i < bytes.length; i += 1000) { // many blocks, with lines across them
+				out.write(bytes, i, Math.min(1000, bytes.length - i));
+				out.flush();
+			}
+		}
+		for (Path file : List.of(plain, bgzf)) {
+			VcfIdIndex index = new VcfIdIndex.Builder(file).setRunSize(64).build();
+			assertEquals(500 - 50 + 71 - 7 + 1, index.size(), index.toString());
+			List<VcfPosition> positions = index.lookup(List.of("rs3", "COSV14", "rs499", "rs10", "rs9999", "."));
+			assertEquals(List.of(29L, 139L, 4989L, 4L), positions.stream().map(VcfPosition::getPosition).collect(Collectors.toList()));
+			assertEquals(List.of("rs14", "COSV14"), positions.get(1).getIds());
+			assertEquals("2", positions.get(3).getChromosome());
+			assertEquals(List.of(), index.lookup(List.of("rs10")));
+			assertTrue(index.mightContain("rs1"));
+			long falsePositives = IntStream.range(1000, 11000).filter(i -> index.mightContain("rs" + i)).count();
+			assertTrue(falsePositives < 300, "Too many false positives: " + falsePositives);
+		}
+	}
+
+	/**
+	 * Tests a file made by concatenating two BGZF files, which has an empty EOF block in the middle.
+	 */
+	@Test
+	public void testConcatenatedBgzf() throws Exception {
+		String text = example();
+		int split = text.indexOf("1\t2510\t");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (String part : List.of(text.substring(0, split), text.substring(split))) {
+			try (OutputStream out = new BgzfOutputStream(bytes)) {
+				out.write(part.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		Path file = tempFile(".vcf.gz");
+		Files.write(file, bytes.toByteArray());
+		VcfIdIndex index = VcfIdIndex.of(file);
+		List<VcfPosition> positions = index.lookup(List.of("rs249", "rs251", "rs259", "rs499"));
+		assertEquals(List.of(2489L, 2509L, 2589L, 4989L), positions.stream().map(VcfPosition::getPosition).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void testSidecar() throws Exception {
+		Path file = tempFile(".vcf");
+		Files.writeString(file, example());
+		assertTrue(VcfIdIndex.load(file).isEmpty());
+		VcfIdIndex index = VcfIdIndex.of(file);
+		assertTrue(Files.exists(VcfIdIndex.getSidecar(file)));
+		assertEquals(index.size(), VcfIdIndex.load(file).orElseThrow().size());
+		Files.writeString(file, sf_header);
+		Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+		assertTrue(VcfIdIndex.load(file).isEmpty());
+		VcfIdIndex empty = VcfIdIndex.of(file);
+		assertEquals(0, empty.size());
+		assertFalse(empty.mightContain("rs1"));
+		assertEquals(List.of(), empty.lookup(List.of("rs1")));
+	}
+
+	@Test
+	public void testGzip() throws Exception {
+		Path file = tempFile(".vcf.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+			out.write(example().getBytes(StandardCharsets.UTF_8));
+		}
+		assertThrows(BadDataFormatException.class, () -> new VcfIdIndex.Builder(file).build());
+	}
+}
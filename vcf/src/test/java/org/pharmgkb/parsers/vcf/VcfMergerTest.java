@@ -0,0 +1,82 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link VcfMerger}.
+ * @author Douglas Myers-Turnbull
+ */
+public class VcfMergerTest {
+
+	private static final String sf_header = String.join("\n",
+			"##fileformat=VCFv4.2",
+			"##contig=<ID=1,length=1000>",
+			"##INFO=<ID=DP,Number=1,Type=Integer,Description=\"Depth\">",
+			"##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">",
+			"##FORMAT=<ID=AD,Number=R,Type=Integer,Description=\"Allelic depths\">"
+	);
+
+	private Path write(String... lines) throws Exception {
+		Path file = Files.createTempFile("merge", ".vcf");
+		file.toFile().deleteOnExit();
+		Files.writeString(file, String.join("\n", lines) + "\n");
+		return file;
+	}
+
+	private List<VcfPosition> merge(int readAhead, Path... files) {
+		VcfMerger.Builder builder = new VcfMerger.Builder().setReadAhead(readAhead);
+		for (Path file : files) {
+			builder.add(file);
+		}
+		try (VcfMerger merger = builder.build()) {
+			assertEquals(List.of("S1", "S2"), merger.getMetadata().getSampleNames());
+			return merger.stream().collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	public void testMerge() throws Exception {
+		Path a = write(sf_header,
+				"#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tS1",
+				"1\t100\trs1\tA\tG\t50\tPASS\tDP=10\tGT:AD\t0/1:5,5",
+				"1\t200\t.\tC\tT\t30\tPASS\tDP=5\tGT:AD\t1/1:0,5"
+		);
+		Path b = write(sf_header,
+				"##FILTER=<ID=q10,Description=\"Quality below 10\">",
+				"#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tS2",
+				"1\t100\t.\tA\tT\t40\tq10\tDP=7\tGT:AD\t0|1:3,4",
+				"1\t300\t.\tG\tA\t20\tPASS\t.\tGT\t0/0"
+		);
+		for (int readAhead : new int[] {0, 1, 1024}) {
+			List<String> lines = merge(readAhead, a, b).stream()
+					.map(new VcfDataWriter())
+					.collect(Collectors.toList());
+			assertEquals(List.of(
+					"1\t100\trs1\tA\tG,T\t50\tq10\tDP=10\tGT:AD\t0/1:5,5,.\t0|2:3,.,4",
+					"1\t200\t.\tC\tT\t30\tPASS\tDP=5\tGT:AD\t1/1:0,5\t.:.",
+					"1\t300\t.\tG\tA\t20\tPASS\t\tGT\t.\t0/0"
+			), lines);
+		}
+	}
+
+	@Test
+	public void testRemapGenotype() {
+		assertEquals("0|3", VcfMerger.remapGenotype("0|1", new int[] {0, 3}));
+		assertEquals("./2", VcfMerger.remapGenotype("./1", new int[] {0, 2}));
+	}
+
+	@Test
+	public void testDuplicateSample() throws Exception {
+		Path a = write(sf_header, "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tS1");
+		assertThrows(IllegalArgumentException.class, () -> new VcfMerger.Builder().add(a).add(a).build());
+	}
+}
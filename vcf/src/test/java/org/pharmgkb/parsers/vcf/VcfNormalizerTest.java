@@ -0,0 +1,98 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link VcfNormalizer}.
+ * @author Douglas Myers-Turnbull
+ */
+public class VcfNormalizerTest {
+
+	private static final String sf_reference = "TCACACAGTTGCA";
+
+	private static final VcfMetadataCollection sf_metadata = new VcfMetadataParser().apply(Stream.of(
+			"##fileformat=VCFv4.2",
+			"##INFO=<ID=AC,Number=A,Type=Integer,Description=\"Allele count\">",
+			"##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">",
+			"##FORMAT=<ID=AD,Number=R,Type=Integer,Description=\"Allelic depths\">",
+			"##FORMAT=<ID=PL,Number=G,Type=Integer,Description=\"Phred-scaled likelihoods\">",
+			"#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tS1"
+	));
+
+	private final VcfDataParser m_parser = new VcfDataParser();
+
+	private static VcfNormalizer normalizer() {
+		return new VcfNormalizer.Builder(sf_metadata, (chromosome, start, length) ->
+				sf_reference.substring((int) Math.min(sf_reference.length(), start), (int) Math.min(sf_reference.length(), start + length))
+		).setWindowSize(4).build();
+	}
+
+	@Test
+	public void testLeftAlign() {
+		VcfNormalizer normalizer = normalizer();
+		List<VcfPosition> normalized = normalizer.normalize(m_parser.apply("1\t6\trs1\tCAG\tG\t50\tPASS\t.\tGT:AD\t0/1:3,4"));
+		assertEquals(1, normalized.size());
+		VcfPosition position = normalized.get(0);
+		assertEquals(0, position.getPosition());
+		assertEquals("TCA", position.getRef().toVcfString());
+		assertEquals("T", position.getAlts().get(0).toVcfString());
+		assertEquals(List.of("rs1"), position.getIds());
+		assertEquals("50", position.getQualityString().orElseThrow());
+		assertEquals("3,4", position.getSample(0).get("AD").orElseThrow());
+		assertEquals(1, normalizer.getNRealigned());
+	}
+
+	@Test
+	public void testTrim() {
+		VcfPosition position = normalizer().normalize(m_parser.apply("1\t2\t.\tCA\tCG\t.\tPASS\t.")).get(0);
+		assertEquals(2, position.getPosition());
+		assertEquals("A", position.getRef().toVcfString());
+		assertEquals("G", position.getAlts().get(0).toVcfString());
+		VcfPosition snv = m_parser.apply("1\t3\t.\tA\tT\t.\tPASS\t.");
+		assertSame(snv, normalizer().normalize(snv).get(0));
+	}
+
+	@Test
+	public void testSplit() {
+		List<VcfPosition> split = normalizer().normalize(m_parser.apply(
+				"1\t9\t.\tT\tC,G\t.\tPASS\tAC=1,2\tGT:AD:PL\t1/2:1,2,3:10,20,30,40,50,60"));
+		assertEquals(2, split.size());
+		assertEquals("C", split.get(0).getAlts().get(0).toVcfString());
+		assertEquals(List.of("1"), List.copyOf(split.get(0).getInfo().get("AC")));
+		assertEquals("1/0", split.get(0).getSample(0).get("GT").orElseThrow());
+		assertEquals("1,2", split.get(0).getSample(0).get("AD").orElseThrow());
+		assertEquals("10,20,30", split.get(0).getSample(0).get("PL").orElseThrow());
+		assertEquals("G", split.get(1).getAlts().get(0).toVcfString());
+		assertEquals(List.of("2"), List.copyOf(split.get(1).getInfo().get("AC")));
+		assertEquals("0/1", split.get(1).getSample(0).get("GT").orElseThrow());
+		assertEquals("1,3", split.get(1).getSample(0).get("AD").orElseThrow());
+		assertEquals("10,40,60", split.get(1).getSample(0).get("PL").orElseThrow());
+	}
+
+	@Test
+	public void testStream() {
+		List<Long> positions = normalizer().normalize(Stream.of(
+				m_parser.apply("1\t3\t.\tA\tT\t.\tPASS\t."),
+				m_parser.apply("1\t6\t.\tCAG\tG\t.\tPASS\t."),
+				m_parser.apply("1\t12\t.\tC\tA\t.\tPASS\t.")
+		)).map(VcfPosition::getPosition).collect(Collectors.toList());
+		assertEquals(List.of(0L, 2L, 11L), positions);
+	}
+
+	@Test
+	public void testRefMismatch() {
+		assertThrows(BadDataFormatException.class, () -> normalizer().normalize(m_parser.apply("1\t1\t.\tG\tA\t.\tPASS\t.")));
+		assertThrows(BadDataFormatException.class, () -> normalizer().normalize(m_parser.apply("1\t20\t.\tG\tA\t.\tPASS\t.")));
+	}
+}
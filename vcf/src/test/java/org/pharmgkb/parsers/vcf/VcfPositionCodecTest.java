@@ -0,0 +1,36 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.cache.SidecarCache;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Tests {@link VcfPositionCodec}.
+ * @author Douglas Myers-Turnbull
+ */
+public class VcfPositionCodecTest {
+
+	@Test
+	public void testSidecar() throws Exception {
+		Path dir = Files.createTempDirectory("vcf");
+		Path file = Files.copy(Paths.get(getClass().getResource("example.vcf").toURI()), dir.resolve("example.vcf"));
+		SidecarCache<List<VcfPosition>> cache = SidecarCache.forRecords(new VcfPositionCodec());
+		List<VcfPosition> expected = new VcfDataParser().collectAll(file);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, new VcfDataParser(cache).collectAll(file));
+		VcfDataParser parser = new VcfDataParser(cache);
+		assertEquals(expected, parser.collectAll(file));
+		assertEquals(0, parser.nLinesProcessed());
+		Files.delete(cache.getSidecar(file));
+		Files.delete(file);
+		Files.delete(dir);
+	}
+}
@@ -0,0 +1,96 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link VcfDataParser.Builder#keepSamples(VcfMetadataCollection, java.util.Collection)} and
+ * {@link VcfDataParser.Builder#keepInfoKeys(java.util.Collection)}, and {@link VcfDataParser.Builder#siteOnly()}.
+ * @author Douglas Myers-Turnbull
+ */
+public class VcfProjectionTest {
+
+	@Test
+	public void testKeepSamples() throws Exception {
+		Path file = Paths.get(getClass().getResource("example.vcf").toURI());
+		VcfMetadataCollection metadata;
+		try (Stream<String> lines = Files.lines(file)) {
+			metadata = new VcfMetadataParser().apply(lines);
+		}
+		List<VcfPosition> all = new VcfDataParser().collectAll(file);
+		List<VcfPosition> projected = new VcfDataParser.Builder()
+				.keepSamples(metadata, List.of("NA00003", "NA00001"))
+				.build().collectAll(file);
+		assertEquals(all.size(), projected.size());
+		for (int i = 0; i < all.size(); i++) {
+			assertEquals(2, projected.get(i).getNSamples());
+			assertEquals(all.get(i).getSample(0), projected.get(i).getSample(0));
+			assertEquals(all.get(i).getSample(2), projected.get(i).getSample(1));
+			assertEquals(all.get(i).getInfo(), projected.get(i).getInfo());
+			assertEquals(all.get(i).getFormat(), projected.get(i).getFormat());
+		}
+	}
+
+	@Test
+	public void testUnknownSample() throws Exception {
+		Path file = Paths.get(getClass().getResource("example.vcf").toURI());
+		try (Stream<String> lines = Files.lines(file)) {
+			VcfMetadataCollection metadata = new VcfMetadataParser().apply(lines);
+			assertThrows(IllegalArgumentException.class, () -> new VcfDataParser.Builder().keepSamples(metadata, List.of("nobody")));
+		}
+	}
+
+	@Test
+	public void testTooFewSamples() {
+		VcfDataParser parser = new VcfDataParser.Builder().keepSamples(List.of(2)).build();
+		assertThrows(BadDataFormatException.class, () -> parser.apply("20\t14370\t.\tG\tA\t29\tPASS\t.\tGT\t0|0\t1|0"));
+	}
+
+	@Test
+	public void testKeepInfoKeys() {
+		VcfDataParser parser = new VcfDataParser.Builder().keepInfoKeys(List.of("DB", "AF", "A")).build();
+		VcfPosition position = parser.apply("20\t14370\trs6054257\tG\tA\t29\tPASS\tNS=3;AA=G;AF=0.5,0.25;DB\tGT\t0|0");
+		assertEquals(List.of("AF", "DB"), List.copyOf(position.getInfo().keySet()));
+		assertEquals(List.of("0.5", "0.25"), List.copyOf(position.getInfo().get("AF")));
+		assertEquals(List.of(""), List.copyOf(position.getInfo().get("DB")));
+		assertEquals(Optional.of("0|0"), position.getSample(0).get("GT"));
+	}
+
+	@Test
+	public void testSiteOnly() throws Exception {
+		Path file = Paths.get(getClass().getResource("example.vcf").toURI());
+		List<VcfPosition> all = new VcfDataParser().collectAll(file);
+		VcfDataParser parser = new VcfDataParser.Builder().siteOnly().build();
+		List<VcfPosition> sites;
+		try (Stream<String> lines = Files.lines(file)) {
+			sites = parser.parseAll(lines.parallel()).collect(Collectors.toList());
+		}
+		assertEquals(all.size(), sites.size());
+		for (int i = 0; i < all.size(); i++) {
+			assertEquals(0, sites.get(i).getNSamples());
+			assertEquals(List.of(), sites.get(i).getFormat());
+			assertEquals(all.get(i).getInfo(), sites.get(i).getInfo());
+			assertEquals(all.get(i).getAlts(), sites.get(i).getAlts());
+			assertEquals(all.get(i).getPosition(), sites.get(i).getPosition());
+		}
+	}
+
+	@Test
+	public void testDeferredConflict() {
+		assertThrows(IllegalStateException.class, () -> new VcfDataParser.Builder().deferColumns().keepInfoKeys(List.of("DP")).build());
+		assertThrows(IllegalStateException.class, () -> new VcfDataParser.Builder().siteOnly().keepSamples(List.of(0)).build());
+	}
+}
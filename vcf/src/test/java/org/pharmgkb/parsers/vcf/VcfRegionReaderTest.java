@@ -0,0 +1,96 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link VcfRegionReader} and {@link VcfOffsetIndex}.
+ * @author Douglas Myers-Turnbull
+ */
+public class VcfRegionReaderTest {
+
+	private static Path write(String text) throws Exception {
+		Path file = Files.createTempFile("region", ".vcf");
+		file.toFile().deleteOnExit();
+		Files.writeString(file, text);
+		return file;
+	}
+
+	private static String example() {
+		StringBuilder sb = new StringBuilder("##fileformat=VCFv4.2\n");
+		for (String contig : List.of("chr1", "chr2", "chr3")) {
+			sb.append("##contig=<ID=").append(contig).append(",length=100000>\n");
+		}
+		sb.append("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\n");
+		for (int pos = 1; pos <= 600; pos += 3) {
+			sb.append("chr1\t").append(pos).append("\t.\tA\tG\t.\tPASS\t.\n");
+			if (pos % 2 == 0) { // a second position at the same POS
+				sb.append("chr1\t").append(pos).append("\t.\tA\tT\t.\tPASS\t.\n");
+			}
+		}
+		for (int pos = 5; pos <= 5000; pos += 50) {
+			sb.append("chr3\t").append(pos).append("\t.\tC\tT\t.\tPASS\t.\n");
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testQuery() throws Exception {
+		Path file = write(example());
+		List<VcfPosition> all = new VcfDataParser().collectAll(file);
+		VcfOffsetIndex index = VcfOffsetIndex.build(file, 7);
+		assertEquals(List.of("chr1", "chr3"), index.getContigs());
+		assertTrue(index.size() < all.size() / 5);
+		List<VcfRegionReader> readers = List.of(
+				new VcfRegionReader.Builder(file).setIndex(index).build(),
+				new VcfRegionReader.Builder(file).setScanBytes(64).build(),
+				new VcfRegionReader.Builder(file).build()
+		);
+		long[][] regions = {{0, 10}, {100, 200}, {101, 102}, {597, 700}, {2000, 3000}, {0, 0}};
+		for (String contig : List.of("chr1", "chr2", "chr3")) {
+			for (long[] region : regions) {
+				List<VcfPosition> expected = all.stream()
+						.filter(p -> p.getChromosome().equals(contig) && p.getPosition() >= region[0] && p.getPosition() < region[1])
+						.collect(Collectors.toList());
+				for (VcfRegionReader reader : readers) {
+					try (Stream<VcfPosition> positions = reader.query(contig, region[0], region[1])) {
+						assertEquals(expected, positions.collect(Collectors.toList()), contig + ":" + region[0] + "-" + region[1] + " " + reader);
+					}
+				}
+			}
+		}
+		assertThrows(IllegalStateException.class, () -> readers.get(1).query("chrX", 0, 10));
+		assertEquals(0, readers.get(0).query("chrX", 0, 10).count());
+	}
+
+	@Test
+	public void testSidecar() throws Exception {
+		Path file = write(example());
+		Path sidecar = file.resolveSibling(file.getFileName() + VcfOffsetIndex.SUFFIX);
+		sidecar.toFile().deleteOnExit();
+		VcfOffsetIndex index = VcfOffsetIndex.of(file);
+		assertTrue(Files.exists(sidecar));
+		assertEquals(index, VcfOffsetIndex.of(file));
+		assertEquals(VcfOffsetIndex.build(file, VcfOffsetIndex.DEFAULT_INTERVAL), index);
+	}
+
+	@Test
+	public void testUnsorted() throws Exception {
+		String header = "##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\n";
+		Path decreasing = write(header + "1\t20\t.\tA\tG\t.\tPASS\t.\n1\t10\t.\tA\tG\t.\tPASS\t.\n");
+		assertThrows(BadDataFormatException.class, () -> VcfOffsetIndex.build(decreasing, 1));
+		Path split = write(header + "1\t20\t.\tA\tG\t.\tPASS\t.\n2\t10\t.\tA\tG\t.\tPASS\t.\n1\t30\t.\tA\tG\t.\tPASS\t.\n");
+		assertThrows(BadDataFormatException.class, () -> VcfOffsetIndex.build(split, 1));
+	}
+}
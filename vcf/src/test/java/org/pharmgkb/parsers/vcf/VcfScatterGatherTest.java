@@ -0,0 +1,68 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link VcfScatterGather}.
+ * @author Douglas Myers-Turnbull
+ */
+public class VcfScatterGatherTest {
+
+	private static final String sf_text = "##fileformat=VCFv4.2\n"
+			+ "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\n"
+			+ IntStream.range(0, 300)
+					.mapToObj(i -> (i < 100? "1" : i < 250? "2" : "X") + "\t" + (i + 1) + "\t.\tA\tG\t.\t.\t.\n")
+					.collect(Collectors.joining());
+
+	@Test
+	public void testFindShards() throws Exception {
+		byte[] bytes = sf_text.getBytes(StandardCharsets.UTF_8);
+		List<VcfScatterGather.Shard> shards = VcfScatterGather.findShards(new ByteArrayInputStream(bytes), Long.MAX_VALUE);
+		assertEquals(List.of("1", "2", "X"), shards.stream().map(VcfScatterGather.Shard::getContig).collect(Collectors.toList()));
+		assertEquals(sf_text.indexOf("\n1\t") + 1, shards.get(0).getStart());
+		assertEquals(shards.get(0).getEnd(), shards.get(1).getStart());
+		assertEquals(bytes.length, shards.get(2).getEnd());
+		// split within contigs
+		shards = VcfScatterGather.findShards(new ByteArrayInputStream(bytes), 500);
+		assertEquals(bytes.length, shards.get(shards.size() - 1).getEnd());
+		for (int i = 1; i < shards.size(); i++) {
+			assertEquals(shards.get(i - 1).getEnd(), shards.get(i).getStart());
+		}
+	}
+
+	@Test
+	public void testApply() throws Exception {
+		Path plain = Files.createTempFile("scatter", ".vcf");
+		plain.toFile().deleteOnExit();
+		Files.writeString(plain, sf_text);
+		Path gzip = Files.createTempFile("scatter", ".vcf.gz");
+		gzip.toFile().deleteOnExit();
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+			out.write(sf_text.getBytes(StandardCharsets.UTF_8));
+		}
+		List<VcfPosition> expected = new VcfDataParser().collectAll(plain).stream()
+				.filter(p -> p.getPosition() % 2 == 0)
+				.collect(Collectors.toList());
+		for (Path file : List.of(plain, gzip)) {
+			VcfScatterGather scatter = new VcfScatterGather.Builder(file).setThreads(4).setMaxShardBytes(300).build();
+			assertEquals(1, scatter.getMetadata().getLines().size() - 1);
+			try (Stream<VcfPosition> results = scatter.apply(p -> p.getPosition() % 2 == 0? Stream.of(p) : Stream.empty())) {
+				assertEquals(expected, results.collect(Collectors.toList()));
+			}
+		}
+	}
+}
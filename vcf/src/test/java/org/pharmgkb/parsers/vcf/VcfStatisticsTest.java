@@ -0,0 +1,76 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.BadDataFormatException;
+import org.pharmgkb.parsers.scan.LineScanner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link VcfStatistics}.
+ * @author Douglas Myers-Turnbull
+ */
+public class VcfStatisticsTest {
+
+	@Test
+	public void testExample() throws Exception {
+		Path file = Paths.get(getClass().getResource("example.vcf").toURI());
+		VcfStatistics fromParsed = new VcfDataParser().parseAll(file).parallel().collect(VcfStatistics.collector(true));
+		VcfStatistics fromMutable = new VcfStatistics(true);
+		new VcfDataParser().forEach(file, position -> fromMutable.accept(position));
+		for (VcfStatistics stats : List.of(VcfStatistics.of(file, true), new LineScanner(64).scan(file, () -> new VcfStatistics(true)), fromParsed, fromMutable)) {
+			assertEquals(3, stats.getNSamples());
+			assertEquals(5, stats.getNSites());
+			assertEquals(2, stats.getNMultiallelic());
+			assertEquals(2, stats.getNTransitions());
+			assertEquals(2, stats.getNTransversions());
+			assertEquals(1.0, stats.getCallRate(), 0.0);
+			assertEquals(new VcfStatistics.SampleStatistics(0, 5, 5, 1, 1, 0, 0), stats.getSample(0));
+			assertEquals(new VcfStatistics.SampleStatistics(1, 5, 5, 3, 1, 1, 1), stats.getSample(1));
+			assertEquals(new VcfStatistics.SampleStatistics(2, 5, 5, 0, 3, 1, 0), stats.getSample(2));
+			List<VcfStatistics.Site> sites = stats.getSites();
+			assertEquals(5, sites.size());
+			assertEquals(new VcfStatistics.Site("20", 14369, 3, 3, 1, 1, 1, 0), sites.get(0));
+			assertEquals(0.5, sites.get(0).getAltAlleleFrequency(), 0.0);
+			assertEquals(new VcfStatistics.Site("20", 1234566, 3, 3, 2, 1, 0, 0), sites.get(4));
+		}
+		assertEquals(0, VcfStatistics.of(file).getSites().size());
+	}
+
+	@Test
+	public void testMissing() {
+		VcfStatistics stats = new VcfStatistics(true);
+		accept(stats, "1\t10\t.\tC\tT\t.\tPASS\t.\tDP:GT\t3:0/1\t4:./.\t5\t6:1");
+		VcfStatistics.Site site = stats.getSites().get(0);
+		assertEquals(1, site.getNCalled());
+		assertEquals(3, site.getNMissing());
+		assertEquals(0.25, stats.getCallRate(), 0.0);
+		assertEquals(1.0, stats.getSample(1).getMissingness(), 0.0);
+		assertThrows(BadDataFormatException.class, () -> accept(stats, "1\t11\t.\tC\tT\t.\tPASS\t.\tGT\t0/1"));
+		assertThrows(BadDataFormatException.class, () -> accept(stats, "1\t11\t.\tC\tT\t.\tPASS\t.\tGT\t0/x\t0\t0\t0"));
+	}
+
+	@Test
+	public void testHwe() {
+		assertEquals(1.0, VcfStatistics.hweExactPValue(0, 0, 0), 0.0);
+		assertEquals(1.0, VcfStatistics.hweExactPValue(0, 100, 0), 0.0);
+		assertTrue(VcfStatistics.hweExactPValue(50, 25, 25) > 0.5);
+		assertTrue(VcfStatistics.hweExactPValue(0, 50, 50) < 1e-20);
+		assertTrue(VcfStatistics.hweExactPValue(100, 0, 0) < 1e-20);
+		// symmetric in the homozygotes
+		assertEquals(VcfStatistics.hweExactPValue(10, 80, 10), VcfStatistics.hweExactPValue(10, 10, 80), 0.0);
+	}
+
+	private static void accept(VcfStatistics stats, String line) {
+		ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII));
+		stats.accept(bytes, 0, bytes.limit());
+	}
+}
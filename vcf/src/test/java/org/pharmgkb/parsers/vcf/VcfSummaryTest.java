@@ -0,0 +1,28 @@
+package org.pharmgkb.parsers.vcf;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.scan.LineScanner;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link VcfSummary}.
+ * @author Douglas Myers-Turnbull
+ */
+public class VcfSummaryTest {
+
+	@Test
+	public void testExample() throws Exception {
+		Path file = Paths.get(getClass().getResource("example.vcf").toURI());
+		long nPositions = new VcfDataParser().parseAll(file).count();
+		for (VcfSummary summary : new VcfSummary[] {VcfSummary.of(file), new LineScanner(64).scan(file, VcfSummary::new)}) {
+			assertEquals(nPositions, summary.getNDataLines());
+			assertEquals(Map.of("20", nPositions), summary.getContigCounts());
+			assertEquals(summary.getNMetadataLines() + 1, summary.getNCommentLines());
+		}
+	}
+}
@@ -1,6 +1,18 @@
 package org.pharmgkb.parsers.vcf;
 
 import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.vcf.model.VcfMetadataCollection;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * Tests {@link VcfValidator}.
@@ -10,6 +22,45 @@ public class VcfValidatorTest {
 
 	@Test
 	public void testAccept() throws Exception {
-		// TODO
+		Path file = Paths.get(getClass().getResource("example.vcf").toURI());
+		VcfMetadataCollection metadata;
+		try (Stream<String> lines = Files.lines(file)) {
+			metadata = new VcfMetadataParser().apply(lines);
+		}
+		VcfValidator.Report report = new VcfValidator.Report(2);
+		VcfValidator validator = new VcfValidator.Builder(metadata).setAction(report).build();
+		try (Stream<String> lines = Files.lines(file)) {
+			new VcfDataParser().parseAll(lines.parallel()).forEach(validator);
+		}
+		// the example has a template ##SAMPLE line whose ID is not in the header
+		assertEquals(Map.of("S_ID", 1L), report.getCounts(VcfValidator.PropertyType.SAMPLE));
+		assertEquals(1, report.getTotal());
+	}
+
+	@Test
+	public void testValues() throws Exception {
+		Path file = Paths.get(getClass().getResource("example.vcf").toURI());
+		VcfMetadataCollection metadata;
+		try (Stream<String> lines = Files.lines(file)) {
+			metadata = new VcfMetadataParser().apply(lines);
+		}
+		VcfValidator.Report report = new VcfValidator.Report(2);
+		VcfValidator validator = new VcfValidator.Builder(metadata).setAction(report).build();
+		VcfDataParser parser = new VcfDataParser();
+		List.of(
+				"20\t14370\t.\tG\tA\t29\tq10;nope\tDP=x;AF=0.1,0.2;XX=1\tGT:GQ:HQ:YY\t0|0:48:51:1\t1|0:a:51,51:1\t1/1:43:.:1",
+				"20\t14371\t.\tG\tA\t29\tPASS\tDP=3\tGT:GQ\t0|0:48"
+		).forEach(line -> validator.accept(parser.apply(line)));
+		assertEquals(Map.of("S_ID", 1L, "(1 samples instead of 3)", 1L), report.getCounts(VcfValidator.PropertyType.SAMPLE));
+		assertEquals(Map.of("nope", 1L), report.getCounts(VcfValidator.PropertyType.FILTER));
+		assertEquals(Map.of("XX", 1L), report.getCounts(VcfValidator.PropertyType.INFO));
+		assertEquals(Map.of("DP", 1L, "AF", 1L), report.getCounts(VcfValidator.PropertyType.INFO_VALUE));
+		assertEquals(Map.of("YY", 1L), report.getCounts(VcfValidator.PropertyType.FORMAT));
+		assertEquals(Map.of("GQ", 1L, "HQ", 1L), report.getCounts(VcfValidator.PropertyType.FORMAT_VALUE));
+		assertEquals(1, report.getExamples(VcfValidator.PropertyType.INFO, "XX").size());
+
+		VcfValidator strict = new VcfValidator.Builder(metadata).build();
+		VcfPosition position = parser.apply("20\t14370\t.\tG\tA\t29\tPASS\tXX=1\tGT\t0|0\t0|0\t0|0");
+		assertThrows(VcfValidator.ValidationException.class, () -> strict.accept(position));
 	}
-}
\ No newline at end of file
+}
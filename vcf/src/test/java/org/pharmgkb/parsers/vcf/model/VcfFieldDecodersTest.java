@@ -0,0 +1,74 @@
+package org.pharmgkb.parsers.vcf.model;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.vcf.VcfDataParser;
+import org.pharmgkb.parsers.vcf.VcfMetadataParser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link VcfFieldDecoders}.
+ * @author Douglas Myers-Turnbull
+ */
+public class VcfFieldDecodersTest {
+
+	@Test
+	public void test() throws Exception {
+		Path file = Paths.get(getClass().getResource("/org/pharmgkb/parsers/vcf/example.vcf").toURI());
+		VcfMetadataCollection metadata;
+		try (Stream<String> lines = Files.lines(file)) {
+			metadata = new VcfMetadataParser().apply(lines);
+		}
+		VcfFieldDecoders decoders = metadata.getFieldDecoders();
+		assertSame(decoders, metadata.getFieldDecoders());
+		List<VcfPosition> positions = new VcfDataParser().collectAll(file);
+
+		VcfInfo info = positions.get(2).getInfo(); // NS=2;DP=10;AF=0.333,0.667;AA=T;DB
+		assertEquals(10, decoders.info("DP").getInt(info));
+		assertEquals(10.0, decoders.info("DP").getDouble(info), 0.000001);
+		assertArrayEquals(new double[] {0.333, 0.667}, decoders.info("AF").getDoubleArray(info), 0.000001);
+		assertTrue(decoders.info("DB").getFlag(info));
+		assertFalse(decoders.info("H2").getFlag(info));
+		assertThrows(IllegalStateException.class, () -> decoders.info("AF").getInt(info));
+		assertThrows(IllegalArgumentException.class, () -> decoders.info("XX"));
+
+		VcfFormatField hq = decoders.format("HQ");
+		VcfFormatField gq = decoders.format("GQ");
+		assertArrayEquals(new int[] {23, 27}, hq.getIntArray(positions.get(2).getSample(0)));
+		assertEquals(21, gq.getInt(positions.get(2).getSample(0)));
+		assertEquals(2, gq.getInt(positions.get(2).getSample(1)));
+		// 2/2:35:4:.,.
+		assertArrayEquals(new int[] {VcfTypedField.MISSING_INT, VcfTypedField.MISSING_INT}, hq.getIntArray(positions.get(2).getSample(2)));
+		// the last line has no HQ
+		assertEquals(0, hq.getIntArray(positions.get(4).getSample(0)).length);
+		assertEquals(VcfTypedField.MISSING_INT, hq.getInt(positions.get(4).getSample(0)));
+		assertEquals(35, gq.getInt(positions.get(4).getSample(0)));
+	}
+
+	@Test
+	public void testSpecialValues() throws Exception {
+		Path file = Paths.get(getClass().getResource("/org/pharmgkb/parsers/vcf/example.vcf").toURI());
+		VcfFieldDecoders decoders;
+		try (Stream<String> lines = Files.lines(file)) {
+			decoders = new VcfMetadataParser().apply(lines).getFieldDecoders();
+		}
+		VcfInfo info = new VcfDataParser().apply("20\t100\t.\tA\tG,T\t.\tPASS\tAF=Inf,.;DP=-Inf").getInfo();
+		double[] af = decoders.info("AF").getDoubleArray(info);
+		assertEquals(Double.POSITIVE_INFINITY, af[0], 0.0);
+		assertTrue(Double.isNaN(af[1]));
+		assertEquals(Double.NEGATIVE_INFINITY, decoders.info("AF").getDouble(new VcfDataParser()
+				.apply("20\t100\t.\tA\tG\t.\tPASS\tAF=-Inf").getInfo()), 0.0);
+		assertThrows(IllegalArgumentException.class, () -> decoders.info("DP").getInt(info));
+	}
+}
@@ -2,12 +2,19 @@
 
 import com.google.common.collect.ImmutableList;
 import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.model.GeneralizedBigDecimal;
 import org.pharmgkb.parsers.model.Locus;
 import org.pharmgkb.parsers.model.Strand;
+import org.pharmgkb.parsers.vcf.VcfDataParser;
 import org.pharmgkb.parsers.vcf.model.allele.VcfAllele;
 import org.pharmgkb.parsers.vcf.model.allele.VcfBasesAllele;
 
+import java.util.Optional;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Tests {@link VcfPosition}.
@@ -34,4 +41,27 @@ public void test() {
 				position.getAllAlleles());
 		assertEquals(new ImmutableList.Builder<String>().add("filter").build(), position.getFilters());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testQuality() {
+		VcfDataParser parser = new VcfDataParser();
+		VcfPosition position = parser.apply("1\t100\t.\tA\tG\t29.5\tPASS\t.");
+		assertTrue(position.hasQuality());
+		assertEquals(29.5, position.getQualityAsDouble(), 0.0);
+		assertEquals(Optional.of("29.5"), position.getQualityString());
+		assertEquals(Optional.of(new GeneralizedBigDecimal("29.5")), position.getQuality());
+		assertEquals(position, parser.apply("1\t100\t.\tA\tG\t29.5\tPASS\t."));
+		assertEquals(position, new VcfPosition.Builder(position).build());
+
+		VcfPosition missing = parser.apply("1\t100\t.\tA\tG\t.\tPASS\t.");
+		assertFalse(missing.hasQuality());
+		assertTrue(Double.isNaN(missing.getQualityAsDouble()));
+		assertEquals(Optional.empty(), missing.getQuality());
+
+		VcfPosition infinite = parser.apply("1\t100\t.\tA\tG\tInf\tPASS\t.");
+		assertEquals(Double.POSITIVE_INFINITY, infinite.getQualityAsDouble(), 0.0);
+		assertEquals(new GeneralizedBigDecimal("Inf"), infinite.getQuality().orElseThrow());
+
+		assertThrows(NumberFormatException.class, () -> new VcfPosition.Builder("chr1", 1, "A").setQuality("high"));
+	}
+}
@@ -1,6 +1,15 @@
 package org.pharmgkb.parsers.vcf.model;
 
 import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.vcf.model.extra.ReservedFormatProperty;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * Tests {@link VcfSample}.
@@ -10,6 +19,38 @@ public class VcfSampleTest {
 
 	@Test
 	public void testGet() throws Exception {
-		// TODO
+		VcfSample sample = new VcfSample(VcfFormatSchema.of(List.of("GT", "GQ", "DP")), List.of("0|1", "48"));
+		assertEquals(Optional.of("0|1"), sample.get(ReservedFormatProperty.Genotype));
+		assertEquals(Optional.of("48"), sample.get("GQ"));
+		// dropped from the end
+		assertEquals(Optional.empty(), sample.get(ReservedFormatProperty.Depth));
+		assertFalse(sample.containsKey("DP"));
+		assertEquals(List.of("GT", "GQ"), List.copyOf(sample.keySet()));
+		assertEquals(2, sample.size());
+	}
+
+	@Test
+	public void testSharedSchema() {
+		assertSame(VcfFormatSchema.of(List.of("GT", "GQ")), VcfFormatSchema.of(List.of("GT", "GQ")));
+		VcfSample built = new VcfSample.Builder().put("GT", "0|1").put("GQ", "48").build();
+		VcfSample fast = new VcfSample(VcfFormatSchema.of(List.of("GT", "GQ")), List.of("0|1", "48"));
+		assertSame(fast.getSchema(), built.getSchema());
+		assertEquals(built, fast);
+		assertEquals(built.hashCode(), fast.hashCode());
+		assertEquals(built.asMap().hashCode(), fast.hashCode());
+	}
+
+	@Test
+	public void testEqualsIgnoresOrder() {
+		VcfSample a = new VcfSample(VcfFormatSchema.of(List.of("GT", "GQ")), List.of("0|1", "48"));
+		VcfSample b = new VcfSample(VcfFormatSchema.of(List.of("GQ", "GT")), List.of("48", "0|1"));
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+	}
+
+	@Test
+	public void testBadSchema() {
+		assertThrows(IllegalArgumentException.class, () -> VcfFormatSchema.of(List.of("GT", "GT")));
+		assertThrows(IllegalArgumentException.class, () -> new VcfSample(VcfFormatSchema.of(List.of("GT")), List.of("0|1", "48")));
 	}
-}
\ No newline at end of file
+}
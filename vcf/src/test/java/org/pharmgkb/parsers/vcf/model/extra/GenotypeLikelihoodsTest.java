@@ -0,0 +1,74 @@
+package org.pharmgkb.parsers.vcf.model.extra;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.vcf.VcfDataParser;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+import org.pharmgkb.parsers.vcf.model.VcfTypedField;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link GenotypeLikelihoods} and {@link GenotypeOrdering}.
+ * @author Douglas Myers-Turnbull
+ */
+public class GenotypeLikelihoodsTest {
+
+	@Test
+	public void testOrdering() {
+		GenotypeOrdering diploid = GenotypeOrdering.of(2, 3);
+		assertSame(diploid, GenotypeOrdering.of(2, 3));
+		assertEquals(6, diploid.size());
+		int[][] expected = {{0, 0}, {0, 1}, {1, 1}, {0, 2}, {1, 2}, {2, 2}};
+		for (int g = 0; g < expected.length; g++) {
+			assertArrayEquals(expected[g], diploid.getAlleles(g));
+			assertEquals(g, diploid.indexOf(expected[g]));
+		}
+		assertEquals(4, diploid.indexOf(2, 1));
+		GenotypeOrdering triploid = GenotypeOrdering.of(3, 2);
+		assertEquals(4, triploid.size());
+		assertArrayEquals(new int[] {0, 1, 1}, triploid.getAlleles(2));
+		for (int g = 0; g < triploid.size(); g++) {
+			assertEquals(g, triploid.indexOf(triploid.getAlleles(g)));
+		}
+		assertEquals(3, GenotypeOrdering.of(1, 3).size());
+		assertEquals(GenotypeOrdering.nGenotypes(4, 5), GenotypeOrdering.of(4, 5).size());
+		assertThrows(IllegalArgumentException.class, () -> diploid.indexOf(0, 3));
+	}
+
+	@Test
+	public void testArrays() {
+		VcfPosition position = new VcfDataParser().apply(
+				"1\t100\t.\tA\tG\t.\tPASS\t.\tGT:GL:PL\t0/1:-1.0,0,-2.5:10,0,25\t1/1:.:30,20,0\t0/0:.:.");
+		GenotypeLikelihoods likelihoods = new GenotypeLikelihoods(position);
+		assertArrayEquals(new double[] {-1, 0, -2.5}, likelihoods.getGl(0).orElseThrow());
+		assertTrue(likelihoods.getGl(1).isEmpty());
+		assertArrayEquals(new int[] {30, 20, 0}, likelihoods.getPl(1).orElseThrow());
+		int nan = VcfTypedField.MISSING_INT;
+		assertArrayEquals(new int[] {10, 0, 25, 30, 20, 0, nan, nan, nan}, likelihoods.getPlMatrix());
+		double[] gl = likelihoods.getGlMatrix();
+		assertArrayEquals(new double[] {-1, 0, -2.5, -3, -2, 0, Double.NaN, Double.NaN, Double.NaN}, gl);
+		assertArrayEquals(new int[] {1, 2, -1}, GenotypeLikelihoods.bestGenotypes(gl, 3));
+		assertArrayEquals(new int[] {1, 2, -1}, GenotypeLikelihoods.bestGenotypes(likelihoods.getPlMatrix(), 3));
+		assertArrayEquals(new int[] {10, 0, 25, 30, 20, 0, nan, nan, nan}, GenotypeLikelihoods.glToPl(gl, 3));
+		assertArrayEquals(gl, GenotypeLikelihoods.plToGl(GenotypeLikelihoods.glToPl(gl, 3)));
+		double[] unnormalized = {-2, -1, -3.5};
+		GenotypeLikelihoods.normalizeGl(unnormalized, 3);
+		assertArrayEquals(new double[] {-1, 0, -2.5}, unnormalized);
+	}
+
+	@Test
+	public void testLikelihoods() {
+		VcfPosition position = new VcfDataParser().apply(
+				"1\t100\t.\tA\tG,T\t.\tPASS\t.\tGT:GL\t0/1:-1,0,-2,-3,-4,-5");
+		var map = new GenotypeLikelihoods(position).getLikelihoods(0).orElseThrow();
+		assertEquals(6, map.size());
+		VcfGenotype het = new VcfGenotype.Builder(position, false).addAlleles(0, 1).build();
+		assertEquals("0", map.get(het).toString());
+		VcfGenotype hom = new VcfGenotype.Builder(position, false).addAlleles(2, 2).build();
+		assertEquals("-5", map.get(hom).toString());
+	}
+}
@@ -0,0 +1,84 @@
+package org.pharmgkb.parsers.vcf.model.extra;
+
+import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.vcf.MutableVcfPosition;
+import org.pharmgkb.parsers.vcf.VcfDataParser;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link PackedGenotypes} and {@link GenotypeMatrix}.
+ * @author Douglas Myers-Turnbull
+ */
+public class PackedGenotypesTest {
+
+	@Test
+	public void testCalls() {
+		PackedGenotypes genotypes = new PackedGenotypes.Builder(5)
+				.setCall(0, "0|0", 0, 3)
+				.setCall(1, "0/1", 0, 3)
+				.setCall(2, "2|1", 0, 3)
+				.setCall(3, "./1", 0, 3)
+				.setCall(4, "1", 0, 1)
+				.build();
+		assertEquals(0, genotypes.getAltCount(0));
+		assertEquals(1, genotypes.getAltCount(1));
+		assertEquals(2, genotypes.getAltCount(2));
+		assertEquals(-1, genotypes.getAltCount(3));
+		assertTrue(genotypes.isMissing(4)); // haploid
+		assertTrue(genotypes.isPhased(2));
+		assertFalse(genotypes.isPhased(1));
+		assertEquals(3, genotypes.getNCalled());
+		assertEquals(1, genotypes.getNHomozygousRef());
+		assertEquals(1, genotypes.getNHeterozygous());
+		assertEquals(1, genotypes.getNHomozygousAlt());
+		assertEquals(3, genotypes.getNAltAlleles());
+		assertEquals(0.5, genotypes.getAltAlleleFrequency(), 0.000001);
+		assertEquals(0.6, genotypes.getCallRate(), 0.000001);
+		assertThrows(IllegalArgumentException.class, () -> new PackedGenotypes.Builder(1).setCall(0, "0|", 0, 2));
+	}
+
+	@Test
+	public void testManyWords() {
+		PackedGenotypes.Builder builder = new PackedGenotypes.Builder(130);
+		for (int i = 0; i < 130; i += 2) {
+			builder.setCall(i, 1, false);
+		}
+		PackedGenotypes genotypes = builder.build();
+		assertEquals(65, genotypes.getNCalled());
+		assertEquals(65, genotypes.getNHeterozygous());
+		assertEquals(1, genotypes.getAltCount(128));
+		assertTrue(genotypes.isMissing(129));
+	}
+
+	@Test
+	public void testFromFile() throws Exception {
+		Path file = Paths.get(getClass().getResource("/org/pharmgkb/parsers/vcf/example.vcf").toURI());
+		List<VcfPosition> positions = new VcfDataParser().collectAll(file);
+		List<PackedGenotypes> packed = new ArrayList<>();
+		GenotypeMatrix.Builder builder = new GenotypeMatrix.Builder(3);
+		new VcfDataParser().forEach(file, (MutableVcfPosition record) -> {
+			packed.add(record.getPackedGenotypes());
+			builder.add(record.getPackedGenotypes());
+		});
+		assertEquals(positions.size(), packed.size());
+		for (int i = 0; i < positions.size(); i++) {
+			assertEquals(PackedGenotypes.of(positions.get(i)), packed.get(i));
+		}
+		GenotypeMatrix matrix = builder.build();
+		assertEquals(positions.size(), matrix.getNPositions());
+		// the first line is 0|0, 1|0, 1/1
+		assertEquals(0.5, matrix.getAltAlleleFrequencies()[0], 0.000001);
+		assertEquals(1, matrix.getPositionCallRates()[0], 0.000001);
+		assertEquals(positions.size(), matrix.getSampleNCalled()[1]);
+	}
+}
@@ -1,6 +1,21 @@
 package org.pharmgkb.parsers.vcf.model.extra;
 
 import org.junit.jupiter.api.Test;
+import org.pharmgkb.parsers.vcf.VcfDataParser;
+import org.pharmgkb.parsers.vcf.model.VcfPosition;
+import org.pharmgkb.parsers.vcf.model.allele.VcfBasesAllele;
+import org.pharmgkb.parsers.vcf.model.allele.VcfDeletedAllele;
+import org.pharmgkb.parsers.vcf.model.allele.VcfSymbolicAllele;
+import org.pharmgkb.parsers.vcf.utils.VcfAlleleFactory;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Tests {@link VcfGenotype}.
@@ -17,4 +32,33 @@ public void testToSimpleString() throws Exception {
 	public void testToVcfString() throws Exception {
 
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testFromGtString() {
+		VcfPosition position = new VcfDataParser().apply("1\t100\t.\tA\tG,<DEL>\t.\tPASS\t.\tGT\t0/1\t0/1\t2|1\t1");
+		VcfGenotype first = position.getGenotype(0).orElseThrow();
+		assertSame(first, position.getGenotype(1).orElseThrow());
+		assertEquals(List.of(0, 1), first.getIndices());
+		assertFalse(first.isPhased());
+		assertEquals("0/1", first.toVcfString());
+		VcfGenotype phased = position.getGenotype(2).orElseThrow();
+		assertTrue(phased.isPhased());
+		assertEquals(List.of(Optional.of(VcfSymbolicAllele.DEL), Optional.of(VcfBasesAllele.fromVcf("G"))), phased.getAlleles());
+		assertEquals(new VcfGenotype.Builder(position, true).addAlleles("2|1").build(), phased);
+		// not cached, and still rejected as before
+		assertThrows(IllegalArgumentException.class, () -> position.getGenotype(3));
+		assertThrows(IndexOutOfBoundsException.class, () -> VcfGenotype.fromGtString(position, "0/3"));
+		assertThrows(IllegalArgumentException.class, () -> VcfGenotype.fromGtString(position, "0/1|2"));
+	}
+
+	@Test
+	public void testSharedAlleles() {
+		assertSame(VcfAlleleFactory.translate("A"), VcfAlleleFactory.translate("A"));
+		assertSame(VcfSymbolicAllele.NON_REF, VcfAlleleFactory.translate("<NON_REF>"));
+		assertSame(VcfDeletedAllele.DELETED, VcfAlleleFactory.translate("*"));
+		assertEquals(new VcfSymbolicAllele("DUP:TANDEM"), VcfAlleleFactory.translate("<DUP:TANDEM>"));
+		assertEquals(new VcfBasesAllele("ACGT"), VcfAlleleFactory.translate("ACGT"));
+		assertThrows(IllegalArgumentException.class, () -> VcfAlleleFactory.translate("AXG"));
+		assertThrows(IllegalArgumentException.class, () -> VcfAlleleFactory.translate(""));
+	}
+}